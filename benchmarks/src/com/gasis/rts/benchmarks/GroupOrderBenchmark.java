@@ -0,0 +1,136 @@
+package com.gasis.rts.benchmarks;
+
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.logic.object.unit.movement.UnitMover;
+import com.gasis.rts.logic.pathfinding.HierarchicalPathFinder;
+import com.gasis.rts.logic.pathfinding.PathFinderInterface;
+import com.gasis.rts.logic.pathfinding.PathRequestQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to order a group of units to the opposite corner of a map,
+ * including the path requests the order queues. The path finders are the same ones
+ * the players use. Groups smaller than UnitMover.FLOW_FIELD_MIN_GROUP_SIZE find a path
+ * for every unit, bigger ones build a flow field
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupOrderBenchmark {
+
+    // lets the queue run every pending request in a single update
+    protected static final long UNLIMITED_FRAME_BUDGET_MICROS = 1000000000L;
+
+    @Param({SyntheticMaps.OPEN, SyntheticMaps.LAKE, SyntheticMaps.MAZE, SyntheticMaps.BUILDINGS})
+    public String mapType;
+
+    @Param({"75", "256", "1024", "2048"})
+    public int size;
+
+    @Param({"4", "100", "500"})
+    public int unitCount;
+
+    // the mover being measured
+    protected BenchmarkUnitMover unitMover;
+
+    // path requests made by the mover
+    protected PathRequestQueue pathRequests;
+
+    // the ordered units
+    protected Set<Unit> units = new HashSet<Unit>();
+
+    /**
+     * Builds the map and fills the bottom left corner with units
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        BlockMap map = SyntheticMaps.create(mapType, size);
+
+        pathRequests = new PathRequestQueue(new HierarchicalPathFinder(map), UNLIMITED_FRAME_BUDGET_MICROS);
+        unitMover = new BenchmarkUnitMover(map, pathRequests);
+
+        units.clear();
+
+        // place the units in square rings around the corner so they stay close together
+        for (int ring = 1; ring < size - 1 && units.size() < unitCount; ring++) {
+            for (int i = 1; i <= ring && units.size() < unitCount; i++) {
+                addUnit(map, ring, i);
+
+                if (i != ring && units.size() < unitCount) {
+                    addUnit(map, i, ring);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the previous order so that every order starts from the same state
+     */
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        unitMover.removeAllGroups();
+    }
+
+    /**
+     * Orders the units to the top right corner and runs the path requests of the order
+     */
+    @Benchmark
+    public void moveUnits() {
+        unitMover.moveUnits(units, (short) (size - 2), (short) (size - 2), true);
+
+        pathRequests.update(0);
+    }
+
+    /**
+     * Places a unit on a block if it can stand there
+     *
+     * @param map the map
+     * @param x   block x
+     * @param y   block y
+     */
+    protected void addUnit(BlockMap map, int x, int y) {
+        if (map.isBlockStaticallyPassable((short) x, (short) y) && !map.isBlockOccupied((short) x, (short) y)
+                && map.getRegions().isReachable(1, 1, x, y)) {
+
+            units.add(SyntheticMaps.createUnit(map, x, y));
+        }
+    }
+
+    /**
+     * A unit mover that can forget it's groups without updating the units
+     */
+    protected static class BenchmarkUnitMover extends UnitMover {
+
+        /**
+         * Default class constructor
+         *
+         * @param map        the game's map
+         * @param pathFinder path finder used to move the units
+         */
+        public BenchmarkUnitMover(BlockMap map, PathFinderInterface pathFinder) {
+            super(map, pathFinder);
+        }
+
+        /**
+         * Removes all groups and paths
+         */
+        public void removeAllGroups() {
+            for (UnitGroup group : groups) {
+                releaseFlowField(group);
+            }
+
+            groups.clear();
+            movementStates.clear();
+            waitStartTicks.clear();
+            pathFinder.clearAllPaths();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.gasis.rts.benchmarks;
+
+import com.gasis.rts.logic.map.blockmap.Block;
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.logic.pathfinding.HierarchicalPathFinder;
+import com.gasis.rts.logic.pathfinding.JumpPointPathFinder;
+import com.gasis.rts.logic.pathfinding.PathFinderInterface;
+import com.gasis.rts.math.Point;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to find a single path from one corner of a map to the
+ * opposite one and to go through all of it's waypoints, which makes hierarchical path
+ * finding refine every leg of the route and not just the first one. Run with the GC
+ * profiler (-prof gc) to see how much memory a search allocates
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PathFinderBenchmark {
+
+    @Param({SyntheticMaps.OPEN, SyntheticMaps.LAKE, SyntheticMaps.MAZE, SyntheticMaps.BUILDINGS})
+    public String mapType;
+
+    @Param({"75", "256", "1024", "2048"})
+    public int size;
+
+    @Param({"jps", "hpa"})
+    public String pathFinderType;
+
+    // the path finder being measured
+    protected PathFinderInterface pathFinder;
+
+    // unit that the paths are searched for
+    protected Unit unit;
+
+    // destination of the searched paths
+    protected short destinationX;
+    protected short destinationY;
+
+    /**
+     * Builds the map and places the unit in the bottom left corner
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        BlockMap map = SyntheticMaps.create(mapType, size);
+
+        if (pathFinderType.equals("hpa")) {
+            pathFinder = new HierarchicalPathFinder(map);
+        } else {
+            pathFinder = new JumpPointPathFinder(map);
+        }
+
+        unit = SyntheticMaps.createUnit(map, 1, 1);
+        pathFinder.newGroup(Collections.singleton(unit));
+
+        // the top right corner might be taken by a building or water
+        int destination = map.getRegions().getReachableBlock(1, 1, size - 2, size - 2);
+
+        destinationX = (short) (destination % size);
+        destinationY = (short) (destination / size);
+    }
+
+    /**
+     * Finds a path to the opposite corner of the map and walks it by putting the unit
+     * on every waypoint in turn, then puts the unit back to the start
+     *
+     * @return the number of waypoints
+     */
+    @Benchmark
+    public int findPath() {
+        pathFinder.findPathToObject(unit, destinationX, destinationY, true);
+
+        int waypoints = 0;
+        Point next;
+
+        while ((next = pathFinder.getNextPathPointForObject(unit)) != null) {
+            unit.setCenterX(next.x * Block.BLOCK_WIDTH + Block.BLOCK_WIDTH / 2f);
+            unit.setCenterY(next.y * Block.BLOCK_HEIGHT + Block.BLOCK_HEIGHT / 2f);
+            waypoints++;
+        }
+
+        unit.setCenterX(Block.BLOCK_WIDTH * 1.5f);
+        unit.setCenterY(Block.BLOCK_HEIGHT * 1.5f);
+
+        return waypoints;
+    }
+}
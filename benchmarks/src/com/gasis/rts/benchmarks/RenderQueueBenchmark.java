@@ -0,0 +1,87 @@
+package com.gasis.rts.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.gasis.rts.logic.render.RenderQueue;
+import com.gasis.rts.logic.render.RenderQueueInterface;
+import com.gasis.rts.logic.render.Renderable;
+import com.gasis.rts.resources.Resources;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to fill the render queue and render it in depth order, the
+ * same way a frame does it. Run with the GC profiler (-prof gc) to see that a frame
+ * doesn't allocate anything once the queue has grown big enough
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderQueueBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int renderableCount;
+
+    // the queue being measured
+    protected RenderQueue renderQueue = new RenderQueue();
+
+    // queued renderables and their positions
+    protected CountingRenderable[] renderables;
+    protected float[] positionsX;
+    protected float[] positionsY;
+
+    /**
+     * Scatters the renderables over a map of 256x256 blocks
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+
+        renderables = new CountingRenderable[renderableCount];
+        positionsX = new float[renderableCount];
+        positionsY = new float[renderableCount];
+
+        for (int i = 0; i < renderableCount; i++) {
+            renderables[i] = new CountingRenderable();
+            positionsX[i] = random.nextFloat() * 256 * 1.2f;
+            // whole blocks, so that plenty of renderables have equal depths
+            positionsY[i] = random.nextInt(256) * 0.8f;
+        }
+    }
+
+    /**
+     * Queues every renderable and renders the queue
+     *
+     * @return
+     */
+    @Benchmark
+    public int renderFrame() {
+        renderQueue.clearQueue();
+
+        for (int i = 0; i < renderableCount; i++) {
+            renderQueue.addRenderable(renderables[i], positionsX[i], positionsY[i]);
+        }
+
+        renderQueue.render(null, null, renderQueue);
+
+        return renderables[0].renderCount;
+    }
+
+    /**
+     * Renderable that only counts how many times it was rendered
+     */
+    protected static class CountingRenderable implements Renderable {
+
+        // how many times the renderable was rendered
+        protected int renderCount;
+
+        @Override
+        public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+            renderCount++;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.gasis.rts.benchmarks;
+
+import com.gasis.rts.logic.map.blockmap.Block;
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.map.blockmap.BlockMapLayer;
+import com.gasis.rts.logic.map.blockmap.VisibleBlock;
+import com.gasis.rts.logic.object.building.Building;
+import com.gasis.rts.logic.object.unit.Unit;
+
+import java.util.Random;
+
+/**
+ * Builds block maps in code, so that path finding can be measured without loading
+ * map scripts or textures
+ */
+public class SyntheticMaps {
+
+    // nothing but passable ground
+    public static final String OPEN = "open";
+
+    // the lake of main.map scaled to the map's size
+    public static final String LAKE = "lake";
+
+    // a maze with 1 block wide corridors
+    public static final String MAZE = "maze";
+
+    // blocks of 4 buildings separated by narrow alleys
+    public static final String BUILDINGS = "buildings";
+
+    // every map is generated from the same seed so that runs can be compared
+    protected static final long SEED = 2019;
+
+    // size of a building block including the alleys around it
+    protected static final int BUILDING_CELL_SIZE = 12;
+
+    // size of a single building
+    protected static final int BUILDING_SIZE = 4;
+
+    /**
+     * Creates a square map of the given type
+     *
+     * @param type map type: open, lake, maze or buildings
+     * @param size width and height of the map in blocks
+     * @return
+     */
+    public static BlockMap create(String type, int size) {
+        BlockMap map = createOpenField(size);
+
+        if (type.equals(LAKE)) {
+            addLake(map, size);
+        } else if (type.equals(MAZE)) {
+            addMaze(map, size);
+        } else if (type.equals(BUILDINGS)) {
+            addBuildings(map, size);
+        } else if (!type.equals(OPEN)) {
+            throw new IllegalArgumentException("Unknown map type: " + type);
+        }
+
+        return map;
+    }
+
+    /**
+     * Creates a unit standing on the given block
+     *
+     * @param map the map the unit is on
+     * @param x   block x
+     * @param y   block y
+     * @return
+     */
+    public static Unit createUnit(BlockMap map, int x, int y) {
+        Unit unit = new Unit(map);
+
+        unit.setWidth(Block.BLOCK_WIDTH);
+        unit.setHeight(Block.BLOCK_HEIGHT);
+        unit.setCenterX(x * Block.BLOCK_WIDTH + Block.BLOCK_WIDTH / 2f);
+        unit.setCenterY(y * Block.BLOCK_HEIGHT + Block.BLOCK_HEIGHT / 2f);
+
+        map.occupyBlock((short) x, (short) y, unit);
+
+        return unit;
+    }
+
+    /**
+     * Creates a map where every block can be walked on
+     *
+     * @param size width and height of the map in blocks
+     * @return
+     */
+    protected static BlockMap createOpenField(int size) {
+        BlockMap map = new BlockMap((short) size, (short) size);
+        BlockMapLayer terrain = new BlockMapLayer("terrain_1", (short) size, (short) size);
+
+        for (short x = 0; x < size; x++) {
+            for (short y = 0; y < size; y++) {
+                VisibleBlock block = new VisibleBlock();
+                block.setPassable(true);
+
+                terrain.addBlock(block, x, y);
+            }
+        }
+
+        map.addMapLayer(terrain, true);
+
+        return map;
+    }
+
+    /**
+     * Adds the water circle of main.map ("water 30 30 15 15 circle 0.5" on a 75x75 map),
+     * scaled to the map's size. Like the map generator, every block of the circle
+     * becomes water with the probability of the circle's thickness
+     *
+     * @param map  map to add the lake to
+     * @param size map size
+     */
+    protected static void addLake(BlockMap map, int size) {
+        Random random = new Random(SEED);
+
+        float scale = size / 75f;
+        float centerX = 37.5f * scale;
+        float centerY = 37.5f * scale;
+        float radius = 7.5f * scale;
+
+        for (short x = 0; x < size; x++) {
+            for (short y = 0; y < size; y++) {
+                float dx = x + 0.5f - centerX;
+                float dy = y + 0.5f - centerY;
+
+                if (dx * dx + dy * dy <= radius * radius && random.nextFloat() <= 0.5f) {
+                    map.setBlockPassable(x, y, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns the map into a maze: corridors run along odd coordinates and the walls
+     * between them are carved by a randomized depth first search
+     *
+     * @param map  map to turn into a maze
+     * @param size map size
+     */
+    protected static void addMaze(BlockMap map, int size) {
+        Random random = new Random(SEED);
+
+        for (short x = 0; x < size; x++) {
+            for (short y = 0; y < size; y++) {
+                map.setBlockPassable(x, y, x % 2 == 1 && y % 2 == 1 && x < size - 1 && y < size - 1);
+            }
+        }
+
+        int cells = (size - 1) / 2;
+        boolean[] visited = new boolean[cells * cells];
+        int[] stack = new int[cells * cells];
+        int[] candidates = new int[4];
+        int top = 0;
+
+        stack[top++] = 0;
+        visited[0] = true;
+
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int cellX = cell % cells;
+            int cellY = cell / cells;
+            int candidateCount = 0;
+
+            if (cellX > 0 && !visited[cell - 1]) {
+                candidates[candidateCount++] = cell - 1;
+            }
+
+            if (cellX < cells - 1 && !visited[cell + 1]) {
+                candidates[candidateCount++] = cell + 1;
+            }
+
+            if (cellY > 0 && !visited[cell - cells]) {
+                candidates[candidateCount++] = cell - cells;
+            }
+
+            if (cellY < cells - 1 && !visited[cell + cells]) {
+                candidates[candidateCount++] = cell + cells;
+            }
+
+            if (candidateCount == 0) {
+                top--;
+                continue;
+            }
+
+            int next = candidates[random.nextInt(candidateCount)];
+
+            // remove the wall between the cells
+            short wallX = (short) (cellX + next % cells + 1);
+            short wallY = (short) (cellY + next / cells + 1);
+            map.setBlockPassable(wallX, wallY, true);
+
+            visited[next] = true;
+            stack[top++] = next;
+        }
+    }
+
+    /**
+     * Fills the map with blocks of 4 buildings. The buildings of a block are separated
+     * by 1 block wide alleys and the blocks by 3 block wide streets
+     *
+     * @param map  map to add the buildings to
+     * @param size map size
+     */
+    protected static void addBuildings(BlockMap map, int size) {
+        int[] offsets = {2, 2 + BUILDING_SIZE + 1};
+
+        for (int cellX = 0; cellX + BUILDING_CELL_SIZE <= size; cellX += BUILDING_CELL_SIZE) {
+            for (int cellY = 0; cellY + BUILDING_CELL_SIZE <= size; cellY += BUILDING_CELL_SIZE) {
+                for (int offsetX : offsets) {
+                    for (int offsetY : offsets) {
+                        addBuilding(map, cellX + offsetX, cellY + offsetY);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Places a building on the map
+     *
+     * @param map map to place the building on
+     * @param x   x of the building's bottom left block
+     * @param y   y of the building's bottom left block
+     */
+    protected static void addBuilding(BlockMap map, int x, int y) {
+        Building building = new Building(map);
+
+        for (int blockX = x; blockX < x + BUILDING_SIZE; blockX++) {
+            for (int blockY = y; blockY < y + BUILDING_SIZE; blockY++) {
+                map.occupyBlock((short) blockX, (short) blockY, building);
+            }
+        }
+    }
+}
@@ -67,6 +67,11 @@ public class Main extends Game implements ScreenSwitcher {
         assetsToLoad.put(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, TextureAtlas.class);
         assetsToLoad.put(Constants.FOLDER_ATLASES + Constants.CRATER_TEXTURE_ATLAS, TextureAtlas.class);
         assetsToLoad.put(Constants.GENERAL_TEXTURE_ATLAS, TextureAtlas.class);
+
+        if (Gdx.files.internal(Constants.MERGED_TEXTURE_ATLAS).exists()) {
+            assetsToLoad.put(Constants.MERGED_TEXTURE_ATLAS, TextureAtlas.class);
+        }
+
         assetsToLoad.put(Constants.FOLDER_SOUNDS + "missile_launch.mp3", Sound.class);
         assetsToLoad.put(Constants.FOLDER_SOUNDS + "shell_fire_1.mp3", Sound.class);
         assetsToLoad.put(Constants.FOLDER_SOUNDS + "shell_fire_2.mp3", Sound.class);
@@ -3,6 +3,7 @@ package com.gasis.rts.logic;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Graphics;
 import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
@@ -36,7 +37,6 @@ import com.gasis.rts.utils.Constants;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Game instance. Holds game state, draws the game world and updates it
@@ -102,6 +102,15 @@ public class GameInstance implements Updatable {
     // initializes players' state
     private PlayerInitializer playerInitializer;
 
+    // objects found close to the rendered area (kept to avoid creating a new list every frame)
+    private List<GameObject> objectsToRender = new ArrayList<GameObject>();
+
+    // edges of the area rendered this frame in world coordinates
+    private float renderLeft;
+    private float renderBottom;
+    private float renderRight;
+    private float renderTop;
+
     /**
      * Default class constructor
      *
@@ -116,8 +125,15 @@ public class GameInstance implements Updatable {
 
         SoundPlayerProvider.initialize(soundPlayer);
 
-        // initialize the map
-        map = new BlockMapGenerator().generate(Gdx.files.internal(Constants.FOLDER_MAPS + "main.map"));
+        // initialize the map, the compiled map is used if it has been compiled from the current script
+        FileHandle mapFile = Gdx.files.internal(Constants.FOLDER_MAPS + "main." + BlockMapCompiler.EXTENSION);
+        FileHandle scriptFile = Gdx.files.internal(Constants.FOLDER_MAPS + "main.map");
+
+        if (!BlockMapCompiler.isUpToDate(mapFile, scriptFile)) {
+            mapFile = scriptFile;
+        }
+
+        map = new BlockMapGenerator().generate(mapFile);
 
         // initialize the map renderer
         mapRenderer = new BlockMapRenderer();
@@ -175,6 +191,7 @@ public class GameInstance implements Updatable {
 
         // pass exploration data instance to the map renderer
         explorationData = new ExplorationDataMultiplexer();
+        explorationData.init((short) map.getWidth(), (short) map.getHeight());
 
         explorationData.addExplorationDataInstance(one.getState().explorationData);
         explorationData.addExplorationDataInstance(two.getState().explorationData);
@@ -202,6 +219,9 @@ public class GameInstance implements Updatable {
      * @param batch sprite batch to draw sprites with
      */
     public void draw(SpriteBatch batch) {
+        // less detail is rendered when the map is zoomed out
+        renderQueue.setLowDetail(mapZoomer.isLowDetail());
+
         mapRenderer.render(batch, resources, renderQueue);
 
         drawObjects(batch);
@@ -224,48 +244,108 @@ public class GameInstance implements Updatable {
     protected void drawObjects(SpriteBatch batch) {
         renderQueue.clearQueue();
 
-        for (Player player : players) {
-            renderUnits(player.getUnits());
-            renderBuildings(player.getBuildings());
+        updateRenderArea();
+
+        for (int i = 0; i < players.size(); i++) {
+            renderObjects(players.get(i));
         }
 
+        renderSelectedBuilding(playerControls.getSelectedBuilding());
+        renderSelectedBuilding(playerControls2.getSelectedBuilding());
+
         renderQueue.render(batch, resources, renderQueue);
     }
 
     /**
-     * Renders units
+     * Remembers the area the map renderer renders this frame
+     */
+    protected void updateRenderArea() {
+        renderLeft = mapRenderer.getActualRenderXInWorldCoordinates();
+        renderBottom = mapRenderer.getActualRenderYInWorldCoordinates();
+        renderRight = renderLeft + mapRenderer.getActualRenderWidthInWorldCoordinates();
+        renderTop = renderBottom + mapRenderer.getActualRenderHeightInWorldCoordinates();
+    }
+
+    /**
+     * Renders units and buildings of a player. Only the objects that are close enough to
+     * the rendered area to overlap it or shoot into it are looked at
      *
-     * @param units units to render
+     * @param player owner of the objects
      */
-    protected void renderUnits(Set<Unit> units) {
-        for (Unit unit : units) {
-            if (shouldBeRendered(unit) && (explorationData.isVisible((short) unit.getOccupiedBlock().x, (short) unit.getOccupiedBlock().y) || (unit.getFiringLogic() != null && !unit.getFiringLogic().canBeRemoved()))) {
-                renderQueue.addRenderable(unit, unit.getCenterX(), unit.getCenterY());
+    protected void renderObjects(Player player) {
+        float margin = map.getObjectGrid().getMaxReach() + map.getObjectGrid().getMaxExtent();
+
+        map.getObjectGrid().findInRectangle(
+                renderLeft / Block.BLOCK_WIDTH - margin,
+                renderBottom / Block.BLOCK_HEIGHT - margin,
+                renderRight / Block.BLOCK_WIDTH + margin,
+                renderTop / Block.BLOCK_HEIGHT + margin,
+                player, ObjectGrid.OWNED, objectsToRender);
+
+        for (int i = 0; i < objectsToRender.size(); i++) {
+            GameObject object = objectsToRender.get(i);
+
+            if (object instanceof Unit) {
+                renderUnit((Unit) object);
+            } else if (object instanceof Building && !((Building) object).isRenderGatherPoint()) {
+                // buildings showing their gather points are selected, they're rendered separately
+                renderBuilding((Building) object);
             }
         }
+
+        objectsToRender.clear();
     }
 
     /**
-     * Renders buildings
+     * Renders a unit if it is in the rendered area and visible
      *
-     * @param buildings buildings to render
-     */
-    protected void renderBuildings(Set<Building> buildings) {
-        for (Building building : buildings) {
-            if (shouldBeRendered(building) || building.isRenderGatherPoint()) {
-                boolean render = false;
-
-                for (Point block : building.getOccupiedBlocks()) {
-                    if (explorationData.isExplored((short) block.x, (short) block.y)) {
-                        render = true;
-                        break;
-                    }
-                }
+     * @param unit unit to render
+     */
+    protected void renderUnit(Unit unit) {
+        if (shouldBeRendered(unit) && (explorationData.isVisible((short) unit.getOccupiedBlock().x, (short) unit.getOccupiedBlock().y) || (unit.getFiringLogic() != null && !unit.getFiringLogic().canBeRemoved()))) {
+            if (renderQueue.isLowDetail()) {
+                unit.queueImpostor(renderQueue);
+            } else {
+                renderQueue.addRenderable(unit, unit.getCenterX(), unit.getCenterY(), unit.getTextureKey());
+            }
+
+            unit.queueSelectionCircle(renderQueue);
+        }
+    }
+
+    /**
+     * Renders a selected building. It's gather point can be anywhere on the map, so it is
+     * rendered even if it isn't close to the rendered area
+     *
+     * @param building selected building, can be null
+     */
+    protected void renderSelectedBuilding(Building building) {
+        if (building != null && building.isRenderGatherPoint() && map.getObjectGrid().contains(building)) {
+            renderBuilding(building);
+        }
+    }
 
-                if (render || (building instanceof OffensiveBuilding && ((OffensiveBuilding) building).getFiringLogic() != null && !((OffensiveBuilding) building).getFiringLogic().canBeRemoved())) {
-                    renderQueue.addRenderable(building, building.getCenterX(), building.getCenterY());
+    /**
+     * Renders a building if it is in the rendered area (or shows it's gather point) and
+     * any of it's blocks is explored
+     *
+     * @param building building to render
+     */
+    protected void renderBuilding(Building building) {
+        if (shouldBeRendered(building) || building.isRenderGatherPoint()) {
+            boolean render = false;
+            List<Point> blocks = building.getOccupiedBlocks();
+
+            for (int i = 0; i < blocks.size(); i++) {
+                if (explorationData.isExplored((short) blocks.get(i).x, (short) blocks.get(i).y)) {
+                    render = true;
+                    break;
                 }
             }
+
+            if (render || (building instanceof OffensiveBuilding && ((OffensiveBuilding) building).getFiringLogic() != null && !((OffensiveBuilding) building).getFiringLogic().canBeRemoved())) {
+                renderQueue.addRenderable(building, building.getCenterX(), building.getCenterY(), building.getTextureKey());
+            }
         }
     }
 
@@ -278,14 +358,14 @@ public class GameInstance implements Updatable {
     protected boolean shouldBeRendered(GameObject object) {
         boolean render = false;
 
-        if (object.getX() + object.getWidth() >= mapRenderer.getActualRenderXInWorldCoordinates() && object.getY() + object.getHeight() >= mapRenderer.getActualRenderYInWorldCoordinates() && object.getX() <= mapRenderer.getActualRenderXInWorldCoordinates() + mapRenderer.getActualRenderWidthInWorldCoordinates() && object.getY() <= mapRenderer.getActualRenderYInWorldCoordinates() + mapRenderer.getActualRenderHeightInWorldCoordinates()) {
+        if (object.getX() + object.getWidth() >= renderLeft && object.getY() + object.getHeight() >= renderBottom && object.getX() <= renderRight && object.getY() <= renderTop) {
             render = true;
         }
 
         if (object instanceof Aimable) {
             Aimable aimable = (Aimable) object;
 
-            if ((aimable.hasTarget() || aimable.hasTargetObject()) && aimable.getTargetX() >= mapRenderer.getActualRenderXInWorldCoordinates() && aimable.getTargetY() >= mapRenderer.getActualRenderYInWorldCoordinates() && aimable.getTargetX() <= mapRenderer.getActualRenderXInWorldCoordinates() + mapRenderer.getActualRenderWidthInWorldCoordinates() && aimable.getTargetY() <= mapRenderer.getActualRenderYInWorldCoordinates() + mapRenderer.getActualRenderHeightInWorldCoordinates()) {
+            if ((aimable.hasTarget() || aimable.hasTargetObject()) && aimable.getTargetX() >= renderLeft && aimable.getTargetY() >= renderBottom && aimable.getTargetX() <= renderRight && aimable.getTargetY() <= renderTop) {
                 render = true;
             }
         }
@@ -340,6 +420,8 @@ public class GameInstance implements Updatable {
             player.update(delta);
         }
 
+        map.endTick();
+
         Cursor.updateAnimation(delta);
 
         lastCamPosition.x = cam.position.x;
@@ -527,6 +609,7 @@ public class GameInstance implements Updatable {
      */
     public void unloadResources() {
         Cursor.dispose();
+        mapRenderer.dispose();
     }
 
     /**
@@ -135,7 +135,8 @@ public class MissileAnimation extends ProjectileAnimation {
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
         super.render(batch, resources, renderQueue);
 
-        if (spawnTrails || timeSinceTrailSpawn < trailSpawnInterval) {
+        // the smoke trail isn't rendered when the map is zoomed out, the missile itself is
+        if (!renderQueue.isLowDetail() && (spawnTrails || timeSinceTrailSpawn < trailSpawnInterval)) {
             for (FrameAnimation animation : smokeTrails) {
                 animation.render(batch, resources, renderQueue);
             }
@@ -60,8 +60,11 @@ public class RisingSmokeAnimation implements Animation {
      */
     @Override
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
-        for (FrameAnimation animation : smokeBalls) {
-            animation.render(batch, resources, renderQueue);
+        // every other smoke ball is enough when the map is zoomed out
+        int step = renderQueue.isLowDetail() ? 2 : 1;
+
+        for (int i = 0; i < smokeBalls.length; i += step) {
+            smokeBalls[i].render(batch, resources, renderQueue);
         }
     }
 }
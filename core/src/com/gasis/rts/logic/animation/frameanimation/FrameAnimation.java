@@ -5,7 +5,7 @@ import com.gasis.rts.logic.animation.Animation;
 import com.gasis.rts.logic.animation.AnimationFinishListener;
 import com.gasis.rts.logic.render.RenderQueueInterface;
 import com.gasis.rts.resources.Resources;
-import com.gasis.rts.utils.Constants;
+import com.gasis.rts.resources.TextureRegions;
 
 import java.util.HashSet;
 import java.util.List;
@@ -17,6 +17,9 @@ import java.util.Set;
 @SuppressWarnings("unused")
 public class FrameAnimation implements Animation {
 
+    // animations smaller than this (in world units) aren't rendered when the map is zoomed out
+    protected static final float LOW_DETAIL_MIN_SIZE = 0.3f;
+
     // how often the animation frame changes (in seconds)
     protected float updateInterval;
 
@@ -75,6 +78,9 @@ public class FrameAnimation implements Animation {
     // frames of the animation
     protected List<String> frames;
 
+    // texture region handles of the frames
+    protected int[] frameRegions;
+
     // how many frames are there in the animation
     protected int frameCount;
 
@@ -421,6 +427,15 @@ public class FrameAnimation implements Animation {
         this.frames = frames;
     }
 
+    /**
+     * Sets the texture region handles of the frames
+     *
+     * @param frameRegions handles in the same order as the frames
+     */
+    public void setFrameRegions(int[] frameRegions) {
+        this.frameRegions = frameRegions;
+    }
+
     /**
      * Gets the x coordinate of the animation
      *
@@ -782,8 +797,13 @@ public class FrameAnimation implements Animation {
             return;
         }
 
+        // small effects like muzzle flashes can't be made out when zoomed out
+        if (renderQueue.isLowDetail() && Math.max(width, height) * scale < LOW_DETAIL_MIN_SIZE) {
+            return;
+        }
+
         batch.draw(
-                resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(frames.get(currentFrame)),
+                TextureRegions.get(resources, frameRegions[currentFrame]),
                 x,
                 y,
                 width / 2,
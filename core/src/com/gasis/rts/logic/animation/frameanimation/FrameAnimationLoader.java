@@ -3,6 +3,8 @@ package com.gasis.rts.logic.animation.frameanimation;
 import com.badlogic.gdx.files.FileHandle;
 import com.gasis.rts.filehandling.FileLineReader;
 import com.gasis.rts.logic.animation.AnimationLoader;
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +20,9 @@ public class FrameAnimationLoader extends AnimationLoader {
     // names of the frames of the animation
     protected final List<String> frames = new ArrayList<String>();
 
+    // texture region handles of the frames
+    protected int[] frameRegions;
+
     // the duration of the animation in seconds
     protected float duration;
 
@@ -94,6 +99,7 @@ public class FrameAnimationLoader extends AnimationLoader {
      */
     protected void readFrames(FileLineReader reader) {
         frames.addAll(reader.readLines("frame"));
+        frameRegions = TextureRegions.register(Constants.FOLDER_ATLASES + atlas, frames);
     }
 
     /**
@@ -111,6 +117,7 @@ public class FrameAnimationLoader extends AnimationLoader {
 
         animation.setAtlas(atlas);
         animation.setFrames(frames);
+        animation.setFrameRegions(frameRegions);
         animation.setFrameCount(frames.size());
         animation.setWidth(width);
         animation.setHeight(height);
@@ -1,9 +1,8 @@
 package com.gasis.rts.logic.map.blockmap;
 
-import com.gasis.rts.logic.object.GameObject;
-
 /**
- * A normal map block without background, foreground, or content in it by default
+ * A normal map block without background, foreground, or content in it by default.
+ * What stands on the block is kept by the block map
  */
 public class Block {
 
@@ -15,24 +14,9 @@ public class Block {
     protected short x;
     protected short y;
 
-    // what currently is on this block
-    protected GameObject occupyingObject;
-
-    // the second passable object occupying the block
-    protected GameObject passableObject;
-
     // is the block passable or not (can units and buildings be on it or not)
     protected boolean passable;
 
-    /**
-     * Checks if the block has something on it
-     *
-     * @return true if the block is occupied
-     */
-    public boolean isOccupied() {
-        return occupyingObject != null;
-    }
-
     /**
      * Checks if the block is passable or not
      *
@@ -51,46 +35,6 @@ public class Block {
         this.passable = passable;
     }
 
-    /**
-     * Gets the object that is occupying this block
-     *
-     * @return occupying object
-     */
-    public GameObject getOccupyingObject() {
-        if (occupyingObject != null) {
-            return occupyingObject;
-        } else {
-            return passableObject;
-        }
-    }
-
-    /**
-     * Gets the block's passable object
-     *
-     * @return
-     */
-    public GameObject getPassableObject() {
-        return passableObject;
-    }
-
-    /**
-     * Occupies this block with an object
-     *
-     * @param object the object that occupies the block now
-     */
-    public void setOccupyingObject(GameObject object) {
-        occupyingObject = object;
-    }
-
-    /**
-     * Sets the block's passable object
-     *
-     * @param object passable object
-     */
-    public void setPassableObject(GameObject object) {
-        passableObject = object;
-    }
-
     /**
      * Gets the x coordinate of the block
      *
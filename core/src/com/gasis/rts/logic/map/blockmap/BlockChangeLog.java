@@ -0,0 +1,164 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records which blocks of a map changed (their occupying objects or passability),
+ * so that structures derived from the map can update only what changed instead of
+ * scanning the whole map.
+ *
+ * Changed blocks are written to an int ring buffer as packed (y * map width + x) ids
+ * and every subscription reads them at it's own pace. A subscription that falls more
+ * than the buffer's capacity behind loses the changes it hasn't read and is told to
+ * rebuild from scratch
+ */
+public class BlockChangeLog {
+
+    // returned when a subscription has no more changes to read
+    public static final int NO_BLOCK = -1;
+
+    // the default number of changes kept in the buffer
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    // changed blocks in the order they changed
+    protected int[] changes;
+
+    // changes.length - 1, the capacity is a power of 2
+    protected int mask;
+
+    // how many changes have ever been recorded
+    protected long written;
+
+    // map width in blocks
+    protected int width;
+
+    // all active subscriptions
+    protected Set<Subscription> subscriptions = new HashSet<Subscription>();
+
+    /**
+     * Default class constructor
+     *
+     * @param width  map width in blocks
+     * @param height map height in blocks
+     */
+    public BlockChangeLog(int width, int height) {
+        this(width, height, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor with a custom buffer capacity
+     *
+     * @param width    map width in blocks
+     * @param height   map height in blocks
+     * @param capacity how many changes to keep, rounded up to a power of 2
+     */
+    public BlockChangeLog(int width, int height, int capacity) {
+        this.width = width;
+
+        changes = new int[Integer.highestOneBit(Math.max(2, capacity - 1)) << 1];
+        mask = changes.length - 1;
+    }
+
+    /**
+     * Starts reading changes. The subscription receives the changes recorded after this call
+     *
+     * @return
+     */
+    public Subscription subscribe() {
+        Subscription subscription = new Subscription();
+        subscription.cursor = written;
+
+        subscriptions.add(subscription);
+
+        return subscription;
+    }
+
+    /**
+     * Stops reading changes
+     *
+     * @param subscription subscription to end
+     */
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Records a change of a block
+     *
+     * @param x block x
+     * @param y block y
+     */
+    public void record(int x, int y) {
+        changes[(int) (written & mask)] = y * width + x;
+        written++;
+    }
+
+    /**
+     * Records that any block might have changed. Every subscription is told to rebuild
+     */
+    public void recordAll() {
+        for (Subscription subscription : subscriptions) {
+            subscription.cursor = written;
+            subscription.overflowed = true;
+        }
+    }
+
+    /**
+     * Reads the changes of the log in the order they were recorded
+     */
+    public class Subscription {
+
+        // how many changes have been read
+        protected long cursor;
+
+        // have changes been lost since the last check
+        protected boolean overflowed;
+
+        /**
+         * Checks if there are changes to read or changes have been lost
+         *
+         * @return
+         */
+        public boolean hasChanges() {
+            return cursor != written || overflowed;
+        }
+
+        /**
+         * Reads the next changed block
+         *
+         * @return packed block id or NO_BLOCK if there are no more changes
+         * (or the unread ones have been lost)
+         */
+        public int next() {
+            if (written - cursor > changes.length) {
+                cursor = written;
+                overflowed = true;
+            }
+
+            if (cursor == written) {
+                return NO_BLOCK;
+            }
+
+            return changes[(int) (cursor++ & mask)];
+        }
+
+        /**
+         * Checks if changes have been lost (the reader has to rebuild it's data from the
+         * map) since the last check
+         *
+         * @return
+         */
+        public boolean checkOverflow() {
+            if (written - cursor > changes.length) {
+                cursor = written;
+                overflowed = true;
+            }
+
+            boolean result = overflowed;
+            overflowed = false;
+
+            return result;
+        }
+    }
+}
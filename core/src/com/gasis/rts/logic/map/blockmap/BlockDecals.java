@@ -0,0 +1,326 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
+
+/**
+ * Decals (craters, junk and corpses) lying on the map. Decals are kept in primitive
+ * arrays of a fixed size that are used as a ring: when the whole decal budget is used
+ * the oldest decal on the map makes room for the new one. Every block also keeps a small
+ * ring of it's own decals, so that a block never has more than a few of them and evicts
+ * it's oldest one first. Decals are added by texture region handle, so nothing is looked
+ * up when a decal is added and nothing is allocated except for the first decal of a chunk
+ */
+public class BlockDecals {
+
+    // the texture id of decal slots that have been evicted
+    protected static final int NO_DECAL = -1;
+
+    // how many decals can exist on the whole map by default
+    public static final int DEFAULT_BUDGET = 2048;
+
+    // decal slots in the order the decals were added, textures are texture region handles
+    protected int[] textures;
+    protected float[] positionsX;
+    protected float[] positionsY;
+    protected float[] scales;
+    protected int[] blocks;
+
+    // the oldest used slot and the number of used slots (evicted ones included)
+    protected int first;
+    protected int used;
+
+    // how many decals a single block can have
+    protected int decalsPerBlock;
+
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
+
+    // slots of every block's decals by chunk, decalsPerBlock entries per block,
+    // null for chunks that never had decals
+    protected int[][] blockSlots;
+
+    // where every block's ring of slots starts and how many decals it has
+    protected byte[][] blockStarts;
+    protected byte[][] blockSizes;
+
+    // how many decals every chunk has and how many times it's decals have changed
+    protected int[] chunkDecalCounts;
+    protected int[] chunkVersions;
+
+    /**
+     * Default class constructor
+     *
+     * @param width          map width in blocks
+     * @param height         map height in blocks
+     * @param decalsPerBlock how many decals a single block can have
+     * @param budget         how many decals can exist on the whole map
+     */
+    public BlockDecals(int width, int height, int decalsPerBlock, int budget) {
+        this.width = width;
+        this.height = height;
+        this.decalsPerBlock = decalsPerBlock;
+
+        textures = new int[budget];
+        positionsX = new float[budget];
+        positionsY = new float[budget];
+        scales = new float[budget];
+        blocks = new int[budget];
+
+        chunksPerRow = (width + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+        int chunkRows = (height + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+
+        blockSlots = new int[chunksPerRow * chunkRows][];
+        blockStarts = new byte[blockSlots.length][];
+        blockSizes = new byte[blockSlots.length][];
+
+        chunkDecalCounts = new int[blockSlots.length];
+        chunkVersions = new int[blockSlots.length];
+    }
+
+    /**
+     * Adds a decal to a block
+     *
+     * @param region  texture region handle of the decal
+     * @param x       block x
+     * @param y       block y
+     * @param offsetX bottom left corner offset from the block's position on the x axis
+     * @param offsetY bottom left corner offset from the block's position on the y axis
+     * @param scale   texture scale
+     */
+    public void add(int region, int x, int y, float offsetX, float offsetY, float scale) {
+        if (x < 0 || y < 0 || x >= width || y >= height || textures.length == 0 || region == TextureRegions.NONE) {
+            return;
+        }
+
+        if (used == textures.length) {
+            evictOldest();
+        }
+
+        int chunk = getChunkIndex(x, y);
+        int index = getIndexInChunk(x, y);
+
+        if (blockSlots[chunk] == null) {
+            blockSlots[chunk] = new int[BlockMapLayer.CHUNK_SIZE * BlockMapLayer.CHUNK_SIZE * decalsPerBlock];
+            blockStarts[chunk] = new byte[BlockMapLayer.CHUNK_SIZE * BlockMapLayer.CHUNK_SIZE];
+            blockSizes[chunk] = new byte[BlockMapLayer.CHUNK_SIZE * BlockMapLayer.CHUNK_SIZE];
+        }
+
+        if (blockSizes[chunk][index] == decalsPerBlock) {
+            // the block's oldest decal makes room, it's slot is skipped from now on
+            textures[removeBlockOldest(chunk, index)] = NO_DECAL;
+        }
+
+        int slot = (first + used) % textures.length;
+        used++;
+
+        textures[slot] = region;
+        positionsX[slot] = x * Block.BLOCK_WIDTH + offsetX;
+        positionsY[slot] = y * Block.BLOCK_HEIGHT + offsetY;
+        scales[slot] = scale;
+        blocks[slot] = y * width + x;
+
+        int ring = index * decalsPerBlock;
+        blockSlots[chunk][ring + (blockStarts[chunk][index] + blockSizes[chunk][index]) % decalsPerBlock] = slot;
+        blockSizes[chunk][index]++;
+
+        chunkDecalCounts[chunk]++;
+        chunkVersions[chunk]++;
+    }
+
+    /**
+     * Frees the oldest slot. If it still holds a decal, the decal is the oldest one of
+     * it's block too, because both rings are filled in the order the decals are added
+     */
+    protected void evictOldest() {
+        if (textures[first] != NO_DECAL) {
+            int x = blocks[first] % width;
+            int y = blocks[first] / width;
+
+            removeBlockOldest(getChunkIndex(x, y), getIndexInChunk(x, y));
+        }
+
+        first = (first + 1) % textures.length;
+        used--;
+    }
+
+    /**
+     * Removes the oldest decal from a block's ring
+     *
+     * @param chunk chunk index
+     * @param index index of the block in the chunk
+     * @return the slot of the removed decal
+     */
+    protected int removeBlockOldest(int chunk, int index) {
+        int slot = blockSlots[chunk][index * decalsPerBlock + blockStarts[chunk][index]];
+
+        blockStarts[chunk][index] = (byte) ((blockStarts[chunk][index] + 1) % decalsPerBlock);
+        blockSizes[chunk][index]--;
+
+        chunkDecalCounts[chunk]--;
+        chunkVersions[chunk]++;
+
+        return slot;
+    }
+
+    /**
+     * Gets the number of decals on a block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    public int getDecalCount(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return 0;
+        }
+
+        byte[] sizes = blockSizes[getChunkIndex(x, y)];
+
+        return sizes == null ? 0 : sizes[getIndexInChunk(x, y)];
+    }
+
+    /**
+     * Gets the number of decals on the whole map
+     *
+     * @return
+     */
+    public int getDecalCount() {
+        int count = 0;
+
+        for (int i = 0; i < used; i++) {
+            if (textures[(first + i) % textures.length] != NO_DECAL) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of decals on the blocks of a chunk
+     *
+     * @param chunk chunk index
+     * @return
+     */
+    public int getChunkDecalCount(int chunk) {
+        return chunkDecalCounts[chunk];
+    }
+
+    /**
+     * Gets a number that changes every time a decal is added to or removed from a chunk
+     *
+     * @param chunk chunk index
+     * @return
+     */
+    public int getChunkVersion(int chunk) {
+        return chunkVersions[chunk];
+    }
+
+    /**
+     * Adds the decals of a chunk's blocks to a sprite cache, oldest first
+     *
+     * @param cache     sprite cache that is currently being defined
+     * @param resources game assets
+     * @param chunk     chunk index
+     */
+    public void cacheChunk(SpriteCache cache, Resources resources, int chunk) {
+        if (chunkDecalCounts[chunk] == 0) {
+            return;
+        }
+
+        for (int i = 0; i < used; i++) {
+            int slot = (first + i) % textures.length;
+
+            if (textures[slot] == NO_DECAL || getChunkIndex(blocks[slot] % width, blocks[slot] / width) != chunk) {
+                continue;
+            }
+
+            cache.add(
+                    TextureRegions.get(resources, textures[slot]),
+                    positionsX[slot],
+                    positionsY[slot],
+                    Block.BLOCK_WIDTH / 2,
+                    Block.BLOCK_HEIGHT / 2,
+                    Block.BLOCK_WIDTH,
+                    Block.BLOCK_HEIGHT,
+                    scales[slot],
+                    scales[slot],
+                    0
+            );
+        }
+    }
+
+    /**
+     * Renders the decals in the given area, oldest first, in a single pass over the slots
+     *
+     * @param batch     sprite batch to draw to
+     * @param resources game assets
+     * @param left      left edge of the area in world coordinates
+     * @param bottom    bottom edge of the area in world coordinates
+     * @param right     right edge of the area in world coordinates
+     * @param top       top edge of the area in world coordinates
+     */
+    public void render(SpriteBatch batch, Resources resources, float left, float bottom, float right, float top) {
+        for (int i = 0; i < used; i++) {
+            int slot = (first + i) % textures.length;
+            int texture = textures[slot];
+
+            if (texture == NO_DECAL) {
+                continue;
+            }
+
+            float x = positionsX[slot];
+            float y = positionsY[slot];
+
+            // decals are scaled around their centers, so a scaled up decal reaches further
+            float extentX = Block.BLOCK_WIDTH * Math.max(1, scales[slot]);
+            float extentY = Block.BLOCK_HEIGHT * Math.max(1, scales[slot]);
+
+            if (x + extentX < left || y + extentY < bottom || x - extentX > right || y - extentY > top) {
+                continue;
+            }
+
+            batch.draw(
+                    TextureRegions.get(resources, texture),
+                    x,
+                    y,
+                    Block.BLOCK_WIDTH / 2,
+                    Block.BLOCK_HEIGHT / 2,
+                    Block.BLOCK_WIDTH,
+                    Block.BLOCK_HEIGHT,
+                    scales[slot],
+                    scales[slot],
+                    0
+            );
+        }
+    }
+
+    /**
+     * Gets the index of the chunk containing the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getChunkIndex(int x, int y) {
+        return (y >> BlockMapLayer.CHUNK_SHIFT) * chunksPerRow + (x >> BlockMapLayer.CHUNK_SHIFT);
+    }
+
+    /**
+     * Gets the index of the given block inside it's chunk
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getIndexInChunk(int x, int y) {
+        return ((y & (BlockMapLayer.CHUNK_SIZE - 1)) << BlockMapLayer.CHUNK_SHIFT) | (x & (BlockMapLayer.CHUNK_SIZE - 1));
+    }
+}
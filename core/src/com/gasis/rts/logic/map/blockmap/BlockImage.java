@@ -1,5 +1,7 @@
 package com.gasis.rts.logic.map.blockmap;
 
+import com.gasis.rts.resources.TextureRegions;
+
 /**
  * Represents an image in a map block
  */
@@ -7,6 +9,7 @@ public class BlockImage {
 
     public String atlas; // name of the texture atlas
     public String texture; // name of the texture
+    public int region = TextureRegions.NONE; // texture region handle of the texture
 
     public float offsetX; // bottom left corner offset on the x axis
     public float offsetY; // bottom left corner offset on the y axis
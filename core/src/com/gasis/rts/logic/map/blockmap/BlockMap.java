@@ -3,14 +3,30 @@ package com.gasis.rts.logic.map.blockmap;
 import com.gasis.rts.logic.map.Map;
 import com.gasis.rts.logic.map.MapLayer;
 import com.gasis.rts.logic.object.GameObject;
+import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.logic.pathfinding.ClusterGraph;
+import com.gasis.rts.logic.pathfinding.GridSearchData;
 import com.gasis.rts.math.Point;
 
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
- * 2D map made of blocks (or tiles)
+ * 2D map made of blocks (or tiles).
+ *
+ * Ground queries don't touch the blocks of the ground layer: the passability of every
+ * block is kept in a bitset and occupying objects are kept as int ids in chunked grids
+ * that only allocate the chunks something stands on. The ids index a dense table of the
+ * objects that stand on the map, so the blocks themselves are only needed for rendering.
+ *
+ * Maps of up to 4096x4096 blocks are supported. Most per-block data is chunked or paged
+ * and only takes memory where it's used, but a few structures stay dense, so at that size
+ * (16.8M blocks) a map costs about 2 MB for the passability bitset, 64 MB for the region
+ * labels (4 bytes per block), 16 MB for the cluster graph's passability copy (1 byte per
+ * block) and 64 MB each for the minimap pixmap and the fog of war texture (4 bytes per block)
  */
 @SuppressWarnings("Duplicates") // the damned IDE gives a hard time for 2 repeated lines
 public class BlockMap implements Map {
@@ -26,9 +42,55 @@ public class BlockMap implements Map {
     // how many pieces of junk can exist on a single block at any time
     protected final int MAX_PIECES_OF_JUNK = 4;
 
+    // junk and craters lying on the map
+    protected BlockDecals decals;
+
     // all possible starting base locations
     protected List<Point> baseLocations;
 
+    // blocks whose occupying objects or passability changed
+    protected BlockChangeLog changes;
+
+    // connected regions of passable blocks
+    protected BlockRegions regions;
+
+    // spatial index of the objects standing on the map
+    protected ObjectGrid objectGrid;
+
+    // abstract graph used by hierarchical path finding, created when first needed
+    protected ClusterGraph clusterGraph;
+
+    // scratch data of grid path searches, created when first needed
+    protected GridSearchData searchData;
+
+    // the object id of blocks that have no occupying object
+    protected static final int NO_OBJECT = 0;
+
+    // passability of every ground block, one bit per block
+    protected long[] passability;
+
+    // id of the object occupying every block
+    protected ChunkedIntGrid occupiers;
+
+    // id of the passable object occupying every block
+    protected ChunkedIntGrid passableOccupiers;
+
+    // objects standing on the map indexed by their id
+    protected GameObject[] objects = new GameObject[64];
+
+    // how many blocks every object occupies, indexed by id
+    protected int[] objectBlockCounts = new int[64];
+
+    // ids of the objects standing on the map
+    protected IdentityHashMap<GameObject, Integer> objectIds = new IdentityHashMap<GameObject, Integer>();
+
+    // ids of objects that left the map (reused for new objects)
+    protected int[] freeObjectIds = new int[64];
+    protected int freeObjectIdCount;
+
+    // the id the next new object will get if there are no free ids
+    protected int nextObjectId = NO_OBJECT + 1;
+
     /**
      * Initializes an empty map
      *
@@ -38,51 +100,104 @@ public class BlockMap implements Map {
     public BlockMap(short width, short height) {
         this.width = width;
         this.height = height;
+
+        passability = new long[(width * height + 63) / 64];
+        occupiers = new ChunkedIntGrid(width, height);
+        passableOccupiers = new ChunkedIntGrid(width, height);
+
+        decals = new BlockDecals(width, height, MAX_PIECES_OF_JUNK, BlockDecals.DEFAULT_BUDGET);
+        changes = new BlockChangeLog(width, height);
+        regions = new BlockRegions(this);
+        objectGrid = new ObjectGrid(width, height, ObjectGrid.DEFAULT_CELL_SIZE);
     }
 
     /**
-     * Adds a piece junk to the specified block
+     * Gets the log of changed blocks
      *
-     * @param atlas       junk atlas name
-     * @param junkTexture name of the junk texture
-     * @param blockX      block x
-     * @param blockY      block y
-     * @param offsetX     junk texture's offset in x axis
-     * @param offsetY     junk texture's offset in y axis
-     * @param scale       junk texture's scale
+     * @return
      */
-    public void addJunk(String atlas, String junkTexture, short blockX, short blockY, float offsetX, float offsetY, float scale) {
-        if (blockX < 0 || blockY < 0 || blockX >= width || blockY >= height) {
-            return;
+    public BlockChangeLog getChanges() {
+        return changes;
+    }
+
+    /**
+     * Ends the current game tick. Derived map data reads the tick's changes, so that
+     * the change log never has to hold more than a tick of changes for it. The cluster
+     * graph only rebuilds it's dirty clusters when a route is requested
+     */
+    public void endTick() {
+        regions.update();
+
+        if (clusterGraph != null) {
+            clusterGraph.readChanges();
         }
+    }
 
-        BlockMapLayer craterLayer = (BlockMapLayer) getLayerByName("junk");
-        Block block = craterLayer.getBlock(blockX, blockY);
-        VisibleBlock visibleBlock;
+    /**
+     * Gets the connected regions of the map's passable blocks
+     *
+     * @return
+     */
+    public BlockRegions getRegions() {
+        return regions;
+    }
 
-        if (!(block instanceof VisibleBlock)) {
-            visibleBlock = new VisibleBlock();
-            craterLayer.addBlock(visibleBlock, blockX, blockY);
-        } else {
-            visibleBlock = (VisibleBlock) block;
+    /**
+     * Gets the spatial index of the objects standing on the map
+     *
+     * @return
+     */
+    public ObjectGrid getObjectGrid() {
+        return objectGrid;
+    }
+
+    /**
+     * Gets the abstract cluster graph of the map, shared by the path finders of every player
+     *
+     * @return
+     */
+    public ClusterGraph getClusterGraph() {
+        if (clusterGraph == null) {
+            clusterGraph = new ClusterGraph(this, ClusterGraph.DEFAULT_CLUSTER_SIZE);
         }
 
-        BlockImage image = new BlockImage();
-        image.atlas = atlas;
-        image.texture = junkTexture;
-        image.offsetY = offsetY;
-        image.offsetX = offsetX;
-        image.scale = scale;
-        image.width = Block.BLOCK_WIDTH;
-        image.height = Block.BLOCK_HEIGHT;
-        image.offsetX -= Block.BLOCK_WIDTH / 2f;
-        image.offsetY -= Block.BLOCK_HEIGHT / 2f;
-
-        if (visibleBlock.imageCount() >= MAX_PIECES_OF_JUNK) {
-            visibleBlock.removeBottomImage();
+        return clusterGraph;
+    }
+
+    /**
+     * Gets the scratch data of grid path searches, shared by the path finders of every player
+     *
+     * @return
+     */
+    public GridSearchData getSearchData() {
+        if (searchData == null) {
+            searchData = new GridSearchData(width * height);
         }
 
-        visibleBlock.addImage(image, false);
+        return searchData;
+    }
+
+    /**
+     * Gets the junk and craters lying on the map
+     *
+     * @return
+     */
+    public BlockDecals getDecals() {
+        return decals;
+    }
+
+    /**
+     * Adds a piece junk to the specified block
+     *
+     * @param junkRegion  texture region handle of the junk texture
+     * @param blockX      block x
+     * @param blockY      block y
+     * @param offsetX     junk texture's offset in x axis
+     * @param offsetY     junk texture's offset in y axis
+     * @param scale       junk texture's scale
+     */
+    public void addJunk(int junkRegion, short blockX, short blockY, float offsetX, float offsetY, float scale) {
+        decals.add(junkRegion, blockX, blockY, offsetX - Block.BLOCK_WIDTH / 2f, offsetY - Block.BLOCK_HEIGHT / 2f, scale);
     }
 
     /**
@@ -97,7 +212,9 @@ public class BlockMap implements Map {
             return;
         }
 
-        layers.getFirst().getBlock(x, y).setOccupyingObject(occupier);
+        releaseObjectId(occupiers.set(x, y, acquireObjectId(occupier)));
+
+        recordChange(x, y);
     }
 
     /**
@@ -112,7 +229,134 @@ public class BlockMap implements Map {
             return;
         }
 
-        layers.getFirst().getBlock(x, y).setPassableObject(occupier);
+        releaseObjectId(passableOccupiers.set(x, y, acquireObjectId(occupier)));
+
+        recordChange(x, y);
+    }
+
+    /**
+     * Changes the passability of a ground block
+     *
+     * @param x        x of the block
+     * @param y        y of the block
+     * @param passable can units and buildings be on the block
+     */
+    public void setBlockPassable(short x, short y, boolean passable) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+
+        Block block = layers.isEmpty() ? null : layers.getFirst().getBlock(x, y);
+
+        if (block != null) {
+            block.setPassable(passable);
+        }
+
+        setPassabilityBit(y * width + x, passable);
+        recordChange(x, y);
+    }
+
+    /**
+     * Reads the passability of the ground layer's blocks. Needs to be called when
+     * the blocks of the ground layer are changed directly (like the map generator does)
+     */
+    public void importGroundLayer() {
+        Arrays.fill(passability, 0);
+
+        if (!layers.isEmpty()) {
+            BlockMapLayer ground = layers.getFirst();
+
+            for (short y = 0; y < height; y++) {
+                for (short x = 0; x < width; x++) {
+                    Block block = ground.getBlock(x, y);
+
+                    if (block != null && block.isPassable()) {
+                        setPassabilityBit(y * width + x, true);
+                    }
+                }
+            }
+        }
+
+        changes.recordAll();
+    }
+
+    /**
+     * Sets a block's bit in the passability bitset
+     *
+     * @param block    packed block id
+     * @param passable new bit value
+     */
+    protected void setPassabilityBit(int block, boolean passable) {
+        if (passable) {
+            passability[block >>> 6] |= 1L << block;
+        } else {
+            passability[block >>> 6] &= ~(1L << block);
+        }
+    }
+
+    /**
+     * Gets the id of an object, giving it a new one if it doesn't stand on the map yet.
+     * Every call counts as one more block occupied by the object
+     *
+     * @param object object to get the id for
+     * @return the id or NO_OBJECT if the object is null
+     */
+    protected int acquireObjectId(GameObject object) {
+        if (object == null) {
+            return NO_OBJECT;
+        }
+
+        Integer existing = objectIds.get(object);
+        int id;
+
+        if (existing != null) {
+            id = existing;
+        } else {
+            id = freeObjectIdCount > 0 ? freeObjectIds[--freeObjectIdCount] : nextObjectId++;
+
+            if (id == objects.length) {
+                objects = Arrays.copyOf(objects, objects.length * 2);
+                objectBlockCounts = Arrays.copyOf(objectBlockCounts, objectBlockCounts.length * 2);
+            }
+
+            objects[id] = object;
+            objectIds.put(object, id);
+        }
+
+        objectBlockCounts[id]++;
+
+        return id;
+    }
+
+    /**
+     * Counts one block less occupied by the object with the given id. The id is freed
+     * once the object doesn't occupy any blocks
+     *
+     * @param id object id
+     */
+    protected void releaseObjectId(int id) {
+        if (id == NO_OBJECT || --objectBlockCounts[id] > 0) {
+            return;
+        }
+
+        objectIds.remove(objects[id]);
+        objects[id] = null;
+
+        if (freeObjectIdCount == freeObjectIds.length) {
+            freeObjectIds = Arrays.copyOf(freeObjectIds, freeObjectIds.length * 2);
+        }
+
+        freeObjectIds[freeObjectIdCount++] = id;
+    }
+
+    /**
+     * Records that the occupying object or the passability of a block has changed
+     *
+     * @param x x of the block
+     * @param y y of the block
+     */
+    protected void recordChange(short x, short y) {
+        changes.record(x, y);
     }
 
     /**
@@ -127,13 +371,7 @@ public class BlockMap implements Map {
             return false;
         }
 
-        Block block = layers.getFirst().getBlock(x, y);
-
-        if (block != null && block.getOccupyingObject() != null) {
-            return true;
-        }
-
-        return false;
+        return occupiers.get(x, y) != NO_OBJECT || passableOccupiers.get(x, y) != NO_OBJECT;
     }
 
     /**
@@ -149,13 +387,27 @@ public class BlockMap implements Map {
             return false;
         }
 
-        Block block = layers.getFirst().getBlock(x, y);
+        int block = y * width + x;
+
+        return (passability[block >>> 6] & (1L << block)) != 0;
+    }
 
-        if (block != null && block.isPassable()) {
-            return true;
+    /**
+     * Checks if the block at (x, y) can be walked on when moving units are ignored,
+     * meaning that the terrain is passable and no building stands on it
+     *
+     * @param x x of the block
+     * @param y y of the block
+     * @return
+     */
+    public boolean isBlockStaticallyPassable(short x, short y) {
+        if (!isBlockPassable(x, y)) {
+            return false;
         }
 
-        return false;
+        GameObject occupyingObject = getOccupyingObject(x, y);
+
+        return occupyingObject == null || occupyingObject.isPassable() || occupyingObject instanceof Unit;
     }
 
     /**
@@ -170,13 +422,9 @@ public class BlockMap implements Map {
             return null;
         }
 
-        Block block = layers.getFirst().getBlock(x, y);
+        int id = occupiers.get(x, y);
 
-        if (block != null) {
-            return block.getOccupyingObject();
-        }
-
-        return null;
+        return objects[id != NO_OBJECT ? id : passableOccupiers.get(x, y)];
     }
 
     /**
@@ -191,13 +439,7 @@ public class BlockMap implements Map {
             return null;
         }
 
-        Block block = layers.getFirst().getBlock(x, y);
-
-        if (block != null) {
-            return block.getPassableObject();
-        }
-
-        return null;
+        return objects[passableOccupiers.get(x, y)];
     }
 
     /**
@@ -212,6 +454,10 @@ public class BlockMap implements Map {
         } else {
             layers.addLast(layer);
         }
+
+        if (layers.getFirst() == layer) {
+            importGroundLayer();
+        }
     }
 
     /**
@@ -226,7 +472,13 @@ public class BlockMap implements Map {
             return;
         }
 
+        boolean ground = layers.getFirst() == existing;
+
         layers.remove(existing);
+
+        if (ground) {
+            importGroundLayer();
+        }
     }
 
     /**
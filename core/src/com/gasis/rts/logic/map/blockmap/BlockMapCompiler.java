@@ -0,0 +1,321 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.gasis.rts.math.Point;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Bakes a generated map into a compact binary file that can be loaded without running
+ * the map script again. The file has the following format (big endian):
+ * <p>
+ * - magic number and format version (int, int)
+ * - hash of the script the map was compiled from (long)
+ * - map width and height in blocks (short, short)
+ * - base location count (int) followed by the locations (float x, float y)
+ * - image palette size (int) followed by the images (string atlas, string texture,
+ * float offsetX, offsetY, width, height, rotation, scale)
+ * - layer count (int) followed by the layers from the bottom one up: the layer's name
+ * (string) and a flag byte for every block in row-major order. Visible blocks are
+ * followed by their image count (byte) and palette indices (unsigned short)
+ * <p>
+ * Strings are written as their UTF-8 byte count (short) followed by the bytes
+ */
+public class BlockMapCompiler {
+
+    // the first bytes of every compiled map
+    public static final int MAGIC = 0x52545332;
+
+    // the version of the file format
+    public static final int VERSION = 2;
+
+    // extension of compiled map files
+    public static final String EXTENSION = "cmap";
+
+    // block flags
+    public static final int FLAG_PRESENT = 1;
+    public static final int FLAG_PASSABLE = 2;
+    public static final int FLAG_VISIBLE = 4;
+
+    // distinct images of the compiled map
+    protected List<BlockImage> palette = new ArrayList<BlockImage>();
+
+    // palette indices of the images by their key
+    protected Map<String, Integer> paletteIndices = new HashMap<String, Integer>();
+
+    // how many threads generate the terrain of compiled maps, 0 for serial generation
+    protected int parallelism;
+
+    /**
+     * Sets how many threads generate the terrain of compiled maps
+     *
+     * @param parallelism thread count, 0 for serial generation
+     * @see BlockMapGenerator#setParallelism(int)
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates a map from a script file and writes the compiled map to the output file
+     *
+     * @param scriptFile map script
+     * @param outputFile file to write the compiled map to
+     * @throws IOException if the map can't be generated or written
+     */
+    public void compile(FileHandle scriptFile, FileHandle outputFile) throws IOException {
+        OutputStream output = outputFile.write(false);
+
+        try {
+            compile(scriptFile, output);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Generates a map from a script file and writes the compiled map to the output stream
+     *
+     * @param scriptFile map script
+     * @param output     stream to write the compiled map to
+     * @throws IOException if the map can't be generated or written
+     */
+    public void compile(FileHandle scriptFile, OutputStream output) throws IOException {
+        BlockMapGenerator generator = new BlockMapGenerator();
+        generator.setParallelism(parallelism);
+
+        BlockMap map = generator.generate(scriptFile);
+
+        if (map == null) {
+            throw new IOException("Unable to generate the map from " + scriptFile.path());
+        }
+
+        compile(map, hashScript(scriptFile), output);
+    }
+
+    /**
+     * Checks if a compiled map was compiled from the current version of a script
+     * and with the current file format
+     *
+     * @param compiledFile compiled map
+     * @param scriptFile   map script
+     * @return false if the map has to be compiled again
+     */
+    public static boolean isUpToDate(FileHandle compiledFile, FileHandle scriptFile) {
+        if (!compiledFile.exists() || !scriptFile.exists()) {
+            return compiledFile.exists();
+        }
+
+        try {
+            DataInputStream data = new DataInputStream(compiledFile.read());
+
+            try {
+                return data.readInt() == MAGIC && data.readInt() == VERSION && data.readLong() == hashScript(scriptFile);
+            } finally {
+                data.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the hash of a map script's contents
+     *
+     * @param scriptFile map script
+     * @return
+     * @throws IOException if the script can't be read
+     */
+    public static long hashScript(FileHandle scriptFile) throws IOException {
+        CRC32 hash = new CRC32();
+        InputStream input = scriptFile.read();
+
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = input.read(buffer)) != -1) {
+                hash.update(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+
+        return hash.getValue();
+    }
+
+    /**
+     * Writes a compiled map to the output stream
+     *
+     * @param map        map to compile
+     * @param scriptHash hash of the script the map was generated from
+     * @param output     stream to write to
+     * @throws IOException if the map can't be written
+     */
+    public void compile(BlockMap map, long scriptHash, OutputStream output) throws IOException {
+        palette.clear();
+        paletteIndices.clear();
+
+        short width = (short) map.getWidth();
+        short height = (short) map.getHeight();
+
+        // the palette has to be written before the blocks, so it is collected first
+        for (BlockMapLayer layer : map.getLayers()) {
+            collectImages(layer, width, height);
+        }
+
+        // palette indices are written as unsigned shorts
+        if (palette.size() > 0xFFFF) {
+            throw new IOException("The map has too many distinct block images: " + palette.size());
+        }
+
+        DataOutputStream data = new DataOutputStream(output);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(scriptHash);
+        data.writeShort(width);
+        data.writeShort(height);
+
+        List<Point> baseLocations = map.getBaseLocations();
+        int baseLocationCount = baseLocations == null ? 0 : baseLocations.size();
+
+        data.writeInt(baseLocationCount);
+
+        for (int i = 0; i < baseLocationCount; i++) {
+            data.writeFloat(baseLocations.get(i).x);
+            data.writeFloat(baseLocations.get(i).y);
+        }
+
+        data.writeInt(palette.size());
+
+        for (BlockImage image : palette) {
+            writeString(data, image.atlas);
+            writeString(data, image.texture);
+            data.writeFloat(image.offsetX);
+            data.writeFloat(image.offsetY);
+            data.writeFloat(image.width);
+            data.writeFloat(image.height);
+            data.writeFloat(image.rotation);
+            data.writeFloat(image.scale);
+        }
+
+        int layerCount = 0;
+
+        for (BlockMapLayer ignored : map.getLayers()) {
+            layerCount++;
+        }
+
+        data.writeInt(layerCount);
+
+        for (BlockMapLayer layer : map.getLayers()) {
+            writeString(data, layer.getName());
+            writeBlocks(data, layer, width, height);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Adds the images of a layer's blocks to the palette
+     *
+     * @param layer  layer to collect the images from
+     * @param width  map width
+     * @param height map height
+     */
+    protected void collectImages(BlockMapLayer layer, short width, short height) {
+        for (short y = 0; y < height; y++) {
+            for (short x = 0; x < width; x++) {
+                Block block = layer.getBlock(x, y);
+
+                if (!(block instanceof VisibleBlock)) {
+                    continue;
+                }
+
+                for (BlockImage image : ((VisibleBlock) block).getImages()) {
+                    String key = getImageKey(image);
+
+                    if (!paletteIndices.containsKey(key)) {
+                        paletteIndices.put(key, palette.size());
+                        palette.add(image);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks of a layer
+     *
+     * @param data   stream to write to
+     * @param layer  layer to write
+     * @param width  map width
+     * @param height map height
+     * @throws IOException if the blocks can't be written
+     */
+    protected void writeBlocks(DataOutputStream data, BlockMapLayer layer, short width, short height) throws IOException {
+        for (short y = 0; y < height; y++) {
+            for (short x = 0; x < width; x++) {
+                Block block = layer.getBlock(x, y);
+
+                if (block == null) {
+                    data.writeByte(0);
+                    continue;
+                }
+
+                int flags = FLAG_PRESENT;
+
+                if (block.isPassable()) {
+                    flags |= FLAG_PASSABLE;
+                }
+
+                if (block instanceof VisibleBlock) {
+                    flags |= FLAG_VISIBLE;
+                }
+
+                data.writeByte(flags);
+
+                if (block instanceof VisibleBlock) {
+                    VisibleBlock visibleBlock = (VisibleBlock) block;
+
+                    data.writeByte(visibleBlock.imageCount());
+
+                    for (BlockImage image : visibleBlock.getImages()) {
+                        data.writeShort(paletteIndices.get(getImageKey(image)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a key that is the same for images that look the same
+     *
+     * @param image image to get the key for
+     * @return
+     */
+    protected String getImageKey(BlockImage image) {
+        return image.atlas + "/" + image.texture + "/" + image.offsetX + "/" + image.offsetY + "/"
+                + image.width + "/" + image.height + "/" + image.rotation + "/" + image.scale;
+    }
+
+    /**
+     * Writes a string as it's UTF-8 byte count followed by the bytes
+     *
+     * @param data   stream to write to
+     * @param string string to write
+     * @throws IOException if the string can't be written
+     */
+    protected void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes("UTF-8");
+
+        data.writeShort(bytes.length);
+        data.write(bytes);
+    }
+}
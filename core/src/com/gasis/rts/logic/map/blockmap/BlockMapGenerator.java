@@ -4,13 +4,22 @@ import com.badlogic.gdx.files.FileHandle;
 import com.gasis.rts.filehandling.FileLineReader;
 import com.gasis.rts.logic.map.MapGenerator;
 import com.gasis.rts.math.Point;
-
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Generates a block map from a map script
+ * Generates a block map from a map script, or loads a map compiled by BlockMapCompiler
  */
 public class BlockMapGenerator implements MapGenerator {
 
@@ -32,6 +41,16 @@ public class BlockMapGenerator implements MapGenerator {
     // used to generate random structures and their properties
     protected Random random = new Random();
 
+    // tiles generated in parallel are TILE_SIZE x TILE_SIZE blocks, the same as layer
+    // chunks so that no 2 threads ever write to the same chunk
+    public static final int TILE_SIZE = BlockMapLayer.CHUNK_SIZE;
+
+    // tile ranges smaller than this are generated by a single task
+    protected static final int MIN_TILES_PER_TASK = 4;
+
+    // how many threads generate the terrain, 0 for the original serial generation
+    protected int parallelism;
+
     /**
      * Generates a map from a script file
      *
@@ -40,6 +59,10 @@ public class BlockMapGenerator implements MapGenerator {
      */
     @Override
     public BlockMap generate(FileHandle scriptFile) {
+        if (scriptFile.extension().equals(BlockMapCompiler.EXTENSION)) {
+            return load(scriptFile);
+        }
+
         try {
             // create a file line reader for easier reading
             FileLineReader reader = new FileLineReader(scriptFile.read(), ":");
@@ -55,20 +78,30 @@ public class BlockMapGenerator implements MapGenerator {
 
             map.setBaseLocations(readBaseLocations(reader));
 
-            random.setSeed(seed);
-
             // create map layers
             map.addMapLayer(new BlockMapLayer("terrain_1", (short) map.getWidth(), (short) map.getHeight()), true);
-            map.addMapLayer(new BlockMapLayer("junk", (short) map.getWidth(), (short) map.getHeight()), false);
 
             // read map commands and generate a map based on them
             // look at the beginning of the file to see the command format
-            List<String> commands = reader.readLines("command");
+            // the commands are parsed once, not again for every tile
+            List<TerrainCommand> commands = parseCommands(reader.readLines("command"));
+            BlockMapLayer layer = (BlockMapLayer) map.getLayerByName("terrain_1");
+
+            if (parallelism > 0) {
+                generateTiles(commands, layer, seed);
+            } else {
+                random.setSeed(seed);
 
-            for (String command : commands) {
-                processCommand(command, map);
+                Tile wholeMap = new Tile((short) 0, (short) 0, width, height, random);
+
+                for (TerrainCommand command : commands) {
+                    addTerrain(command, layer, wholeMap);
+                }
             }
 
+            // the commands changed the ground blocks directly
+            map.importGroundLayer();
+
             // return the final result
             return map;
         } catch (Exception ex) {
@@ -78,6 +111,227 @@ public class BlockMapGenerator implements MapGenerator {
         return null;
     }
 
+    /**
+     * Sets how many threads generate the terrain. With 0 (the default) the terrain is
+     * generated serially from a single random number generator. Otherwise the map is
+     * split into tiles that get their own generators seeded from the map's seed and the
+     * tile's position, so the generated map is the same for every thread count
+     *
+     * @param parallelism thread count, 0 for serial generation
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets how many threads generate the terrain
+     *
+     * @return
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Runs all commands on every tile of the map in parallel
+     *
+     * @param commands parsed map commands
+     * @param layer    terrain layer to generate
+     * @param seed     the map's seed
+     */
+    protected void generateTiles(List<TerrainCommand> commands, BlockMapLayer layer, long seed) {
+        int tilesPerRow = ((int) layer.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        int tileRows = ((int) layer.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new TileGenerationTask(commands, layer, seed, tilesPerRow, 0, tilesPerRow * tileRows));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates a tile with it's own random number generator
+     *
+     * @param layer the generated terrain layer
+     * @param seed  the map's seed
+     * @param tileX x of the tile in tiles
+     * @param tileY y of the tile in tiles
+     * @return
+     */
+    protected Tile createTile(BlockMapLayer layer, long seed, int tileX, int tileY) {
+        short startX = (short) (tileX * TILE_SIZE);
+        short startY = (short) (tileY * TILE_SIZE);
+        short endX = (short) Math.min((int) layer.getWidth(), startX + TILE_SIZE);
+        short endY = (short) Math.min((int) layer.getHeight(), startY + TILE_SIZE);
+
+        return new Tile(startX, startY, endX, endY, new Random(getTileSeed(seed, tileX, tileY)));
+    }
+
+    /**
+     * Derives a tile's seed from the map's seed and the tile's position
+     *
+     * @param seed  the map's seed
+     * @param tileX x of the tile in tiles
+     * @param tileY y of the tile in tiles
+     * @return
+     */
+    protected long getTileSeed(long seed, int tileX, int tileY) {
+        long hash = seed;
+        hash = hash * 0x9E3779B97F4A7C15L + tileX;
+        hash = hash * 0x9E3779B97F4A7C15L + tileY;
+
+        // spread the bits so that neighbouring tiles get unrelated seeds
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /**
+     * Loads a compiled map. Files on the file system are memory mapped, other files
+     * (like the ones packed into a jar) are read into memory first
+     *
+     * @param compiledFile compiled map file
+     * @return loaded map, null if the file can't be read
+     */
+    public BlockMap load(FileHandle compiledFile) {
+        try {
+            File file = compiledFile.file();
+
+            if (!file.isFile()) {
+                return load(ByteBuffer.wrap(compiledFile.readBytes()));
+            }
+
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+
+            try {
+                FileChannel channel = input.getChannel();
+
+                return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                input.close();
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads a compiled map from a buffer. All blocks share the image objects of the
+     * map's image palette
+     *
+     * @param data compiled map data
+     * @return
+     * @throws IOException if the data is not a compiled map
+     */
+    protected BlockMap load(ByteBuffer data) throws IOException {
+        if (data.getInt() != BlockMapCompiler.MAGIC) {
+            throw new IOException("Not a compiled map");
+        }
+
+        int version = data.getInt();
+
+        if (version != BlockMapCompiler.VERSION) {
+            throw new IOException("Unsupported compiled map version: " + version);
+        }
+
+        // the hash of the script is only needed to tell if the map is up to date
+        data.getLong();
+
+        short width = data.getShort();
+        short height = data.getShort();
+
+        BlockMap map = new BlockMap(width, height);
+
+        List<Point> baseLocations = new ArrayList<Point>();
+        int baseLocationCount = data.getInt();
+
+        for (int i = 0; i < baseLocationCount; i++) {
+            baseLocations.add(new Point(data.getFloat(), data.getFloat()));
+        }
+
+        map.setBaseLocations(baseLocations);
+
+        BlockImage[] palette = new BlockImage[data.getInt()];
+
+        for (int i = 0; i < palette.length; i++) {
+            BlockImage image = new BlockImage();
+
+            image.atlas = readString(data);
+            image.texture = readString(data);
+            image.region = TextureRegions.register(Constants.FOLDER_ATLASES + image.atlas, image.texture);
+            image.offsetX = data.getFloat();
+            image.offsetY = data.getFloat();
+            image.width = data.getFloat();
+            image.height = data.getFloat();
+            image.rotation = data.getFloat();
+            image.scale = data.getFloat();
+
+            palette[i] = image;
+        }
+
+        int layerCount = data.getInt();
+
+        for (int i = 0; i < layerCount; i++) {
+            BlockMapLayer layer = new BlockMapLayer(readString(data), width, height);
+
+            for (short y = 0; y < height; y++) {
+                for (short x = 0; x < width; x++) {
+                    int flags = data.get();
+
+                    if ((flags & BlockMapCompiler.FLAG_PRESENT) == 0) {
+                        continue;
+                    }
+
+                    Block block;
+
+                    if ((flags & BlockMapCompiler.FLAG_VISIBLE) != 0) {
+                        VisibleBlock visibleBlock = new VisibleBlock();
+                        int imageCount = data.get() & 0xFF;
+
+                        for (int j = 0; j < imageCount; j++) {
+                            visibleBlock.addImage(palette[data.getShort() & 0xFFFF], false);
+                        }
+
+                        block = visibleBlock;
+                    } else {
+                        block = new Block();
+                    }
+
+                    block.setPassable((flags & BlockMapCompiler.FLAG_PASSABLE) != 0);
+                    layer.addBlock(block, x, y);
+                }
+            }
+
+            // layers are stored from the bottom one up
+            map.addMapLayer(layer, false);
+        }
+
+        return map;
+    }
+
+    /**
+     * Reads a string written by BlockMapCompiler
+     *
+     * @param data data to read from
+     * @return
+     * @throws IOException if the string can't be decoded
+     */
+    protected String readString(ByteBuffer data) throws IOException {
+        byte[] bytes = new byte[data.getShort() & 0xFFFF];
+        data.get(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+
     /**
      * Reads starting base locations
      *
@@ -100,17 +354,30 @@ public class BlockMapGenerator implements MapGenerator {
     }
 
     /**
-     * Processes a map script command
+     * Parses map script commands, skipping the ones that aren't terrain commands
      *
-     * @param command command to process
-     * @param map     map to apply the command to
+     * @param commands commands to parse
+     * @return
      */
-    protected void processCommand(String command, BlockMap map) {
-        String[] data = command.split(" ");
+    protected List<TerrainCommand> parseCommands(List<String> commands) {
+        List<TerrainCommand> parsed = new ArrayList<TerrainCommand>(commands.size());
+
+        for (String command : commands) {
+            String[] data = command.split(" ");
+
+            if (data[0].equals("grass") || data[0].equals("dirt") || data[0].equals("water")) {
+                TerrainCommand terrain = new TerrainCommand();
 
-        if (data[0].equals("grass") || data[0].equals("dirt") || data[0].equals("water")) {
-            addTerrain(data, map);
+                terrain.terrainType = data[0];
+                terrain.dimensions = parseDimensions(data);
+                terrain.shape = data[5];
+                terrain.thickness = Float.parseFloat(data[6]);
+
+                parsed.add(terrain);
+            }
         }
+
+        return parsed;
     }
 
     /**
@@ -133,22 +400,19 @@ public class BlockMapGenerator implements MapGenerator {
     /**
      * Adds terrain type to the map
      *
-     * @param data data of the terrain command
-     * @param map  map to add the terrain to
+     * @param command parsed terrain command
+     * @param layer   map layer to add the terrain to
+     * @param tile    the part of the map to add the terrain to
      */
-    protected void addTerrain(String[] data, BlockMap map) {
-        short[] dimensions = parseDimensions(data);
-
-        float thickness = Float.parseFloat(data[6]);
-
+    protected void addTerrain(TerrainCommand command, BlockMapLayer layer, Tile tile) {
         // put a rectangular terrain piece
-        if (data[5].equals("rectangle")) {
-            addTerrainRectangle(data[0], dimensions, thickness, (BlockMapLayer) map.getLayerByName("terrain_1"));
+        if (command.shape.equals("rectangle")) {
+            addTerrainRectangle(command.terrainType, command.dimensions, command.thickness, layer, tile);
         }
 
         // put a round terrain piece
-        else if (data[5].equals("circle")) {
-            addTerrainCircle(data[0], dimensions, thickness, (BlockMapLayer) map.getLayerByName("terrain_1"));
+        else if (command.shape.equals("circle")) {
+            addTerrainCircle(command.terrainType, command.dimensions, command.thickness, layer, tile);
         }
     }
 
@@ -160,12 +424,15 @@ public class BlockMapGenerator implements MapGenerator {
      * @param y           y coordinate of the block
      * @param thickness   thickness of the terrain
      * @param layer       map layer to add the terrain block to
+     * @param tile        the part of the map being generated
      */
-    protected void addTerrainBlock(String terrainType, short x, short y, float thickness, BlockMapLayer layer) {
-        if (x < 0 || x >= layer.getWidth() || y < 0 || y >= layer.getHeight()) {
+    protected void addTerrainBlock(String terrainType, short x, short y, float thickness, BlockMapLayer layer, Tile tile) {
+        if (x < 0 || x >= layer.getWidth() || y < 0 || y >= layer.getHeight() || !tile.contains(x, y)) {
             return;
         }
 
+        Random random = tile.random;
+
         // get the correct block in the map
         VisibleBlock block = (VisibleBlock) layer.getBlock(x, y);
 
@@ -195,12 +462,15 @@ public class BlockMapGenerator implements MapGenerator {
             }
 
             if (image.texture != null) {
+                image.region = TextureRegions.register(Constants.FOLDER_ATLASES + image.atlas, image.texture);
+
                 // add the thick terrain block to the bottom
                 BlockImage bottomImage = block.getBottomImage();
 
                 if (bottomImage != null) {
                     bottomImage.atlas = image.atlas;
                     bottomImage.texture = image.texture;
+                    bottomImage.region = image.region;
                     bottomImage.scale = 1.01f;
                 } else {
                     // no bottom image exists on this block, add a new one
@@ -223,6 +493,7 @@ public class BlockMapGenerator implements MapGenerator {
                 }
 
                 if (image.texture != null) {
+                    image.region = TextureRegions.register(Constants.FOLDER_ATLASES + image.atlas, image.texture);
                     block.addImage(image, false);
                 }
             } // if mediumThickTerrain is false, skip this block
@@ -236,11 +507,17 @@ public class BlockMapGenerator implements MapGenerator {
      * @param dimensions  position and dimensions of the terrain piece
      * @param thickness   thickness of the terrain
      * @param layer       map layer to add the terrain to
+     * @param tile        the part of the map being generated
      */
-    protected void addTerrainRectangle(String terrainType, short[] dimensions, float thickness, BlockMapLayer layer) {
-        for (short x = dimensions[0]; x < dimensions[0] + dimensions[2]; x++) {
-            for (short y = dimensions[1]; y < dimensions[1] + dimensions[3]; y++) {
-                addTerrainBlock(terrainType, x, y, thickness, layer);
+    protected void addTerrainRectangle(String terrainType, short[] dimensions, float thickness, BlockMapLayer layer, Tile tile) {
+        int startX = Math.max(dimensions[0], tile.startX);
+        int endX = Math.min(dimensions[0] + dimensions[2], tile.endX);
+        int startY = Math.max(dimensions[1], tile.startY);
+        int endY = Math.min(dimensions[1] + dimensions[3], tile.endY);
+
+        for (short x = (short) startX; x < endX; x++) {
+            for (short y = (short) startY; y < endY; y++) {
+                addTerrainBlock(terrainType, x, y, thickness, layer, tile);
             }
         }
     }
@@ -252,8 +529,9 @@ public class BlockMapGenerator implements MapGenerator {
      * @param dimensions  position and dimensions of the terrain piece
      * @param thickness   thickness of the terrain
      * @param layer       map layer to add the terrain to
+     * @param tile        the part of the map being generated
      */
-    protected void addTerrainCircle(String terrainType, short[] dimensions, float thickness, BlockMapLayer layer) {
+    protected void addTerrainCircle(String terrainType, short[] dimensions, float thickness, BlockMapLayer layer, Tile tile) {
         /*
          *  The formula of an ellipse:
          *
@@ -272,7 +550,10 @@ public class BlockMapGenerator implements MapGenerator {
         short centerY = (short) (dimensions[1] + dimensions[3] / 2);
         short centerX = (short) (dimensions[0] + dimensions[2] / 2);
 
-        for (short x = dimensions[0]; x < dimensions[0] + dimensions[2]; x++) {
+        int startX = Math.max(dimensions[0], tile.startX);
+        int endX = Math.min(dimensions[0] + dimensions[2], tile.endX);
+
+        for (short x = (short) startX; x < endX; x++) {
             short xRelativeToCenter = (short) (x - centerX);
 
             // calculate the y coordinate for the current x using the formula of an ellipse
@@ -280,15 +561,122 @@ public class BlockMapGenerator implements MapGenerator {
                     Math.pow(halfHeight, 2) * (1 - Math.pow(xRelativeToCenter, 2) / Math.pow(halfWidth, 2)))
             );
 
-            // draw bottom half of the line for the current x
-            for (short y = (short) (centerY - absY); y <= centerY; y++) {
-                addTerrainBlock(terrainType, x, y, thickness, layer);
+            // draw bottom half of the line for the current x (only the part inside the tile)
+            for (short y = (short) Math.max(centerY - absY, tile.startY); y <= Math.min(centerY, tile.endY - 1); y++) {
+                addTerrainBlock(terrainType, x, y, thickness, layer, tile);
             }
 
             // draw top half of the line for the current x
-            for (short y = (short) (centerY + absY); y > centerY; y--) {
-                addTerrainBlock(terrainType, x, y, thickness, layer);
+            for (short y = (short) Math.min(centerY + absY, tile.endY - 1); y > Math.max(centerY, tile.startY - 1); y--) {
+                addTerrainBlock(terrainType, x, y, thickness, layer, tile);
             }
         }
     }
+
+    /**
+     * A parsed terrain command of a map script
+     */
+    protected static class TerrainCommand {
+
+        // grass, dirt or water
+        protected String terrainType;
+
+        // x, y, width and height of the terrain shape
+        protected short[] dimensions;
+
+        // rectangle or circle
+        protected String shape;
+
+        // thickness of the terrain between 0 and 1
+        protected float thickness;
+    }
+
+    /**
+     * A rectangular part of the map that is generated with it's own random number generator
+     */
+    protected class Tile {
+
+        // bounds of the tile, the end coordinates are exclusive
+        protected short startX;
+        protected short startY;
+        protected short endX;
+        protected short endY;
+
+        // generates the tile's random structures
+        protected Random random;
+
+        /**
+         * Default class constructor
+         */
+        protected Tile(short startX, short startY, short endX, short endY, Random random) {
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.random = random;
+        }
+
+        /**
+         * Checks if a block is inside the tile
+         *
+         * @param x block x
+         * @param y block y
+         * @return
+         */
+        protected boolean contains(short x, short y) {
+            return x >= startX && x < endX && y >= startY && y < endY;
+        }
+    }
+
+    /**
+     * Generates a range of tiles, splitting it in half until it is small enough
+     */
+    protected class TileGenerationTask extends RecursiveAction {
+
+        protected List<TerrainCommand> commands;
+        protected BlockMapLayer layer;
+        protected long seed;
+        protected int tilesPerRow;
+
+        // tile indices (tileY * tilesPerRow + tileX) of the range, the end is exclusive
+        protected int start;
+        protected int end;
+
+        /**
+         * Default class constructor
+         */
+        protected TileGenerationTask(List<TerrainCommand> commands, BlockMapLayer layer, long seed, int tilesPerRow, int start, int end) {
+            this.commands = commands;
+            this.layer = layer;
+            this.seed = seed;
+            this.tilesPerRow = tilesPerRow;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Generates the tiles or splits the range
+         */
+        @Override
+        protected void compute() {
+            if (end - start <= MIN_TILES_PER_TASK) {
+                for (int index = start; index < end; index++) {
+                    Tile tile = createTile(layer, seed, index % tilesPerRow, index / tilesPerRow);
+
+                    for (TerrainCommand command : commands) {
+                        addTerrain(command, layer, tile);
+                    }
+                }
+
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+
+            invokeAll(
+                    new TileGenerationTask(commands, layer, seed, tilesPerRow, start, middle),
+                    new TileGenerationTask(commands, layer, seed, tilesPerRow, middle, end)
+            );
+        }
+    }
 }
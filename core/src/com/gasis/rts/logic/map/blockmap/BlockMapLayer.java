@@ -4,12 +4,25 @@ package com.gasis.rts.logic.map.blockmap;
 import com.gasis.rts.logic.map.MapLayer;
 
 /**
- * A layer of blocks
+ * A layer of blocks. The blocks are kept in square chunks that are only allocated
+ * when the first block is added to them and dropped when their last block is removed,
+ * so mostly empty layers take almost no memory even on large maps
  */
 public class BlockMapLayer implements MapLayer {
 
-    // blocks of the layer
-    private Block[][] blocks;
+    // chunks are CHUNK_SIZE x CHUNK_SIZE blocks
+    public static final int CHUNK_SHIFT = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // blocks of the layer by chunk, null for chunks without blocks
+    private Block[][] chunks;
+
+    // how many blocks every chunk has
+    private int[] chunkBlockCounts;
+
+    // how many chunks fit in a row of the layer
+    protected int chunksPerRow;
 
     // dimensions of the layer
     protected short width;
@@ -19,7 +32,7 @@ public class BlockMapLayer implements MapLayer {
     protected String name;
 
     /**
-     * Default class constructor. Initializes the block array
+     * Default class constructor. Initializes the chunk array
      *
      * @param width  width of the layer in blocks
      * @param height height of the layer in blocks
@@ -29,7 +42,11 @@ public class BlockMapLayer implements MapLayer {
         this.width = width;
         this.height = height;
 
-        blocks = new Block[width][height];
+        chunksPerRow = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunkRows = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+
+        chunks = new Block[chunksPerRow * chunkRows][];
+        chunkBlockCounts = new int[chunks.length];
     }
 
     /**
@@ -43,7 +60,19 @@ public class BlockMapLayer implements MapLayer {
         block.setX(x);
         block.setY(y);
 
-        blocks[x][y] = block;
+        int chunk = getChunkIndex(x, y);
+
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Block[CHUNK_SIZE * CHUNK_SIZE];
+        }
+
+        int index = getIndexInChunk(x, y);
+
+        if (chunks[chunk][index] == null) {
+            chunkBlockCounts[chunk]++;
+        }
+
+        chunks[chunk][index] = block;
     }
 
     /**
@@ -54,7 +83,9 @@ public class BlockMapLayer implements MapLayer {
      * @return block at (x, y)
      */
     public Block getBlock(short x, short y) {
-        return blocks[x][y];
+        Block[] chunk = chunks[getChunkIndex(x, y)];
+
+        return chunk == null ? null : chunk[getIndexInChunk(x, y)];
     }
 
     /**
@@ -64,7 +95,79 @@ public class BlockMapLayer implements MapLayer {
      * @param y y coordinate of the block
      */
     public void removeBlock(short x, short y) {
-        blocks[x][y] = null;
+        int chunk = getChunkIndex(x, y);
+        int index = getIndexInChunk(x, y);
+
+        if (chunks[chunk] == null || chunks[chunk][index] == null) {
+            return;
+        }
+
+        chunks[chunk][index] = null;
+
+        if (--chunkBlockCounts[chunk] == 0) {
+            chunks[chunk] = null;
+        }
+    }
+
+    /**
+     * Checks if the chunk containing the given block has no blocks
+     *
+     * @param x x coordinate of the block
+     * @param y y coordinate of the block
+     * @return
+     */
+    public boolean isChunkEmpty(short x, short y) {
+        return chunks[getChunkIndex(x, y)] == null;
+    }
+
+    /**
+     * Gets the blocks of a chunk, indexed the same way as inside the layer
+     *
+     * @param chunk chunk index
+     * @return blocks of the chunk, null if the chunk has no blocks
+     */
+    Block[] getChunk(int chunk) {
+        return chunks[chunk];
+    }
+
+    /**
+     * Gets how many chunks fit in a row of the layer
+     *
+     * @return
+     */
+    public int getChunksPerRow() {
+        return chunksPerRow;
+    }
+
+    /**
+     * Gets the total number of chunks in the layer
+     *
+     * @return
+     */
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Gets the index of the chunk containing the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getChunkIndex(int x, int y) {
+        return (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Gets the index of the given block inside it's chunk
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getIndexInChunk(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
     }
 
     /**
@@ -7,7 +7,6 @@ import com.gasis.rts.logic.map.RenderBoundsProvider;
 import com.gasis.rts.logic.player.exploration.ExplorationDataInterface;
 import com.gasis.rts.logic.render.RenderQueueInterface;
 import com.gasis.rts.resources.Resources;
-import com.gasis.rts.utils.Constants;
 
 /**
  * Renders a block map to the screen
@@ -27,6 +26,15 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
     // exploration data
     protected ExplorationDataInterface explorationData;
 
+    // fog of war of the whole map
+    protected FogOfWarTexture fogOfWar;
+
+    // terrain and decals of the map's chunks
+    protected TerrainCache terrainCache = new TerrainCache(TerrainCache.DEFAULT_CAPACITY);
+
+    // terrain and decals of the whole map in a single texture, used when zoomed out
+    protected DownsampledTerrain downsampledTerrain = new DownsampledTerrain(terrainCache);
+
     /**
      * Renders the map
      *
@@ -42,6 +50,28 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
         short windowWidth = (short) Math.min(map.getWidth() - windowX, (short) renderWidth + 6);
         short windowHeight = (short) Math.min(map.getHeight() - windowY, (short) renderHeight + 6);
 
+        if (renderQueue.isLowDetail() && downsampledTerrain.render(batch, resources, windowX, windowY, windowX + windowWidth, windowY + windowHeight)) {
+            return;
+        }
+
+        if (!terrainCache.render(batch, resources, windowX, windowY, windowX + windowWidth, windowY + windowHeight)) {
+            renderDirectly(batch, resources, renderQueue, windowX, windowY, windowWidth, windowHeight);
+        }
+    }
+
+    /**
+     * Renders the map's blocks and decals one by one, used when the rendered area doesn't
+     * fit in the terrain cache
+     *
+     * @param batch        sprite batch to draw to
+     * @param resources    game assets
+     * @param renderQueue  queue of objects to render
+     * @param windowX      left edge of the rendered area in blocks
+     * @param windowY      bottom edge of the rendered area in blocks
+     * @param windowWidth  width of the rendered area in blocks
+     * @param windowHeight height of the rendered area in blocks
+     */
+    protected void renderDirectly(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue, short windowX, short windowY, short windowWidth, short windowHeight) {
         for (BlockMapLayer layer : map.getLayers()) {
             for (short x = windowX; x < windowX + windowWidth; x++) {
                 for (short y = windowY; y < windowY + windowHeight; y++) {
@@ -57,6 +87,13 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
                 }
             }
         }
+
+        // junk and craters lie on top of every layer
+        map.getDecals().render(batch, resources,
+                windowX * Block.BLOCK_WIDTH,
+                windowY * Block.BLOCK_HEIGHT,
+                (windowX + windowWidth) * Block.BLOCK_WIDTH,
+                (windowY + windowHeight) * Block.BLOCK_HEIGHT);
     }
 
     /**
@@ -67,34 +104,7 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
      */
     @Override
     public void renderFogOfWar(SpriteBatch batch, Resources resources) {
-        // position and dimensions of the rendered map portion (window)
-        short windowX = (short) Math.max(0, (short) renderX - 3);
-        short windowY = (short) Math.max(0, (short) renderY - 3);
-
-        short windowWidth = (short) Math.min(map.getWidth() - windowX, (short) renderWidth + 6);
-        short windowHeight = (short) Math.min(map.getHeight() - windowY, (short) renderHeight + 6);
-
-        for (short x = windowX; x < windowX + windowWidth; x++) {
-            for (short y = windowY; y < windowY + windowHeight; y++) {
-                if (!explorationData.isExplored(x, y)) {
-                    batch.draw(
-                            resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.UNEXPLORED_AREA),
-                            x * Block.BLOCK_WIDTH - Block.BLOCK_WIDTH / 5f,
-                            y * Block.BLOCK_HEIGHT - Block.BLOCK_HEIGHT / 5f,
-                            Block.BLOCK_WIDTH * 1.4f,
-                            Block.BLOCK_HEIGHT * 1.4f
-                    );
-                } else if (!explorationData.isVisible(x, y)) {
-                    batch.draw(
-                            resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.FOG_OF_WAR),
-                            x * Block.BLOCK_WIDTH - Block.BLOCK_WIDTH / 5.9f,
-                            y * Block.BLOCK_HEIGHT - Block.BLOCK_HEIGHT / 5.9f,
-                            Block.BLOCK_WIDTH * 1.33898f,
-                            Block.BLOCK_HEIGHT * 1.33898f
-                    );
-                }
-            }
-        }
+        fogOfWar.render(batch);
     }
 
     /**
@@ -105,6 +115,24 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
     @Override
     public void setExplorationData(ExplorationDataInterface explorationData) {
         this.explorationData = explorationData;
+
+        if (fogOfWar != null) {
+            fogOfWar.dispose();
+        }
+
+        fogOfWar = new FogOfWarTexture(explorationData, (short) map.getWidth(), (short) map.getHeight());
+    }
+
+    /**
+     * Disposes of the cached terrain and the fog of war
+     */
+    public void dispose() {
+        terrainCache.dispose();
+        downsampledTerrain.dispose();
+
+        if (fogOfWar != null) {
+            fogOfWar.dispose();
+        }
     }
 
     /**
@@ -129,6 +157,9 @@ public class BlockMapRenderer implements MapRenderer, RenderBoundsProvider {
         }
 
         this.map = (BlockMap) map;
+
+        terrainCache.setMap(this.map);
+        downsampledTerrain.setMap(this.map);
     }
 
     /**
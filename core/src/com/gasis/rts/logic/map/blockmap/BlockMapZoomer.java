@@ -14,6 +14,14 @@ public class BlockMapZoomer {
     private final float maxZoomIn = 0.25f;
     private final float maxZoomOut = 1.4f;
 
+    // zoom past which the map is rendered with less detail, and the zoom at which full
+    // detail comes back (lower, so that the detail doesn't flicker around a single value)
+    private final float lowDetailZoom = 1.15f;
+    private final float fullDetailZoom = 1.1f;
+
+    // is the map zoomed out far enough to be rendered with less detail
+    private boolean lowDetail;
+
     // how much the zoom changes per second
     private float zoomSpeed;
 
@@ -35,6 +43,21 @@ public class BlockMapZoomer {
             cam.zoom = maxZoomOut;
             zoomSpeed = 0;
         }
+
+        if (cam.zoom >= lowDetailZoom) {
+            lowDetail = true;
+        } else if (cam.zoom <= fullDetailZoom) {
+            lowDetail = false;
+        }
+    }
+
+    /**
+     * Checks if the map is zoomed out far enough to be rendered with less detail
+     *
+     * @return
+     */
+    public boolean isLowDetail() {
+        return lowDetail;
     }
 
     /**
@@ -0,0 +1,798 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import java.util.Arrays;
+
+/**
+ * Labels connected regions of statically passable blocks, so that it can be told in
+ * constant time whether one block can be reached from another. The labels are built
+ * when they are first needed and then kept up to date from the map's change log:
+ * freeing a block merges the regions around it, and occupying a block only relabels
+ * the smaller part of it's region when the block was the only connection between it's
+ * neighbours
+ */
+public class BlockRegions {
+
+    // the region label of blocks that can't be walked on
+    public static final int NO_REGION = 0;
+
+    // neighbour offsets in clockwise order starting from the top
+    protected static final int[] OFFSETS_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    protected static final int[] OFFSETS_Y = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    // the map whose blocks are labelled
+    protected BlockMap map;
+
+    // changes of the map's blocks that haven't been applied to the labels yet
+    protected BlockChangeLog.Subscription changes;
+
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // region label of every block, dense since most blocks of a map are passable
+    protected int[] labels;
+
+    // how many blocks every region has, indexed by label
+    protected int[] sizes = new int[64];
+
+    // the label the next new region will get if there are no free labels
+    protected int nextLabel;
+
+    // labels of regions that no longer have any blocks (reused for new regions)
+    protected int[] freeLabels = new int[64];
+    protected int freeLabelCount;
+
+    // have the labels been built
+    protected boolean built;
+
+    // initial capacity of the flood fill queue, a power of 2
+    protected static final int INITIAL_QUEUE_CAPACITY = 1024;
+
+    // flood fill queue, a ring buffer that only has to hold the edge of the fill
+    protected int[] queue = new int[INITIAL_QUEUE_CAPACITY];
+
+    // changed blocks of the update being applied
+    protected int[] changedBlocks = new int[64];
+
+    // passable neighbours of a changed block and the ring components they belong to
+    protected boolean[] passableNeighbours = new boolean[8];
+    protected int[] neighbourComponents = new int[8];
+
+    // the most ring components a block can have
+    protected static final int MAX_COMPONENTS = 4;
+
+    // searches of a split check, one per ring component: the blocks each search reached
+    // (in the order they were reached), how many of them have been expanded and how many
+    // were reached, the label the search walks on and the group of searches it met
+    protected int[][] searchQueues = new int[MAX_COMPONENTS][64];
+    protected int[] searchHeads = new int[MAX_COMPONENTS];
+    protected int[] searchTails = new int[MAX_COMPONENTS];
+    protected int[] searchLabels = new int[MAX_COMPONENTS];
+    protected int[] searchGroups = new int[MAX_COMPONENTS];
+
+    // search marks are kept in pages of MARK_PAGE_SIZE consecutive blocks, allocated
+    // when a split check search first reaches one of their blocks
+    protected static final int MARK_PAGE_SHIFT = 10;
+    protected static final int MARK_PAGE_MASK = (1 << MARK_PAGE_SHIFT) - 1;
+
+    // how many mark pages are kept between split checks
+    protected static final int MAX_RETAINED_MARK_PAGES = 64;
+
+    // the split check and the search that reached every block by page, packed as
+    // (check id << 2) | search index
+    protected int[][] searchMarks;
+
+    // how many mark pages are allocated
+    protected int searchMarkPageCount;
+
+    // the id of the current split check
+    protected int checkId;
+
+    /**
+     * Default class constructor
+     *
+     * @param map the map whose blocks will be labelled
+     */
+    public BlockRegions(BlockMap map) {
+        this.map = map;
+
+        changes = map.getChanges().subscribe();
+    }
+
+    /**
+     * Makes the labels get rebuilt from scratch the next time they are needed
+     */
+    public void invalidate() {
+        built = false;
+    }
+
+    /**
+     * Gets the region label of the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return the label or NO_REGION if the block can't be walked on
+     */
+    public int getRegion(int x, int y) {
+        ensureBuilt();
+
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return NO_REGION;
+        }
+
+        return labels[y * width + x];
+    }
+
+    /**
+     * Checks if one block can be reached from another when units are ignored
+     *
+     * @param fromX first block x
+     * @param fromY first block y
+     * @param toX   second block x
+     * @param toY   second block y
+     * @return
+     */
+    public boolean isReachable(int fromX, int fromY, int toX, int toY) {
+        int region = getRegion(fromX, fromY);
+
+        return region != NO_REGION && region == getRegion(toX, toY);
+    }
+
+    /**
+     * Gets the block closest to the destination that can be reached from the start.
+     * Ends at the start's region at the latest, so the search is never longer than the
+     * distance between the blocks
+     *
+     * @param fromX start x
+     * @param fromY start y
+     * @param toX   destination x
+     * @param toY   destination y
+     * @return packed (y * map width + x) block id, the destination itself if it is
+     * reachable or the start can't be walked on
+     */
+    public int getReachableBlock(int fromX, int fromY, int toX, int toY) {
+        ensureBuilt();
+
+        toX = Math.max(0, Math.min(width - 1, toX));
+        toY = Math.max(0, Math.min(height - 1, toY));
+
+        int region = getRegion(fromX, fromY);
+
+        if (region == NO_REGION || labels[toY * width + toX] == region) {
+            return toY * width + toX;
+        }
+
+        int closest = findClosestBlock(toX, toY, region, Math.max(width, height));
+
+        return closest == -1 ? toY * width + toX : closest;
+    }
+
+    /**
+     * Finds a block of the given region close to the given block, searching in square
+     * rings of growing size around it and picking the closest block of the first ring
+     * that has any
+     *
+     * @param x         block x
+     * @param y         block y
+     * @param region    region label
+     * @param maxRadius how far from the block to search
+     * @return packed (y * map width + x) block id, -1 if no block was found
+     */
+    public int findClosestBlock(int x, int y, int region, int maxRadius) {
+        ensureBuilt();
+
+        if (region == NO_REGION) {
+            return -1;
+        }
+
+        if (getRegion(x, y) == region) {
+            return y * width + x;
+        }
+
+        for (int radius = 1; radius <= maxRadius; radius++) {
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+
+            for (int i = -radius; i <= radius; i++) {
+                for (int side = 0; side < 4; side++) {
+                    // the corners belong to the top and bottom sides
+                    if (side >= 2 && (i == -radius || i == radius)) {
+                        continue;
+                    }
+
+                    int blockX = side < 2 ? x + i : (side == 2 ? x + radius : x - radius);
+                    int blockY = side < 2 ? (side == 0 ? y + radius : y - radius) : y + i;
+
+                    if (blockX < 0 || blockY < 0 || blockX >= width || blockY >= height) {
+                        continue;
+                    }
+
+                    int distance = (blockX - x) * (blockX - x) + (blockY - y) * (blockY - y);
+
+                    if (labels[blockY * width + blockX] == region && distance < bestDistance) {
+                        best = blockY * width + blockX;
+                        bestDistance = distance;
+                    }
+                }
+            }
+
+            if (best != -1) {
+                return best;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Applies the block changes recorded since the last update. The blocks that can no
+     * longer be walked on are removed from their regions one at a time, each followed by
+     * it's split check: a block that is still labelled but already occupied is treated as
+     * passable until it's own turn, which keeps the labels right for the blocks checked
+     * so far, and so the neighbour ring test of every block stays valid
+     */
+    public void update() {
+        if (changes.checkOverflow()) {
+            built = false;
+        }
+
+        int count = 0;
+        int block;
+
+        while ((block = changes.next()) != BlockChangeLog.NO_BLOCK) {
+            if (!built) {
+                // the labels will be built from the current map anyway
+                continue;
+            }
+
+            if (count == changedBlocks.length) {
+                changedBlocks = Arrays.copyOf(changedBlocks, count * 2);
+            }
+
+            changedBlocks[count++] = block;
+        }
+
+        for (int i = 0; i < count; i++) {
+            block = changedBlocks[i];
+
+            // units entering and leaving blocks don't change passability
+            if (labels[block] != NO_REGION && !isPassable(block)) {
+                if (--sizes[labels[block]] == 0) {
+                    freeRegion(labels[block]);
+                }
+
+                labels[block] = NO_REGION;
+
+                blockOccupied(block % width, block / width);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            block = changedBlocks[i];
+
+            if (labels[block] == NO_REGION && isPassable(block)) {
+                blockFreed(block % width, block / width);
+            }
+        }
+    }
+
+    /**
+     * Checks if a block can be walked on when units are ignored
+     *
+     * @param block packed (y * map width + x) block id
+     * @return
+     */
+    protected boolean isPassable(int block) {
+        return map.isBlockStaticallyPassable((short) (block % width), (short) (block / width));
+    }
+
+    /**
+     * Merges the regions around a block that became passable
+     *
+     * @param x block x
+     * @param y block y
+     */
+    protected void blockFreed(int x, int y) {
+        int block = y * width + x;
+        int largest = NO_REGION;
+
+        for (int i = 0; i < 8; i++) {
+            int region = getNeighbourRegion(x, y, i);
+
+            if (region != NO_REGION && (largest == NO_REGION || sizes[region] > sizes[largest])) {
+                largest = region;
+            }
+        }
+
+        if (largest == NO_REGION) {
+            largest = newRegion();
+        }
+
+        labels[block] = largest;
+        sizes[largest]++;
+
+        // relabel the smaller regions into the largest one
+        for (int i = 0; i < 8; i++) {
+            int region = getNeighbourRegion(x, y, i);
+
+            if (region != NO_REGION && region != largest) {
+                sizes[largest] += fill(x + OFFSETS_X[i], y + OFFSETS_Y[i], largest);
+                freeRegion(region);
+            }
+        }
+    }
+
+    /**
+     * Splits the region of a block that can no longer be walked on (and has already
+     * been unlabelled) if the block was the only connection between parts of the region.
+     * The parts are searched from every ring component at once, one block at a time each,
+     * so the parts that get cut off are found after as many steps as they have blocks,
+     * and only they are relabelled. The largest part keeps the region's label
+     *
+     * @param x block x
+     * @param y block y
+     */
+    protected void blockOccupied(int x, int y) {
+        int components = findNeighbourComponents(x, y);
+
+        if (components <= 1) {
+            // the neighbours are still connected to each other around the block
+            return;
+        }
+
+        if (++checkId == Integer.MAX_VALUE >> 2 || searchMarkPageCount > MAX_RETAINED_MARK_PAGES) {
+            // unallocated pages read as unmarked, so dropping them also clears the old marks
+            Arrays.fill(searchMarks, null);
+            searchMarkPageCount = 0;
+
+            if (checkId == Integer.MAX_VALUE >> 2) {
+                checkId = 1;
+            }
+        }
+
+        for (int i = 0; i < 8; i++) {
+            int component = neighbourComponents[i];
+
+            // start a search from the first neighbour of every component
+            if (!passableNeighbours[i] || searchTails[component] > 0) {
+                continue;
+            }
+
+            int neighbour = (y + OFFSETS_Y[i]) * width + x + OFFSETS_X[i];
+
+            searchHeads[component] = 0;
+            searchTails[component] = 1;
+            searchQueues[component][0] = neighbour;
+            searchLabels[component] = labels[neighbour];
+            searchGroups[component] = component;
+            setSearchMark(neighbour, (checkId << 2) | component);
+        }
+
+        while (canSplit(components)) {
+            for (int search = 0; search < components; search++) {
+                if (searchHeads[search] < searchTails[search]) {
+                    expandSearch(search);
+
+                    if (searchHeads[search] == searchTails[search] && isGroupFinished(searchGroups[search], components)) {
+                        searchFinished(searchGroups[search], components);
+                    }
+                }
+            }
+        }
+
+        // leave the searches empty for the next check
+        for (int search = 0; search < components; search++) {
+            searchHeads[search] = 0;
+            searchTails[search] = 0;
+        }
+    }
+
+    /**
+     * Expands the next block reached by a split check search
+     *
+     * @param search search index
+     */
+    protected void expandSearch(int search) {
+        int block = searchQueues[search][searchHeads[search]++];
+        int blockX = block % width;
+        int blockY = block / width;
+
+        for (int i = 0; i < 8; i++) {
+            int neighbourX = blockX + OFFSETS_X[i];
+            int neighbourY = blockY + OFFSETS_Y[i];
+
+            if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) {
+                continue;
+            }
+
+            int neighbour = neighbourY * width + neighbourX;
+
+            if (labels[neighbour] != searchLabels[search]) {
+                continue;
+            }
+
+            int[] markPage = searchMarks[neighbour >>> MARK_PAGE_SHIFT];
+            int mark = markPage == null ? 0 : markPage[neighbour & MARK_PAGE_MASK];
+
+            if (mark >> 2 == checkId) {
+                // the block has been reached by another search, so both parts are one
+                mergeGroups(searchGroups[search], searchGroups[mark & 3]);
+                continue;
+            }
+
+            if (searchTails[search] == searchQueues[search].length) {
+                searchQueues[search] = Arrays.copyOf(searchQueues[search], searchTails[search] * 2);
+            }
+
+            setSearchMark(neighbour, (checkId << 2) | search);
+            searchQueues[search][searchTails[search]++] = neighbour;
+        }
+    }
+
+    /**
+     * Marks a block as reached by a split check search
+     *
+     * @param block block index
+     * @param mark  (check id << 2) | search index
+     */
+    protected void setSearchMark(int block, int mark) {
+        int page = block >>> MARK_PAGE_SHIFT;
+
+        if (searchMarks[page] == null) {
+            searchMarks[page] = new int[MARK_PAGE_MASK + 1];
+            searchMarkPageCount++;
+        }
+
+        searchMarks[page][block & MARK_PAGE_MASK] = mark;
+    }
+
+    /**
+     * Puts the searches of 2 groups into one group
+     *
+     * @param first  first group
+     * @param second second group
+     */
+    protected void mergeGroups(int first, int second) {
+        if (first == second) {
+            return;
+        }
+
+        for (int search = 0; search < MAX_COMPONENTS; search++) {
+            if (searchGroups[search] == second) {
+                searchGroups[search] = first;
+            }
+        }
+    }
+
+    /**
+     * Checks if every search of a group has expanded all the blocks it reached
+     *
+     * @param group      group of searches
+     * @param components number of searches
+     * @return
+     */
+    protected boolean isGroupFinished(int group, int components) {
+        for (int search = 0; search < components; search++) {
+            if (searchGroups[search] == group && searchHeads[search] < searchTails[search]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if any 2 groups of searches that haven't finished yet walk on the same
+     * region, meaning the region might still be split
+     *
+     * @param components number of searches
+     * @return
+     */
+    protected boolean canSplit(int components) {
+        for (int first = 0; first < components; first++) {
+            if (searchHeads[first] == searchTails[first]) {
+                continue;
+            }
+
+            for (int second = first + 1; second < components; second++) {
+                if (searchHeads[second] < searchTails[second] && searchGroups[first] != searchGroups[second]
+                        && searchLabels[first] == searchLabels[second]) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gives a new label to the blocks of a finished group of searches if the region it
+     * walks on still has other unfinished groups, as the group is then cut off from them
+     *
+     * @param group      finished group of searches
+     * @param components number of searches
+     */
+    protected void searchFinished(int group, int components) {
+        int label = NO_REGION;
+
+        for (int search = 0; search < components; search++) {
+            if (searchGroups[search] == group) {
+                label = searchLabels[search];
+                break;
+            }
+        }
+
+        boolean cutOff = false;
+
+        for (int search = 0; search < components; search++) {
+            if (searchGroups[search] != group && searchLabels[search] == label && searchHeads[search] < searchTails[search]) {
+                cutOff = true;
+                break;
+            }
+        }
+
+        if (!cutOff) {
+            return;
+        }
+
+        int newLabel = newRegion();
+
+        for (int search = 0; search < components; search++) {
+            if (searchGroups[search] != group) {
+                continue;
+            }
+
+            for (int i = 0; i < searchTails[search]; i++) {
+                labels[searchQueues[search][i]] = newLabel;
+            }
+
+            sizes[newLabel] += searchTails[search];
+            sizes[label] -= searchTails[search];
+        }
+    }
+
+    /**
+     * Finds which passable neighbours of a block are connected to each other without
+     * going through the block itself
+     *
+     * @param x block x
+     * @param y block y
+     * @return the number of separate neighbour groups
+     */
+    protected int findNeighbourComponents(int x, int y) {
+        for (int i = 0; i < 8; i++) {
+            passableNeighbours[i] = getNeighbourRegion(x, y, i) != NO_REGION;
+            neighbourComponents[i] = -1;
+        }
+
+        int components = 0;
+
+        for (int i = 0; i < 8; i++) {
+            if (!passableNeighbours[i] || neighbourComponents[i] != -1) {
+                continue;
+            }
+
+            // walk the ring in both directions from the neighbour
+            markComponent(i, components);
+            components++;
+        }
+
+        return components;
+    }
+
+    /**
+     * Marks all ring neighbours connected to the given one with the given component
+     *
+     * @param start     ring index of the neighbour
+     * @param component component id
+     */
+    protected void markComponent(int start, int component) {
+        neighbourComponents[start] = component;
+
+        boolean changed = true;
+
+        // the ring has only 8 cells, so propagating until nothing changes is cheap
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < 8; i++) {
+                if (!passableNeighbours[i] || neighbourComponents[i] != component) {
+                    continue;
+                }
+
+                for (int j = 0; j < 8; j++) {
+                    if (passableNeighbours[j] && neighbourComponents[j] == -1 && ringNeighboursAdjacent(i, j)) {
+                        neighbourComponents[j] = component;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if 2 neighbours of a block are next to each other. Neighbouring ring
+     * cells always are, and so are 2 straight neighbours that share a corner
+     *
+     * @param first  ring index of the first neighbour
+     * @param second ring index of the second neighbour
+     * @return
+     */
+    protected boolean ringNeighboursAdjacent(int first, int second) {
+        int distance = Math.abs(first - second);
+        distance = Math.min(distance, 8 - distance);
+
+        if (distance == 1) {
+            return true;
+        }
+
+        // straight neighbours have even ring indices
+        return distance == 2 && (first & 1) == 0 && (second & 1) == 0;
+    }
+
+    /**
+     * Gets the region of a block's neighbour
+     *
+     * @param x         block x
+     * @param y         block y
+     * @param direction neighbour's ring index
+     * @return
+     */
+    protected int getNeighbourRegion(int x, int y, int direction) {
+        int neighbourX = x + OFFSETS_X[direction];
+        int neighbourY = y + OFFSETS_Y[direction];
+
+        if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) {
+            return NO_REGION;
+        }
+
+        return labels[neighbourY * width + neighbourX];
+    }
+
+    /**
+     * Applies pending block changes and builds the labels if they haven't been built yet
+     */
+    protected void ensureBuilt() {
+        if (changes.hasChanges()) {
+            update();
+        }
+
+        if (built) {
+            return;
+        }
+
+        width = (int) map.getWidth();
+        height = (int) map.getHeight();
+
+        if (labels == null || labels.length != width * height) {
+            labels = new int[width * height];
+            searchMarks = new int[(width * height + MARK_PAGE_MASK) >> MARK_PAGE_SHIFT][];
+            searchMarkPageCount = 0;
+        }
+
+        Arrays.fill(labels, NO_REGION);
+        Arrays.fill(sizes, 0);
+        nextLabel = NO_REGION + 1;
+        freeLabelCount = 0;
+
+        // fill needs the passable blocks marked, so they temporarily get a label no region has
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (map.isBlockStaticallyPassable((short) x, (short) y)) {
+                    labels[y * width + x] = -1;
+                }
+            }
+        }
+
+        for (int block = 0; block < labels.length; block++) {
+            if (labels[block] == -1) {
+                int label = newRegion();
+                sizes[label] = fill(block % width, block / width, label);
+            }
+        }
+
+        built = true;
+    }
+
+    /**
+     * Creates a new region label, reusing the label of a region that no longer exists
+     * if there is one
+     *
+     * @return
+     */
+    protected int newRegion() {
+        if (freeLabelCount > 0) {
+            int label = freeLabels[--freeLabelCount];
+            sizes[label] = 0;
+
+            return label;
+        }
+
+        if (nextLabel == sizes.length) {
+            sizes = Arrays.copyOf(sizes, sizes.length * 2);
+        }
+
+        sizes[nextLabel] = 0;
+
+        return nextLabel++;
+    }
+
+    /**
+     * Makes the label of a region that no longer has any blocks available for new regions
+     *
+     * @param label region label
+     */
+    protected void freeRegion(int label) {
+        sizes[label] = 0;
+
+        if (freeLabelCount == freeLabels.length) {
+            freeLabels = Arrays.copyOf(freeLabels, freeLabelCount * 2);
+        }
+
+        freeLabels[freeLabelCount++] = label;
+    }
+
+    /**
+     * Gives the given label to every passable block connected to the given block
+     *
+     * @param x     block x
+     * @param y     block y
+     * @param label new label
+     * @return the number of relabelled blocks
+     */
+    protected int fill(int x, int y, int label) {
+        int head = 0;
+        int tail = 0;
+        int count = 1;
+
+        labels[y * width + x] = label;
+        queue[tail++] = y * width + x;
+
+        while (head != tail) {
+            int block = queue[head++ & (queue.length - 1)];
+            int blockX = block % width;
+            int blockY = block / width;
+
+            for (int i = 0; i < 8; i++) {
+                int neighbourX = blockX + OFFSETS_X[i];
+                int neighbourY = blockY + OFFSETS_Y[i];
+
+                if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) {
+                    continue;
+                }
+
+                int neighbour = neighbourY * width + neighbourX;
+
+                if (labels[neighbour] != NO_REGION && labels[neighbour] != label) {
+                    if (tail - head == queue.length) {
+                        growQueue(head);
+                        tail -= head;
+                        head = 0;
+                    }
+
+                    labels[neighbour] = label;
+                    queue[tail++ & (queue.length - 1)] = neighbour;
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Doubles the capacity of the full flood fill queue, moving it's blocks to the front
+     * of the new queue in order
+     *
+     * @param head position of the first queued block
+     */
+    protected void growQueue(int head) {
+        int[] grown = new int[queue.length * 2];
+        int start = head & (queue.length - 1);
+
+        System.arraycopy(queue, start, grown, 0, queue.length - start);
+        System.arraycopy(queue, 0, grown, queue.length - start, start);
+
+        queue = grown;
+    }
+}
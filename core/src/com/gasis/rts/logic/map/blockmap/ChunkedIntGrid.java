@@ -0,0 +1,83 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SHIFT;
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SIZE;
+
+/**
+ * A grid of ints that are 0 for most blocks. The values are kept in chunks laid out
+ * the same way as the chunks of {@link BlockMapLayer}: a chunk is only allocated when
+ * the first non zero value is written to it and dropped when it's last value goes back to 0
+ */
+public class ChunkedIntGrid {
+
+    // mask of the block coordinates inside a chunk
+    protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // values of the grid by chunk, null for chunks with only zeroes
+    protected int[][] chunks;
+
+    // how many non zero values every chunk has
+    protected int[] chunkValueCounts;
+
+    // how many chunks fit in a row of the grid
+    protected int chunksPerRow;
+
+    /**
+     * Default class constructor
+     *
+     * @param width  width of the grid in blocks
+     * @param height height of the grid in blocks
+     */
+    public ChunkedIntGrid(int width, int height) {
+        chunksPerRow = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunkRows = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+
+        chunks = new int[chunksPerRow * chunkRows][];
+        chunkValueCounts = new int[chunks.length];
+    }
+
+    /**
+     * Gets the value of a block, the coordinates are not checked
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    public int get(int x, int y) {
+        int[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT)];
+
+        return chunk == null ? 0 : chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    /**
+     * Sets the value of a block, the coordinates are not checked
+     *
+     * @param x     block x
+     * @param y     block y
+     * @param value new value
+     * @return the previous value of the block
+     */
+    public int set(int x, int y, int value) {
+        int chunk = (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+        int index = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+
+        if (chunks[chunk] == null) {
+            if (value == 0) {
+                return 0;
+            }
+
+            chunks[chunk] = new int[CHUNK_SIZE * CHUNK_SIZE];
+        }
+
+        int previous = chunks[chunk][index];
+        chunks[chunk][index] = value;
+
+        if (previous == 0 && value != 0) {
+            chunkValueCounts[chunk]++;
+        } else if (previous != 0 && value == 0 && --chunkValueCounts[chunk] == 0) {
+            chunks[chunk] = null;
+        }
+
+        return previous;
+    }
+}
@@ -0,0 +1,207 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.gasis.rts.resources.Resources;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SHIFT;
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SIZE;
+
+/**
+ * The terrain and decals of the whole map rendered into a single texture with less texels
+ * than the terrain has pixels, used when the map is zoomed out far enough for the missing
+ * detail not to show. A chunk is rendered into the texture through the terrain cache the
+ * first time it is in view and again when it's decals change. After that the terrain is
+ * drawn as a single quad, no matter how many chunks are in view
+ */
+public class DownsampledTerrain {
+
+    // texels per world unit, lowered for maps that wouldn't fit in the biggest texture
+    protected static final float TEXELS_PER_UNIT = 32;
+
+    // the biggest texture size that every gpu supports
+    protected static final int MAX_TEXTURE_SIZE = 4096;
+
+    // decal version of chunks that haven't been rendered into the texture yet
+    protected static final int NOT_RENDERED = Integer.MIN_VALUE;
+
+    // the terrain cache the chunks are rendered through
+    protected TerrainCache terrainCache;
+
+    // the rendered map
+    protected BlockMap map;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
+
+    // decal version of every chunk when it was rendered into the texture
+    protected int[] chunkVersions;
+
+    // texels per world unit
+    protected float texelsPerUnit;
+
+    // the downsampled terrain, created when first rendered
+    protected FrameBuffer frameBuffer;
+
+    // projection of the whole map onto the frame buffer
+    protected Matrix4 mapProjection = new Matrix4();
+
+    // the batch's projection and the screen's viewport while a chunk is being rendered
+    protected Matrix4 batchProjection = new Matrix4();
+    protected IntBuffer viewport = BufferUtils.newIntBuffer(16);
+
+    /**
+     * Default class constructor
+     *
+     * @param terrainCache terrain cache the chunks are rendered through
+     */
+    public DownsampledTerrain(TerrainCache terrainCache) {
+        this.terrainCache = terrainCache;
+    }
+
+    /**
+     * Sets the map to render
+     *
+     * @param map rendered map
+     */
+    public void setMap(BlockMap map) {
+        this.map = map;
+
+        chunksPerRow = ((int) map.getWidth() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int chunkRows = ((int) map.getHeight() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+
+        chunkVersions = new int[chunksPerRow * chunkRows];
+        Arrays.fill(chunkVersions, NOT_RENDERED);
+
+        float width = map.getWidth() * Block.BLOCK_WIDTH;
+        float height = map.getHeight() * Block.BLOCK_HEIGHT;
+
+        texelsPerUnit = Math.min(TEXELS_PER_UNIT, MAX_TEXTURE_SIZE / Math.max(width, height));
+        mapProjection.setToOrtho2D(0, 0, width, height);
+
+        dispose();
+    }
+
+    /**
+     * Renders the terrain and decals of the whole map, updating the chunks of the given
+     * area first
+     *
+     * @param batch     sprite batch the rest of the map is drawn to, it has to be drawing
+     * @param resources game assets
+     * @param startX    left edge of the area in blocks
+     * @param startY    bottom edge of the area in blocks
+     * @param endX      right edge of the area in blocks (exclusive)
+     * @param endY      top edge of the area in blocks (exclusive)
+     * @return false if a chunk of the area couldn't be rendered and the area has to be drawn directly
+     */
+    public boolean render(SpriteBatch batch, Resources resources, int startX, int startY, int endX, int endY) {
+        if (endX <= startX || endY <= startY) {
+            return true;
+        }
+
+        if (frameBuffer == null) {
+            frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888,
+                    (int) (map.getWidth() * Block.BLOCK_WIDTH * texelsPerUnit),
+                    (int) (map.getHeight() * Block.BLOCK_HEIGHT * texelsPerUnit), false);
+
+            frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        }
+
+        for (int chunkX = startX >> CHUNK_SHIFT; chunkX <= (endX - 1) >> CHUNK_SHIFT; chunkX++) {
+            for (int chunkY = startY >> CHUNK_SHIFT; chunkY <= (endY - 1) >> CHUNK_SHIFT; chunkY++) {
+                int chunk = chunkY * chunksPerRow + chunkX;
+
+                if (chunkVersions[chunk] != map.getDecals().getChunkVersion(chunk)) {
+                    if (!renderChunk(batch, resources, chunkX, chunkY)) {
+                        return false;
+                    }
+
+                    chunkVersions[chunk] = map.getDecals().getChunkVersion(chunk);
+                }
+            }
+        }
+
+        // the texture is opaque, there's nothing to blend with
+        batch.disableBlending();
+        batch.draw(frameBuffer.getColorBufferTexture(), 0, 0,
+                map.getWidth() * Block.BLOCK_WIDTH, map.getHeight() * Block.BLOCK_HEIGHT, 0, 0, 1, 1);
+        batch.enableBlending();
+
+        return true;
+    }
+
+    /**
+     * Renders a chunk into the frame buffer. The blocks around the chunk are rendered too,
+     * because their images can reach into the chunk, but only the chunk's texels are changed
+     *
+     * @param batch     sprite batch the rest of the map is drawn to, it has to be drawing
+     * @param resources game assets
+     * @param chunkX    chunk x
+     * @param chunkY    chunk y
+     * @return false if the chunk doesn't fit in the terrain cache
+     */
+    protected boolean renderChunk(SpriteBatch batch, Resources resources, int chunkX, int chunkY) {
+        int startX = chunkX << CHUNK_SHIFT;
+        int startY = chunkY << CHUNK_SHIFT;
+        int endX = Math.min(startX + CHUNK_SIZE, (int) map.getWidth());
+        int endY = Math.min(startY + CHUNK_SIZE, (int) map.getHeight());
+
+        // texel edges of the chunk, rounded the same way for neighbouring chunks
+        int left = (int) (startX * Block.BLOCK_WIDTH * texelsPerUnit);
+        int bottom = (int) (startY * Block.BLOCK_HEIGHT * texelsPerUnit);
+        int right = (int) (endX * Block.BLOCK_WIDTH * texelsPerUnit);
+        int top = (int) (endY * Block.BLOCK_HEIGHT * texelsPerUnit);
+
+        batch.end();
+
+        batchProjection.set(batch.getProjectionMatrix());
+        Gdx.gl.glGetIntegerv(GL20.GL_VIEWPORT, viewport);
+
+        frameBuffer.begin();
+
+        Gdx.gl.glEnable(GL20.GL_SCISSOR_TEST);
+        Gdx.gl.glScissor(left, bottom, right - left, top - bottom);
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        batch.setProjectionMatrix(mapProjection);
+        batch.begin();
+
+        boolean rendered = terrainCache.render(batch, resources,
+                Math.max(0, startX - 1), Math.max(0, startY - 1),
+                Math.min((int) map.getWidth(), endX + 1), Math.min((int) map.getHeight(), endY + 1));
+
+        batch.end();
+
+        Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+
+        frameBuffer.end(viewport.get(0), viewport.get(1), viewport.get(2), viewport.get(3));
+
+        batch.setProjectionMatrix(batchProjection);
+        batch.begin();
+
+        return rendered;
+    }
+
+    /**
+     * Disposes of the frame buffer, the chunks are rendered again the next time the
+     * terrain is rendered
+     */
+    public void dispose() {
+        if (frameBuffer != null) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+
+            Arrays.fill(chunkVersions, NOT_RENDERED);
+        }
+    }
+}
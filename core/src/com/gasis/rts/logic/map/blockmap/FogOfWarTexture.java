@@ -0,0 +1,218 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.gasis.rts.logic.player.exploration.ExplorationDataInterface;
+import com.gasis.rts.logic.player.exploration.ExplorationListener;
+
+import java.nio.ByteBuffer;
+
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SHIFT;
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SIZE;
+
+/**
+ * Fog of war kept in a texture with a single texel for every block of the map. Changed
+ * blocks are collected into a dirty rectangle per chunk and only those rectangles are
+ * uploaded before the fog is drawn. The whole fog is then drawn as one linearly filtered
+ * quad, which also gives the fog smooth edges
+ */
+public class FogOfWarTexture implements ExplorationListener {
+
+    // opacity of unexplored and of explored but invisible blocks
+    protected static final int UNEXPLORED_ALPHA = 255;
+    protected static final int FOG_ALPHA = 140;
+
+    // the exploration data the fog shows
+    protected ExplorationDataInterface explorationData;
+
+    // map dimensions in blocks
+    protected short mapWidth;
+    protected short mapHeight;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
+
+    // indices of the chunks that have changed since the last upload
+    protected int[] dirtyChunks;
+    protected int dirtyChunkCount;
+
+    // changed area of every chunk, empty when minX > maxX
+    protected short[] minX;
+    protected short[] minY;
+    protected short[] maxX;
+    protected short[] maxY;
+
+    // fog texture, created when first rendered
+    protected Texture texture;
+
+    // texel data of the rectangle being uploaded
+    protected ByteBuffer texels = BufferUtils.newByteBuffer(CHUNK_SIZE * CHUNK_SIZE * 4);
+
+    /**
+     * Default class constructor
+     *
+     * @param explorationData exploration data the fog shows
+     * @param mapWidth        map width in blocks
+     * @param mapHeight       map height in blocks
+     */
+    public FogOfWarTexture(ExplorationDataInterface explorationData, short mapWidth, short mapHeight) {
+        this.explorationData = explorationData;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+
+        chunksPerRow = (mapWidth + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int chunkCount = chunksPerRow * ((mapHeight + CHUNK_SIZE - 1) >> CHUNK_SHIFT);
+
+        dirtyChunks = new int[chunkCount];
+        minX = new short[chunkCount];
+        minY = new short[chunkCount];
+        maxX = new short[chunkCount];
+        maxY = new short[chunkCount];
+
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            clearDirtyArea(chunk);
+        }
+
+        explorationData.addExplorationListener(this);
+    }
+
+    /**
+     * Called when a cell's explored flag or visibility changes
+     *
+     * @param x cell x
+     * @param y cell y
+     */
+    @Override
+    public void explorationChanged(short x, short y) {
+        int chunk = (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+
+        if (minX[chunk] > maxX[chunk]) {
+            dirtyChunks[dirtyChunkCount++] = chunk;
+        }
+
+        minX[chunk] = (short) Math.min(minX[chunk], x);
+        minY[chunk] = (short) Math.min(minY[chunk], y);
+        maxX[chunk] = (short) Math.max(maxX[chunk], x);
+        maxY[chunk] = (short) Math.max(maxY[chunk], y);
+    }
+
+    /**
+     * Renders the fog of war over the whole map
+     *
+     * @param batch sprite batch to draw to
+     */
+    public void render(SpriteBatch batch) {
+        if (texture == null) {
+            createTexture();
+        }
+
+        if (dirtyChunkCount > 0) {
+            // the batch binds it's own texture again when it flushes
+            batch.flush();
+            upload();
+        }
+
+        batch.draw(texture, 0, 0, mapWidth * Block.BLOCK_WIDTH, mapHeight * Block.BLOCK_HEIGHT, 0, 0, 1, 1);
+    }
+
+    /**
+     * Creates the fog texture and marks the whole map as changed
+     */
+    protected void createTexture() {
+        texture = new Texture(mapWidth, mapHeight, Pixmap.Format.RGBA8888);
+        texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        texture.setWrap(Texture.TextureWrap.ClampToEdge, Texture.TextureWrap.ClampToEdge);
+
+        dirtyChunkCount = 0;
+
+        for (short x = 0; x < mapWidth; x += CHUNK_SIZE) {
+            for (short y = 0; y < mapHeight; y += CHUNK_SIZE) {
+                int chunk = (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+
+                dirtyChunks[dirtyChunkCount++] = chunk;
+                minX[chunk] = x;
+                minY[chunk] = y;
+                maxX[chunk] = (short) (Math.min(x + CHUNK_SIZE, mapWidth) - 1);
+                maxY[chunk] = (short) (Math.min(y + CHUNK_SIZE, mapHeight) - 1);
+            }
+        }
+    }
+
+    /**
+     * Uploads the changed areas of the map to the fog texture
+     */
+    protected void upload() {
+        texture.bind();
+
+        for (int i = 0; i < dirtyChunkCount; i++) {
+            int chunk = dirtyChunks[i];
+
+            int width = maxX[chunk] - minX[chunk] + 1;
+            int height = maxY[chunk] - minY[chunk] + 1;
+
+            texels.clear();
+
+            // texture rows go from the bottom of the map up, the same way the fog quad is drawn
+            for (short y = minY[chunk]; y <= maxY[chunk]; y++) {
+                for (short x = minX[chunk]; x <= maxX[chunk]; x++) {
+                    // black texel, only the opacity changes
+                    texels.put((byte) 0).put((byte) 0).put((byte) 0).put((byte) getAlpha(x, y));
+                }
+            }
+
+            texels.flip();
+
+            Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, minX[chunk], minY[chunk], width, height,
+                    GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, texels);
+
+            clearDirtyArea(chunk);
+        }
+
+        dirtyChunkCount = 0;
+    }
+
+    /**
+     * Gets the fog opacity of a block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getAlpha(short x, short y) {
+        if (!explorationData.isExplored(x, y)) {
+            return UNEXPLORED_ALPHA;
+        } else if (!explorationData.isVisible(x, y)) {
+            return FOG_ALPHA;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Marks a chunk as unchanged
+     *
+     * @param chunk chunk index
+     */
+    protected void clearDirtyArea(int chunk) {
+        minX[chunk] = Short.MAX_VALUE;
+        minY[chunk] = Short.MAX_VALUE;
+        maxX[chunk] = Short.MIN_VALUE;
+        maxY[chunk] = Short.MIN_VALUE;
+    }
+
+    /**
+     * Stops listening for exploration changes and disposes of the texture
+     */
+    public void dispose() {
+        explorationData.removeExplorationListener(this);
+
+        if (texture != null) {
+            texture.dispose();
+            texture = null;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.gasis.rts.logic.object.GameObject;
+import com.gasis.rts.logic.object.OffensiveGameObject;
+import com.gasis.rts.logic.player.Player;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Spatial index of the game objects standing on the map. The map is split into square
+ * cells and every player has a bucket of object ids in every cell, so queries only look
+ * at the cells around the queried area and only at the buckets of the players they are
+ * interested in. Objects are put in the cell of the block they occupy (the center block
+ * for buildings), while distances are measured to their current centers.
+ *
+ * All coordinates and distances are in blocks. Queries allocate nothing, their results
+ * are added to the lists and arrays given by the caller
+ */
+public class ObjectGrid {
+
+    // query filters: objects of the given player or objects of it's enemies
+    public static final byte OWNED = 0;
+    public static final byte ENEMIES = 1;
+
+    // default cell width and height in blocks
+    public static final int DEFAULT_CELL_SIZE = 8;
+
+    // how far (in blocks) an object's center can be from the block it is indexed by,
+    // moving units are indexed by the block they are moving to
+    protected static final float MARGIN = 2f;
+
+    // the id of an object that isn't in the grid
+    protected static final int NO_OBJECT = -1;
+
+    // cell width and height in blocks
+    protected int cellSize;
+
+    // grid dimensions in cells
+    protected int cellsX;
+    protected int cellsY;
+
+    // object ids in every cell by player, null for buckets that were never used
+    protected int[][][] buckets = new int[4][][];
+
+    // how many objects every bucket has
+    protected int[][] bucketSizes = new int[4][];
+
+    // players that own indexed objects, indexed by their bucket index
+    protected Player[] players = new Player[4];
+    protected int playerCount;
+
+    // bucket indices of players
+    protected IdentityHashMap<Player, Integer> playerIndices = new IdentityHashMap<Player, Integer>();
+
+    // indexed objects and their data, indexed by id
+    protected GameObject[] objects = new GameObject[64];
+    protected int[] objectCells = new int[64];
+    protected int[] objectPlayers = new int[64];
+    protected int[] objectSlots = new int[64];
+
+    // ids of indexed objects
+    protected IdentityHashMap<GameObject, Integer> objectIds = new IdentityHashMap<GameObject, Integer>();
+
+    // ids of removed objects (reused for new objects)
+    protected int[] freeIds = new int[64];
+    protected int freeIdCount;
+
+    // the id the next new object will get if there are no free ids
+    protected int nextId;
+
+    // the longest sight or attack range of any indexed object
+    protected float maxReach;
+
+    // the longest distance (in blocks) from any indexed object's center to it's edge
+    protected float maxExtent;
+
+    // distances of the objects found by the nearest object query
+    protected float[] nearestDistances = new float[8];
+
+    /**
+     * Default class constructor
+     *
+     * @param width    map width in blocks
+     * @param height   map height in blocks
+     * @param cellSize cell width and height in blocks
+     */
+    public ObjectGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+
+        cellsX = Math.max(1, (width + cellSize - 1) / cellSize);
+        cellsY = Math.max(1, (height + cellSize - 1) / cellSize);
+    }
+
+    /**
+     * Puts an object in the grid or moves it to the cell of another block
+     *
+     * @param object object to index, must have an owner
+     * @param blockX x of the block the object occupies
+     * @param blockY y of the block the object occupies
+     */
+    public void update(GameObject object, int blockX, int blockY) {
+        int cell = getCell(blockX, blockY);
+        int player = getPlayerIndex(object.getOwner());
+
+        Integer existing = objectIds.get(object);
+        int id;
+
+        if (existing != null) {
+            id = existing;
+
+            if (objectCells[id] == cell && objectPlayers[id] == player) {
+                return;
+            }
+
+            removeFromBucket(id);
+        } else {
+            id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+
+            if (id == objects.length) {
+                objects = Arrays.copyOf(objects, id * 2);
+                objectCells = Arrays.copyOf(objectCells, id * 2);
+                objectPlayers = Arrays.copyOf(objectPlayers, id * 2);
+                objectSlots = Arrays.copyOf(objectSlots, id * 2);
+            }
+
+            objects[id] = object;
+            objectIds.put(object, id);
+
+            maxReach = Math.max(maxReach, getReach(object));
+            maxExtent = Math.max(maxExtent, Math.max(object.getWidth() / Block.BLOCK_WIDTH, object.getHeight() / Block.BLOCK_HEIGHT) / 2);
+        }
+
+        objectCells[id] = cell;
+        objectPlayers[id] = player;
+
+        addToBucket(id);
+    }
+
+    /**
+     * Removes an object from the grid
+     *
+     * @param object object to remove
+     */
+    public void remove(GameObject object) {
+        Integer existing = objectIds.remove(object);
+
+        if (existing == null) {
+            return;
+        }
+
+        int id = existing;
+
+        removeFromBucket(id);
+        objects[id] = null;
+
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+        }
+
+        freeIds[freeIdCount++] = id;
+    }
+
+    /**
+     * Checks if an object is in the grid
+     *
+     * @param object object to check
+     * @return
+     */
+    public boolean contains(GameObject object) {
+        return objectIds.containsKey(object);
+    }
+
+    /**
+     * Gets the longest sight or attack range any indexed object has ever had. Objects
+     * that can see or shoot at something are never further than this from it
+     *
+     * @return
+     */
+    public float getMaxReach() {
+        return maxReach;
+    }
+
+    /**
+     * Gets the longest distance from any indexed object's center to it's edge. Objects
+     * whose centers are further than this from an area don't overlap the area
+     *
+     * @return
+     */
+    public float getMaxExtent() {
+        return maxExtent;
+    }
+
+    /**
+     * Finds objects whose centers are within the given distance from a point
+     *
+     * @param x        point x in blocks
+     * @param y        point y in blocks
+     * @param range    distance in blocks
+     * @param player   the player the filter is relative to
+     * @param filter   OWNED or ENEMIES
+     * @param result   list to add the found objects to
+     */
+    public void findInRange(float x, float y, float range, Player player, byte filter, List<GameObject> result) {
+        int fromX = toCellX(x - range - MARGIN);
+        int fromY = toCellY(y - range - MARGIN);
+        int toX = toCellX(x + range + MARGIN);
+        int toY = toCellY(y + range + MARGIN);
+
+        for (int p = 0; p < playerCount; p++) {
+            if (!matches(p, player, filter)) {
+                continue;
+            }
+
+            for (int cellY = fromY; cellY <= toY; cellY++) {
+                for (int cellX = fromX; cellX <= toX; cellX++) {
+                    int cell = cellY * cellsX + cellX;
+                    int[] bucket = buckets[p][cell];
+
+                    for (int i = 0; bucket != null && i < bucketSizes[p][cell]; i++) {
+                        GameObject object = objects[bucket[i]];
+
+                        if (distanceSquared(object, x, y) <= range * range) {
+                            result.add(object);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds objects whose centers are in the given rectangle
+     *
+     * @param left   left edge in blocks
+     * @param bottom bottom edge in blocks
+     * @param right  right edge in blocks
+     * @param top    top edge in blocks
+     * @param player the player the filter is relative to
+     * @param filter OWNED or ENEMIES
+     * @param result list to add the found objects to
+     */
+    public void findInRectangle(float left, float bottom, float right, float top, Player player, byte filter, List<GameObject> result) {
+        int fromX = toCellX(left - MARGIN);
+        int fromY = toCellY(bottom - MARGIN);
+        int toX = toCellX(right + MARGIN);
+        int toY = toCellY(top + MARGIN);
+
+        for (int p = 0; p < playerCount; p++) {
+            if (!matches(p, player, filter)) {
+                continue;
+            }
+
+            for (int cellY = fromY; cellY <= toY; cellY++) {
+                for (int cellX = fromX; cellX <= toX; cellX++) {
+                    int cell = cellY * cellsX + cellX;
+                    int[] bucket = buckets[p][cell];
+
+                    for (int i = 0; bucket != null && i < bucketSizes[p][cell]; i++) {
+                        GameObject object = objects[bucket[i]];
+
+                        float objectX = object.getCenterX() / Block.BLOCK_WIDTH;
+                        float objectY = object.getCenterY() / Block.BLOCK_HEIGHT;
+
+                        if (objectX >= left && objectX <= right && objectY >= bottom && objectY <= top) {
+                            result.add(object);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the objects closest to a point. Cells are searched in rings of growing size
+     * around the point until no cell further away can have a closer object
+     *
+     * @param x        point x in blocks
+     * @param y        point y in blocks
+     * @param maxRange how far from the point to search in blocks
+     * @param player   the player the filter is relative to
+     * @param filter   OWNED or ENEMIES
+     * @param result   array to put the found objects in, closest first. The length
+     *                 of the array is the number of objects to find
+     * @return the number of found objects
+     */
+    public int findNearest(float x, float y, float maxRange, Player player, byte filter, GameObject[] result) {
+        if (nearestDistances.length < result.length) {
+            nearestDistances = new float[result.length];
+        }
+
+        int centerX = toCellX(x);
+        int centerY = toCellY(y);
+        int count = 0;
+
+        for (int ring = 0; ring <= Math.max(cellsX, cellsY); ring++) {
+            // objects of further rings are at least this far from the point
+            float ringDistance = (ring - 1) * cellSize - MARGIN;
+
+            if (ringDistance > maxRange || (count == result.length && ringDistance > nearestDistances[count - 1])) {
+                break;
+            }
+
+            for (int cellY = centerY - ring; cellY <= centerY + ring; cellY++) {
+                if (cellY < 0 || cellY >= cellsY) {
+                    continue;
+                }
+
+                // only the edges of the ring are new cells
+                int step = cellY == centerY - ring || cellY == centerY + ring ? 1 : Math.max(1, ring * 2);
+
+                for (int cellX = centerX - ring; cellX <= centerX + ring; cellX += step) {
+                    if (cellX < 0 || cellX >= cellsX) {
+                        continue;
+                    }
+
+                    count = addNearestInCell(cellY * cellsX + cellX, x, y, maxRange, player, filter, result, count);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds the objects of a cell to the closest objects found so far if they are closer
+     *
+     * @param cell     cell index
+     * @param x        point x in blocks
+     * @param y        point y in blocks
+     * @param maxRange how far from the point to search in blocks
+     * @param player   the player the filter is relative to
+     * @param filter   OWNED or ENEMIES
+     * @param result   the closest objects found so far, closest first
+     * @param count    how many objects have been found so far
+     * @return the new number of found objects
+     */
+    protected int addNearestInCell(int cell, float x, float y, float maxRange, Player player, byte filter, GameObject[] result, int count) {
+        for (int p = 0; p < playerCount; p++) {
+            if (!matches(p, player, filter) || buckets[p][cell] == null) {
+                continue;
+            }
+
+            int[] bucket = buckets[p][cell];
+
+            for (int i = 0; i < bucketSizes[p][cell]; i++) {
+                GameObject object = objects[bucket[i]];
+                float distance = (float) Math.sqrt(distanceSquared(object, x, y));
+
+                if (distance > maxRange || (count == result.length && distance >= nearestDistances[count - 1])) {
+                    continue;
+                }
+
+                // insertion sort, the result arrays are short
+                int position = count == result.length ? count - 1 : count++;
+
+                while (position > 0 && nearestDistances[position - 1] > distance) {
+                    result[position] = result[position - 1];
+                    nearestDistances[position] = nearestDistances[position - 1];
+                    position--;
+                }
+
+                result[position] = object;
+                nearestDistances[position] = distance;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if the objects of a player pass a query filter
+     *
+     * @param index  bucket index of the objects' owner
+     * @param player the player the filter is relative to
+     * @param filter OWNED or ENEMIES
+     * @return
+     */
+    protected boolean matches(int index, Player player, byte filter) {
+        if (filter == OWNED) {
+            return players[index] == player;
+        }
+
+        return players[index] != player && !player.isAllied(players[index]);
+    }
+
+    /**
+     * Gets the squared distance from an object's center to a point
+     *
+     * @param object the object
+     * @param x      point x in blocks
+     * @param y      point y in blocks
+     * @return
+     */
+    protected float distanceSquared(GameObject object, float x, float y) {
+        float distanceX = object.getCenterX() / Block.BLOCK_WIDTH - x;
+        float distanceY = object.getCenterY() / Block.BLOCK_HEIGHT - y;
+
+        return distanceX * distanceX + distanceY * distanceY;
+    }
+
+    /**
+     * Gets the longest sight or attack range of an object
+     *
+     * @param object the object
+     * @return
+     */
+    protected float getReach(GameObject object) {
+        float reach = 0;
+
+        if (object.getDefensiveSpecs() != null) {
+            reach = Math.max(object.getDefensiveSpecs().getSightRange(), object.getDefensiveSpecs().getSiegeModeSightRange());
+        }
+
+        if (object instanceof OffensiveGameObject && ((OffensiveGameObject) object).getOffensiveSpecs() != null) {
+            reach = Math.max(reach, ((OffensiveGameObject) object).getOffensiveSpecs().getAttackRange());
+            reach = Math.max(reach, ((OffensiveGameObject) object).getOffensiveSpecs().getSiegeModeAttackRange());
+        }
+
+        return reach;
+    }
+
+    /**
+     * Adds an object to the bucket of it's owner in it's cell
+     *
+     * @param id object id
+     */
+    protected void addToBucket(int id) {
+        int player = objectPlayers[id];
+        int cell = objectCells[id];
+
+        if (buckets[player][cell] == null) {
+            buckets[player][cell] = new int[4];
+        } else if (bucketSizes[player][cell] == buckets[player][cell].length) {
+            buckets[player][cell] = Arrays.copyOf(buckets[player][cell], bucketSizes[player][cell] * 2);
+        }
+
+        objectSlots[id] = bucketSizes[player][cell];
+        buckets[player][cell][bucketSizes[player][cell]++] = id;
+    }
+
+    /**
+     * Removes an object from it's bucket, moving the last object of the bucket in it's place
+     *
+     * @param id object id
+     */
+    protected void removeFromBucket(int id) {
+        int player = objectPlayers[id];
+        int cell = objectCells[id];
+        int[] bucket = buckets[player][cell];
+
+        int last = bucket[--bucketSizes[player][cell]];
+        bucket[objectSlots[id]] = last;
+        objectSlots[last] = objectSlots[id];
+    }
+
+    /**
+     * Gets the bucket index of a player, giving the player buckets if it has none yet
+     *
+     * @param player the player
+     * @return
+     */
+    protected int getPlayerIndex(Player player) {
+        Integer existing = playerIndices.get(player);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        if (playerCount == players.length) {
+            players = Arrays.copyOf(players, playerCount * 2);
+            buckets = Arrays.copyOf(buckets, playerCount * 2);
+            bucketSizes = Arrays.copyOf(bucketSizes, playerCount * 2);
+        }
+
+        players[playerCount] = player;
+        buckets[playerCount] = new int[cellsX * cellsY][];
+        bucketSizes[playerCount] = new int[cellsX * cellsY];
+        playerIndices.put(player, playerCount);
+
+        return playerCount++;
+    }
+
+    /**
+     * Gets the cell of a block
+     *
+     * @param blockX block x
+     * @param blockY block y
+     * @return
+     */
+    protected int getCell(int blockX, int blockY) {
+        return toCellY(blockY) * cellsX + toCellX(blockX);
+    }
+
+    /**
+     * Converts an x coordinate in blocks to a cell x, clamped to the grid
+     *
+     * @param x x in blocks
+     * @return
+     */
+    protected int toCellX(float x) {
+        return Math.max(0, Math.min(cellsX - 1, (int) Math.floor(x / cellSize)));
+    }
+
+    /**
+     * Converts a y coordinate in blocks to a cell y, clamped to the grid
+     *
+     * @param y y in blocks
+     * @return
+     */
+    protected int toCellY(float y) {
+        return Math.max(0, Math.min(cellsY - 1, (int) Math.floor(y / cellSize)));
+    }
+}
@@ -0,0 +1,400 @@
+package com.gasis.rts.logic.map.blockmap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.gasis.rts.resources.Resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the map's terrain and decals on the gpu. Every chunk of every layer gets it's own
+ * sprite cache, and so do the decals of every chunk. Terrain doesn't change after the map
+ * is generated, so a chunk's layer caches are built once, the first time the chunk is in
+ * view. A chunk's decal cache is built again only when a decal is added to or removed
+ * from the chunk. Rendering a chunk then costs a draw call per texture instead of a draw
+ * call per block image. When the cache runs out of space it is cleared and only the
+ * chunks in view are built again
+ */
+public class TerrainCache {
+
+    // how many images fit in the cache by default
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // cache ids of chunks that haven't been cached yet and of chunks with nothing to draw
+    protected static final int NOT_CACHED = -1;
+    protected static final int EMPTY = -2;
+
+    // the sprite cache holding every chunk cache, created when first rendered
+    protected SpriteCache cache;
+
+    // how many images fit in the sprite cache
+    protected int capacity;
+
+    // how many images the defined caches take (replaced caches included)
+    protected int used;
+
+    // the most recently defined cache, redefining it would shrink it
+    protected int lastCacheId = NOT_CACHED;
+
+    // the cached map
+    protected BlockMap map;
+
+    // the layers the caches were built for, bottom one first
+    protected List<BlockMapLayer> layers = new ArrayList<BlockMapLayer>();
+
+    // cache ids of every layer's chunks
+    protected int[][] layerCaches = new int[0][];
+
+    // cache ids of every chunk's decals, how many decals they can hold and the decal
+    // version of the chunk they were built for
+    protected int[] decalCaches;
+    protected int[] decalCacheSizes;
+    protected int[] decalVersions;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
+
+    /**
+     * Default class constructor
+     *
+     * @param capacity how many images fit in the cache
+     */
+    public TerrainCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the map to cache
+     *
+     * @param map cached map
+     */
+    public void setMap(BlockMap map) {
+        this.map = map;
+
+        chunksPerRow = ((int) map.getWidth() + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+        int chunkRows = ((int) map.getHeight() + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+
+        decalCaches = new int[chunksPerRow * chunkRows];
+        decalCacheSizes = new int[decalCaches.length];
+        decalVersions = new int[decalCaches.length];
+
+        layers.clear();
+        clear();
+    }
+
+    /**
+     * Renders the terrain and decals of the given area
+     *
+     * @param batch     sprite batch the rest of the map is drawn to, it has to be drawing
+     * @param resources game assets
+     * @param startX    left edge of the area in blocks
+     * @param startY    bottom edge of the area in blocks
+     * @param endX      right edge of the area in blocks (exclusive)
+     * @param endY      top edge of the area in blocks (exclusive)
+     * @return false if the area doesn't fit in the cache and has to be drawn directly
+     */
+    public boolean render(SpriteBatch batch, Resources resources, int startX, int startY, int endX, int endY) {
+        if (endX <= startX || endY <= startY) {
+            return true;
+        }
+
+        int startChunkX = startX >> BlockMapLayer.CHUNK_SHIFT;
+        int startChunkY = startY >> BlockMapLayer.CHUNK_SHIFT;
+        int endChunkX = (endX - 1) >> BlockMapLayer.CHUNK_SHIFT;
+        int endChunkY = (endY - 1) >> BlockMapLayer.CHUNK_SHIFT;
+
+        if (!prepare(resources, startChunkX, startChunkY, endChunkX, endChunkY)) {
+            return false;
+        }
+
+        batch.end();
+
+        // ending the batch turns blending off and the cache doesn't turn it back on,
+        // overlay terrain and decals would be drawn opaque without it
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+        cache.setProjectionMatrix(batch.getProjectionMatrix());
+        cache.begin();
+
+        // layer by layer, so that a layer covers the layers under it in the neighbouring chunks too
+        for (int[] chunkCaches : layerCaches) {
+            drawChunks(chunkCaches, startChunkX, startChunkY, endChunkX, endChunkY);
+        }
+
+        drawChunks(decalCaches, startChunkX, startChunkY, endChunkX, endChunkY);
+
+        cache.end();
+
+        batch.begin();
+
+        return true;
+    }
+
+    /**
+     * Draws the caches of the given chunks
+     *
+     * @param chunkCaches cache ids by chunk
+     * @param startChunkX left chunk
+     * @param startChunkY bottom chunk
+     * @param endChunkX   right chunk (inclusive)
+     * @param endChunkY   top chunk (inclusive)
+     */
+    protected void drawChunks(int[] chunkCaches, int startChunkX, int startChunkY, int endChunkX, int endChunkY) {
+        for (int chunkX = startChunkX; chunkX <= endChunkX; chunkX++) {
+            for (int chunkY = startChunkY; chunkY <= endChunkY; chunkY++) {
+                int id = chunkCaches[chunkY * chunksPerRow + chunkX];
+
+                if (id >= 0) {
+                    cache.draw(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the missing and outdated caches of the given chunks
+     *
+     * @param resources   game assets
+     * @param startChunkX left chunk
+     * @param startChunkY bottom chunk
+     * @param endChunkX   right chunk (inclusive)
+     * @param endChunkY   top chunk (inclusive)
+     * @return false if the chunks don't fit in the cache
+     */
+    protected boolean prepare(Resources resources, int startChunkX, int startChunkY, int endChunkX, int endChunkY) {
+        if (cache == null) {
+            cache = new SpriteCache(capacity, false);
+            clear();
+        }
+
+        checkLayers();
+
+        int needed = getMissingSize(startChunkX, startChunkY, endChunkX, endChunkY);
+
+        if (used + needed > capacity) {
+            // start over with only the chunks that are in view
+            clear();
+            needed = getMissingSize(startChunkX, startChunkY, endChunkX, endChunkY);
+
+            if (needed > capacity) {
+                return false;
+            }
+        }
+
+        for (int chunkX = startChunkX; chunkX <= endChunkX; chunkX++) {
+            for (int chunkY = startChunkY; chunkY <= endChunkY; chunkY++) {
+                int chunk = chunkY * chunksPerRow + chunkX;
+
+                for (int i = 0; i < layers.size(); i++) {
+                    if (layerCaches[i][chunk] == NOT_CACHED) {
+                        buildLayerChunk(resources, i, chunk);
+                    }
+                }
+
+                if (decalVersions[chunk] != map.getDecals().getChunkVersion(chunk)) {
+                    buildDecalChunk(resources, chunk);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts how many images the missing and outdated caches of the given chunks need
+     *
+     * @param startChunkX left chunk
+     * @param startChunkY bottom chunk
+     * @param endChunkX   right chunk (inclusive)
+     * @param endChunkY   top chunk (inclusive)
+     * @return
+     */
+    protected int getMissingSize(int startChunkX, int startChunkY, int endChunkX, int endChunkY) {
+        int needed = 0;
+
+        for (int chunkX = startChunkX; chunkX <= endChunkX; chunkX++) {
+            for (int chunkY = startChunkY; chunkY <= endChunkY; chunkY++) {
+                int chunk = chunkY * chunksPerRow + chunkX;
+
+                for (int i = 0; i < layers.size(); i++) {
+                    if (layerCaches[i][chunk] == NOT_CACHED) {
+                        needed += getImageCount(layers.get(i), chunk);
+                    }
+                }
+
+                if (decalVersions[chunk] != map.getDecals().getChunkVersion(chunk) && !canRedefineDecals(chunk)) {
+                    needed += map.getDecals().getChunkDecalCount(chunk);
+                }
+            }
+        }
+
+        return needed;
+    }
+
+    /**
+     * Builds the cache of a layer's chunk
+     *
+     * @param resources game assets
+     * @param layer     layer index
+     * @param chunk     chunk index
+     */
+    protected void buildLayerChunk(Resources resources, int layer, int chunk) {
+        int count = getImageCount(layers.get(layer), chunk);
+
+        if (count == 0) {
+            layerCaches[layer][chunk] = EMPTY;
+            return;
+        }
+
+        Block[] blocks = layers.get(layer).getChunk(chunk);
+
+        cache.beginCache();
+
+        // same order as the blocks are rendered in when drawn directly
+        for (int x = 0; x < BlockMapLayer.CHUNK_SIZE; x++) {
+            for (int y = 0; y < BlockMapLayer.CHUNK_SIZE; y++) {
+                Block block = blocks[(y << BlockMapLayer.CHUNK_SHIFT) | x];
+
+                if (block instanceof VisibleBlock) {
+                    ((VisibleBlock) block).cache(cache, resources);
+                }
+            }
+        }
+
+        layerCaches[layer][chunk] = lastCacheId = cache.endCache();
+        used += count;
+    }
+
+    /**
+     * Builds the decal cache of a chunk, reusing the chunk's old cache if the decals fit in it
+     *
+     * @param resources game assets
+     * @param chunk     chunk index
+     */
+    protected void buildDecalChunk(Resources resources, int chunk) {
+        BlockDecals decals = map.getDecals();
+        int count = decals.getChunkDecalCount(chunk);
+
+        decalVersions[chunk] = decals.getChunkVersion(chunk);
+
+        if (count == 0) {
+            decalCaches[chunk] = EMPTY;
+            decalCacheSizes[chunk] = 0;
+            return;
+        }
+
+        if (canRedefineDecals(chunk)) {
+            cache.beginCache(decalCaches[chunk]);
+            decals.cacheChunk(cache, resources, chunk);
+            cache.endCache();
+        } else {
+            cache.beginCache();
+            decals.cacheChunk(cache, resources, chunk);
+            decalCaches[chunk] = lastCacheId = cache.endCache();
+            decalCacheSizes[chunk] = count;
+            used += count;
+        }
+    }
+
+    /**
+     * Checks if a chunk's current decals fit in it's existing decal cache
+     *
+     * @param chunk chunk index
+     * @return
+     */
+    protected boolean canRedefineDecals(int chunk) {
+        return decalCaches[chunk] >= 0 && decalCaches[chunk] != lastCacheId
+                && map.getDecals().getChunkDecalCount(chunk) <= decalCacheSizes[chunk];
+    }
+
+    /**
+     * Counts the images on the blocks of a layer's chunk
+     *
+     * @param layer map layer
+     * @param chunk chunk index
+     * @return
+     */
+    protected int getImageCount(BlockMapLayer layer, int chunk) {
+        Block[] blocks = layer.getChunk(chunk);
+
+        if (blocks == null) {
+            return 0;
+        }
+
+        int count = 0;
+
+        for (Block block : blocks) {
+            if (block instanceof VisibleBlock) {
+                count += ((VisibleBlock) block).imageCount();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Starts over if the map's layers have changed since the caches were built
+     */
+    protected void checkLayers() {
+        int index = 0;
+        boolean changed = false;
+
+        for (BlockMapLayer layer : map.getLayers()) {
+            if (index >= layers.size() || layers.get(index) != layer) {
+                changed = true;
+                break;
+            }
+
+            index++;
+        }
+
+        if (!changed && index == layers.size()) {
+            return;
+        }
+
+        layers.clear();
+
+        for (BlockMapLayer layer : map.getLayers()) {
+            layers.add(layer);
+        }
+
+        clear();
+    }
+
+    /**
+     * Forgets every cache
+     */
+    protected void clear() {
+        layerCaches = new int[layers.size()][decalCaches.length];
+
+        for (int[] chunkCaches : layerCaches) {
+            Arrays.fill(chunkCaches, NOT_CACHED);
+        }
+
+        Arrays.fill(decalCaches, NOT_CACHED);
+        Arrays.fill(decalCacheSizes, 0);
+        Arrays.fill(decalVersions, -1);
+
+        if (cache != null) {
+            cache.clear();
+        }
+
+        used = 0;
+        lastCacheId = NOT_CACHED;
+    }
+
+    /**
+     * Disposes of the sprite cache
+     */
+    public void dispose() {
+        if (cache != null) {
+            cache.dispose();
+            cache = null;
+        }
+    }
+}
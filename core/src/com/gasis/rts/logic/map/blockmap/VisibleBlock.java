@@ -1,10 +1,11 @@
 package com.gasis.rts.logic.map.blockmap;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
 import com.gasis.rts.logic.render.RenderQueueInterface;
 import com.gasis.rts.logic.render.Renderable;
 import com.gasis.rts.resources.Resources;
-import com.gasis.rts.utils.Constants;
+import com.gasis.rts.resources.TextureRegions;
 
 import java.util.Deque;
 import java.util.LinkedList;
@@ -61,6 +62,15 @@ public class VisibleBlock extends Block implements Renderable {
         return null;
     }
 
+    /**
+     * Gets the images of the block from the bottom one up
+     *
+     * @return
+     */
+    public Iterable<BlockImage> getImages() {
+        return images;
+    }
+
     /**
      * Removes an image from the block
      *
@@ -80,7 +90,30 @@ public class VisibleBlock extends Block implements Renderable {
     public void render(SpriteBatch batch, Resources res, RenderQueueInterface renderQueue) {
         for (BlockImage image : images) {
             batch.draw(
-                    res.atlas(Constants.FOLDER_ATLASES + image.atlas).findRegion(image.texture),
+                    TextureRegions.get(res, image.region),
+                    x * Block.BLOCK_WIDTH + image.offsetX,
+                    y * Block.BLOCK_HEIGHT + image.offsetY,
+                    image.width / 2,
+                    image.height / 2,
+                    image.width,
+                    image.height,
+                    image.scale,
+                    image.scale,
+                    image.rotation
+            );
+        }
+    }
+
+    /**
+     * Adds the block's images to a sprite cache, the same way they are rendered
+     *
+     * @param cache sprite cache that is currently being defined
+     * @param res   object used to access assets
+     */
+    public void cache(SpriteCache cache, Resources res) {
+        for (BlockImage image : images) {
+            cache.add(
+                    TextureRegions.get(res, image.region),
                     x * Block.BLOCK_WIDTH + image.offsetX,
                     y * Block.BLOCK_HEIGHT + image.offsetY,
                     image.width / 2,
@@ -10,6 +10,7 @@ import com.gasis.rts.logic.player.Player;
 import com.gasis.rts.logic.render.RenderQueueInterface;
 import com.gasis.rts.logic.render.Renderable;
 import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.utils.Constants;
 
 import java.util.HashSet;
@@ -20,6 +21,12 @@ import java.util.Set;
  */
 public abstract class GameObject implements Updatable, Renderable, Damageable, TechListener {
 
+    // texture region handles of the hp bar
+    protected static final int HP_BAR_BACKGROUND_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.HP_BAR_BACKGROUND_TEXTURE);
+    protected static final int HP_BAR_GREEN_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.HP_BAR_GREEN_TEXTURE);
+    protected static final int HP_BAR_YELLOW_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.HP_BAR_YELLOW_TEXTURE);
+    protected static final int HP_BAR_RED_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.HP_BAR_RED_TEXTURE);
+
     // the object type identifier (e.g. All tanks in a group have code T-21)
     protected String code;
 
@@ -60,6 +67,15 @@ public abstract class GameObject implements Updatable, Renderable, Damageable, T
     // the horizontal offset of the hp bar
     protected float hpBarXOffset = 0f;
 
+    // renders the hp bar and other indicators in the render queue's top layer, so that
+    // they're drawn together instead of switching textures between objects
+    protected Renderable overlay = new Renderable() {
+        @Override
+        public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+            renderOverlay(batch, resources);
+        }
+    };
+
     // the name of the object's control context
     protected String controlContextName;
 
@@ -87,6 +103,9 @@ public abstract class GameObject implements Updatable, Renderable, Damageable, T
     // the name of the texture atlas that holds junk texture
     protected String junkAtlas;
 
+    // texture region handle of the junk texture
+    protected int junkRegion = TextureRegions.NONE;
+
     // how much the object heals itself (hp per second)
     protected float healingSpeed;
 
@@ -437,6 +456,30 @@ public abstract class GameObject implements Updatable, Renderable, Damageable, T
      */
     public abstract float getOccupiedBlockY();
 
+    /**
+     * Queues the object's hp bar and other indicators to be rendered above all objects.
+     * They're left out when the map is zoomed out
+     *
+     * @param renderQueue render queue to add the indicators to
+     */
+    protected void queueOverlay(RenderQueueInterface renderQueue) {
+        if (renderQueue.isLowDetail()) {
+            return;
+        }
+
+        renderQueue.addTopLayerRenderable(overlay, getCenterX(), getCenterY(), TextureRegions.getTextureKey(HP_BAR_BACKGROUND_REGION));
+    }
+
+    /**
+     * Renders the object's hp bar and other indicators
+     *
+     * @param batch     sprite batch to draw to
+     * @param resources game's assets
+     */
+    protected void renderOverlay(SpriteBatch batch, Resources resources) {
+        renderHp(batch, resources);
+    }
+
     /**
      * Renders the object's hp bar
      *
@@ -445,17 +488,17 @@ public abstract class GameObject implements Updatable, Renderable, Damageable, T
      */
     protected void renderHp(SpriteBatch batch, Resources resources) {
         if (renderHp) {
-            batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_BACKGROUND_TEXTURE),
+            batch.draw(TextureRegions.get(resources, HP_BAR_BACKGROUND_REGION),
                     hpBarXOffset + getCenterX() - hpBarWidth / 2f, y + height + hpBarYOffset, hpBarWidth, 0.1f);
 
             if (hp / defensiveSpecs.getMaxHp() >= 0.66f) {
-                batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_GREEN_TEXTURE),
+                batch.draw(TextureRegions.get(resources, HP_BAR_GREEN_REGION),
                         hpBarXOffset + getCenterX() - hpBarWidth / 2f + 0.025f, y + height + 0.025f + hpBarYOffset, hpBarWidth * hp / defensiveSpecs.getMaxHp() - 0.05f, 0.05f);
             } else if (hp / defensiveSpecs.getMaxHp() >= 0.33f) {
-                batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_YELLOW_TEXTURE),
+                batch.draw(TextureRegions.get(resources, HP_BAR_YELLOW_REGION),
                         hpBarXOffset + getCenterX() - hpBarWidth / 2f + 0.025f, y + height + 0.025f + hpBarYOffset, hpBarWidth * hp / defensiveSpecs.getMaxHp() - 0.05f, 0.05f);
             } else {
-                batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_RED_TEXTURE),
+                batch.draw(TextureRegions.get(resources, HP_BAR_RED_REGION),
                         hpBarXOffset + getCenterX() - hpBarWidth / 2f + 0.025f, y + height + 0.025f + hpBarYOffset, hpBarWidth * hp / defensiveSpecs.getMaxHp() - 0.05f, 0.05f);
             }
         }
@@ -620,6 +663,24 @@ public abstract class GameObject implements Updatable, Renderable, Damageable, T
         this.junkAtlas = junkAtlas;
     }
 
+    /**
+     * Gets the texture region handle of the junk texture
+     *
+     * @return
+     */
+    public int getJunkRegion() {
+        return junkRegion;
+    }
+
+    /**
+     * Sets the texture region handle of the junk texture
+     *
+     * @param junkRegion new junk region handle
+     */
+    public void setJunkRegion(int junkRegion) {
+        this.junkRegion = junkRegion;
+    }
+
     /**
      * Called when a tech gets researched
      *
@@ -3,6 +3,8 @@ package com.gasis.rts.logic.object;
 import com.badlogic.gdx.files.FileHandle;
 import com.gasis.rts.filehandling.FileLineReader;
 import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
 
 /**
  * Loads a game object from a file
@@ -52,6 +54,9 @@ public abstract class GameObjectLoader {
     // the name of the texture atlas that holds junk texture
     protected String junkAtlas;
 
+    // texture region handle of the junk texture
+    protected int junkRegion = TextureRegions.NONE;
+
     // object's healing speed (hp per second)
     protected float healingSpeed = 0.25f;
 
@@ -119,6 +124,10 @@ public abstract class GameObjectLoader {
         } catch (Exception ex) {
         }
 
+        if (junkAtlas != null) {
+            junkRegion = TextureRegions.register(Constants.FOLDER_ATLASES + junkAtlas, junkTexture);
+        }
+
         try {
             hpBarWidth = Float.parseFloat(reader.readLine("hp bar width"));
         } catch (Exception ex) {
@@ -4,6 +4,8 @@ import com.gasis.rts.filehandling.FileLineReader;
 import com.gasis.rts.logic.object.combat.FireSource;
 import com.gasis.rts.logic.object.combat.RotatingGun;
 import com.gasis.rts.math.Point;
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
 
 import java.util.*;
 
@@ -218,6 +220,7 @@ public class LoaderUtils {
 
         rotatingGun.setAtlas(reader.readLine(prefix + " atlas"));
         rotatingGun.setTextures(gunTextures);
+        rotatingGun.setRegions(TextureRegions.register(Constants.FOLDER_ATLASES + rotatingGun.getAtlas(), gunTextures));
         rotatingGun.setWidth(Float.parseFloat(reader.readLine(prefix + " width")));
         rotatingGun.setHeight(Float.parseFloat(reader.readLine(prefix + " height")));
         rotatingGun.setRecoilResistance(Float.parseFloat(reader.readLine(prefix + " recoil resistance")));
@@ -21,6 +21,7 @@ import com.gasis.rts.logic.task.Task;
 import com.gasis.rts.logic.tech.Tech;
 import com.gasis.rts.math.Point;
 import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.utils.Constants;
 
 import java.util.*;
@@ -30,6 +31,20 @@ import java.util.*;
  */
 public class Building extends GameObject implements UnitProducer, TechReasearcher {
 
+    // texture region handles of the general building textures
+    protected static final int NO_ELECTRICITY_INDICATOR_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.NO_ELECTRICITY_INDICATOR_TEXTURE);
+    protected static final int PRODUCTION_PROGRESS_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.PRODUCTION_PROGRESS_TEXTURE);
+    protected static final int CONSTRUCTION_HP_BAR_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.CONSTRUCTION_HP_BAR_TEXTURE);
+
+    // texture region handles of the damage point textures
+    protected static final int[] DAMAGE_POINT_REGIONS = new int[Constants.BUILDING_DAMAGE_TEXTURE_COUNT];
+
+    static {
+        for (int i = 0; i < DAMAGE_POINT_REGIONS.length; i++) {
+            DAMAGE_POINT_REGIONS[i] = TextureRegions.register(Constants.BUILDING_DAMAGE_ATLAS, Constants.BUILDING_DAMAGE_PREFIX + (1 + i));
+        }
+    }
+
     // used to generate random data
     protected final Random random = new Random();
 
@@ -39,6 +54,10 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
     // the list of textures that are being used when the building is damaged
     protected List<String> damagedTextures;
 
+    // texture region handles of the building's texture and damaged textures
+    protected int textureRegion;
+    protected int[] damagedRegions;
+
     // building frame animations' names and coordinates
     protected Map<Point, String> frameAnimations;
 
@@ -184,6 +203,15 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         this.damagedTextures = damagedTextures;
     }
 
+    /**
+     * Sets the texture region handles of the damaged textures
+     *
+     * @param damagedRegions handles in the same order as the damaged textures
+     */
+    public void setDamagedRegions(int[] damagedRegions) {
+        this.damagedRegions = damagedRegions;
+    }
+
     /**
      * Sets the render gather point flag
      *
@@ -531,6 +559,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         unit.setOwner(owner);
 
         map.occupyBlock((short) spawn.x, (short) spawn.y, unit);
+        map.getObjectGrid().update(unit, (int) spawn.x, (int) spawn.y);
         unit.setOccupiedBlock(spawn);
 
         notifyUnitProductionListeners(unit);
@@ -629,6 +658,15 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         this.texture = texture;
     }
 
+    /**
+     * Sets the texture region handle of the building's texture
+     *
+     * @param textureRegion handle of the building's texture
+     */
+    public void setTextureRegion(int textureRegion) {
+        this.textureRegion = textureRegion;
+    }
+
     /**
      * De-occupies the building's occupied blocks
      */
@@ -660,6 +698,8 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
                 map.occupyBlockPassable((short) block.x, (short) block.y, this);
             }
         }
+
+        map.getObjectGrid().update(this, (int) (getCenterX() / Block.BLOCK_WIDTH), (int) (getCenterY() / Block.BLOCK_HEIGHT));
     }
 
     /**
@@ -799,7 +839,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
 
             damagePointTextures.add(new DamageTexture(
                     point,
-                    Constants.BUILDING_DAMAGE_PREFIX + (1 + random.nextInt(Constants.BUILDING_DAMAGE_TEXTURE_COUNT))
+                    DAMAGE_POINT_REGIONS[random.nextInt(DAMAGE_POINT_REGIONS.length)]
             ));
         }
     }
@@ -895,7 +935,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         if (!destroyed) {
             if (!renderDamagedTextures(batch, resources)) {
                 batch.draw(
-                        resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(texture),
+                        TextureRegions.get(resources, textureRegion),
                         x,
                         y,
                         width,
@@ -913,26 +953,46 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
                 }
             }
 
-            renderHp(batch, resources);
-
             if (renderGatherPoint && gatherPoint != null) {
                 renderGatherPoint(batch, resources, renderQueue);
             }
 
-            if (producing || researching) {
-                renderProgress(batch, resources);
-            }
+            queueOverlay(renderQueue);
+        }
+    }
 
-            if (!electricityAvailable && electricityRequirement > 0 && timeSinceElectricityIndicatorFlash >= noElectricityIndicatorPeriod) {
-                batch.draw(
-                        resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.NO_ELECTRICITY_INDICATOR_TEXTURE),
-                        getCenterX() - 0.25f,
-                        getCenterY() - 0.25f,
-                        0.5f,
-                        0.5f
-                );
-            }
+    /**
+     * Renders the building's hp bar, progress and electricity indicator
+     *
+     * @param batch     sprite batch to draw to
+     * @param resources game's assets
+     */
+    @Override
+    protected void renderOverlay(SpriteBatch batch, Resources resources) {
+        renderHp(batch, resources);
+
+        if (producing || researching) {
+            renderProgress(batch, resources);
         }
+
+        if (!electricityAvailable && electricityRequirement > 0 && timeSinceElectricityIndicatorFlash >= noElectricityIndicatorPeriod) {
+            batch.draw(
+                    TextureRegions.get(resources, NO_ELECTRICITY_INDICATOR_REGION),
+                    getCenterX() - 0.25f,
+                    getCenterY() - 0.25f,
+                    0.5f,
+                    0.5f
+            );
+        }
+    }
+
+    /**
+     * Gets the key of the texture the building is drawn from
+     *
+     * @return
+     */
+    public int getTextureKey() {
+        return TextureRegions.getTextureKey(textureRegion);
     }
 
     /**
@@ -944,7 +1004,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
     protected void renderDamagePointTextures(SpriteBatch batch, Resources resources) {
         for (DamageTexture damageTexture : damagePointTextures) {
             batch.draw(
-                    resources.atlas(Constants.BUILDING_DAMAGE_ATLAS).findRegion(damageTexture.texture),
+                    TextureRegions.get(resources, damageTexture.region),
                     getCenterX() - damageTexture.point.x - DAMAGE_POINT_TEXTURE_WIDTH / 2f,
                     getCenterY() - damageTexture.point.y - DAMAGE_POINT_TEXTURE_WIDTH / 2f,
                     DAMAGE_POINT_TEXTURE_WIDTH,
@@ -960,7 +1020,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
      * @param resources game's assets
      */
     protected boolean renderDamagedTextures(SpriteBatch batch, Resources resources) {
-        if (beingConstructed || damagedTextures == null || damagedTextures.isEmpty()) {
+        if (beingConstructed || damagedRegions == null || damagedRegions.length == 0) {
             return false;
         }
 
@@ -973,7 +1033,7 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         }
 
         batch.draw(
-                resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(damagedTextures.get(damagedTextureIndex)),
+                TextureRegions.get(resources, damagedRegions[damagedTextureIndex]),
                 x,
                 y,
                 width,
@@ -1002,10 +1062,10 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
      * @param resources game's assets
      */
     protected void renderProgress(SpriteBatch batch, Resources resources) {
-        batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_BACKGROUND_TEXTURE),
+        batch.draw(TextureRegions.get(resources, HP_BAR_BACKGROUND_REGION),
                 getCenterX() - hpBarWidth / 2f, y + height + hpBarYOffset - 0.15f, hpBarWidth, 0.1f);
 
-        batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.PRODUCTION_PROGRESS_TEXTURE),
+        batch.draw(TextureRegions.get(resources, PRODUCTION_PROGRESS_REGION),
                 getCenterX() - hpBarWidth / 2f + 0.025f, y + height + 0.025f + hpBarYOffset - 0.15f, hpBarWidth * progress - 0.05f, 0.05f);
     }
 
@@ -1020,10 +1080,10 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
         if (!beingConstructed) {
             super.renderHp(batch, resources);
         } else {
-            batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.HP_BAR_BACKGROUND_TEXTURE),
+            batch.draw(TextureRegions.get(resources, HP_BAR_BACKGROUND_REGION),
                     hpBarXOffset + getCenterX() - hpBarWidth / 2f, y + height + hpBarYOffset, hpBarWidth, 0.1f);
 
-            batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.CONSTRUCTION_HP_BAR_TEXTURE),
+            batch.draw(TextureRegions.get(resources, CONSTRUCTION_HP_BAR_REGION),
                     hpBarXOffset + getCenterX() - hpBarWidth / 2f + 0.025f, y + height + 0.025f + hpBarYOffset, hpBarWidth * hp / defensiveSpecs.getMaxHp() - 0.05f, 0.05f);
         }
     }
@@ -1118,11 +1178,11 @@ public class Building extends GameObject implements UnitProducer, TechReasearche
     protected class DamageTexture {
 
         protected Point point;
-        protected String texture;
+        protected int region;
 
-        protected DamageTexture(Point point, String texture) {
+        protected DamageTexture(Point point, int region) {
             this.point = point;
-            this.texture = texture;
+            this.region = region;
         }
     }
 
@@ -9,6 +9,8 @@ import com.gasis.rts.logic.task.ElectricityProviderTask;
 import com.gasis.rts.logic.task.FinanceProviderTask;
 import com.gasis.rts.logic.task.ResourceProviderTask;
 import com.gasis.rts.math.Point;
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -40,6 +42,10 @@ public class BuildingLoader extends GameObjectLoader {
     // the texture used when the building is being placed
     protected String placementTexture;
 
+    // texture region handles of the building's texture and placement texture
+    protected int textureRegion;
+    protected int placementRegion;
+
     // the names of the frame animations and their center coordinates relative to
     // the building's center
     protected Map<Point, String> frameAnimations;
@@ -83,6 +89,9 @@ public class BuildingLoader extends GameObjectLoader {
     // the building's damaged textures
     protected List<String> damagedTextures;
 
+    // texture region handles of the damaged textures
+    protected int[] damagedRegions;
+
     // the building's damage points
     protected List<Point> damagePoints;
 
@@ -245,6 +254,11 @@ public class BuildingLoader extends GameObjectLoader {
         readTexturesAndAnimations(reader);
         readTaskData(reader);
 
+        String atlasPath = Constants.FOLDER_ATLASES + atlas;
+        textureRegion = TextureRegions.register(atlasPath, texture);
+        placementRegion = TextureRegions.register(atlasPath, placementTexture);
+        damagedRegions = TextureRegions.register(atlasPath, damagedTextures);
+
         widthInBlocks = Byte.parseByte(reader.readLine("width in blocks"));
         heightInBlocks = Byte.parseByte(reader.readLine("height in blocks"));
 
@@ -290,6 +304,7 @@ public class BuildingLoader extends GameObjectLoader {
         building.setWidthInBlocks(widthInBlocks);
         building.setHeightInBlocks(heightInBlocks);
         building.setTexture(texture);
+        building.setTextureRegion(textureRegion);
         building.setCode(code);
         building.setDefensiveSpecs(defensiveSpecs);
         building.setHp(defensiveSpecs.getMaxHp());
@@ -305,12 +320,14 @@ public class BuildingLoader extends GameObjectLoader {
         building.setJunkScale(junkScale);
         building.setJunkTexture(junkTexture);
         building.setJunkAtlas(junkAtlas);
+        building.setJunkRegion(junkRegion);
         building.setElectricityRequirement(electricityRequirement);
         building.setHealingSpeed(healingSpeed);
         building.setPassable(passable);
 
         if (damagedTextures != null && damagedTextures.size() > 0) {
             building.setDamagedTextures(damagedTextures);
+            building.setDamagedRegions(damagedRegions);
         }
 
         if (damagePoints != null && damagePoints.size() > 0) {
@@ -386,6 +403,15 @@ public class BuildingLoader extends GameObjectLoader {
         return placementTexture;
     }
 
+    /**
+     * Gets the texture region handle of the building's placement texture
+     *
+     * @return
+     */
+    public int getPlacementRegion() {
+        return placementRegion;
+    }
+
     /**
      * Gets the name of the loaded object's texture atlas
      *
@@ -452,14 +452,9 @@ public class OffensiveBuilding extends Building implements Aimable, DamageValueP
     @Override
     @SuppressWarnings("Duplicates")
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+        // the hp bar is queued to the top layer, so it's drawn above the guns anyway
         if (!destroyed) {
-            if (renderHp) {
-                renderHp = false;
-                super.render(batch, resources, renderQueue);
-                renderHp = true;
-            } else {
-                super.render(batch, resources, renderQueue);
-            }
+            super.render(batch, resources, renderQueue);
         }
 
         for (RotatingGun gun : rotatingGuns.values()) {
@@ -471,10 +466,6 @@ public class OffensiveBuilding extends Building implements Aimable, DamageValueP
         if (firingLogic != null) {
             firingLogic.render(batch, resources, renderQueue);
         }
-
-        if (!destroyed) {
-            renderHp(batch, resources);
-        }
     }
 
     /**
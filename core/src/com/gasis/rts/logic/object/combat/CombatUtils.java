@@ -96,6 +96,7 @@ public class CombatUtils {
 
         gun.setAtlas(data.getKey().getAtlas());
         gun.setTextures(data.getKey().getTextures());
+        gun.setRegions(data.getKey().getRegions());
         gun.setWidth(data.getKey().getWidth());
         gun.setHeight(data.getKey().getHeight());
         gun.setRecoil(data.getKey().getRecoil());
@@ -8,6 +8,7 @@ import com.gasis.rts.logic.map.blockmap.BlockMap;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.building.Landmine;
 import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.utils.Constants;
 
 import java.util.ArrayList;
@@ -19,6 +20,20 @@ import java.util.Random;
  */
 public class DestructionHandler implements TargetReachListener, LandmineListener {
 
+    // texture region handles of the crater textures
+    protected static final int[] LARGE_CRATER_REGIONS = new int[Constants.LARGE_CRATER_COUNT];
+    protected static final int[] SMALL_CRATER_REGIONS = new int[Constants.SMALL_CRATER_COUNT];
+
+    static {
+        for (int i = 0; i < LARGE_CRATER_REGIONS.length; i++) {
+            LARGE_CRATER_REGIONS[i] = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.CRATER_TEXTURE_ATLAS, Constants.LARGE_CRATER_PREFIX + i);
+        }
+
+        for (int i = 0; i < SMALL_CRATER_REGIONS.length; i++) {
+            SMALL_CRATER_REGIONS[i] = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.CRATER_TEXTURE_ATLAS, Constants.SMALL_CRATER_PREFIX + i);
+        }
+    }
+
     // the game's map
     protected BlockMap map;
 
@@ -146,12 +161,11 @@ public class DestructionHandler implements TargetReachListener, LandmineListener
      * @param object object to leave junk for
      */
     protected void leaveJunk(GameObject object) {
-        if (object.getJunkTexture() == null || object.getJunkAtlas() == null) {
+        if (object.getJunkRegion() == TextureRegions.NONE) {
             return;
         }
 
-        map.addJunk(object.getJunkAtlas(),
-                object.getJunkTexture(),
+        map.addJunk(object.getJunkRegion(),
                 (short) (object.getCenterX() / Block.BLOCK_WIDTH),
                 (short) (object.getCenterY() / Block.BLOCK_HEIGHT),
                 Block.BLOCK_WIDTH / 2f,
@@ -193,19 +207,19 @@ public class DestructionHandler implements TargetReachListener, LandmineListener
 
         float textureScale = 1.2f;
 
-        String craterTexture = "";
+        int craterRegion = TextureRegions.NONE;
 
         if (scale == FireSource.HEAVY || scale == FireSource.MEDIUM) {
-            craterTexture = Constants.LARGE_CRATER_PREFIX + random.nextInt(Constants.LARGE_CRATER_COUNT);
+            craterRegion = LARGE_CRATER_REGIONS[random.nextInt(LARGE_CRATER_REGIONS.length)];
 
             if (scale == FireSource.MEDIUM) {
                 textureScale = Math.min(1.25f, 0.75f + random.nextFloat());
             }
         } else if (scale == FireSource.SMALL) {
             textureScale = 0.4f;
-            craterTexture = Constants.SMALL_CRATER_PREFIX + random.nextInt(Constants.SMALL_CRATER_COUNT);
+            craterRegion = SMALL_CRATER_REGIONS[random.nextInt(SMALL_CRATER_REGIONS.length)];
         }
 
-        map.addJunk(Constants.CRATER_TEXTURE_ATLAS, craterTexture, blockX, blockY, offsetX, offsetY, textureScale);
+        map.addJunk(craterRegion, blockX, blockY, offsetX, offsetY, textureScale);
     }
 }
@@ -10,7 +10,7 @@ import com.gasis.rts.logic.render.Renderable;
 import com.gasis.rts.math.MathUtils;
 import com.gasis.rts.math.Point;
 import com.gasis.rts.resources.Resources;
-import com.gasis.rts.utils.Constants;
+import com.gasis.rts.resources.TextureRegions;
 
 import java.util.List;
 
@@ -30,6 +30,9 @@ public class RotatingGun implements Updatable, Renderable, Rotatable, Aimable, D
     // defined in the Unit class
     protected List<String> textures;
 
+    // texture region handles of the gun's textures
+    protected int[] regions;
+
     // coordinates of the point which the gun rotates around
     protected float x;
     protected float y;
@@ -506,6 +509,24 @@ public class RotatingGun implements Updatable, Renderable, Rotatable, Aimable, D
         return textures;
     }
 
+    /**
+     * Sets the texture region handles of the gun's textures
+     *
+     * @param regions handles in the same order as the textures
+     */
+    public void setRegions(int[] regions) {
+        this.regions = regions;
+    }
+
+    /**
+     * Gets the texture region handles of the gun's textures
+     *
+     * @return
+     */
+    public int[] getRegions() {
+        return regions;
+    }
+
     /**
      * Adds a new fire source to the gun
      *
@@ -1006,7 +1027,7 @@ public class RotatingGun implements Updatable, Renderable, Rotatable, Aimable, D
 
         if (!destroyed) {
             batch.draw(
-                    resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(textures.get(facingDirection)),
+                    TextureRegions.get(resources, regions[facingDirection]),
                     x + xOffset - width / 2f,
                     y + yOffset - height / 2f,
                     width,
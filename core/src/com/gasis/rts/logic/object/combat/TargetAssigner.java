@@ -2,6 +2,7 @@ package com.gasis.rts.logic.object.combat;
 
 import com.gasis.rts.logic.map.blockmap.Block;
 import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.map.blockmap.ObjectGrid;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.building.Building;
 import com.gasis.rts.logic.object.building.BuildingConstructionListener;
@@ -14,6 +15,7 @@ import com.gasis.rts.logic.player.Player;
 import com.gasis.rts.logic.player.controls.BuildingPlacementListener;
 import com.gasis.rts.math.MathUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -21,12 +23,22 @@ import java.util.List;
  */
 public class TargetAssigner extends MovementAdapter implements BuildingPlacementListener, BuildingConstructionListener, TargetRemovalListener, UnitProductionListener, SiegeModeListener {
 
+    // how many of the closest enemies are tried as targets when looking for one
+    protected static final int MAX_TARGET_CANDIDATES = 16;
+
     // all players in the game
     protected List<Player> players;
 
     // the game's map
     protected BlockMap map;
 
+    // enemies close to an object that is being notified about or that is looking for
+    // a target (kept to avoid creating a new list every time)
+    protected List<GameObject> nearbyObjects = new ArrayList<GameObject>();
+
+    // the closest enemies of an object that is looking for a target
+    protected GameObject[] nearestEnemies = new GameObject[MAX_TARGET_CANDIDATES];
+
     /**
      * Sets the game players
      */
@@ -100,48 +112,33 @@ public class TargetAssigner extends MovementAdapter implements BuildingPlacement
     }
 
     /**
-     * Notifies all enemies of the given object that it exists
+     * Notifies all enemies of the given object that it exists. Only the enemies that
+     * are close enough to see or shoot at the object are looked at
      *
      * @param object object to notify about
      */
     protected void notifyEnemiesAboutExistence(GameObject object) {
-        for (Player player : players) {
-            if (player.isAllied(object.getOwner()) || player == object.getOwner()) {
-                continue;
-            }
+        // assigning targets can get back here, so every call only uses the part of
+        // the list it added
+        int first = nearbyObjects.size();
 
-            assignTargetToEnemyUnits(player, object);
-            assignTargetToEnemyBuildings(player, object);
-        }
-    }
+        map.getObjectGrid().findInRange(object.getCenterX() / Block.BLOCK_WIDTH, object.getCenterY() / Block.BLOCK_HEIGHT,
+                map.getObjectGrid().getMaxReach(), object.getOwner(), ObjectGrid.ENEMIES, nearbyObjects);
 
-    /**
-     * Sets the target object for the object's enemy units if they have no target and the
-     * object is in range
-     *
-     * @param enemy  enemy player
-     * @param object target object
-     */
-    protected void assignTargetToEnemyUnits(Player enemy, GameObject object) {
-        for (Unit unit : enemy.getUnits()) {
-            assignTargetToUnit(unit, object);
-        }
-    }
+        int last = nearbyObjects.size();
 
-    /**
-     * Sets the target object for the object's enemy buildings if they have no target and the
-     * object is in range
-     *
-     * @param enemy  enemy player
-     * @param object target object
-     */
-    protected void assignTargetToEnemyBuildings(Player enemy, GameObject object) {
-        for (Building building : enemy.getBuildings()) {
-            if (!(building instanceof OffensiveBuilding) || building.isBeingConstructed()) {
-                continue;
+        for (int i = first; i < last; i++) {
+            GameObject enemy = nearbyObjects.get(i);
+
+            if (enemy instanceof Unit) {
+                assignTargetToUnit((Unit) enemy, object);
+            } else if (enemy instanceof OffensiveBuilding && !((Building) enemy).isBeingConstructed()) {
+                assignTargetToBuilding((OffensiveBuilding) enemy, object);
             }
+        }
 
-            assignTargetToBuilding((OffensiveBuilding) building, object);
+        while (nearbyObjects.size() > first) {
+            nearbyObjects.remove(nearbyObjects.size() - 1);
         }
     }
 
@@ -188,79 +185,55 @@ public class TargetAssigner extends MovementAdapter implements BuildingPlacement
     }
 
     /**
-     * Tries to find and assign a target to the given object
+     * Tries to find and assign a target to the given object. The closest enemies are
+     * tried first, so the object aims at the closest one it can shoot at
      *
      * @param object object to find target for
      */
-    @SuppressWarnings("Duplicates")
     protected void assignTargetForObject(GameObject object) {
         if (hasTarget(object) && (!(object instanceof Unit) || ((Unit) object).isMainTargetReachable())) {
             return;
         }
 
-        short centerBlockX = (short) (object.getCenterX() / Block.BLOCK_WIDTH);
-        short centerBlockY = (short) (object.getCenterY() / Block.BLOCK_HEIGHT);
+        int count = map.getObjectGrid().findNearest(object.getCenterX() / Block.BLOCK_WIDTH, object.getCenterY() / Block.BLOCK_HEIGHT,
+                getSearchRange(object), object.getOwner(), ObjectGrid.ENEMIES, nearestEnemies);
 
-        short sightRangeX = (short) (object.getDefensiveSpecs().getSightRange() / Block.BLOCK_WIDTH);
-        short sightRangeY = (short) (object.getDefensiveSpecs().getSightRange() / Block.BLOCK_HEIGHT);
+        // assigning targets can get back here and overwrite the array, so the
+        // enemies are copied to the end of the list first
+        int first = nearbyObjects.size();
 
-        if (object instanceof Unit && ((Unit) object).isInSiegeMode()) {
-            sightRangeX = (short) (object.getDefensiveSpecs().getSiegeModeSightRange() / Block.BLOCK_WIDTH);
-            sightRangeY = (short) (object.getDefensiveSpecs().getSiegeModeSightRange() / Block.BLOCK_HEIGHT);
+        for (int i = 0; i < count; i++) {
+            nearbyObjects.add(nearestEnemies[i]);
         }
 
-        /*
-         *   WARNING: the following code might appear unpleasant to some viewers and
-         *   cause brain damage.
-         *
-         *   VIEWER DISCRETION IS ADVISED
-         */
-
-        for (int distance = 1; distance <= Math.max(sightRangeX, sightRangeY); distance++) {
-            if (hasTarget(object) && (!(object instanceof Unit) || ((Unit) object).hasSecondaryTarget())) {
-                break;
-            }
-
-            for (int x = centerBlockX - distance; x <= centerBlockX + distance; x++) {
-                if (hasTarget(object) && (!(object instanceof Unit) || ((Unit) object).hasSecondaryTarget())) {
-                    break;
-                }
-
-                GameObject occupyingObject = map.getOccupyingObject((short) x, (short) (centerBlockY - distance));
-
-                if (occupyingObject != null && occupyingObject != object && occupyingObject.getOwner() != object.getOwner() && !object.getOwner().isAllied(occupyingObject.getOwner())) {
-                    assignTargetToObject(object, occupyingObject);
-                }
-
-                occupyingObject = map.getOccupyingObject((short) x, (short) (centerBlockY + distance));
-
-                if (occupyingObject != null && occupyingObject != object && occupyingObject.getOwner() != object.getOwner() && !object.getOwner().isAllied(occupyingObject.getOwner())) {
-                    assignTargetToObject(object, occupyingObject);
-                }
-            }
-
+        for (int i = first; i < first + count; i++) {
             if (hasTarget(object) && (!(object instanceof Unit) || ((Unit) object).hasSecondaryTarget())) {
                 break;
             }
 
-            for (int y = centerBlockY - distance; y <= centerBlockY + distance; y++) {
-                if (hasTarget(object) && (!(object instanceof Unit) || ((Unit) object).hasSecondaryTarget())) {
-                    break;
-                }
-
-                GameObject occupyingObject = map.getOccupyingObject((short) (centerBlockX - distance), (short) y);
-
-                if (occupyingObject != null && occupyingObject != object && occupyingObject.getOwner() != object.getOwner() && !object.getOwner().isAllied(occupyingObject.getOwner())) {
-                    assignTargetToObject(object, occupyingObject);
-                }
+            assignTargetToObject(object, nearbyObjects.get(i));
+        }
 
-                occupyingObject = map.getOccupyingObject((short) (centerBlockX + distance), (short) y);
+        while (nearbyObjects.size() > first) {
+            nearbyObjects.remove(nearbyObjects.size() - 1);
+        }
+    }
 
-                if (occupyingObject != null && occupyingObject != object && occupyingObject.getOwner() != object.getOwner() && !object.getOwner().isAllied(occupyingObject.getOwner())) {
-                    assignTargetToObject(object, occupyingObject);
-                }
-            }
+    /**
+     * Gets how far (in blocks) from an object to look for targets, enemies further away
+     * wouldn't be assigned to it anyway
+     *
+     * @param object object to find target for
+     * @return
+     */
+    protected float getSearchRange(GameObject object) {
+        if (object instanceof Unit && ((Unit) object).isInSiegeMode()) {
+            return ((Unit) object).getOffensiveSpecs().getSiegeModeAttackRange();
+        } else if (object instanceof OffensiveBuilding) {
+            return ((OffensiveBuilding) object).getOffensiveSpecs().getAttackRange();
         }
+
+        return object.getDefensiveSpecs().getSightRange();
     }
 
     /**
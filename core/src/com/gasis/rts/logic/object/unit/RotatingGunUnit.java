@@ -328,14 +328,9 @@ public class RotatingGunUnit extends Unit {
     @Override
     @SuppressWarnings("Duplicates")
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+        // the hp bar is queued to the top layer, so it's drawn above the guns anyway
         if (!destroyed) {
-            if (renderHp) {
-                renderHp = false;
-                super.render(batch, resources, renderQueue);
-                renderHp = true;
-            } else {
-                super.render(batch, resources, renderQueue);
-            }
+            super.render(batch, resources, renderQueue);
         }
 
         // render the rotating guns
@@ -344,9 +339,24 @@ public class RotatingGunUnit extends Unit {
                 gun.render(batch, resources, renderQueue);
             }
         }
+    }
 
-        if (!destroyed) {
-            renderHp(batch, resources);
+    /**
+     * Renders the unit as a single image, the guns are baked into the image (if the unit
+     * has impostor textures) so only their projectiles are rendered
+     *
+     * @param batch       sprite batch to draw to
+     * @param resources   game's assets
+     * @param renderQueue render queue the projectiles are added to
+     */
+    @Override
+    protected void renderImpostor(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+        super.renderImpostor(batch, resources, renderQueue);
+
+        for (RotatingGun gun : guns.values()) {
+            if (gun.isCurrentlyPresent() && gun.getFiringLogic() != null) {
+                gun.getFiringLogic().render(batch, resources, renderQueue);
+            }
         }
     }
 
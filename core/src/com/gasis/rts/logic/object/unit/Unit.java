@@ -18,9 +18,11 @@ import com.gasis.rts.logic.object.unit.movement.MovementRequestHandler;
 import com.gasis.rts.logic.object.unit.movement.PathInfoProvider;
 import com.gasis.rts.logic.player.Player;
 import com.gasis.rts.logic.render.RenderQueueInterface;
+import com.gasis.rts.logic.render.Renderable;
 import com.gasis.rts.math.MathUtils;
 import com.gasis.rts.math.Point;
 import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.utils.Constants;
 
 import java.util.HashSet;
@@ -44,6 +46,9 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     public static final byte WEST = 6;
     public static final byte NORTH_WEST = 7;
 
+    // texture region handle of the selection circle
+    protected static final int SELECTION_CIRCLE_REGION = TextureRegions.register(Constants.GENERAL_TEXTURE_ATLAS, Constants.UNIT_SELECTION_CIRCLE_TEXTURE);
+
     // textures used by the unit (when standing still)
     // indexes of the textures must match the values of
     // the facing directions defined above
@@ -58,6 +63,9 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     // should the unit move one block in the facing direction when finished rotating
     protected boolean moveWhenFinishedRotating;
 
+    // how many more blocks the unit goes forward after reaching the one it is moving to
+    protected int blocksLeftToMove;
+
     // the animation that is played when the unit moves
     protected FrameAnimation movementAnimation;
 
@@ -115,6 +123,16 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     // defined above
     protected List<String> siegeModeTextures;
 
+    // texture region handles of the still, firing and siege mode textures,
+    // in the same order as the texture names
+    protected int[] stillRegions;
+    protected int[] firingRegions;
+    protected int[] siegeModeRegions;
+
+    // texture region handles of the impostor textures (the whole unit baked into a single
+    // image, used when the map is zoomed out), null if the unit has none
+    protected int[] impostorRegions;
+
     // does the unit use the firing texture for it's facing direction
     // when reloading
     protected boolean stayInFiringTextureWhenReloading = false;
@@ -137,6 +155,22 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     // should the unit's selection circle be rendered or not
     protected boolean renderSelectionCircle;
 
+    // renders the selection circle in the render queue's bottom layer
+    protected Renderable selectionCircle = new Renderable() {
+        @Override
+        public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+            renderSelectionCircle(batch, resources);
+        }
+    };
+
+    // renders the unit as a single image when the map is zoomed out
+    protected Renderable impostor = new Renderable() {
+        @Override
+        public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+            renderImpostor(batch, resources, renderQueue);
+        }
+    };
+
     // unit's movement listeners
     protected Set<MovementListener> movementListeners = new HashSet<MovementListener>();
 
@@ -178,6 +212,9 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     // the point the unit goes to after it destroys it's target and leaves siege mode
     protected Point pointToGoToAfterTargetDestroyed;
 
+    // used to get the unit's final destination from the path info provider
+    protected Point finalDestination = new Point();
+
     // the point the unit goes to after it leaves siege mode
     protected Point pointToGoToAfterLeavingSiegeMode;
 
@@ -422,10 +459,24 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
      */
     @Override
     public void move(byte direction) {
+        move(direction, 1);
+    }
+
+    /**
+     * Orders the object the given number of blocks in the given direction. The unit goes
+     * on from block to block without new orders, and stops early if a block is taken
+     *
+     * @param direction movement direction
+     * @param blocks    how many blocks to move
+     */
+    @Override
+    public void move(byte direction, int blocks) {
         if (moving || inSiegeMode || destroyed) {
             return;
         }
 
+        blocksLeftToMove = blocks - 1;
+
         if (direction != facingDirection) {
             rotateToDirection(direction);
             moveWhenFinishedRotating = true;
@@ -475,6 +526,7 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
      */
     protected boolean moveOneBlockForward() {
         if (forwardBlockOutOfMapBounds() || !destinationAvailable() || destroyed) {
+            blocksLeftToMove = 0;
             notifyDestinationListeners();
             return false;
         }
@@ -497,6 +549,7 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
         Point destination = getDestinationBlock();
 
         map.occupyBlock((short) destination.x, (short) destination.y, this);
+        map.getObjectGrid().update(this, (int) destination.x, (int) destination.y);
         occupiedBlock = destination;
     }
 
@@ -577,16 +630,31 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
                 notifyDestinationListeners();
 
                 if (enterSiegeModeWhenFinishedMoving) {
+                    blocksLeftToMove = 0;
                     handleSiegeModeTransition();
                     notifyUnableToMoveListeners();
                     enterSiegeModeWhenFinishedMoving = false;
                 }
 
                 handleLandmine();
+
+                // go on to the next block of the ordered run
+                if (blocksLeftToMove > 0 && !moving && !inSiegeMode && !destroyed) {
+                    blocksLeftToMove--;
+                    moveOneBlockForward();
+                }
             }
         }
     }
 
+    /**
+     * Makes the unit stop at the block it is moving to instead of going on
+     * with the rest of the blocks it was ordered to move
+     */
+    public void stopAtNextBlock() {
+        blocksLeftToMove = 0;
+    }
+
     /**
      * Handles going over a landmine
      */
@@ -1190,6 +1258,42 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
         return stillTextures;
     }
 
+    /**
+     * Sets the texture region handles of the still textures
+     *
+     * @param stillRegions handles in the same order as the still textures
+     */
+    public void setStillRegions(int[] stillRegions) {
+        this.stillRegions = stillRegions;
+    }
+
+    /**
+     * Sets the texture region handles of the firing textures
+     *
+     * @param firingRegions handles in the same order as the firing textures
+     */
+    public void setFiringRegions(int[] firingRegions) {
+        this.firingRegions = firingRegions;
+    }
+
+    /**
+     * Sets the texture region handles of the siege mode textures
+     *
+     * @param siegeModeRegions handles in the same order as the siege mode textures
+     */
+    public void setSiegeModeRegions(int[] siegeModeRegions) {
+        this.siegeModeRegions = siegeModeRegions;
+    }
+
+    /**
+     * Sets the texture region handles of the impostor textures
+     *
+     * @param impostorRegions handles in the same order as the facing directions, can be null
+     */
+    public void setImpostorRegions(int[] impostorRegions) {
+        this.impostorRegions = impostorRegions;
+    }
+
     /**
      * Checks if the unit is currently rotating
      *
@@ -1497,9 +1601,10 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
             return;
         }
 
-        if (siegeModeAvailable && !inSiegeMode && target != null && isMainTargetReachable() && (attackMove || movingToTarget || (!moving && rotatingToDirection == NONE && pathInfoProvider.getFinalDestination(this) == null))) {
+        if (siegeModeAvailable && !inSiegeMode && target != null && isMainTargetReachable() && (attackMove || movingToTarget || (!moving && rotatingToDirection == NONE && !pathInfoProvider.getFinalDestination(this, finalDestination)))) {
             if (moving) {
-                pointToGoToAfterTargetDestroyed = pathInfoProvider.getFinalDestination(this);
+                pointToGoToAfterTargetDestroyed = pathInfoProvider.getFinalDestination(this, finalDestination)
+                        ? new Point(finalDestination.x, finalDestination.y) : null;
             }
 
             setInSiegeMode(true);
@@ -1721,8 +1826,6 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
     @Override
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
         if (!destroyed) {
-            renderSelectionCircle(batch, resources);
-
             // render the siege mode transition animation if present
             if (siegeModeTransitionAnimation != null) {
                 siegeModeTransitionAnimation.render(batch, resources, renderQueue);
@@ -1736,9 +1839,9 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
             }
 
             // render the firing texture if is being used
-            if (siegeModeTransitionAnimation == null && movementAnimation == null && firingTextures != null && firingTextureTime <= firingTextureUsageDuration) {
+            if (siegeModeTransitionAnimation == null && movementAnimation == null && firingRegions != null && firingTextureTime <= firingTextureUsageDuration) {
                 batch.draw(
-                        resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(firingTextures.get(facingDirection)),
+                        TextureRegions.get(resources, firingRegions[facingDirection]),
                         x,
                         y,
                         width,
@@ -1751,7 +1854,7 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
             if (renderStillUnit) {
                 if (!inSiegeMode || rotatingToDirection != NONE) {
                     batch.draw(
-                            resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(stillTextures.get(facingDirection)),
+                            TextureRegions.get(resources, stillRegions[facingDirection]),
                             x,
                             y,
                             width,
@@ -1759,7 +1862,7 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
                     );
                 } else {
                     batch.draw(
-                            resources.atlas(Constants.FOLDER_ATLASES + atlas).findRegion(siegeModeTextures.size() != 8 ? siegeModeTextures.get(0) : siegeModeTextures.get(facingDirection)),
+                            TextureRegions.get(resources, siegeModeRegions.length != 8 ? siegeModeRegions[0] : siegeModeRegions[facingDirection]),
                             x,
                             y,
                             width,
@@ -1776,9 +1879,79 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
         renderStillUnit = true;
 
         // render unit's hp
+        if (!destroyed && renderHp) {
+            queueOverlay(renderQueue);
+        }
+    }
+
+    /**
+     * Queues the unit's selection circle to be rendered below all objects if it is selected
+     *
+     * @param renderQueue render queue to add the selection circle to
+     */
+    public void queueSelectionCircle(RenderQueueInterface renderQueue) {
+        if (renderSelectionCircle && !destroyed) {
+            renderQueue.addBottomLayerRenderable(selectionCircle, getCenterX(), getCenterY(), TextureRegions.getTextureKey(SELECTION_CIRCLE_REGION));
+        }
+    }
+
+    /**
+     * Queues the unit to be rendered as a single image, which is how units are rendered
+     * when the map is zoomed out. Animations, guns and the hp bar are left out, only the
+     * projectiles of the unit are rendered
+     *
+     * @param renderQueue render queue to add the unit to
+     */
+    public void queueImpostor(RenderQueueInterface renderQueue) {
+        renderQueue.addRenderable(impostor, getCenterX(), getCenterY(), TextureRegions.getTextureKey(getImpostorRegion()));
+    }
+
+    /**
+     * Renders the unit as a single image
+     *
+     * @param batch       sprite batch to draw to
+     * @param resources   game's assets
+     * @param renderQueue render queue the projectiles are added to
+     */
+    protected void renderImpostor(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
         if (!destroyed) {
-            renderHp(batch, resources);
+            batch.draw(
+                    TextureRegions.get(resources, getImpostorRegion()),
+                    x,
+                    y,
+                    width,
+                    height
+            );
         }
+
+        if (firingLogic != null) {
+            firingLogic.render(batch, resources, renderQueue);
+        }
+    }
+
+    /**
+     * Gets the texture region handle of the image the unit is rendered as when the map is
+     * zoomed out. Units without impostor textures are rendered as their still textures
+     *
+     * @return
+     */
+    protected int getImpostorRegion() {
+        if (inSiegeMode && rotatingToDirection == NONE) {
+            return siegeModeRegions.length != 8 ? siegeModeRegions[0] : siegeModeRegions[facingDirection];
+        } else if (impostorRegions != null) {
+            return impostorRegions[facingDirection];
+        }
+
+        return stillRegions[facingDirection];
+    }
+
+    /**
+     * Gets the key of the texture the unit is drawn from
+     *
+     * @return
+     */
+    public int getTextureKey() {
+        return stillRegions == null || stillRegions.length == 0 ? TextureRegions.NO_TEXTURE_KEY : TextureRegions.getTextureKey(stillRegions[0]);
     }
 
     /**
@@ -1789,7 +1962,7 @@ public class Unit extends OffensiveGameObject implements AnimationFinishListener
      */
     protected void renderSelectionCircle(SpriteBatch batch, Resources resources) {
         if (renderSelectionCircle) {
-            batch.draw(resources.atlas(Constants.GENERAL_TEXTURE_ATLAS).findRegion(Constants.UNIT_SELECTION_CIRCLE_TEXTURE),
+            batch.draw(TextureRegions.get(resources, SELECTION_CIRCLE_REGION),
                     x, y, width, height);
         }
     }
@@ -5,6 +5,8 @@ import com.gasis.rts.logic.map.blockmap.BlockMap;
 import com.gasis.rts.logic.object.GameObjectLoader;
 import com.gasis.rts.logic.object.LoaderUtils;
 import com.gasis.rts.logic.object.combat.*;
+import com.gasis.rts.resources.TextureRegions;
+import com.gasis.rts.utils.Constants;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,6 +42,16 @@ public class UnitLoader extends GameObjectLoader {
     // texture indexes must match facing direction values defined in Unit class
     protected List<String> siegeModeTextures;
 
+    // textures of the whole unit (guns included) baked into a single image, used when
+    // the map is zoomed out, texture indexes must match facing direction values defined in Unit class
+    protected List<String> impostorTextures;
+
+    // texture region handles of the still, firing, siege mode and impostor textures
+    protected int[] stillRegions;
+    protected int[] firingRegions;
+    protected int[] siegeModeRegions;
+    protected int[] impostorRegions;
+
     // is siege mode available for the unit
     protected boolean siegeModeAvailable;
 
@@ -170,6 +182,19 @@ public class UnitLoader extends GameObjectLoader {
             firingTextures.add(reader.readLine("firing texture north west"));
         }
 
+        // check if impostor textures are present
+        if (Boolean.parseBoolean(reader.readLine("impostor textures available"))) {
+            impostorTextures = new ArrayList<String>();
+            impostorTextures.add(reader.readLine("impostor texture north"));
+            impostorTextures.add(reader.readLine("impostor texture north east"));
+            impostorTextures.add(reader.readLine("impostor texture east"));
+            impostorTextures.add(reader.readLine("impostor texture south east"));
+            impostorTextures.add(reader.readLine("impostor texture south"));
+            impostorTextures.add(reader.readLine("impostor texture south west"));
+            impostorTextures.add(reader.readLine("impostor texture west"));
+            impostorTextures.add(reader.readLine("impostor texture north west"));
+        }
+
         // check if siege mode is available
         if (siegeModeAvailable) {
             siegeModeTransitionAnimationNames = new ArrayList<String>();
@@ -219,6 +244,12 @@ public class UnitLoader extends GameObjectLoader {
         readProductionData(reader);
         readCombatData(reader);
         readTexturesAndAnimations(reader);
+
+        String atlasPath = Constants.FOLDER_ATLASES + atlas;
+        stillRegions = TextureRegions.register(atlasPath, stillTextures);
+        firingRegions = TextureRegions.register(atlasPath, firingTextures);
+        siegeModeRegions = TextureRegions.register(atlasPath, siegeModeTextures);
+        impostorRegions = TextureRegions.register(atlasPath, impostorTextures);
     }
 
     /**
@@ -247,6 +278,10 @@ public class UnitLoader extends GameObjectLoader {
         unit.setSiegeModeAvailable(siegeModeAvailable);
         unit.setSiegeModeTransitionAnimationNames(siegeModeTransitionAnimationNames);
         unit.setFiringTextures(firingTextures);
+        unit.setStillRegions(stillRegions);
+        unit.setFiringRegions(firingRegions);
+        unit.setSiegeModeRegions(siegeModeRegions);
+        unit.setImpostorRegions(impostorRegions);
         unit.setSiegeModeFacingDirection(siegeModeFacingDirection);
         unit.setHpBarWidth(hpBarWidth);
         unit.setControlContextName(controlContextName);
@@ -257,6 +292,7 @@ public class UnitLoader extends GameObjectLoader {
         unit.setJunkScale(junkScale);
         unit.setJunkTexture(junkTexture);
         unit.setJunkAtlas(junkAtlas);
+        unit.setJunkRegion(junkRegion);
         unit.setHealingSpeed(healingSpeed);
         unit.setPassable(passable);
         unit.setSiegeModeRequiredTechId(siegeModeRequiredTechId);
@@ -0,0 +1,326 @@
+package com.gasis.rts.logic.object.unit.movement;
+
+import com.gasis.rts.logic.map.blockmap.Block;
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.map.blockmap.BlockRegions;
+import com.gasis.rts.logic.object.GameObject;
+import com.gasis.rts.logic.object.unit.Unit;
+
+import java.util.*;
+
+/**
+ * Plans where each unit of a group should stand when the group is ordered to a block.
+ * The slots are the free blocks closest to the target, and units are assigned to them
+ * by rank: both units and slots are split into rows across the movement direction
+ * (front units get the far rows) and matched from left to right inside every row.
+ * This keeps the units' paths from crossing and takes O(n log n) time
+ */
+public class FormationPlanner {
+
+    // the game's map
+    protected BlockMap map;
+
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // the units of the planned formation
+    protected Entry[] units = new Entry[0];
+
+    // the slots of the planned formation
+    protected Entry[] slots = new Entry[0];
+
+    // how many units the planned formation has
+    protected int size;
+
+    // the direction in which the group moves (unit vector)
+    protected float directionX;
+    protected float directionY;
+
+    // sorts entries by how far along the movement direction they are, furthest first
+    protected Comparator<Entry> depthComparator = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            return Float.compare(second.depth, first.depth);
+        }
+    };
+
+    // sorts entries from left to right across the movement direction
+    protected Comparator<Entry> lateralComparator = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            return Float.compare(first.lateral, second.lateral);
+        }
+    };
+
+    /**
+     * Default class constructor
+     *
+     * @param map the game's map
+     */
+    public FormationPlanner(BlockMap map) {
+        this.map = map;
+
+        width = (int) map.getWidth();
+        height = (int) map.getHeight();
+    }
+
+    /**
+     * Plans the formation of the given units around the target block
+     *
+     * @param group   units to plan the formation for
+     * @param targetX target x (in block map coordinates)
+     * @param targetY target y (in block map coordinates)
+     * @return the number of planned units
+     */
+    public int plan(Collection<Unit> group, int targetX, int targetY) {
+        size = group.size();
+
+        ensureCapacity(size);
+
+        float centerX = 0;
+        float centerY = 0;
+        int index = 0;
+
+        for (Unit unit : group) {
+            Entry entry = units[index++];
+            entry.unit = unit;
+            entry.x = (int) (unit.getCenterX() / Block.BLOCK_WIDTH);
+            entry.y = (int) (unit.getCenterY() / Block.BLOCK_HEIGHT);
+
+            centerX += entry.x;
+            centerY += entry.y;
+        }
+
+        if (size == 0) {
+            return 0;
+        }
+
+        calculateDirection(centerX / size, centerY / size, targetX, targetY);
+
+        findSlots(group, targetX, targetY);
+
+        for (int i = 0; i < size; i++) {
+            project(units[i]);
+            project(slots[i]);
+        }
+
+        assignSlots();
+
+        return size;
+    }
+
+    /**
+     * Gets a planned unit
+     *
+     * @param index unit index
+     * @return
+     */
+    public Unit getUnit(int index) {
+        return units[index].unit;
+    }
+
+    /**
+     * Gets the x of the planned unit's slot
+     *
+     * @param index unit index
+     * @return
+     */
+    public int getSlotX(int index) {
+        return units[index].slot.x;
+    }
+
+    /**
+     * Gets the y of the planned unit's slot
+     *
+     * @param index unit index
+     * @return
+     */
+    public int getSlotY(int index) {
+        return units[index].slot.y;
+    }
+
+    /**
+     * Calculates the direction the group moves in
+     *
+     * @param centerX x of the group's center
+     * @param centerY y of the group's center
+     * @param targetX target x
+     * @param targetY target y
+     */
+    protected void calculateDirection(float centerX, float centerY, int targetX, int targetY) {
+        // compare real distances because blocks are not square
+        float dx = (targetX - centerX) * Block.BLOCK_WIDTH;
+        float dy = (targetY - centerY) * Block.BLOCK_HEIGHT;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (length < 0.0001f) {
+            directionX = 0;
+            directionY = 1;
+        } else {
+            directionX = dx / length;
+            directionY = dy / length;
+        }
+    }
+
+    /**
+     * Finds the free blocks closest to the target, in square rings of growing size.
+     * Blocks that can't be walked on, can't be reached from the target or are taken
+     * by units outside the group are skipped
+     *
+     * @param group   units of the formation
+     * @param targetX target x
+     * @param targetY target y
+     */
+    protected void findSlots(Collection<Unit> group, int targetX, int targetY) {
+        BlockRegions regions = map.getRegions();
+        int region = regions.getRegion(targetX, targetY);
+        int found = 0;
+
+        if (isSlotFree(group, targetX, targetY, region)) {
+            setSlot(found++, targetX, targetY);
+        }
+
+        int maxRadius = Math.max(width, height);
+
+        for (int radius = 1; radius <= maxRadius && found < size; radius++) {
+            for (int i = -radius; i <= radius && found < size; i++) {
+                if (isSlotFree(group, targetX + i, targetY + radius, region)) {
+                    setSlot(found++, targetX + i, targetY + radius);
+                }
+
+                if (found < size && isSlotFree(group, targetX + i, targetY - radius, region)) {
+                    setSlot(found++, targetX + i, targetY - radius);
+                }
+
+                // the corners belong to the top and bottom sides
+                if (i == -radius || i == radius) {
+                    continue;
+                }
+
+                if (found < size && isSlotFree(group, targetX + radius, targetY + i, region)) {
+                    setSlot(found++, targetX + radius, targetY + i);
+                }
+
+                if (found < size && isSlotFree(group, targetX - radius, targetY + i, region)) {
+                    setSlot(found++, targetX - radius, targetY + i);
+                }
+            }
+        }
+
+        // not enough room, the remaining units go to the target itself
+        while (found < size) {
+            setSlot(found++, targetX, targetY);
+        }
+    }
+
+    /**
+     * Checks if a block can be a slot of the formation
+     *
+     * @param group  units of the formation
+     * @param x      block x
+     * @param y      block y
+     * @param region region of the target
+     * @return
+     */
+    protected boolean isSlotFree(Collection<Unit> group, int x, int y, int region) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+
+        if (region != BlockRegions.NO_REGION && map.getRegions().getRegion(x, y) != region) {
+            return false;
+        }
+
+        if (!map.isBlockStaticallyPassable((short) x, (short) y)) {
+            return false;
+        }
+
+        GameObject occupyingObject = map.getOccupyingObject((short) x, (short) y);
+
+        // idle units of other groups won't make room
+        return !(occupyingObject instanceof Unit) || ((Unit) occupyingObject).isMoving() || group.contains(occupyingObject);
+    }
+
+    /**
+     * Sets the coordinates of a slot
+     *
+     * @param index slot index
+     * @param x     block x
+     * @param y     block y
+     */
+    protected void setSlot(int index, int x, int y) {
+        slots[index].x = x;
+        slots[index].y = y;
+    }
+
+    /**
+     * Calculates how far along and across the movement direction an entry is
+     *
+     * @param entry unit or slot
+     */
+    protected void project(Entry entry) {
+        float x = entry.x * Block.BLOCK_WIDTH;
+        float y = entry.y * Block.BLOCK_HEIGHT;
+
+        entry.depth = x * directionX + y * directionY;
+        entry.lateral = y * directionX - x * directionY;
+    }
+
+    /**
+     * Assigns slots to units by rank: rows of the same size are formed from the units
+     * and from the slots ordered by depth, and the i-th unit of a row from the left
+     * gets the i-th slot of the matching row from the left
+     */
+    protected void assignSlots() {
+        Arrays.sort(units, 0, size, depthComparator);
+        Arrays.sort(slots, 0, size, depthComparator);
+
+        int rowSize = Math.max(1, (int) Math.ceil(Math.sqrt(size)));
+
+        for (int rowStart = 0; rowStart < size; rowStart += rowSize) {
+            int rowEnd = Math.min(size, rowStart + rowSize);
+
+            Arrays.sort(units, rowStart, rowEnd, lateralComparator);
+            Arrays.sort(slots, rowStart, rowEnd, lateralComparator);
+
+            for (int i = rowStart; i < rowEnd; i++) {
+                units[i].slot = slots[i];
+            }
+        }
+    }
+
+    /**
+     * Makes sure the entry arrays can hold the given number of units
+     *
+     * @param capacity unit count
+     */
+    protected void ensureCapacity(int capacity) {
+        if (units.length >= capacity) {
+            return;
+        }
+
+        int oldLength = units.length;
+
+        units = Arrays.copyOf(units, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+
+        for (int i = oldLength; i < capacity; i++) {
+            units[i] = new Entry();
+            slots[i] = new Entry();
+        }
+    }
+
+    /**
+     * A unit or a slot of the formation
+     */
+    protected class Entry {
+
+        protected Unit unit;
+        protected Entry slot;
+        protected int x;
+        protected int y;
+        protected float depth;
+        protected float lateral;
+    }
+}
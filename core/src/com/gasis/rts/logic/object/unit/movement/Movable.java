@@ -11,4 +11,12 @@ public interface Movable {
      * @param direction movement direction
      */
     void move(byte direction);
+
+    /**
+     * Orders the object the given number of blocks in the given direction
+     *
+     * @param direction movement direction
+     * @param blocks    how many blocks to move
+     */
+    void move(byte direction, int blocks);
 }
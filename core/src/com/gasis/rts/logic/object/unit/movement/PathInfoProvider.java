@@ -11,10 +11,11 @@ public interface PathInfoProvider {
     /**
      * Gets unit's final destination
      *
-     * @param unit unit to get the destination for
-     * @return
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
      */
-    Point getFinalDestination(Unit unit);
+    boolean getFinalDestination(Unit unit, Point destination);
 
     /**
      * Gets unit's next path point
@@ -6,9 +6,10 @@ import com.gasis.rts.logic.map.blockmap.BlockMap;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.combat.CombatUtils;
 import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.logic.pathfinding.FlowField;
 import com.gasis.rts.logic.pathfinding.PathFinder;
 import com.gasis.rts.logic.pathfinding.PathFinderInterface;
-import com.gasis.rts.math.MathUtils;
+import com.gasis.rts.logic.pathfinding.ReservationTable;
 import com.gasis.rts.math.Point;
 
 import java.util.*;
@@ -18,6 +19,19 @@ import java.util.*;
  */
 public class UnitMover implements Updatable, MovementListener, MovementRequestHandler, PathInfoProvider {
 
+    // groups with at least this many units follow a flow field instead of finding a path for every unit
+    public static final int FLOW_FIELD_MIN_GROUP_SIZE = 8;
+
+    // how many unused flow fields are kept for new groups, the rest are left to the garbage collector
+    protected static final int MAX_FREE_FLOW_FIELDS = 2;
+
+    // for how many updates a unit waits for a blocked block before looking for a way around it
+    public static final int MAX_WAIT_TICKS = 60;
+
+    // the most blocks a unit is sent along a path segment at once, so that it doesn't
+    // hold reservations of blocks it will only reach much later
+    public static final int MAX_RUN_BLOCKS = 8;
+
     // the unit groups that are being moved
     protected Set<UnitGroup> groups = new HashSet<UnitGroup>();
 
@@ -44,8 +58,26 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     // has any unit in a group been ordered to move
     protected boolean anyGroupUnitOrderedToMove;
 
-    // used to temporarily store units' distances to the destination point
-    protected TreeSet<UnitDistance> unitDistances = new TreeSet<UnitDistance>();
+    // plans where each unit of a group stands at the destination
+    protected FormationPlanner formationPlanner;
+
+    // units that are currently following their group's flow field
+    protected Map<Unit, UnitGroup> flowFieldUnits = new HashMap<Unit, UnitGroup>();
+
+    // flow fields that are not used by any group and can be rebuilt for a new one
+    protected Deque<FlowField> freeFlowFields = new ArrayDeque<FlowField>();
+
+    // used to store the next flow field step (reused to avoid creating a point every frame)
+    protected Point flowFieldStep = new Point();
+
+    // blocks units are about to go to
+    protected ReservationTable reservations = new ReservationTable();
+
+    // how many times this mover has been updated
+    protected long tick;
+
+    // the tick at which each waiting unit started waiting for it's next block
+    protected Map<Unit, Long> waitStartTicks = new HashMap<Unit, Long>();
 
     /**
      * Default class constructor
@@ -53,27 +85,55 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     public UnitMover(BlockMap map, PathFinderInterface pathFinder) {
         this.map = map;
         this.pathFinder = pathFinder;
+
+        formationPlanner = new FormationPlanner(map);
     }
 
     /**
      * Gets unit's final destination
      *
-     * @param unit unit to get the destination for
-     * @return
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
      */
     @Override
-    public Point getFinalDestination(Unit unit) {
-        return pathFinder.getFinalDestination(unit);
+    public boolean getFinalDestination(Unit unit, Point destination) {
+        UnitGroup group = flowFieldUnits.get(unit);
+
+        if (group != null) {
+            Point slot = group.slots.get(unit);
+
+            if (slot == null) {
+                return false;
+            }
+
+            destination.x = slot.x;
+            destination.y = slot.y;
+            return true;
+        }
+
+        return pathFinder.getFinalDestination(unit, destination);
     }
 
     /**
-     * Gets unit's next path point
+     * Gets unit's next path point. The returned point of a unit that follows a flow field
+     * is reused, so it must not be stored
      *
      * @param unit unit to get the next point for
      * @return
      */
     @Override
     public Point getNextPathPoint(Unit unit) {
+        UnitGroup group = flowFieldUnits.get(unit);
+
+        if (group != null) {
+            if (group.flowField.getNextStep((int) (unit.getCenterX() / Block.BLOCK_WIDTH), (int) (unit.getCenterY() / Block.BLOCK_HEIGHT), flowFieldStep)) {
+                return flowFieldStep;
+            }
+
+            return null;
+        }
+
         return pathFinder.getNextPathPointForObject(unit);
     }
 
@@ -117,7 +177,26 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
         this.groups.add(group);
 
         if (!group.units.isEmpty()) {
+            // units that will follow a flow field don't wait for paths, their old ones would only mislead them
+            if (group.units.size() >= FLOW_FIELD_MIN_GROUP_SIZE) {
+                for (Unit unit : group.units) {
+                    pathFinder.removePathForObject(unit);
+                }
+            }
+
             pathFinder.newGroup(group.units);
+
+            // move the destination out of water or buildings so that the units gather next to it
+            Unit unit = group.units.iterator().next();
+            int destination = map.getRegions().getReachableBlock((int) (unit.getCenterX() / Block.BLOCK_WIDTH), (int) (unit.getCenterY() / Block.BLOCK_HEIGHT), x, y);
+
+            x = (short) (destination % (int) map.getWidth());
+            y = (short) (destination / (int) map.getWidth());
+        }
+
+        if (group.units.size() >= FLOW_FIELD_MIN_GROUP_SIZE) {
+            group.flowField = obtainFlowField();
+            group.flowField.build(x, y, group.units);
         }
 
         calculateDestinationsAndMoveUnits(group, x, y, forceMove);
@@ -175,7 +254,8 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     }
 
     /**
-     * Removes a unit's path and refinds it
+     * Puts a unit in a path group of it's own and finds it's path to the given
+     * destination. The unit follows it's old path until the new one is found
      *
      * @param unit unit to refind path for
      * @param x    destination x
@@ -185,7 +265,7 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
         Set<Unit> pathGroup = new HashSet<Unit>();
         pathGroup.add(unit);
 
-        pathFinder.removePathForObject(unit);
+        unit.stopAtNextBlock();
         pathFinder.newGroup(pathGroup);
         pathFinder.findPathToObject(unit, x, y, forceMove);
     }
@@ -198,80 +278,181 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
      * @param destY destination y
      */
     protected void calculateDestinationsAndMoveUnits(UnitGroup group, short destX, short destY, boolean forceMove) {
-        try {
-            if (group.units.isEmpty()) {
-                return;
-            }
+        int count = formationPlanner.plan(group.units, destX, destY);
 
-            calculateUnitDistances(group.units, destX, destY);
+        for (int i = 0; i < count; i++) {
+            moveUnitToSlot(group, formationPlanner.getUnit(i), (short) formationPlanner.getSlotX(i), (short) formationPlanner.getSlotY(i), forceMove);
+        }
+    }
 
-            short currentIterationSize = 3;
+    /**
+     * Checks if a unit standing on a block is going to leave it soon: it is moving, turning,
+     * or is being moved by this mover and just waits for it's own next block
+     *
+     * @param occupyingUnit unit standing on a block
+     * @return
+     */
+    protected boolean isBlockedOnlyForNow(Unit occupyingUnit) {
+        return occupyingUnit.isMoving() || occupyingUnit.isRotating() || movementStates.containsKey(occupyingUnit);
+    }
 
-            /*
-             * The following code might appear ugly to some people,
-             *
-             * READER DISCRETION IS ADVISED
-             */
+    /**
+     * Counts the ticks the unit has been waiting for it's next block
+     *
+     * @param unit waiting unit
+     * @return true if the unit has waited for too long and should go around instead
+     */
+    protected boolean waitedTooLong(Unit unit) {
+        Long waitStart = waitStartTicks.get(unit);
 
-            pathFinder.findPathToObject(unitDistances.pollFirst().unit, destX, destY, forceMove);
+        if (waitStart == null) {
+            waitStartTicks.put(unit, tick);
+            return false;
+        }
 
-            while (!unitDistances.isEmpty()) {
-                // loop through the top side
-                for (int x = destX - (short) (currentIterationSize / 2); x <= destX + (short) (currentIterationSize / 2); x++) {
-                    if (!unitDistances.isEmpty()) {
-                        pathFinder.findPathToObject(unitDistances.pollFirst().unit, (short) x, (short) (destY + (short) (currentIterationSize / 2)), forceMove);
-                    } else {
-                        break;
-                    }
-                }
+        return tick - waitStart > MAX_WAIT_TICKS;
+    }
 
-                // loop through the bottom side
-                for (int x = destX - (short) (currentIterationSize / 2); x <= destX + (short) (currentIterationSize / 2); x++) {
-                    if (!unitDistances.isEmpty()) {
-                        pathFinder.findPathToObject(unitDistances.pollFirst().unit, (short) x, (short) (destY - (short) (currentIterationSize / 2)), forceMove);
-                    } else {
-                        break;
-                    }
-                }
+    /**
+     * Reserves the blocks of a run after it's first block, up to the first block that
+     * is taken by an obstacle or reserved by another unit
+     *
+     * @param unit      unit that is about to move
+     * @param x         x of the run's first block
+     * @param y         y of the run's first block
+     * @param stepX     x step of the run
+     * @param stepY     y step of the run
+     * @param blocks    how many blocks the run has after the first one
+     * @param direction direction of the run
+     * @param delta     time elapsed since the last update
+     * @return the number of reserved blocks
+     */
+    protected int reserveRun(Unit unit, int x, int y, int stepX, int stepY, int blocks, byte direction, float delta) {
+        for (int i = 1; i <= blocks; i++) {
+            int blockX = x + stepX * i;
+            int blockY = y + stepY * i;
 
-                // loop through the left side
-                for (int y = destY - (short) ((currentIterationSize - 1) / 2); y <= destY + (short) ((currentIterationSize - 1) / 2); y++) {
-                    if (!unitDistances.isEmpty()) {
-                        pathFinder.findPathToObject(unitDistances.pollFirst().unit, (short) (destX - (short) (currentIterationSize / 2)), (short) y, forceMove);
-                    } else {
-                        break;
-                    }
-                }
+            GameObject occupyingObject = map.getOccupyingObject((short) blockX, (short) blockY);
 
-                // loop through the right side
-                for (int y = destY - (short) ((currentIterationSize - 1) / 2); y <= destY + (short) ((currentIterationSize - 1) / 2); y++) {
-                    if (!unitDistances.isEmpty()) {
-                        pathFinder.findPathToObject(unitDistances.pollFirst().unit, (short) (destX + (short) (currentIterationSize / 2)), (short) y, forceMove);
-                    } else {
-                        break;
-                    }
-                }
+            if (occupyingObject != null && !occupyingObject.isPassable() && occupyingObject != unit) {
+                return i - 1;
+            }
 
-                currentIterationSize += 2;
+            if (!reservations.reserve(blockY * (int) map.getWidth() + blockX, getStepTicks(unit, direction, i + 1, delta), unit)) {
+                return i - 1;
             }
-        } catch (Exception ex) {
         }
+
+        return blocks;
     }
 
     /**
-     * Calculates each unit's distance to the destination point
+     * Estimates for how many ticks a unit will need a block of it's run: the time it takes
+     * to turn towards the run's direction and to get to the block
      *
-     * @param units units to calculate distance for
-     * @param x     destination x
-     * @param y     destination y
+     * @param unit      unit that is about to move
+     * @param direction direction of the unit's run
+     * @param blocks    how far into the run the block is (1 for the first block)
+     * @param delta     time elapsed since the last update
+     * @return
      */
-    protected void calculateUnitDistances(Set<Unit> units, short x, short y) {
-        for (Unit unit : units) {
-            UnitDistance distance = new UnitDistance();
-            distance.unit = unit;
-            distance.distance = MathUtils.distance((short) (unit.getCenterX() / Block.BLOCK_WIDTH), x, (short) (unit.getCenterY() / Block.BLOCK_HEIGHT), y);
-            unitDistances.add(distance);
+    protected int getStepTicks(Unit unit, byte direction, int blocks, float delta) {
+        float speed = unit.getOffensiveSpecs() != null ? unit.getOffensiveSpecs().getSpeed() : 0;
+
+        if (speed <= 0 || delta <= 0) {
+            return 1;
+        }
+
+        int rotationSteps = Math.abs(unit.getFacingDirection() - direction);
+        rotationSteps = Math.min(rotationSteps, 8 - rotationSteps);
+
+        // a unit turns by one direction every 1 / speed seconds and needs 4 / speed seconds to cross a block
+        return (int) Math.ceil((rotationSteps + 4 * blocks) / speed / delta);
+    }
+
+    /**
+     * Sends a unit to it's individual destination block. Units of groups that have a
+     * flow field only remember the block and follow the field until they get close to it
+     *
+     * @param group unit's group
+     * @param unit  unit to move
+     * @param x     unit's destination x
+     * @param y     unit's destination y
+     */
+    protected void moveUnitToSlot(UnitGroup group, Unit unit, short x, short y, boolean forceMove) {
+        // the rest of the unit's current run might lead away from the new destination
+        unit.stopAtNextBlock();
+
+        if (group.flowField == null) {
+            pathFinder.findPathToObject(unit, x, y, forceMove);
+            return;
+        }
+
+        group.slots.put(unit, new Point(x, y));
+        group.slotRadius = Math.max(group.slotRadius, Math.max(Math.abs(x - group.flowField.getDestinationX()), Math.abs(y - group.flowField.getDestinationY())));
+
+        flowFieldUnits.put(unit, group);
+    }
+
+    /**
+     * Stops a unit from following it's group's flow field once it is close to it's own destination
+     * block, or when the field can't lead it any further, and finds a path to the destination block
+     *
+     * @param unit    unit following a flow field
+     * @param group   unit's group
+     * @param blocked is the unit's next flow field step blocked
+     */
+    protected void updateFlowFieldUnit(Unit unit, UnitGroup group, boolean blocked) {
+        int x = (int) (unit.getCenterX() / Block.BLOCK_WIDTH);
+        int y = (int) (unit.getCenterY() / Block.BLOCK_HEIGHT);
+
+        int distance = Math.max(Math.abs(x - group.flowField.getDestinationX()), Math.abs(y - group.flowField.getDestinationY()));
+
+        if (blocked || distance <= group.slotRadius + 1 || !group.flowField.isReached(x, y)) {
+            Point slot = group.slots.get(unit);
+
+            flowFieldUnits.remove(unit);
+            pathFinder.findPathToObject(unit, (short) slot.x, (short) slot.y, true);
+        }
+    }
+
+    /**
+     * Gets a flow field that is not used by any group
+     *
+     * @return
+     */
+    protected FlowField obtainFlowField() {
+        if (freeFlowFields.isEmpty()) {
+            return new FlowField(map);
+        }
+
+        return freeFlowFields.poll();
+    }
+
+    /**
+     * Stops all units of a group from following the group's flow field and
+     * makes the field available for other groups
+     *
+     * @param group group that no longer needs it's flow field
+     */
+    protected void releaseFlowField(UnitGroup group) {
+        if (group.flowField == null) {
+            return;
+        }
+
+        for (Unit unit : group.slots.keySet()) {
+            if (flowFieldUnits.get(unit) == group) {
+                flowFieldUnits.remove(unit);
+            }
         }
+
+        group.slots.clear();
+
+        if (freeFlowFields.size() < MAX_FREE_FLOW_FIELDS) {
+            freeFlowFields.push(group.flowField);
+        }
+
+        group.flowField = null;
     }
 
     /**
@@ -293,6 +474,7 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
             } else {
                 unit.setInSiegeMode(false);
                 unit.setPointToGoToAfterLeavingSiegeMode(new Point(x, y));
+                pathFinder.removePathForObject(unit);
             }
         }
 
@@ -302,7 +484,8 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     }
 
     /**
-     * Removes the given unit from all unit groups that it may be a part of
+     * Removes the given unit from all unit groups that it may be a part of. The unit's
+     * path is kept until the new order replaces it
      *
      * @param unit unit to remove
      */
@@ -310,8 +493,8 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
         for (UnitGroup group : groups) {
             if (group.units.contains(unit)) {
                 group.units.remove(unit);
-                pathFinder.removePathForObject(unit);
                 movementStates.remove(unit);
+                flowFieldUnits.remove(unit);
             }
         }
     }
@@ -348,7 +531,11 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     @Override
     public void startedMoving(Unit unit) {
         movementStates.put(unit, true);
-        pathFinder.removeNextPathPoint(unit);
+
+        // flow field steps are read from the field, there's no path to shorten
+        if (!flowFieldUnits.containsKey(unit)) {
+            pathFinder.removeNextPathPoint(unit);
+        }
     }
 
     /**
@@ -370,8 +557,10 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
     public void stopUnit(Unit unit) {
         for (UnitGroup group : groups) {
             if (group.units.contains(unit)) {
+                unit.stopAtNextBlock();
                 pathFinder.removePathForObject(unit);
                 movementStates.remove(unit);
+                flowFieldUnits.remove(unit);
             }
         }
     }
@@ -393,6 +582,11 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
      */
     @Override
     public void update(float delta) {
+        // apply the paths found since the last update before moving any units
+        pathFinder.update(delta);
+
+        reservations.setCurrentTick(++tick);
+
         for (UnitGroup group : groups) {
             anyGroupUnitWasActive = false;
             anyGroupUnitOrderedToMove = false;
@@ -405,26 +599,57 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
 
                 if (movementStates.containsKey(unit)) {
                     if (!movementStates.get(unit)) {
-                        Point nextPathPoint = pathFinder.getNextPathPointForObject(unit);
+                        if (flowFieldUnits.containsKey(unit)) {
+                            updateFlowFieldUnit(unit, group, false);
+                        }
+
+                        Point nextPathPoint = getNextPathPoint(unit);
 
                         if (nextPathPoint != null && !unit.isRotating()) {
-                            GameObject occupyingObject = map.getOccupyingObject((short) nextPathPoint.x, (short) nextPathPoint.y);
+                            // the unit goes towards the next path point in a straight or diagonal run
+                            int unitX = (int) (unit.getCenterX() / Block.BLOCK_WIDTH);
+                            int unitY = (int) (unit.getCenterY() / Block.BLOCK_HEIGHT);
+                            int runX = (int) nextPathPoint.x - unitX;
+                            int runY = (int) nextPathPoint.y - unitY;
+                            int stepX = Integer.signum(runX);
+                            int stepY = Integer.signum(runY);
+                            int runLength = stepX != 0 && stepY != 0 ? Math.min(Math.abs(runX), Math.abs(runY)) : Math.max(1, Math.max(Math.abs(runX), Math.abs(runY)));
+                            int nextX = unitX + stepX;
+                            int nextY = unitY + stepY;
+
+                            GameObject occupyingObject = map.getOccupyingObject((short) nextX, (short) nextY);
                             Unit occupyingUnit = occupyingObject instanceof Unit ? (Unit) occupyingObject : null;
+                            byte direction = CombatUtils.getFacingDirection(unit.getCenterX(), unit.getCenterY(), nextX * Block.BLOCK_WIDTH + Block.BLOCK_WIDTH / 2f, nextY * Block.BLOCK_HEIGHT + Block.BLOCK_HEIGHT / 2f);
+                            int block = nextY * (int) map.getWidth() + nextX;
 
-                            if (occupyingObject == null || occupyingObject.isPassable() || occupyingUnit == unit) {
-                                unit.move(CombatUtils.getFacingDirection(unit.getCenterX(), unit.getCenterY(), nextPathPoint.x * Block.BLOCK_WIDTH + Block.BLOCK_WIDTH / 2f, nextPathPoint.y * Block.BLOCK_HEIGHT + Block.BLOCK_HEIGHT / 2f));
+                            boolean blockFree = occupyingObject == null || occupyingObject.isPassable() || occupyingUnit == unit;
+
+                            if (blockFree && reservations.reserve(block, getStepTicks(unit, direction, 1, delta), unit)) {
+                                waitStartTicks.remove(unit);
+                                unit.move(direction, 1 + reserveRun(unit, nextX, nextY, stepX, stepY, Math.min(runLength, MAX_RUN_BLOCKS) - 1, direction, delta));
                                 anyGroupUnitOrderedToMove = true;
                                 anyGroupUnitWasActive = true;
-                            } else if (occupyingUnit == null || (!occupyingUnit.isMoving() && !group.units.contains(occupyingUnit))) {
-                                pathFinder.refindPathToObject(unit, false);
+                            } else if ((blockFree || (occupyingUnit != null && isBlockedOnlyForNow(occupyingUnit))) && !waitedTooLong(unit)) {
+                                // another unit is about to leave or take the block, let it go first
+                                anyGroupUnitWasActive = true;
+                            } else {
+                                waitStartTicks.remove(unit);
+
+                                if (flowFieldUnits.containsKey(unit)) {
+                                    // the field ignores units and new obstacles, go around them with a regular path
+                                    updateFlowFieldUnit(unit, group, true);
+                                } else {
+                                    pathFinder.refindPathToObject(unit, false);
+                                }
+
                                 anyGroupUnitWasActive = true;
                             }
-                        } else if (nextPathPoint == null && !group.attackMove && System.currentTimeMillis() - unit.getLastPathFindingTimestamp() >= 1000f / (float) PathFinder.MAX_PATH_FINDS_PER_SECOND) {
+                        } else if (nextPathPoint == null && !group.attackMove && !pathFinder.isPathRequestPending(unit) && System.currentTimeMillis() - unit.getLastPathFindingTimestamp() >= 1000f / (float) PathFinder.MAX_PATH_FINDS_PER_SECOND) {
                             // the unit has arrived at it's destination and needs to be removed
                             unitsToRemove.add(unit);
                         }
 
-                        if (unit.isRotating() || unit.isMoving() || System.currentTimeMillis() - unit.getLastPathFindingTimestamp() < 1000f / (float) PathFinder.MAX_PATH_FINDS_PER_SECOND) {
+                        if (unit.isRotating() || unit.isMoving() || pathFinder.isPathRequestPending(unit) || System.currentTimeMillis() - unit.getLastPathFindingTimestamp() < 1000f / (float) PathFinder.MAX_PATH_FINDS_PER_SECOND) {
                             anyGroupUnitWasActive = true;
                         }
                     } else {
@@ -439,7 +664,10 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
 
             if (unitsToRemove.size() > 0) {
                 for (Unit unit : unitsToRemove) {
+                    unit.stopAtNextBlock();
+                    waitStartTicks.remove(unit);
                     group.units.remove(unit);
+                    flowFieldUnits.remove(unit);
                     unit.removeMovementListener(this);
                     movementStates.remove(unit);
                     pathFinder.removePathForObject(unit);
@@ -465,7 +693,11 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
 
         if (groupsToRemove.size() > 0) {
             for (UnitGroup group : groupsToRemove) {
+                releaseFlowField(group);
+
                 for (Unit unit : group.units) {
+                    unit.stopAtNextBlock();
+                    waitStartTicks.remove(unit);
                     pathFinder.removePathForObject(unit);
                     movementStates.remove(unit);
                     unit.removeMovementListener(this);
@@ -493,27 +725,14 @@ public class UnitMover implements Updatable, MovementListener, MovementRequestHa
         protected boolean attackMove = false;
         protected float timeSinceLastUnitMovement;
         protected float maxIdleTime;
-    }
 
-    /**
-     * Holds units and their distance to the destination point
-     */
-    protected class UnitDistance implements Comparable<UnitDistance> {
+        // the flow field the group's units follow (null if the units have individual paths)
+        protected FlowField flowField;
 
-        protected Unit unit;
-        protected float distance;
+        // individual destination blocks of the units following the flow field
+        protected Map<Unit, Point> slots = new HashMap<Unit, Point>();
 
-        @Override
-        public int compareTo(UnitDistance other) {
-            if (unit == other.unit) {
-                return 0;
-            } else {
-                if (distance < other.distance) {
-                    return -1;
-                } else {
-                    return 1;
-                }
-            }
-        }
+        // how far from the group's destination the furthest destination block is
+        protected int slotRadius;
     }
 }
@@ -0,0 +1,785 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.map.blockmap.BlockChangeLog;
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Abstract graph used by hierarchical path finding. The map is split into square
+ * clusters, the passable openings between neighbouring clusters become entrance nodes
+ * and the nodes of a cluster are connected with the costs of their shortest local paths.
+ * Moving units are ignored, only terrain and buildings are treated as obstacles
+ */
+public class ClusterGraph {
+
+    // default cluster width and height in blocks
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    // openings wider than this get an entrance at each end instead of one in the middle
+    protected static final int MAX_SINGLE_ENTRANCE_WIDTH = 6;
+
+    // the cost of a diagonal step (the cost of a straight step is 1)
+    protected static final float DIAGONAL_COST = 1.4142135f;
+
+    // the game's map
+    protected BlockMap map;
+
+    // changes of the map's blocks that haven't been applied to the graph yet
+    protected BlockChangeLog.Subscription changes;
+
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // cluster width and height in blocks
+    protected int clusterSize;
+
+    // number of clusters in each axis
+    protected int clustersX;
+    protected int clustersY;
+
+    // all clusters in row-major order
+    protected Cluster[] clusters;
+
+    // entrance nodes on the borders between horizontally adjacent clusters,
+    // indexed by the index of the left cluster
+    protected List<Node>[] verticalBorders;
+
+    // entrance nodes on the borders between vertically adjacent clusters,
+    // indexed by the index of the bottom cluster
+    protected List<Node>[] horizontalBorders;
+
+    // blocks that can be walked on when units are ignored, as last seen by the graph
+    protected boolean[] passable;
+
+    // clusters whose borders need to be rebuilt
+    protected boolean[] dirtyBorders;
+
+    // clusters whose internal edges need to be recalculated
+    protected boolean[] dirtyEdges;
+
+    // is any cluster dirty
+    protected boolean dirty;
+
+    // scratch data of local (single cluster) searches
+    protected float[] localCosts;
+    protected int[] localMarks;
+    protected int localSearchId;
+    protected NodeHeap localOpenList = new NodeHeap(64);
+
+    // the id of the current abstract search
+    protected int searchId;
+
+    // the abstract open list, holds indexes into openNodes
+    protected NodeHeap openList = new NodeHeap(64);
+    protected List<Node> openNodes = new ArrayList<Node>();
+
+    // the search deadline is checked every this many expanded nodes (minus 1, a power of 2)
+    protected static final int DEADLINE_CHECK_MASK = 63;
+
+    // did the last abstract search run out of time
+    protected boolean routeTimedOut;
+
+    /**
+     * Default class constructor
+     *
+     * @param map         the game's map
+     * @param clusterSize cluster width and height in blocks
+     */
+    @SuppressWarnings("unchecked")
+    public ClusterGraph(BlockMap map, int clusterSize) {
+        this.map = map;
+        this.clusterSize = clusterSize;
+
+        width = (int) map.getWidth();
+        height = (int) map.getHeight();
+
+        clustersX = (width + clusterSize - 1) / clusterSize;
+        clustersY = (height + clusterSize - 1) / clusterSize;
+
+        clusters = new Cluster[clustersX * clustersY];
+        verticalBorders = new List[clusters.length];
+        horizontalBorders = new List[clusters.length];
+        dirtyBorders = new boolean[clusters.length];
+        dirtyEdges = new boolean[clusters.length];
+
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                Cluster cluster = new Cluster();
+                cluster.index = cy * clustersX + cx;
+                cluster.startX = cx * clusterSize;
+                cluster.startY = cy * clusterSize;
+                cluster.endX = Math.min(width, cluster.startX + clusterSize);
+                cluster.endY = Math.min(height, cluster.startY + clusterSize);
+
+                clusters[cluster.index] = cluster;
+                verticalBorders[cluster.index] = new ArrayList<Node>();
+                horizontalBorders[cluster.index] = new ArrayList<Node>();
+            }
+        }
+
+        passable = new boolean[width * height];
+        changes = map.getChanges().subscribe();
+
+        localCosts = new float[clusterSize * clusterSize];
+        localMarks = new int[clusterSize * clusterSize];
+
+        readPassability();
+    }
+
+    /**
+     * Reads the passability of every block and marks the whole graph dirty
+     */
+    protected void readPassability() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                passable[y * width + x] = map.isBlockStaticallyPassable((short) x, (short) y);
+            }
+        }
+
+        Arrays.fill(dirtyBorders, true);
+        Arrays.fill(dirtyEdges, true);
+        dirty = true;
+    }
+
+    /**
+     * Marks the cluster of a changed block dirty if the block's passability changed
+     *
+     * @param x x of the block
+     * @param y y of the block
+     */
+    protected void blockChanged(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+
+        boolean nowPassable = map.isBlockStaticallyPassable((short) x, (short) y);
+
+        // units moving around do not change the graph
+        if (passable[y * width + x] == nowPassable) {
+            return;
+        }
+
+        passable[y * width + x] = nowPassable;
+
+        dirtyBorders[getClusterIndex(x, y)] = true;
+        dirtyEdges[getClusterIndex(x, y)] = true;
+        dirty = true;
+    }
+
+    /**
+     * Checks every block for passability changes, used when changes of the map have been
+     * lost. Only the clusters of the blocks that really changed are marked dirty
+     */
+    protected void rereadPassability() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                blockChanged(x, y);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of the map's blocks to the passability seen by the graph,
+     * marking the clusters of the blocks whose passability changed dirty. Called every
+     * tick, so that the changes never pile up in the change log
+     */
+    public void readChanges() {
+        if (!changes.hasChanges()) {
+            return;
+        }
+
+        if (changes.checkOverflow()) {
+            rereadPassability();
+        }
+
+        int block;
+
+        while ((block = changes.next()) != BlockChangeLog.NO_BLOCK) {
+            blockChanged(block % width, block / width);
+        }
+    }
+
+    /**
+     * Rebuilds the parts of the graph that changed since the last update
+     */
+    public void update() {
+        readChanges();
+
+        if (!dirty) {
+            return;
+        }
+
+        for (int i = 0; i < clusters.length; i++) {
+            if (dirtyBorders[i]) {
+                rebuildBorders(clusters[i]);
+                dirtyBorders[i] = false;
+            }
+        }
+
+        for (int i = 0; i < clusters.length; i++) {
+            if (dirtyEdges[i]) {
+                rebuildEdges(clusters[i]);
+                dirtyEdges[i] = false;
+            }
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Gets the index of the cluster that contains the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    public int getClusterIndex(int x, int y) {
+        return (y / clusterSize) * clustersX + x / clusterSize;
+    }
+
+    /**
+     * Gets the cluster width and height in blocks
+     *
+     * @return
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Checks if the given block can be walked on when units are ignored
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    public boolean isPassable(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && passable[y * width + x];
+    }
+
+    /**
+     * Rebuilds the entrances on all 4 borders of a cluster
+     *
+     * @param cluster cluster to rebuild
+     */
+    protected void rebuildBorders(Cluster cluster) {
+        int cx = cluster.index % clustersX;
+        int cy = cluster.index / clustersX;
+
+        if (cx > 0) {
+            rebuildVerticalBorder(cluster.index - 1);
+        }
+
+        if (cx < clustersX - 1) {
+            rebuildVerticalBorder(cluster.index);
+        }
+
+        if (cy > 0) {
+            rebuildHorizontalBorder(cluster.index - clustersX);
+        }
+
+        if (cy < clustersY - 1) {
+            rebuildHorizontalBorder(cluster.index);
+        }
+    }
+
+    /**
+     * Rebuilds the entrances between a cluster and it's right neighbour
+     *
+     * @param left index of the left cluster
+     */
+    protected void rebuildVerticalBorder(int left) {
+        Cluster leftCluster = clusters[left];
+        Cluster rightCluster = clusters[left + 1];
+
+        verticalBorders[left].clear();
+
+        int x = leftCluster.endX - 1;
+        int runStart = -1;
+
+        for (int y = leftCluster.startY; y <= leftCluster.endY; y++) {
+            boolean open = y < leftCluster.endY && isPassable(x, y) && isPassable(x + 1, y);
+
+            if (open && runStart < 0) {
+                runStart = y;
+            } else if (!open && runStart >= 0) {
+                addEntrances(verticalBorders[left], leftCluster, rightCluster, x, runStart, 1, 0, 0, 1, y - runStart);
+                runStart = -1;
+            }
+        }
+
+        dirtyEdges[left] = true;
+        dirtyEdges[left + 1] = true;
+    }
+
+    /**
+     * Rebuilds the entrances between a cluster and it's top neighbour
+     *
+     * @param bottom index of the bottom cluster
+     */
+    protected void rebuildHorizontalBorder(int bottom) {
+        Cluster bottomCluster = clusters[bottom];
+        Cluster topCluster = clusters[bottom + clustersX];
+
+        horizontalBorders[bottom].clear();
+
+        int y = bottomCluster.endY - 1;
+        int runStart = -1;
+
+        for (int x = bottomCluster.startX; x <= bottomCluster.endX; x++) {
+            boolean open = x < bottomCluster.endX && isPassable(x, y) && isPassable(x, y + 1);
+
+            if (open && runStart < 0) {
+                runStart = x;
+            } else if (!open && runStart >= 0) {
+                addEntrances(horizontalBorders[bottom], bottomCluster, topCluster, runStart, y, 0, 1, 1, 0, x - runStart);
+                runStart = -1;
+            }
+        }
+
+        dirtyEdges[bottom] = true;
+        dirtyEdges[bottom + clustersX] = true;
+    }
+
+    /**
+     * Adds entrance node pairs for an opening between 2 clusters
+     *
+     * @param border  border to add the nodes to
+     * @param first   the cluster on the left or bottom side
+     * @param second  the cluster on the right or top side
+     * @param x       x of the opening's first block in the first cluster
+     * @param y       y of the opening's first block in the first cluster
+     * @param crossX  x offset from a first cluster block to the second cluster
+     * @param crossY  y offset from a first cluster block to the second cluster
+     * @param alongX  x step along the opening
+     * @param alongY  y step along the opening
+     * @param length  length of the opening
+     */
+    protected void addEntrances(List<Node> border, Cluster first, Cluster second, int x, int y, int crossX, int crossY, int alongX, int alongY, int length) {
+        if (length <= MAX_SINGLE_ENTRANCE_WIDTH) {
+            addEntrance(border, first, second, x + alongX * (length / 2), y + alongY * (length / 2), crossX, crossY);
+        } else {
+            addEntrance(border, first, second, x, y, crossX, crossY);
+            addEntrance(border, first, second, x + alongX * (length - 1), y + alongY * (length - 1), crossX, crossY);
+        }
+    }
+
+    /**
+     * Adds a pair of connected entrance nodes
+     *
+     * @param border border to add the nodes to
+     * @param first  the cluster on the left or bottom side
+     * @param second the cluster on the right or top side
+     * @param x      x of the entrance block in the first cluster
+     * @param y      y of the entrance block in the first cluster
+     * @param crossX x offset to the second cluster's entrance block
+     * @param crossY y offset to the second cluster's entrance block
+     */
+    protected void addEntrance(List<Node> border, Cluster first, Cluster second, int x, int y, int crossX, int crossY) {
+        Node firstNode = new Node(x, y, first);
+        Node secondNode = new Node(x + crossX, y + crossY, second);
+
+        firstNode.crossing = secondNode;
+        secondNode.crossing = firstNode;
+
+        border.add(firstNode);
+        border.add(secondNode);
+    }
+
+    /**
+     * Collects the cluster's entrance nodes and recalculates the edges between them
+     *
+     * @param cluster cluster to recalculate
+     */
+    protected void rebuildEdges(Cluster cluster) {
+        cluster.nodes.clear();
+
+        int cx = cluster.index % clustersX;
+        int cy = cluster.index / clustersX;
+
+        if (cx > 0) {
+            collectNodes(cluster, verticalBorders[cluster.index - 1]);
+        }
+
+        if (cx < clustersX - 1) {
+            collectNodes(cluster, verticalBorders[cluster.index]);
+        }
+
+        if (cy > 0) {
+            collectNodes(cluster, horizontalBorders[cluster.index - clustersX]);
+        }
+
+        if (cy < clustersY - 1) {
+            collectNodes(cluster, horizontalBorders[cluster.index]);
+        }
+
+        for (Node node : cluster.nodes) {
+            node.edgeCount = 0;
+
+            searchCluster(cluster, node.x, node.y);
+
+            for (Node other : cluster.nodes) {
+                if (other != node) {
+                    float cost = getLocalCost(cluster, other.x, other.y);
+
+                    if (cost >= 0) {
+                        node.addEdge(other, cost);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the nodes of a border that belong to the given cluster to the cluster's node list
+     *
+     * @param cluster cluster to add the nodes to
+     * @param border  border to take the nodes from
+     */
+    protected void collectNodes(Cluster cluster, List<Node> border) {
+        for (Node node : border) {
+            if (node.cluster == cluster) {
+                cluster.nodes.add(node);
+            }
+        }
+    }
+
+    /**
+     * Finds the costs of the shortest paths from a block to every block of the
+     * cluster without leaving the cluster
+     *
+     * @param cluster cluster to search
+     * @param x       x of the block to search from
+     * @param y       y of the block to search from
+     */
+    protected void searchCluster(Cluster cluster, int x, int y) {
+        localSearchId++;
+
+        if (localSearchId == Integer.MAX_VALUE) {
+            Arrays.fill(localMarks, 0);
+            localSearchId = 1;
+        }
+
+        localOpenList.clear();
+
+        if (!isPassable(x, y)) {
+            return;
+        }
+
+        int start = (y - cluster.startY) * clusterSize + (x - cluster.startX);
+
+        localCosts[start] = 0;
+        localMarks[start] = localSearchId;
+        localOpenList.push(start, 0);
+
+        while (!localOpenList.isEmpty()) {
+            float cost = localOpenList.peekKey();
+            int node = localOpenList.pop();
+
+            if (cost > localCosts[node]) {
+                continue;
+            }
+
+            int nodeX = cluster.startX + node % clusterSize;
+            int nodeY = cluster.startY + node / clusterSize;
+
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nextX = nodeX + dx;
+                    int nextY = nodeY + dy;
+
+                    if ((dx == 0 && dy == 0) || nextX < cluster.startX || nextY < cluster.startY
+                            || nextX >= cluster.endX || nextY >= cluster.endY || !isPassable(nextX, nextY)) {
+                        continue;
+                    }
+
+                    int next = (nextY - cluster.startY) * clusterSize + (nextX - cluster.startX);
+                    float nextCost = cost + (dx != 0 && dy != 0 ? DIAGONAL_COST : 1);
+
+                    if (localMarks[next] != localSearchId || nextCost < localCosts[next]) {
+                        localMarks[next] = localSearchId;
+                        localCosts[next] = nextCost;
+                        localOpenList.push(next, nextCost);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the cost of a block found by the last local search
+     *
+     * @param cluster the searched cluster
+     * @param x       block x
+     * @param y       block y
+     * @return the cost, -1 if the block was not reached
+     */
+    protected float getLocalCost(Cluster cluster, int x, int y) {
+        int node = (y - cluster.startY) * clusterSize + (x - cluster.startX);
+
+        return localMarks[node] == localSearchId ? localCosts[node] : -1;
+    }
+
+    /**
+     * Searches the abstract graph for a route between 2 blocks
+     *
+     * @param startX start x
+     * @param startY start y
+     * @param goalX  goal x
+     * @param goalY  goal y
+     * @param route  list to which the route's cluster entry blocks and the goal will be added
+     *               as packed (y * map width + x) block ids
+     * @return true if a route was found
+     */
+    public boolean findRoute(int startX, int startY, int goalX, int goalY, List<Integer> route) {
+        return findRoute(startX, startY, goalX, goalY, route, PathFinder.NO_SEARCH_DEADLINE);
+    }
+
+    /**
+     * Searches the abstract graph for a route between 2 blocks. If the search runs out of
+     * time, the route ends at the expanded node closest to the goal instead
+     *
+     * @param startX   start x
+     * @param startY   start y
+     * @param goalX    goal x
+     * @param goalY    goal y
+     * @param route    list to which the route's cluster entry blocks and the goal will be added
+     *                 as packed (y * map width + x) block ids
+     * @param deadline System.nanoTime() value at which the search stops, or PathFinder.NO_SEARCH_DEADLINE
+     * @return true if a route was found
+     */
+    public boolean findRoute(int startX, int startY, int goalX, int goalY, List<Integer> route, long deadline) {
+        routeTimedOut = false;
+
+        update();
+
+        if (!isPassable(startX, startY) || !isPassable(goalX, goalY)) {
+            return false;
+        }
+
+        searchId++;
+
+        Cluster startCluster = clusters[getClusterIndex(startX, startY)];
+        Cluster goalCluster = clusters[getClusterIndex(goalX, goalY)];
+
+        // find which goal cluster nodes can reach the goal and at what cost
+        searchCluster(goalCluster, goalX, goalY);
+
+        boolean goalReachable = false;
+
+        for (Node node : goalCluster.nodes) {
+            node.goalCost = getLocalCost(goalCluster, node.x, node.y);
+            goalReachable |= node.goalCost >= 0;
+        }
+
+        if (!goalReachable) {
+            return false;
+        }
+
+        openList.clear();
+        openNodes.clear();
+
+        // connect the start to the nodes of it's cluster
+        searchCluster(startCluster, startX, startY);
+
+        for (Node node : startCluster.nodes) {
+            float cost = getLocalCost(startCluster, node.x, node.y);
+
+            if (cost >= 0) {
+                open(node, null, cost, goalX, goalY);
+            }
+        }
+
+        // the best goal cluster node to leave the abstract graph from, and the total cost through it
+        Node last = null;
+        float lastCost = Float.MAX_VALUE;
+
+        // the expanded node closest to the goal, where the route ends if the search runs out of time
+        Node closest = null;
+        float closestDistance = Float.MAX_VALUE;
+        int expansions = 0;
+
+        while (!openList.isEmpty() && openList.peekKey() < lastCost) {
+            Node node = openNodes.get(openList.pop());
+
+            if (node.closedSearchId == searchId) {
+                continue;
+            }
+
+            node.closedSearchId = searchId;
+
+            float distance = octileDistance(node.x, node.y, goalX, goalY);
+
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = node;
+            }
+
+            if ((++expansions & DEADLINE_CHECK_MASK) == 0 && deadline != PathFinder.NO_SEARCH_DEADLINE
+                    && System.nanoTime() - deadline >= 0 && last == null) {
+                routeTimedOut = true;
+                formRoute(closest, closest.x, closest.y, route);
+
+                return true;
+            }
+
+            if (node.cluster == goalCluster && node.goalCost >= 0 && node.cost + node.goalCost < lastCost) {
+                last = node;
+                lastCost = node.cost + node.goalCost;
+            }
+
+            for (int i = 0; i < node.edgeCount; i++) {
+                open(node.edges[i], node, node.cost + node.edgeCosts[i], goalX, goalY);
+            }
+
+            if (node.crossing != null) {
+                open(node.crossing, node, node.cost + 1, goalX, goalY);
+            }
+        }
+
+        if (last == null) {
+            return false;
+        }
+
+        formRoute(last, goalX, goalY, route);
+
+        return true;
+    }
+
+    /**
+     * Adds a node to the abstract open list if the given cost is better than it's current one
+     *
+     * @param node   node to open
+     * @param parent the node it is reached from
+     * @param cost   cost of reaching the node
+     * @param goalX  goal x
+     * @param goalY  goal y
+     */
+    protected void open(Node node, Node parent, float cost, int goalX, int goalY) {
+        if (node.closedSearchId == searchId) {
+            return;
+        }
+
+        if (node.openSearchId == searchId && node.cost <= cost) {
+            return;
+        }
+
+        node.openSearchId = searchId;
+        node.cost = cost;
+        node.parent = parent;
+
+        openNodes.add(node);
+        openList.push(openNodes.size() - 1, cost + octileDistance(node.x, node.y, goalX, goalY));
+    }
+
+    /**
+     * Checks if the last abstract search ran out of time and it's route ends before the goal
+     *
+     * @return
+     */
+    public boolean hasRouteTimedOut() {
+        return routeTimedOut;
+    }
+
+    /**
+     * Forms the route from the found nodes
+     *
+     * @param last  the last node before the goal
+     * @param goalX goal x
+     * @param goalY goal y
+     * @param route list to add the route to
+     */
+    protected void formRoute(Node last, int goalX, int goalY, List<Integer> route) {
+        int insertAt = route.size();
+
+        route.add(goalY * width + goalX);
+
+        for (Node node = last; node != null; node = node.parent) {
+            // only keep the blocks where the route enters a new cluster
+            if (node.parent != null && node.parent.cluster != node.cluster) {
+                route.add(insertAt, node.y * width + node.x);
+            }
+        }
+    }
+
+    /**
+     * Gets the octile distance between 2 blocks
+     *
+     * @return
+     */
+    protected float octileDistance(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x1 - x2);
+        int dy = Math.abs(y1 - y2);
+
+        return Math.min(dx, dy) * DIAGONAL_COST + Math.abs(dx - dy);
+    }
+
+    /**
+     * A square part of the map
+     */
+    protected class Cluster {
+
+        protected int index;
+
+        // bounds of the cluster in blocks (end exclusive)
+        protected int startX;
+        protected int startY;
+        protected int endX;
+        protected int endY;
+
+        // entrance nodes of the cluster
+        protected List<Node> nodes = new ArrayList<Node>();
+    }
+
+    /**
+     * An entrance block of a cluster
+     */
+    protected class Node {
+
+        protected int x;
+        protected int y;
+        protected Cluster cluster;
+
+        // the matching entrance node in the neighbouring cluster
+        protected Node crossing;
+
+        // nodes of the same cluster reachable from this one and the costs of reaching them
+        protected Node[] edges = new Node[4];
+        protected float[] edgeCosts = new float[4];
+        protected int edgeCount;
+
+        // abstract search data
+        protected float cost;
+        protected float goalCost;
+        protected Node parent;
+        protected int openSearchId;
+        protected int closedSearchId;
+
+        protected Node(int x, int y, Cluster cluster) {
+            this.x = x;
+            this.y = y;
+            this.cluster = cluster;
+        }
+
+        /**
+         * Adds an edge to a node of the same cluster
+         *
+         * @param node node the edge leads to
+         * @param cost cost of reaching the node
+         */
+        protected void addEdge(Node node, float cost) {
+            if (edgeCount == edges.length) {
+                edges = Arrays.copyOf(edges, edgeCount * 2);
+                edgeCosts = Arrays.copyOf(edgeCosts, edgeCount * 2);
+            }
+
+            edges[edgeCount] = node;
+            edgeCosts[edgeCount] = cost;
+            edgeCount++;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.map.blockmap.Block;
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.map.blockmap.BlockMapLayer;
+import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.math.Point;
+
+import java.util.Arrays;
+
+/**
+ * An integration field of path costs from a single destination block. The field is
+ * built once for a whole group of units and every unit then reads it's next step
+ * from the field in constant time, so moving a group costs about the same no matter
+ * how many units it has. Only the static passability of blocks is taken into account,
+ * units have to deal with other units themselves.
+ *
+ * The grids are kept in chunks laid out like the chunks of map layers, and a chunk is
+ * only allocated when the integration first reaches one of it's blocks, so a field takes
+ * memory for the area it covers rather than for the whole map. Chunks are reused between
+ * builds, so a field should be kept and rebuilt instead of creating a new one for every
+ * order. Once too many of them have been allocated, they are dropped when the next build starts
+ */
+public class FlowField {
+
+    // the cost of blocks the field has not reached
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the cost of a straight and a diagonal step
+    protected static final int STRAIGHT_COST = 10;
+    protected static final int DIAGONAL_COST = 14;
+
+    // the direction value of the destination block
+    protected static final byte DESTINATION = -1;
+
+    // chunks are BlockMapLayer.CHUNK_SIZE x BlockMapLayer.CHUNK_SIZE blocks
+    protected static final int CHUNK_SHIFT = BlockMapLayer.CHUNK_SHIFT;
+    protected static final int CHUNK_MASK = BlockMapLayer.CHUNK_SIZE - 1;
+    protected static final int CHUNK_BLOCKS = BlockMapLayer.CHUNK_SIZE * BlockMapLayer.CHUNK_SIZE;
+
+    // how many chunks are kept between builds (13 bytes per block, about 13 MB in total)
+    protected static final int MAX_RETAINED_CHUNKS = 1024;
+
+    // neighbour offsets, every direction's opposite is (direction + 4) % 8
+    protected static final int[] OFFSETS_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    protected static final int[] OFFSETS_Y = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    // the game's map
+    protected BlockMap map;
+
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
+
+    // integration costs of the blocks by chunk
+    protected int[][] costs;
+
+    // the direction in which a unit standing on a block should go next by chunk
+    protected byte[][] directions;
+
+    // costs and directions of a block are only valid if the block's stamp equals the current stamp,
+    // null for chunks the field hasn't reached since they were last dropped
+    protected int[][] stamps;
+    protected int stamp;
+
+    // blocks marked with the current stamp are occupied by the units the field is built for
+    protected int[][] targetStamps;
+
+    // how many chunks are allocated
+    protected int chunkCount;
+
+    // the open list of the integration search
+    protected NodeHeap open;
+
+    // the block the field leads to
+    protected int destinationX;
+    protected int destinationY;
+
+    /**
+     * Default class constructor
+     *
+     * @param map the game's map
+     */
+    public FlowField(BlockMap map) {
+        this.map = map;
+
+        width = (int) map.getWidth();
+        height = (int) map.getHeight();
+
+        chunksPerRow = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunks = chunksPerRow * ((height + CHUNK_MASK) >> CHUNK_SHIFT);
+
+        costs = new int[chunks][];
+        directions = new byte[chunks][];
+        stamps = new int[chunks][];
+        targetStamps = new int[chunks][];
+
+        open = new NodeHeap(Math.max(width, height) * 8);
+    }
+
+    /**
+     * Builds the field towards the given destination. The integration stops as soon as
+     * the blocks of all given units have been reached, so a group's field usually covers
+     * only the part of the map between the group and it's destination
+     *
+     * @param destinationX destination x (in block map coordinates)
+     * @param destinationY destination y (in block map coordinates)
+     * @param units        units that will follow the field
+     */
+    public void build(int destinationX, int destinationY, Iterable<Unit> units) {
+        nextStamp();
+
+        this.destinationX = Math.max(0, Math.min(width - 1, destinationX));
+        this.destinationY = Math.max(0, Math.min(height - 1, destinationY));
+
+        int targetsLeft = markTargets(units);
+
+        int destination = this.destinationY * width + this.destinationX;
+
+        setBlock(this.destinationX, this.destinationY, 0, DESTINATION);
+
+        open.clear();
+        open.push(destination, 0);
+
+        while (!open.isEmpty() && targetsLeft > 0) {
+            int cost = (int) open.peekKey();
+            int node = open.pop();
+            int x = node % width;
+            int y = node / width;
+            int chunk = getChunkIndex(x, y);
+            int index = getIndexInChunk(x, y);
+
+            // stale heap entry, the block has already been reached cheaper
+            if (cost > costs[chunk][index]) {
+                continue;
+            }
+
+            if (targetStamps[chunk][index] == stamp) {
+                targetsLeft--;
+            }
+
+            for (int direction = 0; direction < 8; direction++) {
+                int neighbourX = x + OFFSETS_X[direction];
+                int neighbourY = y + OFFSETS_Y[direction];
+
+                if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) {
+                    continue;
+                }
+
+                if (!map.isBlockStaticallyPassable((short) neighbourX, (short) neighbourY)) {
+                    continue;
+                }
+
+                int neighbourCost = cost + ((direction & 1) == 0 ? STRAIGHT_COST : DIAGONAL_COST);
+
+                if (!isReached(neighbourX, neighbourY) || neighbourCost < getCost(neighbourX, neighbourY)) {
+                    setBlock(neighbourX, neighbourY, neighbourCost, (byte) ((direction + 4) & 7));
+
+                    open.push(neighbourY * width + neighbourX, neighbourCost);
+                }
+            }
+        }
+
+        open.clear();
+    }
+
+    /**
+     * Marks the blocks occupied by the given units as targets of the integration
+     *
+     * @param units units that will follow the field
+     * @return the number of distinct target blocks
+     */
+    protected int markTargets(Iterable<Unit> units) {
+        int count = 0;
+
+        for (Unit unit : units) {
+            float centerX = unit.isMoving() ? unit.getFinalCenterX() : unit.getCenterX();
+            float centerY = unit.isMoving() ? unit.getFinalCenterY() : unit.getCenterY();
+
+            int x = Math.max(0, Math.min(width - 1, (int) (centerX / Block.BLOCK_WIDTH)));
+            int y = Math.max(0, Math.min(height - 1, (int) (centerY / Block.BLOCK_HEIGHT)));
+
+            int chunk = getChunkIndex(x, y);
+            int index = getIndexInChunk(x, y);
+
+            ensureChunk(chunk);
+
+            if (targetStamps[chunk][index] != stamp) {
+                targetStamps[chunk][index] = stamp;
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Advances the stamp so that the values of the previous build become invalid
+     */
+    protected void nextStamp() {
+        stamp++;
+
+        if (stamp == Integer.MAX_VALUE || chunkCount > MAX_RETAINED_CHUNKS) {
+            // unallocated chunks read as unreached, so dropping them also clears the old stamps
+            Arrays.fill(costs, null);
+            Arrays.fill(directions, null);
+            Arrays.fill(stamps, null);
+            Arrays.fill(targetStamps, null);
+            chunkCount = 0;
+
+            if (stamp == Integer.MAX_VALUE) {
+                stamp = 1;
+            }
+        }
+    }
+
+    /**
+     * Allocates a chunk if it hasn't been allocated yet
+     *
+     * @param chunk chunk index
+     */
+    protected void ensureChunk(int chunk) {
+        if (stamps[chunk] == null) {
+            costs[chunk] = new int[CHUNK_BLOCKS];
+            directions[chunk] = new byte[CHUNK_BLOCKS];
+            stamps[chunk] = new int[CHUNK_BLOCKS];
+            targetStamps[chunk] = new int[CHUNK_BLOCKS];
+            chunkCount++;
+        }
+    }
+
+    /**
+     * Marks a block as reached by the current build
+     *
+     * @param x         block x
+     * @param y         block y
+     * @param cost      integration cost of the block
+     * @param direction the direction to go next from the block
+     */
+    protected void setBlock(int x, int y, int cost, byte direction) {
+        int chunk = getChunkIndex(x, y);
+        int index = getIndexInChunk(x, y);
+
+        ensureChunk(chunk);
+
+        stamps[chunk][index] = stamp;
+        costs[chunk][index] = cost;
+        directions[chunk][index] = direction;
+    }
+
+    /**
+     * Gets the index of the chunk containing a block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getChunkIndex(int x, int y) {
+        return (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Gets the index of a block inside it's chunk
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected int getIndexInChunk(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+    }
+
+    /**
+     * Checks if the field has reached the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    public boolean isReached(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+
+        int[] chunk = stamps[getChunkIndex(x, y)];
+
+        return chunk != null && chunk[getIndexInChunk(x, y)] == stamp;
+    }
+
+    /**
+     * Gets the integration cost of the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return the cost or UNREACHED if the field has not reached the block
+     */
+    public int getCost(int x, int y) {
+        return isReached(x, y) ? costs[getChunkIndex(x, y)][getIndexInChunk(x, y)] : UNREACHED;
+    }
+
+    /**
+     * Gets the block a unit standing on the given block should go to next
+     *
+     * @param x    block x
+     * @param y    block y
+     * @param step point that will receive the next block's coordinates
+     * @return false if the block is the destination or has not been reached by the field
+     */
+    public boolean getNextStep(int x, int y, Point step) {
+        if (!isReached(x, y)) {
+            return false;
+        }
+
+        byte direction = directions[getChunkIndex(x, y)][getIndexInChunk(x, y)];
+
+        if (direction == DESTINATION) {
+            return false;
+        }
+
+        step.x = x + OFFSETS_X[direction];
+        step.y = y + OFFSETS_Y[direction];
+
+        return true;
+    }
+
+    /**
+     * Gets the x coordinate of the field's destination block
+     *
+     * @return
+     */
+    public int getDestinationX() {
+        return destinationX;
+    }
+
+    /**
+     * Gets the y coordinate of the field's destination block
+     *
+     * @return
+     */
+    public int getDestinationY() {
+        return destinationY;
+    }
+}
@@ -0,0 +1,138 @@
+package com.gasis.rts.logic.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Per-block scratch data of grid searches, indexed by node id (y * width + x).
+ * Searches run one at a time, so a single instance is shared by the path finders
+ * of every player instead of each of them keeping it's own copy.
+ *
+ * The data is kept in pages of consecutive node ids that are allocated the first time
+ * a search visits one of their nodes, so the memory used depends on how much of the map
+ * searches explore rather than on the size of the map. Once too many pages have been
+ * allocated, they are all dropped when the next search begins
+ */
+public class GridSearchData {
+
+    // pages hold 1 << PAGE_SHIFT nodes
+    protected static final int PAGE_SHIFT = 12;
+    protected static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    // how many pages are kept between searches (12 bytes per node, 12 MB in total)
+    protected static final int MAX_RETAINED_PAGES = 256;
+
+    // the cost of reaching every node by page
+    protected float[][] costPages;
+
+    // the node every node was reached from by page
+    protected int[][] parentPages;
+
+    // search marks of every node by page, nodes marked with older ids are treated as unvisited
+    protected int[][] markPages;
+
+    // how many pages are allocated
+    protected int pageCount;
+
+    // the id of the current search
+    protected int searchId;
+
+    /**
+     * Default class constructor
+     *
+     * @param nodeCount number of nodes (blocks) in the searched grid
+     */
+    public GridSearchData(int nodeCount) {
+        int pages = (nodeCount + PAGE_MASK) >> PAGE_SHIFT;
+
+        costPages = new float[pages][];
+        parentPages = new int[pages][];
+        markPages = new int[pages][];
+    }
+
+    /**
+     * Starts a new search. Every search gets 2 mark values: the open mark (id * 2)
+     * and the closed mark (id * 2 + 1)
+     *
+     * @return the id of the new search
+     */
+    public int beginSearch() {
+        if (searchId >= Integer.MAX_VALUE / 2 - 1 || pageCount > MAX_RETAINED_PAGES) {
+            // unallocated pages read as unvisited, so dropping them also clears the old marks
+            Arrays.fill(costPages, null);
+            Arrays.fill(parentPages, null);
+            Arrays.fill(markPages, null);
+            pageCount = 0;
+        }
+
+        if (searchId >= Integer.MAX_VALUE / 2 - 1) {
+            searchId = 0;
+        }
+
+        return ++searchId;
+    }
+
+    /**
+     * Gets the search mark of a node
+     *
+     * @param node node id
+     * @return
+     */
+    public int getMark(int node) {
+        int[] page = markPages[node >>> PAGE_SHIFT];
+
+        return page == null ? 0 : page[node & PAGE_MASK];
+    }
+
+    /**
+     * Gets the cost of reaching a node, only valid for nodes visited by the current search
+     *
+     * @param node node id
+     * @return
+     */
+    public float getCost(int node) {
+        return costPages[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    /**
+     * Gets the node a node was reached from, only valid for nodes visited by the current search
+     *
+     * @param node node id
+     * @return
+     */
+    public int getParent(int node) {
+        return parentPages[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    /**
+     * Records that a node has been reached
+     *
+     * @param node   node id
+     * @param cost   the cost of reaching the node
+     * @param parent the node it was reached from
+     * @param mark   search mark to give the node
+     */
+    public void visit(int node, float cost, int parent, int mark) {
+        int page = node >>> PAGE_SHIFT;
+
+        if (markPages[page] == null) {
+            costPages[page] = new float[PAGE_MASK + 1];
+            parentPages[page] = new int[PAGE_MASK + 1];
+            markPages[page] = new int[PAGE_MASK + 1];
+            pageCount++;
+        }
+
+        costPages[page][node & PAGE_MASK] = cost;
+        parentPages[page][node & PAGE_MASK] = parent;
+        markPages[page][node & PAGE_MASK] = mark;
+    }
+
+    /**
+     * Changes the search mark of a node that has already been visited
+     *
+     * @param node node id
+     * @param mark new search mark
+     */
+    public void setMark(int node, int mark) {
+        markPages[node >>> PAGE_SHIFT][node & PAGE_MASK] = mark;
+    }
+}
@@ -0,0 +1,220 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.object.unit.Unit;
+
+import java.util.*;
+
+/**
+ * Finds paths using hierarchical path finding (HPA*). Long paths are first searched
+ * for in the small abstract graph of map clusters, and only the part of the path
+ * that goes through the next cluster is refined on the block grid. The rest of the
+ * path gets refined when the unit reaches the end of the refined part
+ */
+public class HierarchicalPathFinder extends JumpPointPathFinder {
+
+    // the abstract graph of map clusters
+    protected ClusterGraph graph;
+
+    // the cluster entry blocks (and the final destination) each unit still has to go through
+    protected PathStore routes = new PathStore();
+
+    // the maximum number of nodes a single cluster refinement can expand
+    protected int maxLegExpansions;
+
+    // used to temporarily store abstract routes
+    protected List<Integer> route = new ArrayList<Integer>();
+
+    /**
+     * Default class constructor
+     *
+     * @param map
+     */
+    public HierarchicalPathFinder(BlockMap map) {
+        this(map, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Class constructor with a custom cluster size
+     *
+     * @param map         the game's map
+     * @param clusterSize cluster width and height in blocks
+     */
+    public HierarchicalPathFinder(BlockMap map, int clusterSize) {
+        super(map);
+
+        // the default sized graph is shared by the path finders of every player
+        graph = clusterSize == ClusterGraph.DEFAULT_CLUSTER_SIZE ? map.getClusterGraph() : new ClusterGraph(map, clusterSize);
+
+        maxLegExpansions = clusterSize * clusterSize * 4;
+    }
+
+    /**
+     * Gets the abstract graph used by the path finder
+     *
+     * @return
+     */
+    public ClusterGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Searches for a path between the given object and the destination point
+     * and saves the found path
+     *
+     * @param object the object for which the path will be found
+     * @param x      destination x
+     * @param y      destination y
+     */
+    @Override
+    protected void searchPath(Unit object, short x, short y, boolean forceFind) {
+        if (!canFindPath(object, forceFind)) {
+            return;
+        }
+
+        routes.remove(object);
+
+        int startX = Math.max(0, Math.min(width - 1, getObjectBlockX(object)));
+        int startY = Math.max(0, Math.min(height - 1, getObjectBlockY(object)));
+        int destX = Math.max(0, Math.min(width - 1, x));
+        int destY = Math.max(0, Math.min(height - 1, y));
+
+        // short paths are cheaper to find directly
+        if (graph.getClusterIndex(startX, startY) == graph.getClusterIndex(destX, destY)
+                || octileDistance(startX, startY, destX, destY) < graph.getClusterSize() * 2) {
+            findDirectPath(object, destX, destY, maxExpansions);
+            return;
+        }
+
+        route.clear();
+
+        if (!graph.findRoute(startX, startY, destX, destY, route, searchDeadline)) {
+            // no route when units are ignored, let the bounded grid search find the closest block
+            findDirectPath(object, destX, destY, maxExpansions);
+            return;
+        }
+
+        ensurePathBufferCapacity(route.size());
+
+        for (int i = 0; i < route.size(); i++) {
+            pathBuffer[i] = route.get(i);
+        }
+
+        routes.setPath(object, pathBuffer, route.size());
+
+        refineNextLeg(object);
+
+        // a leg cut short by the search deadline is refined again when the unit gets to the
+        // end of it, but a route that ends before the destination has to be searched again
+        searchTimedOut = graph.hasRouteTimedOut();
+    }
+
+    /**
+     * Re-finds the given object's path to it's destination
+     *
+     * @param object object to find the path for
+     */
+    @Override
+    public void refindPathToObject(Unit object, boolean forceFind) {
+        int legEnd = paths.getLastBlock(object);
+
+        if (routes.getRemainingBlocks(object) == 0 || getGroup(object) == null || legEnd == PathStore.NO_BLOCK) {
+            super.refindPathToObject(object, forceFind);
+            return;
+        }
+
+        // only re-find the currently refined part, the rest of the route stays the same
+        if (canFindPath(object, forceFind)) {
+            findDirectPath(object, legEnd % width, legEnd / width, maxLegExpansions);
+        }
+    }
+
+    /**
+     * Refines the unit's route up to the next cluster entry block
+     *
+     * @param object unit to refine the route for
+     */
+    protected void refineNextLeg(Unit object) {
+        int next = routes.getNextBlock(object);
+
+        if (next == PathStore.NO_BLOCK) {
+            routes.remove(object);
+            return;
+        }
+
+        findDirectPath(object, next % width, next / width, maxLegExpansions);
+
+        // the leg didn't reach the route block, so the next leg has to go to it again
+        if (searchTimedOut) {
+            return;
+        }
+
+        routes.advance(object);
+
+        if (routes.getRemainingBlocks(object) == 0) {
+            routes.remove(object);
+        }
+    }
+
+    /**
+     * Gets the next point from the given object's path
+     *
+     * @param object object to get the next point for
+     * @return
+     */
+    @Override
+    public Point getNextPathPointForObject(Unit object) {
+        Point next = super.getNextPathPointForObject(object);
+
+        // the refined part has been walked, refine the next one
+        while (next == null && routes.hasPath(object) && getGroup(object) != null) {
+            refineNextLeg(object);
+            next = super.getNextPathPointForObject(object);
+        }
+
+        return next;
+    }
+
+    /**
+     * Gets unit's final destination
+     *
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
+     */
+    @Override
+    public boolean getFinalDestination(Unit unit, com.gasis.rts.math.Point destination) {
+        int block = routes.getLastBlock(unit);
+
+        if (block != PathStore.NO_BLOCK) {
+            destination.x = block % width;
+            destination.y = block / width;
+            return true;
+        }
+
+        return super.getFinalDestination(unit, destination);
+    }
+
+    /**
+     * Removes the given unit's path and the rest of it's route, but keeps the unit
+     * in it's path group
+     *
+     * @param unit unit associated with a path
+     */
+    @Override
+    protected void forgetPath(Unit unit) {
+        routes.remove(unit);
+
+        super.forgetPath(unit);
+    }
+
+    /**
+     * Clears found path list
+     */
+    @Override
+    public void clearAllPaths() {
+        routes.clear();
+
+        super.clearAllPaths();
+    }
+}
@@ -0,0 +1,483 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.object.unit.Unit;
+
+/**
+ * Finds optimal paths on a block map using A* with jump point search.
+ * The map is treated as an 8-connected grid on which diagonal moves are
+ * allowed even next to obstacles, the same way units move
+ */
+public class JumpPointPathFinder extends PathFinder {
+
+    // the cost of a diagonal step (the cost of a straight step is 1)
+    protected static final float DIAGONAL_COST = 1.4142135f;
+
+    // value used in the parent array for nodes without a parent
+    protected static final int NO_PARENT = -1;
+
+    // the maximum number of nodes the search can expand before it gives up
+    // and goes to the closest node found so far
+    protected int maxExpansions;
+
+    // per-search scratch data, indexed by node id (y * width + x)
+    // shared with the other path finders of the map, taken on the first search
+    protected GridSearchData searchData;
+
+    // open node marker value of the current search
+    protected int openMark;
+
+    // closed node marker value of the current search
+    protected int closedMark;
+
+    // the open list
+    protected NodeHeap openList = new NodeHeap(256);
+
+    // the path group of the unit the current search is for
+    protected PathGroup searchGroup;
+
+    // the current search's goal
+    protected int goalX;
+    protected int goalY;
+
+    // pruned neighbour directions of the node being expanded (x and y interleaved)
+    protected int[] directions = new int[16];
+
+    /**
+     * Default class constructor
+     *
+     * @param map
+     */
+    public JumpPointPathFinder(BlockMap map) {
+        super(map);
+
+        maxExpansions = Math.max(2048, width * height / 16);
+    }
+
+    /**
+     * Sets the maximum number of nodes a single search can expand
+     *
+     * @param maxExpansions expansion limit
+     */
+    public void setMaxExpansions(int maxExpansions) {
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Searches for a path between the given object and the destination point
+     * and saves the found path
+     *
+     * @param object the object for which the path will be found
+     * @param x      destination x
+     * @param y      destination y
+     */
+    @Override
+    protected void searchPath(Unit object, short x, short y, boolean forceFind) {
+        if (!canFindPath(object, forceFind)) {
+            return;
+        }
+
+        findDirectPath(object, x, y, maxExpansions);
+    }
+
+    /**
+     * Searches the block grid for a path between the given object and the destination
+     * point and saves the found path
+     *
+     * @param object         the object for which the path will be found
+     * @param x              destination x
+     * @param y              destination y
+     * @param expansionLimit the maximum number of nodes the search can expand
+     */
+    protected void findDirectPath(Unit object, int x, int y, int expansionLimit) {
+        PathGroup group = getGroup(object);
+
+        if (group == null) {
+            group = newestGroup;
+        }
+
+        int startX = Math.max(0, Math.min(width - 1, getObjectBlockX(object)));
+        int startY = Math.max(0, Math.min(height - 1, getObjectBlockY(object)));
+
+        searchGroup = group;
+        goalX = Math.max(0, Math.min(width - 1, x));
+        goalY = Math.max(0, Math.min(height - 1, y));
+
+        int end = jumpPointSearch(startX, startY, expansionLimit);
+
+        storePath(object, startY * width + startX, formPath(startY * width + startX, end));
+
+        searchGroup = null;
+    }
+
+    /**
+     * Runs A* with jump point search from the given start to the current goal.
+     * The search also stops when the search deadline passes
+     *
+     * @param startX         start x
+     * @param startY         start y
+     * @param expansionLimit the maximum number of nodes the search can expand
+     * @return the goal node if it was reached, otherwise the expanded node closest to the goal
+     */
+    protected int jumpPointSearch(int startX, int startY, int expansionLimit) {
+        beginSearch();
+
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+
+        searchData.visit(start, 0, NO_PARENT, openMark);
+        openList.push(start, heuristic(startX, startY));
+
+        int best = start;
+        float bestDistance = heuristic(startX, startY);
+        int expansions = 0;
+
+        while (!openList.isEmpty()) {
+            int node = openList.pop();
+
+            // stale heap entry of an already expanded node
+            if (searchData.getMark(node) == closedMark) {
+                continue;
+            }
+
+            searchData.setMark(node, closedMark);
+
+            if (node == goal) {
+                return goal;
+            }
+
+            int nodeX = node % width;
+            int nodeY = node / width;
+            float distance = heuristic(nodeX, nodeY);
+
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = node;
+            }
+
+            if (++expansions > expansionLimit) {
+                break;
+            }
+
+            if (isPastSearchDeadline()) {
+                searchTimedOut = true;
+                break;
+            }
+
+            identifySuccessors(node, nodeX, nodeY);
+        }
+
+        return best;
+    }
+
+    /**
+     * Prepares scratch data for a new search
+     */
+    protected void beginSearch() {
+        if (searchData == null) {
+            searchData = map.getSearchData();
+        }
+
+        int searchId = searchData.beginSearch();
+
+        openMark = searchId * 2;
+        closedMark = searchId * 2 + 1;
+
+        openList.clear();
+    }
+
+    /**
+     * Jumps in every pruned direction from the given node and adds the found jump points
+     * to the open list
+     *
+     * @param node  expanded node
+     * @param nodeX x of the expanded node
+     * @param nodeY y of the expanded node
+     */
+    protected void identifySuccessors(int node, int nodeX, int nodeY) {
+        int count = findNeighbourDirections(node, nodeX, nodeY);
+
+        for (int i = 0; i < count; i++) {
+            int jumpPoint = jump(nodeX, nodeY, directions[i * 2], directions[i * 2 + 1]);
+
+            if (jumpPoint == NO_PARENT) {
+                continue;
+            }
+
+            int mark = searchData.getMark(jumpPoint);
+
+            if (mark == closedMark) {
+                continue;
+            }
+
+            int jumpX = jumpPoint % width;
+            int jumpY = jumpPoint / width;
+            float cost = searchData.getCost(node) + octileDistance(nodeX, nodeY, jumpX, jumpY);
+
+            if (mark != openMark || cost < searchData.getCost(jumpPoint)) {
+                searchData.visit(jumpPoint, cost, node, openMark);
+                openList.push(jumpPoint, cost + heuristic(jumpX, jumpY));
+            }
+        }
+    }
+
+    /**
+     * Finds the directions worth exploring from a node, pruning the ones that can be
+     * reached optimally without going through the node
+     *
+     * @param node  node to find the directions for
+     * @param nodeX x of the node
+     * @param nodeY y of the node
+     * @return the number of directions found
+     */
+    protected int findNeighbourDirections(int node, int nodeX, int nodeY) {
+        int count = 0;
+        int parent = searchData.getParent(node);
+
+        if (parent == NO_PARENT) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if ((dx != 0 || dy != 0) && walkable(nodeX + dx, nodeY + dy)) {
+                        count = addDirection(count, dx, dy);
+                    }
+                }
+            }
+
+            return count;
+        }
+
+        int dx = Integer.signum(nodeX - parent % width);
+        int dy = Integer.signum(nodeY - parent / width);
+
+        if (dx != 0 && dy != 0) {
+            if (walkable(nodeX, nodeY + dy)) {
+                count = addDirection(count, 0, dy);
+            }
+
+            if (walkable(nodeX + dx, nodeY)) {
+                count = addDirection(count, dx, 0);
+            }
+
+            if (walkable(nodeX + dx, nodeY + dy)) {
+                count = addDirection(count, dx, dy);
+            }
+
+            // forced neighbours
+            if (!walkable(nodeX - dx, nodeY)) {
+                count = addDirection(count, -dx, dy);
+            }
+
+            if (!walkable(nodeX, nodeY - dy)) {
+                count = addDirection(count, dx, -dy);
+            }
+        } else if (dx == 0) {
+            if (walkable(nodeX, nodeY + dy)) {
+                count = addDirection(count, 0, dy);
+            }
+
+            // forced neighbours
+            if (!walkable(nodeX + 1, nodeY)) {
+                count = addDirection(count, 1, dy);
+            }
+
+            if (!walkable(nodeX - 1, nodeY)) {
+                count = addDirection(count, -1, dy);
+            }
+        } else {
+            if (walkable(nodeX + dx, nodeY)) {
+                count = addDirection(count, dx, 0);
+            }
+
+            // forced neighbours
+            if (!walkable(nodeX, nodeY + 1)) {
+                count = addDirection(count, dx, 1);
+            }
+
+            if (!walkable(nodeX, nodeY - 1)) {
+                count = addDirection(count, dx, -1);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds a direction to the direction array
+     *
+     * @param count current number of directions
+     * @param dx    direction x
+     * @param dy    direction y
+     * @return the new number of directions
+     */
+    protected int addDirection(int count, int dx, int dy) {
+        directions[count * 2] = dx;
+        directions[count * 2 + 1] = dy;
+
+        return count + 1;
+    }
+
+    /**
+     * Moves from the given block in the given direction until a jump point is found
+     *
+     * @param x  x of the block to jump from
+     * @param y  y of the block to jump from
+     * @param dx jump direction x
+     * @param dy jump direction y
+     * @return the found jump point, NO_PARENT if there is none
+     */
+    protected int jump(int x, int y, int dx, int dy) {
+        if (dx == 0 || dy == 0) {
+            return jumpStraight(x, y, dx, dy);
+        }
+
+        while (true) {
+            x += dx;
+            y += dy;
+
+            if (!walkable(x, y)) {
+                return NO_PARENT;
+            }
+
+            if (x == goalX && y == goalY) {
+                return y * width + x;
+            }
+
+            if ((walkable(x - dx, y + dy) && !walkable(x - dx, y)) || (walkable(x + dx, y - dy) && !walkable(x, y - dy))) {
+                return y * width + x;
+            }
+
+            // a diagonal block is a jump point if a straight jump from it finds something
+            if (jumpStraight(x, y, dx, 0) != NO_PARENT || jumpStraight(x, y, 0, dy) != NO_PARENT) {
+                return y * width + x;
+            }
+
+            // on open ground a diagonal jump scans whole rows and columns for every step,
+            // out of time the block is expanded like a jump point so that the search can stop
+            if (isPastSearchDeadline()) {
+                return y * width + x;
+            }
+        }
+    }
+
+    /**
+     * Moves horizontally or vertically from the given block until a jump point is found
+     *
+     * @param x  x of the block to jump from
+     * @param y  y of the block to jump from
+     * @param dx jump direction x
+     * @param dy jump direction y
+     * @return the found jump point, NO_PARENT if there is none
+     */
+    protected int jumpStraight(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+
+            if (!walkable(x, y)) {
+                return NO_PARENT;
+            }
+
+            if (x == goalX && y == goalY) {
+                return y * width + x;
+            }
+
+            if (dx != 0) {
+                if ((walkable(x + dx, y + 1) && !walkable(x, y + 1)) || (walkable(x + dx, y - 1) && !walkable(x, y - 1))) {
+                    return y * width + x;
+                }
+            } else {
+                if ((walkable(x + 1, y + dy) && !walkable(x + 1, y)) || (walkable(x - 1, y + dy) && !walkable(x - 1, y))) {
+                    return y * width + x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the unit the current search is for can walk on the given block
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected boolean walkable(int x, int y) {
+        return blockWalkable(searchGroup, x, y);
+    }
+
+    /**
+     * Forms a block-by-block path from the found jump points in the path buffer
+     *
+     * @param start start node
+     * @param end   end node
+     * @return the length of the path (the start block is not included)
+     */
+    protected int formPath(int start, int end) {
+        int length = 0;
+        int node = end;
+
+        // count the blocks first so that the path can be written in walking order
+        while (node != start) {
+            int parent = searchData.getParent(node);
+
+            length += Math.max(Math.abs(node % width - parent % width), Math.abs(node / width - parent / width));
+            node = parent;
+        }
+
+        ensurePathBufferCapacity(length);
+
+        int index = length;
+        node = end;
+
+        while (node != start) {
+            int parent = searchData.getParent(node);
+
+            int x = node % width;
+            int y = node / width;
+            int parentX = parent % width;
+            int parentY = parent / width;
+
+            int stepX = Integer.signum(parentX - x);
+            int stepY = Integer.signum(parentY - y);
+
+            // jump point segments are straight or diagonal, so fill them in step by step
+            while (x != parentX || y != parentY) {
+                pathBuffer[--index] = y * width + x;
+
+                if (x != parentX) {
+                    x += stepX;
+                }
+
+                if (y != parentY) {
+                    y += stepY;
+                }
+            }
+
+            node = parent;
+        }
+
+        return length;
+    }
+
+    /**
+     * Gets the octile distance between 2 blocks
+     *
+     * @return
+     */
+    protected float octileDistance(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x1 - x2);
+        int dy = Math.abs(y1 - y2);
+
+        return Math.min(dx, dy) * DIAGONAL_COST + Math.abs(dx - dy);
+    }
+
+    /**
+     * Estimates the remaining cost from the given block to the goal
+     *
+     * @param x block x
+     * @param y block y
+     * @return
+     */
+    protected float heuristic(int x, int y) {
+        return octileDistance(x, y, goalX, goalY);
+    }
+}
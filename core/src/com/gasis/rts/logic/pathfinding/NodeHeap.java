@@ -0,0 +1,148 @@
+package com.gasis.rts.logic.pathfinding;
+
+/**
+ * Binary min-heap of int-packed path finding nodes ordered by a float key.
+ * Keeps everything in primitive arrays so that no objects are created while searching
+ */
+public class NodeHeap {
+
+    // node ids in heap order
+    protected int[] nodes;
+
+    // keys of the nodes in heap order
+    protected float[] keys;
+
+    // how many nodes are in the heap
+    protected int size;
+
+    /**
+     * Default class constructor
+     *
+     * @param initialCapacity how many nodes the heap can hold before growing
+     */
+    public NodeHeap(int initialCapacity) {
+        nodes = new int[Math.max(16, initialCapacity)];
+        keys = new float[nodes.length];
+    }
+
+    /**
+     * Adds a node to the heap
+     *
+     * @param node node id
+     * @param key  node's key (lower keys are popped first)
+     */
+    public void push(int node, float key) {
+        if (size == nodes.length) {
+            grow();
+        }
+
+        int index = size++;
+
+        // sift up
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+
+            if (keys[parent] <= key) {
+                break;
+            }
+
+            nodes[index] = nodes[parent];
+            keys[index] = keys[parent];
+            index = parent;
+        }
+
+        nodes[index] = node;
+        keys[index] = key;
+    }
+
+    /**
+     * Removes the node with the lowest key from the heap
+     *
+     * @return id of the removed node
+     */
+    public int pop() {
+        int top = nodes[0];
+
+        size--;
+
+        if (size > 0) {
+            int node = nodes[size];
+            float key = keys[size];
+            int index = 0;
+
+            // sift down
+            while (true) {
+                int child = (index << 1) + 1;
+
+                if (child >= size) {
+                    break;
+                }
+
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+
+                if (keys[child] >= key) {
+                    break;
+                }
+
+                nodes[index] = nodes[child];
+                keys[index] = keys[child];
+                index = child;
+            }
+
+            nodes[index] = node;
+            keys[index] = key;
+        }
+
+        return top;
+    }
+
+    /**
+     * Gets the key of the node that will be popped next
+     *
+     * @return
+     */
+    public float peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Checks if the heap is empty
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of nodes in the heap
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all nodes from the heap
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Doubles the capacity of the heap
+     */
+    protected void grow() {
+        int[] newNodes = new int[nodes.length * 2];
+        float[] newKeys = new float[keys.length * 2];
+
+        System.arraycopy(nodes, 0, newNodes, 0, size);
+        System.arraycopy(keys, 0, newKeys, 0, size);
+
+        nodes = newNodes;
+        keys = newKeys;
+    }
+}
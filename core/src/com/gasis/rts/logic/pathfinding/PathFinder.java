@@ -16,14 +16,24 @@ public class PathFinder implements PathFinderInterface {
     // the game's map
     protected BlockMap map;
 
-    // all existing path groups
-    protected Set<PathGroup> groups = new HashSet<PathGroup>();
+    // map dimensions in blocks
+    protected int width;
+    protected int height;
+
+    // the path group of every unit that has one
+    protected Map<Unit, PathGroup> unitGroups = new IdentityHashMap<Unit, PathGroup>();
 
     // the newest created path group to which new paths will be put
     protected PathGroup newestGroup;
 
-    // path groups to be removed from the group set
-    protected List<PathGroup> groupsToRemove = new ArrayList<PathGroup>();
+    // found paths of all units
+    protected PathStore paths = new PathStore();
+
+    // used to temporarily store a path before it's put into the path store
+    protected int[] pathBuffer = new int[64];
+
+    // the next path point returned to the caller (reused to avoid creating a point for every query)
+    protected Point nextPathPoint = new Point(0, 0);
 
     // the maximum allowed distance the algorithm can cover to avoid an obstacle
     protected float maxObstacleDistance;
@@ -31,6 +41,18 @@ public class PathFinder implements PathFinderInterface {
     // how many times can a single object request for a new path per second
     public static final int MAX_PATH_FINDS_PER_SECOND = 3;
 
+    // search deadline value that lets searches run until they finish
+    public static final long NO_SEARCH_DEADLINE = Long.MAX_VALUE;
+
+    // System.nanoTime() value at which searches stop
+    protected long searchDeadline = NO_SEARCH_DEADLINE;
+
+    // did the last search run out of time
+    protected boolean searchTimedOut;
+
+    // how many blocks ahead path smoothing looks for a block that can be gone to directly
+    protected static final int MAX_SMOOTHING_LOOKAHEAD = 24;
+
     /**
      * Default class constructor
      *
@@ -39,6 +61,9 @@ public class PathFinder implements PathFinderInterface {
     public PathFinder(BlockMap map) {
         this.map = map;
 
+        width = (int) map.getWidth();
+        height = (int) map.getHeight();
+
         maxObstacleDistance = Math.max(20, Math.min(map.getWidth(), map.getHeight()) / 3);
     }
 
@@ -52,7 +77,7 @@ public class PathFinder implements PathFinderInterface {
     @Override
     public void findPathsToObjects(Iterable<Unit> objects, short x, short y, boolean forceFind) {
         for (Unit unit : objects) {
-            depthFirst(unit, x, y, forceFind);
+            findPathToObject(unit, x, y, forceFind);
         }
     }
 
@@ -63,7 +88,13 @@ public class PathFinder implements PathFinderInterface {
      */
     @Override
     public void findPathToObject(Unit object, short x, short y, boolean forceFind) {
-        depthFirst(object, x, y, forceFind);
+        // the old path leads to the old destination, the unit stops if no new path can be found
+        forgetPath(object);
+
+        // a destination that can't be reached would make the search explore everything it can
+        int destination = map.getRegions().getReachableBlock(getObjectBlockX(object), getObjectBlockY(object), x, y);
+
+        searchPath(object, (short) (destination % width), (short) (destination / width), forceFind);
     }
 
     /**
@@ -73,16 +104,37 @@ public class PathFinder implements PathFinderInterface {
      */
     @Override
     public void refindPathToObject(Unit object, boolean forceFind) {
-        for (PathGroup group : groups) {
-            if (group.foundPaths.containsKey(object)) {
-                depthFirst(object, (short) group.foundPaths.get(object).getLast().x, (short) group.foundPaths.get(object).getLast().y, forceFind);
-                break;
-            }
+        int destination = paths.getLastBlock(object);
+
+        if (destination != PathStore.NO_BLOCK && unitGroups.containsKey(object)) {
+            searchPath(object, (short) (destination % width), (short) (destination / width), forceFind);
         }
     }
 
     /**
-     * Creates a new path group
+     * Checks if the given unit has a path request that hasn't been executed yet
+     *
+     * @param unit unit to check
+     * @return
+     */
+    @Override
+    public boolean isPathRequestPending(Unit unit) {
+        // paths are found immediately
+        return false;
+    }
+
+    /**
+     * Updates the state of the object
+     *
+     * @param delta time elapsed since the last update
+     */
+    @Override
+    public void update(float delta) {
+    }
+
+    /**
+     * Creates a new path group. The units keep following their current paths until
+     * new ones are found for them
      *
      * @param units units that will be a part of the group
      */
@@ -91,44 +143,63 @@ public class PathFinder implements PathFinderInterface {
         PathGroup group = new PathGroup();
 
         for (Unit unit : units) {
-            for (PathGroup group1 : groups) {
-                group1.foundPaths.remove(unit);
-            }
-
-            group.foundPaths.put(unit, null);
+            unitGroups.put(unit, group);
         }
 
         newestGroup = group;
-        groups.add(group);
-        removeEmptyGroups();
     }
 
     /**
-     * Removes empty path groups to avoid memory leaking
+     * Limits how long searches can run. A search still running when System.nanoTime()
+     * passes the deadline stops and goes to the closest block it has found
+     *
+     * @param deadlineNanos System.nanoTime() value to stop at, or NO_SEARCH_DEADLINE
      */
-    protected void removeEmptyGroups() {
-        for (PathGroup group : groups) {
-            if (group.foundPaths.isEmpty()) {
-                groupsToRemove.add(group);
-            }
-        }
+    @Override
+    public void setSearchDeadline(long deadlineNanos) {
+        searchDeadline = deadlineNanos;
+    }
 
-        for (PathGroup group : groupsToRemove) {
-            groups.remove(group);
-        }
+    /**
+     * Checks if the last search ran out of time before it reached it's destination
+     *
+     * @return
+     */
+    @Override
+    public boolean hasSearchTimedOut() {
+        return searchTimedOut;
+    }
 
-        groupsToRemove.clear();
+    /**
+     * Checks if the search deadline has passed
+     *
+     * @return
+     */
+    protected boolean isPastSearchDeadline() {
+        return searchDeadline != NO_SEARCH_DEADLINE && System.nanoTime() - searchDeadline >= 0;
     }
 
     /**
-     * Performs a greedy depth-first search algorithm between the given points
+     * Searches for a path between the given object and the destination point
      * and saves the found path
      *
      * @param object the object for which the path will be found
      * @param x      destination x
      * @param y      destination y
      */
-    protected void depthFirst(Unit object, short x, short y, boolean forceFind) {
+    protected void searchPath(Unit object, short x, short y, boolean forceFind) {
+        depthFirst(object, x, y, forceFind);
+    }
+
+    /**
+     * Checks if the given object is allowed to search for a path right now
+     * and updates it's path finding timestamp if it is. Called when a search starts
+     *
+     * @param object    the object for which the path will be found
+     * @param forceFind should the per second limit be ignored
+     * @return
+     */
+    protected boolean canFindPath(Unit object, boolean forceFind) {
         if (newestGroup == null) {
             throw new IllegalStateException("No path groups created");
         }
@@ -136,10 +207,27 @@ public class PathFinder implements PathFinderInterface {
         long currentTimestamp = System.currentTimeMillis();
 
         if (!forceFind && currentTimestamp - object.getLastPathFindingTimestamp() < 1000f / (float) MAX_PATH_FINDS_PER_SECOND) {
-            return;
+            return false;
         }
 
         object.setLastPathFindingTimestamp(currentTimestamp);
+        searchTimedOut = false;
+
+        return true;
+    }
+
+    /**
+     * Performs a greedy depth-first search algorithm between the given points
+     * and saves the found path
+     *
+     * @param object the object for which the path will be found
+     * @param x      destination x
+     * @param y      destination y
+     */
+    protected void depthFirst(Unit object, short x, short y, boolean forceFind) {
+        if (!canFindPath(object, forceFind)) {
+            return;
+        }
 
         Point startPoint = getObjectCoordinates(object);
         Point destination = new Point(x, y);
@@ -212,58 +300,190 @@ public class PathFinder implements PathFinderInterface {
             }
         }
 
+        // index the visited points once instead of searching the list for every path step
+        Map<Point, Integer> visitIndices = new HashMap<Point, Integer>();
+
+        for (int i = 0; i < visitedPointsInOrder.size(); i++) {
+            visitIndices.put(visitedPointsInOrder.get(i), i);
+        }
+
         // form the path
-        Deque<Point> path;
+        int length;
 
         if (processedPoint == destination) {
-            path = formPath(visitedPointsInOrder, visitedPoints, visitedPointsInOrder.size() - 1);
+            length = formPath(visitedPointsInOrder, visitIndices, visitedPointsInOrder.size() - 1);
         } else {
-            path = formPath(visitedPointsInOrder, visitedPoints, visitedPointsInOrder.indexOf(closestToDestination));
+            length = formPath(visitedPointsInOrder, visitIndices, visitIndices.get(closestToDestination));
+        }
+
+        storePath(object, (int) startPoint.y * width + (int) startPoint.x, length);
+    }
+
+    /**
+     * Smooths the block-by-block path in the path buffer and saves it as the given
+     * object's path. Puts the object into the newest path group if it isn't in any group
+     *
+     * @param object the object the path was found for
+     * @param start  the block the path starts from
+     * @param length how many blocks of the path buffer the path has
+     */
+    protected void storePath(Unit object, int start, int length) {
+        if (!unitGroups.containsKey(object)) {
+            unitGroups.put(object, newestGroup);
+        }
+
+        paths.setPath(object, pathBuffer, smoothPath(getGroup(object), start, length));
+    }
+
+    /**
+     * Pulls the block-by-block path in the path buffer tight and replaces it with it's
+     * waypoints. Units can only move in 8 directions, so instead of arbitrary lines a
+     * waypoint is connected to the next one by a diagonal run followed by a straight run
+     * (the cheapest way between 2 blocks), and the corner between the runs becomes a
+     * waypoint too. Every part of the result is a straight or diagonal line, so the path
+     * is never longer than the original and turns at most once between 2 waypoints
+     *
+     * @param group  path group of the unit the path is for
+     * @param start  the block the path starts from
+     * @param length how many blocks of the path buffer the path has
+     * @return the number of waypoints written to the path buffer
+     */
+    protected int smoothPath(PathGroup group, int start, int length) {
+        int anchor = start;
+        int waypoints = 0;
+        int index = 0;
+
+        // waypoints are written over blocks that have already been read
+        while (index < length) {
+            int furthest = index;
+
+            for (int i = index + 1; i < length && i - index <= MAX_SMOOTHING_LOOKAHEAD; i++) {
+                if (!octileLineWalkable(group, anchor, pathBuffer[i])) {
+                    break;
+                }
+
+                furthest = i;
+            }
+
+            int target = pathBuffer[furthest];
+            int corner = getOctileCorner(anchor, target);
+
+            if (corner != target) {
+                pathBuffer[waypoints++] = corner;
+            }
+
+            pathBuffer[waypoints++] = target;
+
+            anchor = target;
+            index = furthest + 1;
+        }
+
+        return waypoints;
+    }
+
+    /**
+     * Gets the block where the diagonal run between 2 blocks turns into a straight run
+     *
+     * @param from first block
+     * @param to   second block
+     * @return the corner block, the second block if the line doesn't turn
+     */
+    protected int getOctileCorner(int from, int to) {
+        int dx = to % width - from % width;
+        int dy = to / width - from / width;
+        int diagonal = Math.min(Math.abs(dx), Math.abs(dy));
+
+        if (diagonal == 0 || Math.abs(dx) == Math.abs(dy)) {
+            return to;
         }
 
-        newestGroup.foundPaths.put(object, path);
+        return from + diagonal * (Integer.signum(dy) * width + Integer.signum(dx));
     }
 
     /**
-     * Forms a path for a unit
+     * Checks if all blocks on the octile line between 2 blocks can be walked on
+     *
+     * @param group path group of the unit the line is for
+     * @param from  first block
+     * @param to    second block
+     * @return
+     */
+    protected boolean octileLineWalkable(PathGroup group, int from, int to) {
+        int x = from % width;
+        int y = from / width;
+        int toX = to % width;
+        int toY = to / width;
+
+        // diagonal steps are taken while both coordinates differ, straight ones after that
+        while (x != toX || y != toY) {
+            x += Integer.signum(toX - x);
+            y += Integer.signum(toY - y);
+
+            if (!blockWalkable(group, x, y)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Makes sure the path buffer can hold the given number of blocks
+     *
+     * @param length path length
+     */
+    protected void ensurePathBufferCapacity(int length) {
+        if (pathBuffer.length < length) {
+            pathBuffer = Arrays.copyOf(pathBuffer, Math.max(length, pathBuffer.length * 2));
+        }
+    }
+
+    /**
+     * Forms a path for a unit in the path buffer
      *
      * @param visitedPointsInOrder all points visited by the path finding algorithm in order from first to last
-     * @param allVisitedPoints     all points visited by the algorithm in random order (used for quicker searching)
+     * @param visitIndices         the index of every visited point in the visited point list
      * @param visitedPointIndex    the index in visited point list up to which to construct the path
-     * @return
+     * @return the length of the formed path
      */
-    protected Deque<Point> formPath(List<Point> visitedPointsInOrder, Set<Point> allVisitedPoints, int visitedPointIndex) {
-        Deque<Point> path = new LinkedList<Point>();
+    protected int formPath(List<Point> visitedPointsInOrder, Map<Point, Integer> visitIndices, int visitedPointIndex) {
+        ensurePathBufferCapacity(visitedPointIndex + 1);
 
-        Point current = visitedPointsInOrder.get(visitedPointIndex);
+        int length = 0;
 
-        path.push(current);
+        Point current = visitedPointsInOrder.get(visitedPointIndex);
 
         List<Point> neighbours = new ArrayList<Point>();
 
+        // the path is formed from the end, so the blocks are reversed afterwards
         for (int i = visitedPointIndex - 1; i >= 0; i--) {
+            pathBuffer[length++] = (int) current.y * width + (int) current.x;
+
             Point next = visitedPointsInOrder.get(i);
 
             addNeighboursToList(neighbours, current);
 
             for (Point neighbour : neighbours) {
-                if (allVisitedPoints.contains(neighbour)) {
-                    if (visitedPointsInOrder.indexOf(neighbour) < i) {
-                        next = neighbour;
-                        i = visitedPointsInOrder.indexOf(neighbour);
-                    }
+                Integer index = visitIndices.get(neighbour);
+
+                if (index != null && index < i) {
+                    next = neighbour;
+                    i = index;
                 }
             }
 
-            path.push(next);
             current = next;
             neighbours.clear();
         }
 
-        // remove first visited point because the unit is already in that point
-        path.pop();
+        // the first visited point is not added because the unit is already in that point
+        for (int i = 0; i < length / 2; i++) {
+            int block = pathBuffer[i];
+            pathBuffer[i] = pathBuffer[length - 1 - i];
+            pathBuffer[length - 1 - i] = block;
+        }
 
-        return path;
+        return length;
     }
 
     /**
@@ -328,17 +548,43 @@ public class PathFinder implements PathFinderInterface {
      * @return
      */
     protected boolean blockAvailable(Unit unit, Set<Point> visitedPoints, Point point) {
-        if (point.x < 0 || point.y < 0 || point.x >= map.getWidth() || point.y >= map.getHeight()) {
+        return blockWalkable(getGroup(unit), (int) point.x, (int) point.y) && !visitedPoints.contains(point);
+    }
+
+    /**
+     * Checks if a unit of the given path group can walk on the specified block
+     *
+     * @param group path group of the unit the algorithm is finding path for
+     * @param x     block x
+     * @param y     block y
+     * @return
+     */
+    protected boolean blockWalkable(PathGroup group, int x, int y) {
+        if (x < 0 || y < 0 || x >= map.getWidth() || y >= map.getHeight()) {
             return false;
         }
 
-        GameObject occupyingObject = map.getOccupyingObject((short) point.x, (short) point.y);
-        Unit occupyingUnit = occupyingObject instanceof Unit ? (Unit) occupyingObject : null;
+        if (!map.isBlockPassable((short) x, (short) y)) {
+            return false;
+        }
+
+        if (!map.isBlockOccupied((short) x, (short) y)) {
+            return true;
+        }
+
+        GameObject occupyingObject = map.getOccupyingObject((short) x, (short) y);
+
+        if (occupyingObject.isPassable()) {
+            return true;
+        }
+
+        if (occupyingObject instanceof Unit) {
+            Unit occupyingUnit = (Unit) occupyingObject;
+
+            return occupyingUnit.isMoving() || (group != null && unitGroups.get(occupyingUnit) == group);
+        }
 
-        return
-                map.isBlockPassable((short) point.x, (short) point.y)
-                        && (!map.isBlockOccupied((short) point.x, (short) point.y) || occupyingObject.isPassable() || (occupyingUnit != null && (occupyingUnit.isMoving() || getGroup(unit).foundPaths.containsKey(occupyingUnit))))
-                        && !visitedPoints.contains(point);
+        return false;
     }
 
     /**
@@ -348,13 +594,7 @@ public class PathFinder implements PathFinderInterface {
      * @return
      */
     protected PathGroup getGroup(Unit unit) {
-        for (PathGroup group : groups) {
-            if (group.foundPaths.containsKey(unit)) {
-                return group;
-            }
-        }
-
-        return null;
+        return unitGroups.get(unit);
     }
 
     /**
@@ -364,17 +604,27 @@ public class PathFinder implements PathFinderInterface {
      * @return
      */
     protected Point getObjectCoordinates(Unit object) {
-        if (!object.isMoving()) {
-            return new Point(
-                    (short) (object.getCenterX() / Block.BLOCK_WIDTH),
-                    (short) (object.getCenterY() / Block.BLOCK_HEIGHT)
-            );
-        } else {
-            return new Point(
-                    (short) (object.getFinalCenterX() / Block.BLOCK_WIDTH),
-                    (short) (object.getFinalCenterY() / Block.BLOCK_HEIGHT)
-            );
-        }
+        return new Point(getObjectBlockX(object), getObjectBlockY(object));
+    }
+
+    /**
+     * Gets the x coordinate of the object's block in block map's system
+     *
+     * @param object
+     * @return
+     */
+    protected int getObjectBlockX(Unit object) {
+        return (short) ((object.isMoving() ? object.getFinalCenterX() : object.getCenterX()) / Block.BLOCK_WIDTH);
+    }
+
+    /**
+     * Gets the y coordinate of the object's block in block map's system
+     *
+     * @param object
+     * @return
+     */
+    protected int getObjectBlockY(Unit object) {
+        return (short) ((object.isMoving() ? object.getFinalCenterY() : object.getCenterY()) / Block.BLOCK_HEIGHT);
     }
 
     /**
@@ -383,30 +633,49 @@ public class PathFinder implements PathFinderInterface {
      * @param unit unit associated with a path
      */
     public void removePathForObject(Unit unit) {
-        for (PathGroup group : groups) {
-            group.foundPaths.remove(unit);
-        }
+        forgetPath(unit);
+        unitGroups.remove(unit);
     }
 
     /**
-     * Gets the next point from the given object's path
+     * Removes the given unit's path, but keeps the unit in it's path group
+     *
+     * @param unit unit associated with a path
+     */
+    protected void forgetPath(Unit unit) {
+        paths.remove(unit);
+    }
+
+    /**
+     * Gets the next point from the given object's path: the next waypoint, which the
+     * object reaches by going in a straight or diagonal line (turning at most once if
+     * it has been pushed off the path). The returned point is reused by the next call,
+     * so it must not be stored
      *
      * @param object object to get the next point for
      * @return
      */
     @Override
     public Point getNextPathPointForObject(Unit object) {
-        try {
-            for (PathGroup group : groups) {
-                if (group.foundPaths.containsKey(object)) {
-                    return group.foundPaths.get(object).peek();
-                }
-            }
-        } catch (Exception ex) {
+        int x = getObjectBlockX(object);
+        int y = getObjectBlockY(object);
+
+        int waypoint = paths.getNextBlock(object);
+
+        // skip the waypoints the object is already standing on
+        while (waypoint == y * width + x) {
+            paths.advance(object);
+            waypoint = paths.getNextBlock(object);
+        }
+
+        if (waypoint == PathStore.NO_BLOCK) {
             return null;
         }
 
-        return null;
+        nextPathPoint.x = waypoint % width;
+        nextPathPoint.y = waypoint / width;
+
+        return nextPathPoint;
     }
 
     /**
@@ -416,14 +685,9 @@ public class PathFinder implements PathFinderInterface {
      */
     @Override
     public void removeNextPathPoint(Unit object) {
-        try {
-            for (PathGroup group : groups) {
-                if (group.foundPaths.containsKey(object)) {
-                    group.foundPaths.get(object).pop();
-                    break;
-                }
-            }
-        } catch (Exception ex) {
+        // the object has started moving to the next block, the waypoint is passed once that block is it
+        if (paths.getNextBlock(object) == getObjectBlockY(object) * width + getObjectBlockX(object)) {
+            paths.advance(object);
         }
     }
 
@@ -432,31 +696,29 @@ public class PathFinder implements PathFinderInterface {
      */
     @Override
     public void clearAllPaths() {
-        for (PathGroup group : groups) {
-            group.foundPaths.clear();
-        }
-
-        groups.clear();
+        paths.clear();
+        unitGroups.clear();
         newestGroup = null;
     }
 
     /**
      * Gets unit's final destination
      *
-     * @param unit unit to get the destination for
-     * @return
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
      */
     @Override
-    public com.gasis.rts.math.Point getFinalDestination(Unit unit) {
-        for (PathGroup group : groups) {
-            if (group.foundPaths != null) {
-                if (group.foundPaths.containsKey(unit) && group.foundPaths.get(unit) != null && !group.foundPaths.get(unit).isEmpty()) {
-                    return group.foundPaths.get(unit).getLast();
-                }
-            }
+    public boolean getFinalDestination(Unit unit, com.gasis.rts.math.Point destination) {
+        int block = paths.getLastBlock(unit);
+
+        if (block == PathStore.NO_BLOCK) {
+            return false;
         }
 
-        return null;
+        destination.x = block % width;
+        destination.y = block / width;
+        return true;
     }
 
     /**
@@ -474,10 +736,9 @@ public class PathFinder implements PathFinderInterface {
     }
 
     /**
-     * A group of paths
+     * A group of units whose paths were requested together, units of the
+     * same group are allowed to path through each other
      */
     protected class PathGroup {
-
-        protected Map<Unit, Deque<Point>> foundPaths = new HashMap<Unit, Deque<Point>>();
     }
 }
@@ -1,12 +1,13 @@
 package com.gasis.rts.logic.pathfinding;
 
+import com.gasis.rts.logic.Updatable;
 import com.gasis.rts.logic.object.unit.Unit;
 import com.gasis.rts.math.Point;
 
 /**
  * Finds paths on a block map
  */
-public interface PathFinderInterface {
+public interface PathFinderInterface extends Updatable {
 
     /**
      * Finds paths from all given objects to the destination point
@@ -32,12 +33,36 @@ public interface PathFinderInterface {
     void refindPathToObject(Unit object, boolean forceFind);
 
     /**
-     * Creates a new path group
+     * Checks if the given unit has a path request that hasn't been executed yet
+     *
+     * @param unit unit to check
+     * @return
+     */
+    boolean isPathRequestPending(Unit unit);
+
+    /**
+     * Creates a new path group. The units keep following their current paths until
+     * new ones are found for them
      *
      * @param units units that will be a part of the group
      */
     void newGroup(Iterable<Unit> units);
 
+    /**
+     * Limits how long searches can run. A search still running when System.nanoTime()
+     * passes the deadline stops and goes to the closest block it has found
+     *
+     * @param deadlineNanos System.nanoTime() value to stop at, or PathFinder.NO_SEARCH_DEADLINE
+     */
+    void setSearchDeadline(long deadlineNanos);
+
+    /**
+     * Checks if the last search ran out of time before it reached it's destination
+     *
+     * @return
+     */
+    boolean hasSearchTimedOut();
+
     /**
      * Gets the next point from the given object's path
      *
@@ -68,8 +93,9 @@ public interface PathFinderInterface {
     /**
      * Gets unit's final destination
      *
-     * @param unit unit to get the destination for
-     * @return
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
      */
-    Point getFinalDestination(Unit unit);
+    boolean getFinalDestination(Unit unit, Point destination);
 }
@@ -0,0 +1,350 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.object.unit.Unit;
+import com.gasis.rts.math.Point;
+
+import java.util.*;
+
+/**
+ * Queues path requests and executes them on the path finder it wraps within a fixed
+ * time budget every frame, so that large orders are spread over several frames instead
+ * of causing frame spikes. Units keep following their current paths while their requests
+ * wait, a path is only replaced when the request's search runs.
+ *
+ * Searches can't be paused, so instead a search is stopped when the frame's budget runs
+ * out and the unit gets a path to the closest block found so far. The request is then
+ * executed again in a later frame from wherever the unit is by then. A request that runs
+ * out of time MAX_RETRIES times keeps it's last path, the same way a search that hits
+ * the path finder's expansion limit does.
+ *
+ * The searches run on the game thread because the block map is not thread safe
+ */
+public class PathRequestQueue implements PathFinderInterface {
+
+    // the default time the queue can spend on searching paths every frame
+    public static final long DEFAULT_FRAME_BUDGET_MICROS = 2000;
+
+    // how many times a request that ran out of time is executed again
+    protected static final int MAX_RETRIES = 4;
+
+    // the path finder that executes the requests
+    protected PathFinderInterface pathFinder;
+
+    // pending requests in the order they were made, at most one per unit
+    protected Map<Unit, PathRequest> requests = new LinkedHashMap<Unit, PathRequest>();
+
+    // requests that are no longer used (reused to avoid creating new ones)
+    protected Deque<PathRequest> freeRequests = new ArrayDeque<PathRequest>();
+
+    // requests that ran out of time in the current frame
+    protected List<PathRequest> timedOutRequests = new ArrayList<PathRequest>();
+
+    // how much time the queue can spend on searching paths every frame
+    protected long frameBudgetMicros;
+
+    /**
+     * Default class constructor
+     *
+     * @param pathFinder the path finder that will execute the requests
+     */
+    public PathRequestQueue(PathFinderInterface pathFinder) {
+        this(pathFinder, DEFAULT_FRAME_BUDGET_MICROS);
+    }
+
+    /**
+     * Class constructor with a custom frame budget
+     *
+     * @param pathFinder        the path finder that will execute the requests
+     * @param frameBudgetMicros how much time can be spent on searching paths every frame
+     */
+    public PathRequestQueue(PathFinderInterface pathFinder, long frameBudgetMicros) {
+        this.pathFinder = pathFinder;
+        this.frameBudgetMicros = frameBudgetMicros;
+    }
+
+    /**
+     * Sets how much time can be spent on searching paths every frame
+     *
+     * @param frameBudgetMicros time in microseconds
+     */
+    public void setFrameBudgetMicros(long frameBudgetMicros) {
+        this.frameBudgetMicros = frameBudgetMicros;
+    }
+
+    /**
+     * Gets how much time can be spent on searching paths every frame
+     *
+     * @return
+     */
+    public long getFrameBudgetMicros() {
+        return frameBudgetMicros;
+    }
+
+    /**
+     * Executes pending requests until the frame budget runs out. Every search is stopped
+     * when the budget runs out, requests whose searches were stopped are executed again
+     * in a later frame
+     *
+     * @param delta time elapsed since the last update
+     */
+    @Override
+    public void update(float delta) {
+        pathFinder.update(delta);
+
+        long start = System.nanoTime();
+        long budget = frameBudgetMicros * 1000;
+
+        pathFinder.setSearchDeadline(start + budget);
+
+        Iterator<PathRequest> iterator = requests.values().iterator();
+
+        while (iterator.hasNext()) {
+            PathRequest request = iterator.next();
+            iterator.remove();
+
+            if (request.refind) {
+                pathFinder.refindPathToObject(request.unit, request.forceFind);
+            } else {
+                pathFinder.findPathToObject(request.unit, request.x, request.y, request.forceFind);
+            }
+
+            if (pathFinder.hasSearchTimedOut() && request.retries < MAX_RETRIES) {
+                timedOutRequests.add(request);
+            } else {
+                freeRequest(request);
+            }
+
+            if (System.nanoTime() - start >= budget) {
+                break;
+            }
+        }
+
+        pathFinder.setSearchDeadline(PathFinder.NO_SEARCH_DEADLINE);
+
+        // at the end of the queue, so that the other requests get their turn first
+        for (PathRequest request : timedOutRequests) {
+            request.retries++;
+            // the unit has just searched, it would be refused by the per second limit
+            request.forceFind = true;
+
+            requests.put(request.unit, request);
+        }
+
+        timedOutRequests.clear();
+    }
+
+    /**
+     * Queues path requests for all given objects
+     *
+     * @param objects objects to find paths for
+     * @param x       destination x (in block map coordinates)
+     * @param y       destination y (in block map coordinates)
+     */
+    @Override
+    public void findPathsToObjects(Iterable<Unit> objects, short x, short y, boolean forceFind) {
+        for (Unit unit : objects) {
+            findPathToObject(unit, x, y, forceFind);
+        }
+    }
+
+    /**
+     * Queues a path request for the given object
+     *
+     * @param object object to find the path for
+     * @param x      destination x (in block map coordinates)
+     * @param y      destination y (in block map coordinates)
+     */
+    @Override
+    public void findPathToObject(Unit object, short x, short y, boolean forceFind) {
+        PathRequest request = obtainRequest(object);
+
+        request.refind = false;
+        request.x = x;
+        request.y = y;
+        request.forceFind = forceFind;
+        request.retries = 0;
+    }
+
+    /**
+     * Queues a request to re-find the given object's path. A pending request for
+     * a new destination is not replaced
+     *
+     * @param object object to find the path for
+     */
+    @Override
+    public void refindPathToObject(Unit object, boolean forceFind) {
+        PathRequest request = requests.get(object);
+
+        if (request != null) {
+            request.forceFind |= forceFind;
+            return;
+        }
+
+        request = obtainRequest(object);
+        request.refind = true;
+        request.forceFind = forceFind;
+        request.retries = 0;
+    }
+
+    /**
+     * Checks if the given unit has a path request that hasn't been executed yet
+     *
+     * @param unit unit to check
+     * @return
+     */
+    @Override
+    public boolean isPathRequestPending(Unit unit) {
+        return requests.containsKey(unit);
+    }
+
+    /**
+     * Creates a new path group. Pending requests of the group's units are dropped
+     * because the units have been given a new order, but their current paths are
+     * kept until the requests of the new order are executed
+     *
+     * @param units units that will be a part of the group
+     */
+    @Override
+    public void newGroup(Iterable<Unit> units) {
+        for (Unit unit : units) {
+            cancelRequest(unit);
+        }
+
+        pathFinder.newGroup(units);
+    }
+
+    /**
+     * Limits how long searches can run. The queue sets the deadline itself while it
+     * executes requests
+     *
+     * @param deadlineNanos System.nanoTime() value to stop at, or PathFinder.NO_SEARCH_DEADLINE
+     */
+    @Override
+    public void setSearchDeadline(long deadlineNanos) {
+        pathFinder.setSearchDeadline(deadlineNanos);
+    }
+
+    /**
+     * Checks if the last search ran out of time before it reached it's destination
+     *
+     * @return
+     */
+    @Override
+    public boolean hasSearchTimedOut() {
+        return pathFinder.hasSearchTimedOut();
+    }
+
+    /**
+     * Gets the next point from the given object's path
+     *
+     * @param object object to get the next point for
+     * @return
+     */
+    @Override
+    public Point getNextPathPointForObject(Unit object) {
+        return pathFinder.getNextPathPointForObject(object);
+    }
+
+    /**
+     * Removes the next path point from the path of the given unit
+     *
+     * @param object unit for which to shorten the path
+     */
+    @Override
+    public void removeNextPathPoint(Unit object) {
+        pathFinder.removeNextPathPoint(object);
+    }
+
+    /**
+     * Removes the path and the pending request associated with the given unit
+     *
+     * @param unit unit associated with a path
+     */
+    @Override
+    public void removePathForObject(Unit unit) {
+        cancelRequest(unit);
+
+        pathFinder.removePathForObject(unit);
+    }
+
+    /**
+     * Clears found path list and all pending requests
+     */
+    @Override
+    public void clearAllPaths() {
+        for (PathRequest request : requests.values()) {
+            freeRequest(request);
+        }
+
+        requests.clear();
+
+        pathFinder.clearAllPaths();
+    }
+
+    /**
+     * Gets unit's final destination
+     *
+     * @param unit        unit to get the destination for
+     * @param destination point the destination is written to
+     * @return false if the unit has no destination
+     */
+    @Override
+    public boolean getFinalDestination(Unit unit, Point destination) {
+        return pathFinder.getFinalDestination(unit, destination);
+    }
+
+    /**
+     * Gets the given unit's pending request or queues a new one
+     *
+     * @param unit unit that requests a path
+     * @return
+     */
+    protected PathRequest obtainRequest(Unit unit) {
+        PathRequest request = requests.get(unit);
+
+        if (request == null) {
+            request = freeRequests.isEmpty() ? new PathRequest() : freeRequests.poll();
+            request.unit = unit;
+
+            requests.put(unit, request);
+        }
+
+        return request;
+    }
+
+    /**
+     * Drops the given unit's pending request if it has one
+     *
+     * @param unit unit whose request to drop
+     */
+    protected void cancelRequest(Unit unit) {
+        PathRequest request = requests.remove(unit);
+
+        if (request != null) {
+            freeRequest(request);
+        }
+    }
+
+    /**
+     * Makes a request available for reuse
+     *
+     * @param request request that is no longer pending
+     */
+    protected void freeRequest(PathRequest request) {
+        request.unit = null;
+        freeRequests.push(request);
+    }
+
+    /**
+     * A pending path request
+     */
+    protected class PathRequest {
+
+        protected Unit unit;
+        protected short x;
+        protected short y;
+        protected boolean refind;
+        protected boolean forceFind;
+        protected int retries;
+    }
+}
@@ -0,0 +1,271 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.object.unit.Unit;
+
+import java.util.*;
+
+/**
+ * Stores units' paths as slices of a single int array. Every path is a sequence of
+ * packed (y * map width + x) block ids with a cursor pointing at the next block.
+ * A unit's slice is reused when it gets a new path that fits into it, and slices of
+ * removed paths are reused for other units, so storing a path doesn't create any
+ * objects once the store has warmed up
+ */
+public class PathStore {
+
+    // returned when there's no block to return
+    public static final int NO_BLOCK = -1;
+
+    // the smallest slice given to a path
+    protected static final int MIN_SLICE_CAPACITY = 16;
+
+    // all stored paths
+    protected int[] arena = new int[1024];
+
+    // where the unused part at the end of the arena begins
+    protected int arenaEnd;
+
+    // every unit's slice of the arena
+    protected Map<Unit, PathSlice> slices = new IdentityHashMap<Unit, PathSlice>();
+
+    // slices of removed paths that can be given to other units
+    protected List<PathSlice> freeSlices = new ArrayList<PathSlice>();
+
+    // slice objects that are not used by any path (reused to avoid creating new ones)
+    protected Deque<PathSlice> unusedSlices = new ArrayDeque<PathSlice>();
+
+    /**
+     * Stores a unit's path, replacing it's previous one
+     *
+     * @param unit   unit the path is for
+     * @param blocks packed block ids in the order the unit will walk them
+     * @param length how many blocks the path has
+     */
+    public void setPath(Unit unit, int[] blocks, int length) {
+        PathSlice slice = slices.get(unit);
+
+        if (slice == null || slice.capacity < length) {
+            if (slice != null) {
+                freeSlices.add(slice);
+            }
+
+            slice = allocate(length);
+            slices.put(unit, slice);
+        }
+
+        if (length > 0) {
+            System.arraycopy(blocks, 0, arena, slice.offset, length);
+        }
+
+        slice.length = length;
+        slice.cursor = 0;
+    }
+
+    /**
+     * Checks if the unit has a stored path (the path can already be walked)
+     *
+     * @param unit unit to check
+     * @return
+     */
+    public boolean hasPath(Unit unit) {
+        return slices.containsKey(unit);
+    }
+
+    /**
+     * Gets the next block of the unit's path
+     *
+     * @param unit unit to get the block for
+     * @return the packed block id or NO_BLOCK if the path has been walked
+     */
+    public int getNextBlock(Unit unit) {
+        PathSlice slice = slices.get(unit);
+
+        if (slice == null || slice.cursor >= slice.length) {
+            return NO_BLOCK;
+        }
+
+        return arena[slice.offset + slice.cursor];
+    }
+
+    /**
+     * Gets the last block of the unit's path
+     *
+     * @param unit unit to get the block for
+     * @return the packed block id or NO_BLOCK if the path has been walked
+     */
+    public int getLastBlock(Unit unit) {
+        PathSlice slice = slices.get(unit);
+
+        if (slice == null || slice.cursor >= slice.length) {
+            return NO_BLOCK;
+        }
+
+        return arena[slice.offset + slice.length - 1];
+    }
+
+    /**
+     * Gets how many blocks of the unit's path are not walked yet
+     *
+     * @param unit unit to get the count for
+     * @return
+     */
+    public int getRemainingBlocks(Unit unit) {
+        PathSlice slice = slices.get(unit);
+
+        return slice == null ? 0 : slice.length - slice.cursor;
+    }
+
+    /**
+     * Moves the unit's path cursor to the next block
+     *
+     * @param unit unit that walked the next block
+     * @return false if the path was already walked
+     */
+    public boolean advance(Unit unit) {
+        PathSlice slice = slices.get(unit);
+
+        if (slice == null || slice.cursor >= slice.length) {
+            return false;
+        }
+
+        slice.cursor++;
+
+        return true;
+    }
+
+    /**
+     * Removes the unit's path
+     *
+     * @param unit unit whose path to remove
+     */
+    public void remove(Unit unit) {
+        PathSlice slice = slices.remove(unit);
+
+        if (slice != null) {
+            freeSlices.add(slice);
+        }
+    }
+
+    /**
+     * Removes all paths
+     */
+    public void clear() {
+        for (PathSlice slice : slices.values()) {
+            unusedSlices.push(slice);
+        }
+
+        for (PathSlice slice : freeSlices) {
+            unusedSlices.push(slice);
+        }
+
+        slices.clear();
+        freeSlices.clear();
+        arenaEnd = 0;
+    }
+
+    /**
+     * Gives out a slice that can hold the given number of blocks
+     *
+     * @param length path length
+     * @return
+     */
+    protected PathSlice allocate(int length) {
+        // reuse the smallest free slice that is big enough
+        int best = -1;
+
+        for (int i = 0; i < freeSlices.size(); i++) {
+            PathSlice free = freeSlices.get(i);
+
+            if (free.capacity >= length && (best == -1 || free.capacity < freeSlices.get(best).capacity)) {
+                best = i;
+            }
+        }
+
+        if (best != -1) {
+            // swap the last free slice into the gap to avoid shifting the list
+            PathSlice slice = freeSlices.get(best);
+            freeSlices.set(best, freeSlices.get(freeSlices.size() - 1));
+            freeSlices.remove(freeSlices.size() - 1);
+
+            return slice;
+        }
+
+        int capacity = Math.max(MIN_SLICE_CAPACITY, Integer.highestOneBit(Math.max(1, length - 1)) << 1);
+
+        if (arenaEnd + capacity > arena.length) {
+            compact();
+        }
+
+        if (arenaEnd + capacity > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaEnd + capacity));
+        }
+
+        PathSlice slice = unusedSlices.isEmpty() ? new PathSlice() : unusedSlices.poll();
+        slice.offset = arenaEnd;
+        slice.capacity = capacity;
+        slice.length = 0;
+        slice.cursor = 0;
+
+        arenaEnd += capacity;
+
+        return slice;
+    }
+
+    /**
+     * Moves all stored paths to the beginning of the arena, dropping the free slices
+     */
+    protected void compact() {
+        if (freeSlices.isEmpty()) {
+            return;
+        }
+
+        for (PathSlice slice : freeSlices) {
+            unusedSlices.push(slice);
+        }
+
+        freeSlices.clear();
+
+        // the remaining slices don't overlap, so moving them in offset order never overwrites a live one
+        List<PathSlice> live = new ArrayList<PathSlice>(slices.values());
+
+        Collections.sort(live, new Comparator<PathSlice>() {
+            @Override
+            public int compare(PathSlice first, PathSlice second) {
+                return first.offset - second.offset;
+            }
+        });
+
+        arenaEnd = 0;
+
+        for (PathSlice slice : live) {
+            // only the part that hasn't been walked needs to be kept
+            int remaining = slice.length - slice.cursor;
+
+            System.arraycopy(arena, slice.offset + slice.cursor, arena, arenaEnd, remaining);
+
+            slice.offset = arenaEnd;
+            slice.length = remaining;
+            slice.cursor = 0;
+
+            arenaEnd += slice.capacity;
+        }
+    }
+
+    /**
+     * A unit's part of the arena
+     */
+    protected class PathSlice {
+
+        // where the slice begins in the arena
+        protected int offset;
+
+        // how many blocks the slice can hold
+        protected int capacity;
+
+        // how many blocks the stored path has
+        protected int length;
+
+        // the index of the next block to walk
+        protected int cursor;
+    }
+}
@@ -0,0 +1,252 @@
+package com.gasis.rts.logic.pathfinding;
+
+import com.gasis.rts.logic.object.unit.Unit;
+
+import java.util.Arrays;
+
+/**
+ * Space-time reservations of map blocks. A unit that is about to go to a block reserves
+ * it for the ticks it needs to rotate towards it and to get there, and other units wait
+ * for the reservation to end instead of searching for a way around.
+ *
+ * Every block has at most one reservation, kept as a (start tick, end tick) interval in
+ * an open addressing hash table keyed by the block. Reservations always start at the
+ * current tick, so a new one overlaps any that hasn't ended yet. Ended reservations are
+ * never looked up again, so instead of removing them one by one they are overwritten
+ * when their block is reserved again and dropped whenever the table gets rebuilt
+ */
+public class ReservationTable {
+
+    // marks an unused table slot (block ids are never negative)
+    protected static final int EMPTY = -1;
+
+    // the longest time a single reservation can last
+    public static final int MAX_RESERVATION_TICKS = 240;
+
+    // reserved blocks
+    protected int[] blocks;
+
+    // the first tick of every reservation
+    protected long[] startTicks;
+
+    // the tick after the last one of every reservation
+    protected long[] endTicks;
+
+    // reserving units
+    protected Unit[] owners;
+
+    // how many slots are used
+    protected int size;
+
+    // the oldest tick that is still relevant
+    protected long currentTick;
+
+    /**
+     * Default class constructor
+     */
+    public ReservationTable() {
+        blocks = new int[256];
+        startTicks = new long[blocks.length];
+        endTicks = new long[blocks.length];
+        owners = new Unit[blocks.length];
+
+        Arrays.fill(blocks, EMPTY);
+    }
+
+    /**
+     * Advances the table's clock, reservations of earlier ticks stop counting
+     *
+     * @param tick the current tick
+     */
+    public void setCurrentTick(long tick) {
+        currentTick = tick;
+    }
+
+    /**
+     * Gets the current tick
+     *
+     * @return
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Reserves a block for the given number of ticks starting with the current one.
+     * Nothing is reserved if the block is reserved by another unit during any of the
+     * ticks. A unit that reserves a block it has already reserved extends it's reservation
+     *
+     * @param block packed (y * map width + x) block id
+     * @param ticks for how many ticks to reserve the block
+     * @param unit  reserving unit
+     * @return true if the block was reserved
+     */
+    public boolean reserve(int block, int ticks, Unit unit) {
+        long start = currentTick;
+        long end = currentTick + Math.max(1, Math.min(MAX_RESERVATION_TICKS, ticks));
+
+        int slot = find(block);
+
+        if (slot != -1 && overlaps(slot, start, end)) {
+            if (owners[slot] != unit) {
+                return false;
+            }
+
+            end = Math.max(end, endTicks[slot]);
+        }
+
+        if (slot == -1) {
+            slot = add(block);
+        }
+
+        startTicks[slot] = start;
+        endTicks[slot] = end;
+        owners[slot] = unit;
+
+        return true;
+    }
+
+    /**
+     * Gets the unit that has reserved the block at the given tick
+     *
+     * @param block packed block id
+     * @param tick  tick
+     * @return reserving unit or null if the block is not reserved
+     */
+    public Unit getReserver(int block, long tick) {
+        int slot = find(block);
+
+        return slot != -1 && overlaps(slot, tick, tick + 1) ? owners[slot] : null;
+    }
+
+    /**
+     * Checks if the block is reserved by another unit at the current tick
+     *
+     * @param block packed block id
+     * @param unit  unit that wants the block
+     * @return
+     */
+    public boolean isReservedByOther(int block, Unit unit) {
+        Unit owner = getReserver(block, currentTick);
+
+        return owner != null && owner != unit;
+    }
+
+    /**
+     * Removes all reservations
+     */
+    public void clear() {
+        Arrays.fill(blocks, EMPTY);
+        Arrays.fill(owners, null);
+        size = 0;
+    }
+
+    /**
+     * Checks if the reservation in the given slot overlaps the given ticks
+     *
+     * @param slot  table slot
+     * @param start first tick
+     * @param end   the tick after the last one
+     * @return
+     */
+    protected boolean overlaps(int slot, long start, long end) {
+        return startTicks[slot] < end && start < endTicks[slot];
+    }
+
+    /**
+     * Gets the slot a block should start probing from
+     *
+     * @param block packed block id
+     * @return
+     */
+    protected int hash(int block) {
+        int hash = block * 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & (blocks.length - 1);
+    }
+
+    /**
+     * Finds the slot of a block
+     *
+     * @param block packed block id
+     * @return slot index or -1 if the block is not in the table
+     */
+    protected int find(int block) {
+        int slot = hash(block);
+
+        while (blocks[slot] != EMPTY) {
+            if (blocks[slot] == block) {
+                return slot;
+            }
+
+            slot = (slot + 1) & (blocks.length - 1);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a block that isn't in the table yet
+     *
+     * @param block packed block id
+     * @return the slot of the block
+     */
+    protected int add(int block) {
+        if ((size + 1) * 2 > blocks.length) {
+            rebuild();
+        }
+
+        int slot = hash(block);
+
+        while (blocks[slot] != EMPTY) {
+            slot = (slot + 1) & (blocks.length - 1);
+        }
+
+        blocks[slot] = block;
+        size++;
+
+        return slot;
+    }
+
+    /**
+     * Rebuilds the table without ended reservations,
+     * growing it if it would still be more than a quarter full
+     */
+    protected void rebuild() {
+        int[] oldBlocks = blocks;
+        long[] oldStartTicks = startTicks;
+        long[] oldEndTicks = endTicks;
+        Unit[] oldOwners = owners;
+
+        int live = 0;
+
+        for (int i = 0; i < oldBlocks.length; i++) {
+            if (oldBlocks[i] != EMPTY && oldEndTicks[i] > currentTick) {
+                live++;
+            }
+        }
+
+        int capacity = oldBlocks.length;
+
+        while (live * 4 > capacity) {
+            capacity *= 2;
+        }
+
+        blocks = new int[capacity];
+        startTicks = new long[capacity];
+        endTicks = new long[capacity];
+        owners = new Unit[capacity];
+        Arrays.fill(blocks, EMPTY);
+        size = 0;
+
+        for (int i = 0; i < oldBlocks.length; i++) {
+            if (oldBlocks[i] != EMPTY && oldEndTicks[i] > currentTick) {
+                int slot = add(oldBlocks[i]);
+
+                startTicks[slot] = oldStartTicks[i];
+                endTicks[slot] = oldEndTicks[i];
+                owners[slot] = oldOwners[i];
+            }
+        }
+    }
+}
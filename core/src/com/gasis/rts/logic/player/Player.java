@@ -15,7 +15,8 @@ import com.gasis.rts.logic.object.combat.DestructionListener;
 import com.gasis.rts.logic.object.combat.TargetAssigner;
 import com.gasis.rts.logic.object.unit.Unit;
 import com.gasis.rts.logic.object.unit.movement.UnitMover;
-import com.gasis.rts.logic.pathfinding.PathFinder;
+import com.gasis.rts.logic.pathfinding.HierarchicalPathFinder;
+import com.gasis.rts.logic.pathfinding.PathRequestQueue;
 import com.gasis.rts.logic.player.exploration.ExplorationData;
 import com.gasis.rts.logic.player.exploration.ExplorationDataManager;
 
@@ -80,14 +81,18 @@ public class Player implements DestructionListener, Updatable, ElectricityListen
     // player color
     protected String color;
 
+    // the game's map
+    protected BlockMap map;
+
     /**
      * Default class constructor
      */
     public Player(DestructionHandler destructionHandler, TargetAssigner targetAssigner, BlockMap map) {
         this.destructionHandler = destructionHandler;
         this.targetAssigner = targetAssigner;
+        this.map = map;
 
-        unitMover = new UnitMover(map, new PathFinder(map));
+        unitMover = new UnitMover(map, new PathRequestQueue(new HierarchicalPathFinder(map)));
 
         state.explorationData = new ExplorationData();
         state.explorationData.init((short) map.getWidth(), (short) map.getHeight());
@@ -428,6 +433,7 @@ public class Player implements DestructionListener, Updatable, ElectricityListen
             if (unitsToRemove.get(i).canBeRemoved()) {
                 unitsToRemove.get(i).removeDestructionListener(this);
                 units.remove(unitsToRemove.get(i));
+                map.getObjectGrid().remove(unitsToRemove.get(i));
                 unitsToRemove.remove(i--);
                 state.units--;
             }
@@ -449,6 +455,7 @@ public class Player implements DestructionListener, Updatable, ElectricityListen
                 }
 
                 buildings.remove(buildingsToRemove.get(i));
+                map.getObjectGrid().remove(buildingsToRemove.get(i));
                 buildingsToRemove.get(i).removeDestructionListener(this);
                 buildingsToRemove.remove(i);
                 i--;
@@ -84,9 +84,9 @@ public class PlayerInitializer implements PlayerInitializerInterface {
             }
         }
 
+        initialBuilding.setOwner(player);
         initialBuilding.occupyBlocks(blocks);
 
-        initialBuilding.setOwner(player);
         initialBuilding.setBeingConstructed(true);
 
         player.addBuilding(initialBuilding);
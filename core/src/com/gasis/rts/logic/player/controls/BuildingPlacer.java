@@ -10,7 +10,7 @@ import com.gasis.rts.logic.render.RenderQueueInterface;
 import com.gasis.rts.logic.render.Renderable;
 import com.gasis.rts.math.Point;
 import com.gasis.rts.resources.Resources;
-import com.gasis.rts.utils.Constants;
+import com.gasis.rts.resources.TextureRegions;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -26,8 +26,7 @@ public class BuildingPlacer implements Renderable {
     protected final float textureOpacity = 0.5f;
 
     // the texture of the building that is currently being placed
-    protected String buildingAtlas;
-    protected String buildingTexture;
+    protected int buildingRegion;
 
     // is any building being placed right now
     protected boolean placing = false;
@@ -106,8 +105,7 @@ public class BuildingPlacer implements Renderable {
         buildingWidth = loader.getWidth();
         buildingHeight = loader.getHeight();
 
-        buildingTexture = loader.getPlacementTexture();
-        buildingAtlas = loader.getAtlas();
+        buildingRegion = loader.getPlacementRegion();
 
         placing = true;
 
@@ -203,11 +201,11 @@ public class BuildingPlacer implements Renderable {
             building.setY(buildingY);
             building.setXInBlocks((short) (buildingX / Block.BLOCK_WIDTH));
             building.setYInBlocks((short) (buildingY / Block.BLOCK_HEIGHT));
+            building.setOwner(player);
             building.occupyBlocks(new ArrayList<Point>(blocks));
             building.initializeAnimations();
 
             player.addBuilding(building);
-            building.setOwner(player);
 
             building.setBeingConstructed(true);
 
@@ -245,7 +243,7 @@ public class BuildingPlacer implements Renderable {
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
         if (placing) {
             batch.setColor(1, 1, 1, textureOpacity);
-            batch.draw(resources.atlas(Constants.FOLDER_ATLASES + buildingAtlas).findRegion(buildingTexture), buildingCenterX - buildingWidth / 2f, buildingY, buildingWidth, buildingHeight);
+            batch.draw(TextureRegions.get(resources, buildingRegion), buildingCenterX - buildingWidth / 2f, buildingY, buildingWidth, buildingHeight);
             batch.setColor(1, 1, 1, 1);
         }
     }
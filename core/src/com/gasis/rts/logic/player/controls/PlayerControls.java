@@ -534,6 +534,15 @@ public class PlayerControls implements Updatable, Renderable, BuildingSelectionL
         controlledPlayer.getUnitMover().update(delta);
     }
 
+    /**
+     * Gets the currently selected building
+     *
+     * @return selected building, null if no building is selected
+     */
+    public Building getSelectedBuilding() {
+        return buildingSelector.getSelectedBuilding();
+    }
+
     /**
      * Renders the object to the screen
      *
@@ -4,11 +4,14 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.gasis.rts.logic.map.blockmap.Block;
 import com.gasis.rts.logic.map.blockmap.BlockMap;
+import com.gasis.rts.logic.map.blockmap.ObjectGrid;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.unit.Unit;
 import com.gasis.rts.logic.player.Player;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -28,6 +31,9 @@ public class UnitSelector extends Selector {
     // selected units (if any)
     protected Set<Unit> selectedUnits = new HashSet<Unit>();
 
+    // objects found in the selection rectangle (kept to avoid creating a new list every time)
+    protected List<GameObject> objectsInRectangle = new ArrayList<GameObject>();
+
     // unit selection listeners
     protected Set<UnitSelectionListener> listeners = new HashSet<UnitSelectionListener>();
 
@@ -146,14 +152,25 @@ public class UnitSelector extends Selector {
      * Selects player's units that currently are in the selection rectangle
      */
     protected void selectUnitsInSelectionRectangle() {
-        for (Unit unit : player.getUnits()) {
-            if (isInSelectionRectangle(unit.getCenterX(), unit.getCenterY())) {
+        map.getObjectGrid().findInRectangle(
+                Math.min(selectionStartX, selectionEndX) / Block.BLOCK_WIDTH,
+                Math.min(selectionStartY, selectionEndY) / Block.BLOCK_HEIGHT,
+                Math.max(selectionStartX, selectionEndX) / Block.BLOCK_WIDTH,
+                Math.max(selectionStartY, selectionEndY) / Block.BLOCK_HEIGHT,
+                player, ObjectGrid.OWNED, objectsInRectangle);
+
+        for (GameObject object : objectsInRectangle) {
+            if (object instanceof Unit) {
+                Unit unit = (Unit) object;
+
                 unit.setRenderSelectionCircle(true);
                 unit.setRenderHp(true);
                 selectedUnits.add(unit);
             }
         }
 
+        objectsInRectangle.clear();
+
         if (selectedUnits.size() > 0) {
             notifySelectionListeners();
         }
@@ -190,23 +207,6 @@ public class UnitSelector extends Selector {
         notifyDeselectionListeners();
     }
 
-    /**
-     * Checks if the specified point is in the selection rectangle
-     *
-     * @param x x of the point
-     * @param y y of the point
-     * @return
-     */
-    protected boolean isInSelectionRectangle(float x, float y) {
-        if (x >= Math.min(selectionStartX, selectionEndX) && x <= Math.min(selectionStartX, selectionEndX) + Math.abs(selectionStartX - selectionEndX)) {
-            if (y >= Math.min(selectionStartY, selectionEndY) && y <= Math.min(selectionStartY, selectionEndY) + Math.abs(selectionStartY - selectionEndY)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     /**
      * Gets all currently selected units
      *
@@ -1,18 +1,36 @@
 package com.gasis.rts.logic.player.exploration;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SHIFT;
+import static com.gasis.rts.logic.map.blockmap.BlockMapLayer.CHUNK_SIZE;
+
 /**
- * Contains a player's map exploration data
+ * Contains a player's map exploration data. The explored and visible flags are kept as
+ * bits in chunks of the same size as map layer chunks, and a chunk is only allocated
+ * when one of it's flags is set for the first time, so unexplored parts of the map
+ * take no memory
  */
 @SuppressWarnings("Duplicates")
 public class ExplorationData implements ExplorationDataInterface {
 
-    // map exploration data
-    protected Cell[][] explorationData;
+    // explored flags by chunk, null for chunks without explored cells
+    protected long[][] exploredChunks;
+
+    // visible flags by chunk, null for chunks that were never visible
+    protected long[][] visibleChunks;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
 
     // map dimensions
     protected short mapWidth;
     protected short mapHeight;
 
+    // listeners notified when a flag changes
+    protected List<ExplorationListener> listeners = new ArrayList<ExplorationListener>();
+
     /**
      * Initializes exploration data
      *
@@ -21,7 +39,11 @@ public class ExplorationData implements ExplorationDataInterface {
      */
     @Override
     public void init(short mapWidth, short mapHeight) {
-        explorationData = new Cell[mapWidth][mapHeight];
+        chunksPerRow = (mapWidth + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int chunkRows = (mapHeight + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+
+        exploredChunks = new long[chunksPerRow * chunkRows][];
+        visibleChunks = new long[chunksPerRow * chunkRows][];
 
         this.mapHeight = mapHeight;
         this.mapWidth = mapWidth;
@@ -40,11 +62,9 @@ public class ExplorationData implements ExplorationDataInterface {
             return;
         }
 
-        if (explorationData[x][y] == null) {
-            explorationData[x][y] = new Cell();
+        if (setFlag(exploredChunks, x, y, explored)) {
+            notifyListeners(x, y);
         }
-
-        explorationData[x][y].explored = explored;
     }
 
     /**
@@ -60,7 +80,7 @@ public class ExplorationData implements ExplorationDataInterface {
             return false;
         }
 
-        return explorationData[x][y] != null && explorationData[x][y].explored;
+        return getFlag(exploredChunks, x, y);
     }
 
     /**
@@ -76,11 +96,9 @@ public class ExplorationData implements ExplorationDataInterface {
             return;
         }
 
-        if (explorationData[x][y] == null) {
-            explorationData[x][y] = new Cell();
+        if (setFlag(visibleChunks, x, y, visible)) {
+            notifyListeners(x, y);
         }
-
-        explorationData[x][y].visible = visible;
     }
 
     /**
@@ -96,15 +114,92 @@ public class ExplorationData implements ExplorationDataInterface {
             return false;
         }
 
-        return explorationData[x][y] != null && explorationData[x][y].visible;
+        return getFlag(visibleChunks, x, y);
     }
 
     /**
-     * A cell on the map
+     * Adds a listener that is notified every time a cell's flags change
+     *
+     * @param listener exploration listener
      */
-    protected class Cell {
+    @Override
+    public void addExplorationListener(ExplorationListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes an exploration listener
+     *
+     * @param listener exploration listener
+     */
+    @Override
+    public void removeExplorationListener(ExplorationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners about a changed cell
+     *
+     * @param x cell x
+     * @param y cell y
+     */
+    protected void notifyListeners(short x, short y) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).explorationChanged(x, y);
+        }
+    }
+
+    /**
+     * Sets a cell's flag, allocating the flag's chunk if needed
+     *
+     * @param chunks flag chunks
+     * @param x      cell x
+     * @param y      cell y
+     * @param value  new flag value
+     * @return true if the flag's value changed
+     */
+    protected boolean setFlag(long[][] chunks, short x, short y, boolean value) {
+        int chunk = (y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT);
+
+        if (chunks[chunk] == null) {
+            if (!value) {
+                return false;
+            }
+
+            chunks[chunk] = new long[CHUNK_SIZE * CHUNK_SIZE / 64];
+        }
+
+        int bit = ((y & (CHUNK_SIZE - 1)) << CHUNK_SHIFT) | (x & (CHUNK_SIZE - 1));
+        long old = chunks[chunk][bit >>> 6];
+
+        if (value) {
+            chunks[chunk][bit >>> 6] |= 1L << bit;
+        } else {
+            chunks[chunk][bit >>> 6] &= ~(1L << bit);
+        }
+
+        return chunks[chunk][bit >>> 6] != old;
+    }
+
+    /**
+     * Gets a cell's flag
+     *
+     * @param chunks flag chunks
+     * @param x      cell x
+     * @param y      cell y
+     * @return
+     */
+    protected boolean getFlag(long[][] chunks, short x, short y) {
+        long[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksPerRow + (x >> CHUNK_SHIFT)];
+
+        if (chunk == null) {
+            return false;
+        }
+
+        int bit = ((y & (CHUNK_SIZE - 1)) << CHUNK_SHIFT) | (x & (CHUNK_SIZE - 1));
 
-        protected boolean explored;
-        protected boolean visible;
+        return (chunk[bit >>> 6] & (1L << bit)) != 0;
     }
 }
@@ -48,4 +48,18 @@ public interface ExplorationDataInterface {
      * @return
      */
     boolean isVisible(short x, short y);
+
+    /**
+     * Adds a listener that is notified every time a cell's flags change
+     *
+     * @param listener exploration listener
+     */
+    void addExplorationListener(ExplorationListener listener);
+
+    /**
+     * Removes an exploration listener
+     *
+     * @param listener exploration listener
+     */
+    void removeExplorationListener(ExplorationListener listener);
 }
@@ -1,6 +1,7 @@
 package com.gasis.rts.logic.player.exploration;
 
 import com.gasis.rts.logic.map.blockmap.Block;
+import com.gasis.rts.logic.map.blockmap.BlockMapLayer;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.building.Building;
 import com.gasis.rts.logic.object.building.BuildingConstructionListener;
@@ -22,8 +23,12 @@ public class ExplorationDataManager extends MovementAdapter implements BuildingC
     // exploration data to manage
     protected ExplorationDataInterface explorationData;
 
-    // visibility data by unit
-    protected VisibilityEntry[][] visibilityData;
+    // visibility data by unit, kept in chunks like map layers and allocated
+    // when an object first sees a block of the chunk
+    protected VisibilityEntry[][] visibilityChunks;
+
+    // how many chunks fit in a row of the map
+    protected int chunksPerRow;
 
     // map dimensions
     protected short mapWidth;
@@ -48,13 +53,40 @@ public class ExplorationDataManager extends MovementAdapter implements BuildingC
         this.mapWidth = mapWidth;
         this.mapHeight = mapHeight;
 
-        visibilityData = new VisibilityEntry[mapWidth][mapHeight];
+        chunksPerRow = (mapWidth + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+        int chunkRows = (mapHeight + BlockMapLayer.CHUNK_SIZE - 1) >> BlockMapLayer.CHUNK_SHIFT;
+
+        visibilityChunks = new VisibilityEntry[chunksPerRow * chunkRows][];
+    }
+
+    /**
+     * Gets a block's visibility entry
+     *
+     * @param x      block x
+     * @param y      block y
+     * @param create should a missing entry be created
+     * @return the entry, null if it doesn't exist and wasn't created
+     */
+    protected VisibilityEntry getVisibilityEntry(short x, short y, boolean create) {
+        int chunk = (y >> BlockMapLayer.CHUNK_SHIFT) * chunksPerRow + (x >> BlockMapLayer.CHUNK_SHIFT);
+        int index = ((y & (BlockMapLayer.CHUNK_SIZE - 1)) << BlockMapLayer.CHUNK_SHIFT) | (x & (BlockMapLayer.CHUNK_SIZE - 1));
 
-        for (int x = 0; x < mapWidth; x++) {
-            for (int y = 0; y < mapHeight; y++) {
-                visibilityData[x][y] = new VisibilityEntry();
+        if (visibilityChunks[chunk] == null) {
+            if (!create) {
+                return null;
             }
+
+            visibilityChunks[chunk] = new VisibilityEntry[BlockMapLayer.CHUNK_SIZE * BlockMapLayer.CHUNK_SIZE];
         }
+
+        VisibilityEntry entry = visibilityChunks[chunk][index];
+
+        if (entry == null && create) {
+            entry = new VisibilityEntry();
+            visibilityChunks[chunk][index] = entry;
+        }
+
+        return entry;
     }
 
     /**
@@ -128,10 +160,17 @@ public class ExplorationDataManager extends MovementAdapter implements BuildingC
             for (short y = startY; y <= endY; y++) {
                 if (MathUtils.distance(x + 0.5f, object.getCenterX() / Block.BLOCK_WIDTH, y + 0.5f, object.getCenterY() / Block.BLOCK_HEIGHT) > sightRange) {
                     if (x >= 0 && y >= 0 && x < mapWidth && y < mapHeight) {
-                        visibilityData[x][y].objects.remove(object);
+                        VisibilityEntry entry = getVisibilityEntry(x, y, false);
+
+                        if (entry != null) {
+                            entry.objects.remove(object);
+                        }
+
+                        if (entry == null || entry.objects.size() == 0) {
+                            if (entry != null) {
+                                entry.visibility = false;
+                            }
 
-                        if (visibilityData[x][y].objects.size() == 0) {
-                            visibilityData[x][y].visibility = false;
                             explorationData.setVisible(x, y, false);
                         }
                     }
@@ -146,18 +185,20 @@ public class ExplorationDataManager extends MovementAdapter implements BuildingC
                 boolean visible = visibility;
 
                 if (x >= 0 && y >= 0 && x < mapWidth && y < mapHeight) {
+                    VisibilityEntry entry = getVisibilityEntry(x, y, visibility);
+
                     if (visibility) {
-                        visibilityData[x][y].visibility = true;
-                        visibilityData[x][y].objects.add(object);
-                    } else {
-                        visibilityData[x][y].objects.remove(object);
+                        entry.visibility = true;
+                        entry.objects.add(object);
+                    } else if (entry != null) {
+                        entry.objects.remove(object);
 
-                        if (visibilityData[x][y].objects.size() == 0) {
-                            visibilityData[x][y].visibility = false;
+                        if (entry.objects.size() == 0) {
+                            entry.visibility = false;
                         }
                     }
 
-                    visible = visibilityData[x][y].visibility;
+                    visible = entry != null && entry.visibility;
                 }
 
                 explorationData.setVisible(x, y, visible);
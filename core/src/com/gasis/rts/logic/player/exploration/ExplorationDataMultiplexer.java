@@ -1,23 +1,48 @@
 package com.gasis.rts.logic.player.exploration;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Multiplexer for exploration data
+ * Multiplexer for exploration data. The combined flags of all instances are kept in
+ * packed bitsets that are updated when an instance's flags change, so checking a cell
+ * costs a single bit lookup no matter how many instances there are. Listeners are only
+ * notified when the combined flags of a cell change
  */
-public class ExplorationDataMultiplexer implements ExplorationDataInterface {
+public class ExplorationDataMultiplexer implements ExplorationDataInterface, ExplorationListener {
 
     // exploration data instances
-    protected Set<ExplorationDataInterface> data = new HashSet<ExplorationDataInterface>();
+    protected List<ExplorationDataInterface> data = new ArrayList<ExplorationDataInterface>();
+
+    // listeners of the combined flags
+    protected List<ExplorationListener> listeners = new ArrayList<ExplorationListener>();
+
+    // combined explored and visible flags of every cell, in rows from the bottom of the map
+    protected long[] explored = new long[0];
+    protected long[] visible = new long[0];
+
+    // map dimensions
+    protected short mapWidth;
+    protected short mapHeight;
 
     /**
-     * Adds exploration data to the multiplexer
+     * Adds exploration data to the multiplexer. The multiplexer has to be initialized first
      *
      * @param explorationData data to add
      */
     public void addExplorationDataInstance(ExplorationDataInterface explorationData) {
+        if (data.contains(explorationData)) {
+            return;
+        }
+
         data.add(explorationData);
+        explorationData.addExplorationListener(this);
+
+        for (short x = 0; x < mapWidth; x++) {
+            for (short y = 0; y < mapHeight; y++) {
+                explorationChanged(x, y);
+            }
+        }
     }
 
     /**
@@ -28,7 +53,64 @@ public class ExplorationDataMultiplexer implements ExplorationDataInterface {
      */
     @Override
     public void init(short mapWidth, short mapHeight) {
-        // nothing to do
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+
+        explored = new long[(mapWidth * mapHeight + 63) / 64];
+        visible = new long[explored.length];
+    }
+
+    /**
+     * Called when a cell's flags change in one of the instances
+     *
+     * @param x cell x
+     * @param y cell y
+     */
+    @Override
+    public void explorationChanged(short x, short y) {
+        if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) {
+            return;
+        }
+
+        boolean cellExplored = false;
+        boolean cellVisible = false;
+
+        for (int i = 0; i < data.size(); i++) {
+            cellExplored |= data.get(i).isExplored(x, y);
+            cellVisible |= data.get(i).isVisible(x, y);
+        }
+
+        int cell = y * mapWidth + x;
+
+        boolean changed = setBit(explored, cell, cellExplored);
+        changed |= setBit(visible, cell, cellVisible);
+
+        if (changed) {
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).explorationChanged(x, y);
+            }
+        }
+    }
+
+    /**
+     * Sets a bit of a bitset
+     *
+     * @param bits  the bitset
+     * @param index bit index
+     * @param value new bit value
+     * @return true if the bit changed
+     */
+    protected boolean setBit(long[] bits, int index, boolean value) {
+        long mask = 1L << index;
+        long old = bits[index >>> 6];
+
+        if (value) {
+            bits[index >>> 6] = old | mask;
+        } else {
+            bits[index >>> 6] = old & ~mask;
+        }
+
+        return old != bits[index >>> 6];
     }
 
     /**
@@ -40,8 +122,8 @@ public class ExplorationDataMultiplexer implements ExplorationDataInterface {
      */
     @Override
     public void setExplored(short x, short y, boolean explored) {
-        for (ExplorationDataInterface data : this.data) {
-            data.setExplored(x, y, explored);
+        for (int i = 0; i < data.size(); i++) {
+            data.get(i).setExplored(x, y, explored);
         }
     }
 
@@ -54,13 +136,13 @@ public class ExplorationDataMultiplexer implements ExplorationDataInterface {
      */
     @Override
     public boolean isExplored(short x, short y) {
-        for (ExplorationDataInterface data : this.data) {
-            if (data.isExplored(x, y)) {
-                return true;
-            }
+        if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) {
+            return false;
         }
 
-        return false;
+        int cell = y * mapWidth + x;
+
+        return (explored[cell >>> 6] & (1L << cell)) != 0;
     }
 
     /**
@@ -72,8 +154,8 @@ public class ExplorationDataMultiplexer implements ExplorationDataInterface {
      */
     @Override
     public void setVisible(short x, short y, boolean visible) {
-        for (ExplorationDataInterface data : this.data) {
-            data.setVisible(x, y, visible);
+        for (int i = 0; i < data.size(); i++) {
+            data.get(i).setVisible(x, y, visible);
         }
     }
 
@@ -86,12 +168,34 @@ public class ExplorationDataMultiplexer implements ExplorationDataInterface {
      */
     @Override
     public boolean isVisible(short x, short y) {
-        for (ExplorationDataInterface data : this.data) {
-            if (data.isVisible(x, y)) {
-                return true;
-            }
+        if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) {
+            return false;
+        }
+
+        int cell = y * mapWidth + x;
+
+        return (visible[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Adds a listener that is notified every time a cell's combined flags change
+     *
+     * @param listener exploration listener
+     */
+    @Override
+    public void addExplorationListener(ExplorationListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
         }
+    }
 
-        return false;
+    /**
+     * Removes an exploration listener
+     *
+     * @param listener exploration listener
+     */
+    @Override
+    public void removeExplorationListener(ExplorationListener listener) {
+        listeners.remove(listener);
     }
 }
@@ -0,0 +1,15 @@
+package com.gasis.rts.logic.player.exploration;
+
+/**
+ * Listens for changes of map exploration data
+ */
+public interface ExplorationListener {
+
+    /**
+     * Called when a cell's explored flag or visibility changes
+     *
+     * @param x cell x
+     * @param y cell y
+     */
+    void explorationChanged(short x, short y);
+}
@@ -1,29 +1,55 @@
 package com.gasis.rts.logic.render;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.gasis.rts.logic.map.blockmap.Block;
 import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
 
 /**
- * Queues up renderable objects and renders them in the correct order
+ * Queues up renderable objects and renders them in the correct order. Renderables are kept
+ * in parallel arrays together with their sort keys and are sorted with a radix sort right
+ * before they are rendered, so that nothing is allocated once the arrays are big enough.
+ *
+ * Renderables are ordered by depth, top first. The depth is kept as a row of blocks (a
+ * depth band) and a position inside the row. Sprites are taller than a row, so objects
+ * that are even slightly lower have to be drawn later. Only renderables at the same depth
+ * are grouped by the texture they draw from, so the sprite batch switches textures less
+ * often without drawing anything in the wrong order. Renderables with equal keys are
+ * rendered in the order they were added
  */
 public class RenderQueue implements RenderQueueInterface {
 
+    // how many renderables fit in a queue before it has to grow
+    protected static final int INITIAL_CAPACITY = 1024;
+
+    // the radix sort goes through the keys a byte at a time
+    protected static final int RADIX_BITS = 8;
+    protected static final int RADIX = 1 << RADIX_BITS;
+
+    // sort key layout: depth band, depth inside the band, texture key
+    protected static final int BAND_BITS = 16;
+    protected static final int DEPTH_BITS = 8;
+    protected static final int TEXTURE_KEY_BITS = 8;
+
+    // height of a depth band in world coordinates
+    protected static final float BAND_HEIGHT = Block.BLOCK_HEIGHT;
+
+    // objects rendered before all other objects (like selection circles)
+    protected SortedQueue bottomLayerRenderables = new SortedQueue();
+
     // objects to render
-    protected Set<Entry> renderables = new TreeSet<Entry>();
+    protected SortedQueue renderables = new SortedQueue();
 
     // objects that will be rendered after all other objects ignoring their z-index
-    protected Set<Entry> topLayerRenderables = new TreeSet<Entry>();
+    protected SortedQueue topLayerRenderables = new SortedQueue();
 
-    // instances of entries (to avoid creating new instances every frame)
-    protected List<Entry> entryInstances = new ArrayList<Entry>();
+    // digit counts of the radix sort (shared by all queues, they're sorted one after another)
+    protected int[] digitCounts = new int[RADIX];
 
-    // reused entry index (used to make entry instance list bigger if needed)
-    protected int entryIndex;
+    // should the renderables be rendered with less detail
+    protected boolean lowDetail;
 
     /**
      * Adds a renderable into the render queue
@@ -34,53 +60,82 @@ public class RenderQueue implements RenderQueueInterface {
      */
     @Override
     public void addRenderable(Renderable renderable, float x, float y) {
-        addRenderableToSet(renderable, x, y, renderables);
+        addRenderable(renderable, x, y, TextureRegions.NO_TEXTURE_KEY);
     }
 
     /**
-     * Adds a renderable to be rendered above all other renderables ignoring their z-index
+     * Adds a renderable into the render queue
      *
      * @param renderable renderable to render
      * @param x          object's x
      * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
      */
     @Override
-    public void addTopLayerRenderable(Renderable renderable, float x, float y) {
-        addRenderableToSet(renderable, x, y, topLayerRenderables);
+    public void addRenderable(Renderable renderable, float x, float y, int textureKey) {
+        renderables.add(renderable, calculateSortKey(x, y, textureKey));
     }
 
     /**
-     * Adds a renderable to the given set
+     * Adds a renderable to be rendered below all other renderables ignoring their z-index
      *
-     * @param renderable  renderable to add
-     * @param x           object's x
-     * @param y           object's y
-     * @param renderables set to add to
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
      */
-    protected void addRenderableToSet(Renderable renderable, float x, float y, Set<Entry> renderables) {
-        if (entryIndex == entryInstances.size()) {
-            entryInstances.add(new Entry());
-        }
-
-        Entry entry = entryInstances.get(entryIndex);
-
-        entry.zIndex = calculateZIndex(x, y);
-        entry.renderable = renderable;
+    @Override
+    public void addBottomLayerRenderable(Renderable renderable, float x, float y, int textureKey) {
+        bottomLayerRenderables.add(renderable, calculateSortKey(x, y, textureKey));
+    }
 
-        renderables.add(entry);
+    /**
+     * Adds a renderable to be rendered above all other renderables ignoring their z-index
+     *
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     */
+    @Override
+    public void addTopLayerRenderable(Renderable renderable, float x, float y) {
+        addTopLayerRenderable(renderable, x, y, TextureRegions.NO_TEXTURE_KEY);
+    }
 
-        entryIndex++;
+    /**
+     * Adds a renderable to be rendered above all other renderables ignoring their z-index
+     *
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
+     */
+    @Override
+    public void addTopLayerRenderable(Renderable renderable, float x, float y, int textureKey) {
+        topLayerRenderables.add(renderable, calculateSortKey(x, y, textureKey));
     }
 
     /**
-     * Calculates z index based on x and y coordinates
+     * Calculates the sort key of a renderable. Higher renderables get lower keys, so they
+     * are rendered first, the texture key only orders renderables at the same depth
      *
-     * @param x x coordinate
-     * @param y y coordinate
+     * @param x          x coordinate
+     * @param y          y coordinate
+     * @param textureKey key of the texture the renderable mostly draws from
      * @return
      */
-    protected Float calculateZIndex(float x, float y) {
-        return 1000000f - y;
+    protected int calculateSortKey(float x, float y, int textureKey) {
+        // half of the bands are below the map, for objects that are partly off of it
+        double bands = Math.max(0, (double) y / BAND_HEIGHT + (1 << (BAND_BITS - 1)));
+
+        int band = Math.min((int) bands, (1 << BAND_BITS) - 1);
+        int depth = Math.min((int) ((bands - band) * (1 << DEPTH_BITS)), (1 << DEPTH_BITS) - 1);
+
+        int bandKey = (1 << BAND_BITS) - 1 - band;
+        int depthKey = (1 << DEPTH_BITS) - 1 - depth;
+
+        return (bandKey << (DEPTH_BITS + TEXTURE_KEY_BITS))
+                | (depthKey << TEXTURE_KEY_BITS)
+                | (textureKey & ((1 << TEXTURE_KEY_BITS) - 1));
     }
 
     /**
@@ -91,21 +146,10 @@ public class RenderQueue implements RenderQueueInterface {
      */
     @Override
     public void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
-        renderSet(renderables, batch, resources, renderQueue);
-        renderSet(topLayerRenderables, batch, resources, renderQueue);
-    }
-
-    /**
-     * Renders all renderables from the given set
-     *
-     * @param set       set with renderables
-     * @param batch     sprite batch to draw to
-     * @param resources game's assets
-     */
-    protected void renderSet(Set<Entry> set, SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
-        for (Entry entry : set) {
-            entry.renderable.render(batch, resources, renderQueue);
-        }
+        // top layer renderables are added while the other ones render, so they're sorted afterwards
+        bottomLayerRenderables.render(batch, resources, renderQueue);
+        renderables.render(batch, resources, renderQueue);
+        topLayerRenderables.render(batch, resources, renderQueue);
     }
 
     /**
@@ -113,36 +157,153 @@ public class RenderQueue implements RenderQueueInterface {
      */
     @Override
     public void clearQueue() {
+        bottomLayerRenderables.clear();
         renderables.clear();
         topLayerRenderables.clear();
-        entryIndex = 0;
     }
 
     /**
-     * Renderable entry in the renderable data structure
+     * Checks if the renderables should be rendered with less detail (the map is zoomed out)
+     *
+     * @return
+     */
+    @Override
+    public boolean isLowDetail() {
+        return lowDetail;
+    }
+
+    /**
+     * Sets whether the renderables should be rendered with less detail
+     *
+     * @param lowDetail render with less detail or not
+     */
+    public void setLowDetail(boolean lowDetail) {
+        this.lowDetail = lowDetail;
+    }
+
+    /**
+     * Renderables and their sort keys in the order they were added
      */
-    protected class Entry implements Comparable<Entry> {
+    protected class SortedQueue {
+
+        // added renderables and their sort keys
+        protected Renderable[] renderables = new Renderable[INITIAL_CAPACITY];
+        protected int[] keys = new int[INITIAL_CAPACITY];
+
+        // renderable indices in the sorted order, and the sort's scratch space
+        protected int[] order = new int[INITIAL_CAPACITY];
+        protected int[] buffer = new int[INITIAL_CAPACITY];
+
+        // how many renderables have been added
+        protected int size;
+
+        /**
+         * Adds a renderable to the end of the queue
+         *
+         * @param renderable renderable to add
+         * @param key        renderable's sort key
+         */
+        protected void add(Renderable renderable, int key) {
+            if (size == renderables.length) {
+                grow();
+            }
+
+            renderables[size] = renderable;
+            keys[size] = key;
+            size++;
+        }
 
-        protected Renderable renderable;
-        protected float zIndex;
+        /**
+         * Doubles the capacity of the queue
+         */
+        protected void grow() {
+            int capacity = renderables.length * 2;
 
-        protected Entry() {
+            renderables = Arrays.copyOf(renderables, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            order = new int[capacity];
+            buffer = new int[capacity];
         }
 
-        protected Entry(float zIndex, Renderable renderable) {
-            this.zIndex = zIndex;
-            this.renderable = renderable;
+        /**
+         * Sorts the queue and renders it. Renderables added while rendering are rendered
+         * after the sorted ones in the order they were added
+         *
+         * @param batch       sprite batch to draw to
+         * @param resources   game assets
+         * @param renderQueue render queue passed to the renderables
+         */
+        protected void render(SpriteBatch batch, Resources resources, RenderQueueInterface renderQueue) {
+            int sortedSize = size;
+            int[] sorted = sort();
+
+            for (int i = 0; i < sortedSize; i++) {
+                renderables[sorted[i]].render(batch, resources, renderQueue);
+            }
+
+            for (int i = sortedSize; i < size; i++) {
+                renderables[i].render(batch, resources, renderQueue);
+            }
         }
 
-        @Override
-        public int compareTo(Entry entry) {
-            if (zIndex < entry.zIndex) {
-                return -1;
-            } else if (zIndex > entry.zIndex) {
-                return 1;
+        /**
+         * Sorts the queue by the keys with a least significant digit first radix sort,
+         * which keeps renderables with equal keys in the order they were added
+         *
+         * @return renderable indices in the sorted order
+         */
+        protected int[] sort() {
+            int[] from = order;
+            int[] to = buffer;
+
+            for (int i = 0; i < size; i++) {
+                from[i] = i;
+            }
+
+            if (size < 2) {
+                return from;
             }
 
-            return -1; // not returning 0 because duplicate key support is required
+            for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+                Arrays.fill(digitCounts, 0);
+
+                for (int i = 0; i < size; i++) {
+                    digitCounts[(keys[i] >>> shift) & (RADIX - 1)]++;
+                }
+
+                // every key has the same digit, the order wouldn't change
+                if (digitCounts[(keys[0] >>> shift) & (RADIX - 1)] == size) {
+                    continue;
+                }
+
+                // digit counts into the positions the digits start at
+                int position = 0;
+
+                for (int digit = 0; digit < RADIX; digit++) {
+                    int count = digitCounts[digit];
+                    digitCounts[digit] = position;
+                    position += count;
+                }
+
+                for (int i = 0; i < size; i++) {
+                    int index = from[i];
+                    to[digitCounts[(keys[index] >>> shift) & (RADIX - 1)]++] = index;
+                }
+
+                int[] swap = from;
+                from = to;
+                to = swap;
+            }
+
+            return from;
+        }
+
+        /**
+         * Removes every renderable from the queue
+         */
+        protected void clear() {
+            Arrays.fill(renderables, 0, size, null);
+            size = 0;
         }
     }
 }
@@ -14,6 +14,26 @@ public interface RenderQueueInterface extends Renderable {
      */
     void addRenderable(Renderable renderable, float x, float y);
 
+    /**
+     * Adds a renderable into the render queue
+     *
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
+     */
+    void addRenderable(Renderable renderable, float x, float y, int textureKey);
+
+    /**
+     * Adds a renderable to be rendered below all other renderables ignoring their z-index
+     *
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
+     */
+    void addBottomLayerRenderable(Renderable renderable, float x, float y, int textureKey);
+
     /**
      * Adds a renderable to be rendered above all other renderables ignoring their z-index
      *
@@ -23,8 +43,25 @@ public interface RenderQueueInterface extends Renderable {
      */
     void addTopLayerRenderable(Renderable renderable, float x, float y);
 
+    /**
+     * Adds a renderable to be rendered above all other renderables ignoring their z-index
+     *
+     * @param renderable renderable to render
+     * @param x          object's x
+     * @param y          object's y
+     * @param textureKey key of the texture the renderable mostly draws from
+     */
+    void addTopLayerRenderable(Renderable renderable, float x, float y, int textureKey);
+
     /**
      * Clears the render queue
      */
     void clearQueue();
+
+    /**
+     * Checks if the renderables should be rendered with less detail (the map is zoomed out)
+     *
+     * @return
+     */
+    boolean isLowDetail();
 }
@@ -355,6 +355,7 @@ public class Resources {
 
         if (clazz == TextureAtlas.class) {
             textureAtlases.remove(name);
+            TextureRegions.forgetAtlas(name);
         } else if (clazz == Texture.class) {
             textures.remove(name);
         } else if (clazz == BitmapFont.class) {
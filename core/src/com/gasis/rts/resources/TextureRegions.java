@@ -0,0 +1,228 @@
+package com.gasis.rts.resources;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.gasis.rts.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives texture regions integer handles, so that rendering code doesn't have to look up
+ * atlases and regions by name every frame. Regions are registered by name when game data
+ * is loaded (before the atlases themselves might be loaded) and the actual region of a
+ * handle is found the first time it is drawn.
+ *
+ * If the merged atlas made by the atlas packer is loaded, regions are looked up in it
+ * first (under "atlas name/region name"), so that regions that are drawn together come
+ * from the same texture. Every texture the regions come from gets a small texture key
+ * that render queues use to group draws of the same texture.
+ *
+ * Regions that can't be found are remembered as missing, so optional regions don't get
+ * looked up again on every draw. Like the rest of the rendering code, the handles are
+ * only meant to be used from the game thread
+ */
+public class TextureRegions {
+
+    // the handle of a missing region
+    public static final int NONE = -1;
+
+    // the texture key of regions that haven't been drawn yet
+    public static final int NO_TEXTURE_KEY = 0;
+
+    // handles by atlas file name and region name
+    private static Map<String, Map<String, Integer>> handles = new HashMap<String, Map<String, Integer>>();
+
+    // atlas file names and region names by handle
+    private static String[] atlasNames = new String[64];
+    private static String[] regionNames = new String[64];
+
+    // stands for regions that were looked up but don't exist in their atlas
+    private static final TextureRegion MISSING_REGION = new TextureRegion();
+
+    // found regions by handle, null for regions that haven't been drawn yet
+    private static TextureRegion[] regions = new TextureRegion[64];
+
+    // texture keys of the found regions by handle
+    private static int[] textureKeys = new int[64];
+
+    // textures of the found regions, a texture's key is it's index + 1
+    private static List<Texture> textures = new ArrayList<Texture>();
+
+    // how many handles have been given out
+    private static int count;
+
+    /**
+     * Gets the handle of a region, registering the region if it isn't registered yet
+     *
+     * @param atlas  atlas file name (with the atlas folder)
+     * @param region region name
+     * @return
+     */
+    public static int register(String atlas, String region) {
+        if (atlas == null || region == null) {
+            return NONE;
+        }
+
+        Map<String, Integer> atlasHandles = handles.get(atlas);
+
+        if (atlasHandles == null) {
+            atlasHandles = new HashMap<String, Integer>();
+            handles.put(atlas, atlasHandles);
+        }
+
+        Integer handle = atlasHandles.get(region);
+
+        if (handle != null) {
+            return handle;
+        }
+
+        if (count == atlasNames.length) {
+            atlasNames = Arrays.copyOf(atlasNames, count * 2);
+            regionNames = Arrays.copyOf(regionNames, count * 2);
+            regions = Arrays.copyOf(regions, count * 2);
+            textureKeys = Arrays.copyOf(textureKeys, count * 2);
+        }
+
+        atlasNames[count] = atlas;
+        regionNames[count] = region;
+        atlasHandles.put(region, count);
+
+        return count++;
+    }
+
+    /**
+     * Registers regions of the same atlas
+     *
+     * @param atlas   atlas file name (with the atlas folder)
+     * @param regions region names
+     * @return handles in the same order as the names, null if there are no names
+     */
+    public static int[] register(String atlas, List<String> regions) {
+        if (regions == null) {
+            return null;
+        }
+
+        int[] result = new int[regions.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = register(atlas, regions.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the region of a handle
+     *
+     * @param resources game assets the region's atlas is loaded in
+     * @param handle    region handle
+     * @return the region, null if it's atlas doesn't have it
+     */
+    public static TextureRegion get(Resources resources, int handle) {
+        TextureRegion region = regions[handle];
+
+        if (region == null) {
+            region = findRegion(resources, handle);
+
+            if (region == null) {
+                regions[handle] = MISSING_REGION;
+                textureKeys[handle] = NO_TEXTURE_KEY;
+
+                return null;
+            }
+
+            regions[handle] = region;
+            textureKeys[handle] = getTextureKey(region.getTexture());
+        }
+
+        return region != MISSING_REGION ? region : null;
+    }
+
+    /**
+     * Finds the region of a handle, in the merged atlas if it is loaded and has the region
+     *
+     * @param resources game assets the region's atlas is loaded in
+     * @param handle    region handle
+     * @return
+     */
+    private static TextureRegion findRegion(Resources resources, int handle) {
+        if (resources.isLoaded(Constants.MERGED_TEXTURE_ATLAS)) {
+            TextureAtlas merged = resources.atlas(Constants.MERGED_TEXTURE_ATLAS);
+            TextureRegion region = merged.findRegion(getMergedName(atlasNames[handle], regionNames[handle]));
+
+            if (region != null) {
+                return region;
+            }
+        }
+
+        return resources.atlas(atlasNames[handle]).findRegion(regionNames[handle]);
+    }
+
+    /**
+     * Gets the name a region has in the merged atlas
+     *
+     * @param atlas  atlas file name (with the atlas folder)
+     * @param region region name
+     * @return
+     */
+    public static String getMergedName(String atlas, String region) {
+        String atlasName = atlas.substring(atlas.lastIndexOf('/') + 1);
+
+        if (atlasName.endsWith(".atlas")) {
+            atlasName = atlasName.substring(0, atlasName.length() - ".atlas".length());
+        }
+
+        return atlasName + "/" + region;
+    }
+
+    /**
+     * Gets the key of a texture, giving the texture a key if it has none yet
+     *
+     * @param texture the texture
+     * @return
+     */
+    private static int getTextureKey(Texture texture) {
+        for (int i = 0; i < textures.size(); i++) {
+            if (textures.get(i) == texture) {
+                return i + 1;
+            }
+        }
+
+        textures.add(texture);
+
+        return textures.size();
+    }
+
+    /**
+     * Gets the key of the texture a region comes from. Regions that haven't been drawn
+     * yet have NO_TEXTURE_KEY
+     *
+     * @param handle region handle
+     * @return
+     */
+    public static int getTextureKey(int handle) {
+        return handle == NONE ? NO_TEXTURE_KEY : textureKeys[handle];
+    }
+
+    /**
+     * Forgets the found and missing regions of an atlas (when the atlas gets unloaded),
+     * the regions will be looked up again the next time they are drawn
+     *
+     * @param atlas atlas file name
+     */
+    public static void forgetAtlas(String atlas) {
+        boolean merged = atlas.equals(Constants.MERGED_TEXTURE_ATLAS);
+
+        for (int i = 0; i < count; i++) {
+            if (merged || atlasNames[i].equals(atlas)) {
+                regions[i] = null;
+                textureKeys[i] = NO_TEXTURE_KEY;
+            }
+        }
+    }
+}
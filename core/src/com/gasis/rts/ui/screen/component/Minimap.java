@@ -3,6 +3,7 @@ package com.gasis.rts.ui.screen.component;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.gasis.rts.logic.GameInstance;
 import com.gasis.rts.logic.player.Player;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.ui.screen.component.minimap.*;
 import com.gasis.rts.utils.Constants;
 
@@ -14,6 +15,10 @@ public class Minimap extends AbstractComponent implements BoundsProvider, Minima
     // minimap's opacity
     protected final float OPACITY = 0.9f;
 
+    // texture region handles of the borders
+    protected static final int BORDER_RIGHT_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BORDER_RIGHT);
+    protected static final int BORDER_BOTTOM_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BORDER_BOTTOM);
+
     // block size
     protected float blockWidth;
     protected float blockHeight;
@@ -89,6 +94,7 @@ public class Minimap extends AbstractComponent implements BoundsProvider, Minima
         super.act(delta);
 
         updateRenderBounds();
+        contentRenderer.update(delta);
     }
 
     /**
@@ -122,7 +128,7 @@ public class Minimap extends AbstractComponent implements BoundsProvider, Minima
      */
     protected void renderBorders(Batch batch) {
         batch.draw(
-                game.getResources().atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BORDER_RIGHT),
+                TextureRegions.get(game.getResources(), BORDER_RIGHT_REGION),
                 getX() + rightBorderOffsetX,
                 getY() + rightBorderOffsetY,
                 rightBorderWidth,
@@ -130,7 +136,7 @@ public class Minimap extends AbstractComponent implements BoundsProvider, Minima
         );
 
         batch.draw(
-                game.getResources().atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BORDER_BOTTOM),
+                TextureRegions.get(game.getResources(), BORDER_BOTTOM_REGION),
                 getX() + bottomBorderOffsetX,
                 getY() + bottomBorderOffsetY,
                 bottomBorderWidth,
@@ -229,6 +235,13 @@ public class Minimap extends AbstractComponent implements BoundsProvider, Minima
         return blockHeight;
     }
 
+    /**
+     * Disposes of the minimap's textures
+     */
+    public void dispose() {
+        contentRenderer.dispose();
+    }
+
     /**
      * Gets the minimap navigator
      *
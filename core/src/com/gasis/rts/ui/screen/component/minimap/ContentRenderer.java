@@ -1,19 +1,77 @@
 package com.gasis.rts.ui.screen.component.minimap;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.gasis.rts.logic.map.blockmap.BlockChangeLog;
 import com.gasis.rts.logic.map.blockmap.BlockMap;
 import com.gasis.rts.logic.object.GameObject;
 import com.gasis.rts.logic.object.unit.Unit;
 import com.gasis.rts.logic.player.Player;
 import com.gasis.rts.logic.player.exploration.ExplorationDataInterface;
+import com.gasis.rts.logic.player.exploration.ExplorationListener;
 import com.gasis.rts.logic.render.SimpleRenderable;
 import com.gasis.rts.resources.Resources;
+import com.gasis.rts.resources.TextureRegions;
 import com.gasis.rts.utils.Constants;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Renders contents of the minimap
+ * Renders contents of the minimap. The contents are kept in a texture with a single pixel
+ * for every block of the map. Blocks whose exploration, visibility or occupying object
+ * changes are marked dirty and are drawn to the texture's pixmap again, but the texture
+ * itself is only uploaded a few times per second. The colors of the blocks are taken
+ * from the minimap textures
  */
-public class ContentRenderer implements SimpleRenderable {
+public class ContentRenderer implements SimpleRenderable, ExplorationListener {
+
+    // how often (in seconds) the changed blocks are uploaded to the texture
+    protected static final float UPLOAD_INTERVAL = 0.25f;
+
+    // the most dirty blocks listed between uploads, more changes make the whole map get drawn again
+    protected static final int MAX_DIRTY_BLOCKS = 16384;
+
+    // texture region handles of the minimap textures
+    protected static final int BLOCK_UNEXPLORED_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BLOCK_UNEXPLORED);
+    protected static final int BLOCK_EXPLORED_INVISIBLE_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BLOCK_EXPLORED_INVISIBLE);
+    protected static final int BLOCK_VISIBLE_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BLOCK_VISIBLE);
+    protected static final int BLOCK_TERRAIN_OBJECT_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BLOCK_TERRAIN_OBJECT);
+    protected static final int BOUNDS_REGION = TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, Constants.MINIMAP_BOUNDS);
+
+    // colors of the blocks taken from the minimap textures
+    protected int unexploredColor;
+    protected int exploredInvisibleColor;
+    protected int visibleColor;
+    protected int terrainObjectColor;
+
+    // colors of the colored unit and object textures by player color
+    protected Map<String, Integer> heavyUnitColors = new HashMap<String, Integer>();
+    protected Map<String, Integer> blockObjectColors = new HashMap<String, Integer>();
+
+    // minimap pixels and the texture they're uploaded to, created when first rendered
+    protected Pixmap pixmap;
+    protected Texture texture;
+
+    // time elapsed since the last upload
+    protected float timeSinceUpload;
+
+    // blocks that need to be drawn again, each one is listed once
+    protected long[] dirtyFlags;
+    protected int[] dirtyBlocks = new int[256];
+    protected int dirtyCount;
+
+    // does the whole map need to be drawn again
+    protected boolean allDirty = true;
+
+    // changes of the map's occupying objects and passability
+    protected BlockChangeLog.Subscription changes;
 
     // provides dimensions
     protected MinimapDimensionsProvider dimensionsProvider;
@@ -42,6 +100,64 @@ public class ContentRenderer implements SimpleRenderable {
         renderRenderBounds(batch, resources);
     }
 
+    /**
+     * Updates the minimap contents
+     *
+     * @param delta time elapsed since the last update
+     */
+    public void update(float delta) {
+        timeSinceUpload += delta;
+
+        if (changes == null) {
+            return;
+        }
+
+        // read every frame, so that the change log never drops changes between uploads
+        if (changes.checkOverflow()) {
+            allDirty = true;
+        }
+
+        int block;
+
+        while ((block = changes.next()) != BlockChangeLog.NO_BLOCK) {
+            markDirty(block);
+        }
+    }
+
+    /**
+     * Called when a cell's explored flag or visibility changes
+     *
+     * @param x cell x
+     * @param y cell y
+     */
+    @Override
+    public void explorationChanged(short x, short y) {
+        markDirty(y * (int) map.getWidth() + x);
+    }
+
+    /**
+     * Marks a block to be drawn again
+     *
+     * @param block packed block id (y * map width + x)
+     */
+    protected void markDirty(int block) {
+        if (dirtyFlags == null || allDirty || (dirtyFlags[block >>> 6] & (1L << block)) != 0) {
+            return;
+        }
+
+        if (dirtyCount == dirtyBlocks.length) {
+            if (dirtyCount == MAX_DIRTY_BLOCKS) {
+                allDirty = true;
+                return;
+            }
+
+            dirtyBlocks = Arrays.copyOf(dirtyBlocks, Math.min(dirtyCount * 2, MAX_DIRTY_BLOCKS));
+        }
+
+        dirtyFlags[block >>> 6] |= 1L << block;
+        dirtyBlocks[dirtyCount++] = block;
+    }
+
     /**
      * Renders the minimap's contents
      *
@@ -49,94 +165,220 @@ public class ContentRenderer implements SimpleRenderable {
      * @param resources game's assets
      */
     protected void renderContents(Batch batch, Resources resources) {
+        if (texture == null) {
+            createTexture(resources);
+        } else if ((allDirty || dirtyCount > 0) && timeSinceUpload >= UPLOAD_INTERVAL) {
+            // the batch binds it's own texture again when it flushes
+            batch.flush();
+            upload(resources);
+        }
+
+        batch.draw(
+                texture,
+                dimensionsProvider.getMinimapX(),
+                dimensionsProvider.getMinimapY(),
+                map.getWidth() * dimensionsProvider.getBlockWidth(),
+                map.getHeight() * dimensionsProvider.getBlockHeight()
+        );
+    }
+
+    /**
+     * Samples the block colors and creates the minimap texture with every block drawn
+     *
+     * @param resources game's assets
+     */
+    protected void createTexture(Resources resources) {
+        unexploredColor = sampleColor(resources, BLOCK_UNEXPLORED_REGION);
+        exploredInvisibleColor = sampleColor(resources, BLOCK_EXPLORED_INVISIBLE_REGION);
+        visibleColor = sampleColor(resources, BLOCK_VISIBLE_REGION);
+        terrainObjectColor = sampleColor(resources, BLOCK_TERRAIN_OBJECT_REGION);
+
+        pixmap = new Pixmap((int) map.getWidth(), (int) map.getHeight(), Pixmap.Format.RGBA8888);
+        pixmap.setBlending(Pixmap.Blending.None);
+
+        drawAllBlocks(resources);
+
+        texture = new Texture(pixmap);
+        texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+
+        timeSinceUpload = 0;
+    }
+
+    /**
+     * Draws the changed blocks to the pixmap and uploads the changed rows to the texture
+     *
+     * @param resources game's assets
+     */
+    protected void upload(Resources resources) {
+        int firstRow;
+        int lastRow;
+
+        if (allDirty) {
+            drawAllBlocks(resources);
+            firstRow = 0;
+            lastRow = pixmap.getHeight() - 1;
+        } else {
+            int width = (int) map.getWidth();
+
+            firstRow = pixmap.getHeight();
+            lastRow = -1;
+
+            for (int i = 0; i < dirtyCount; i++) {
+                int block = dirtyBlocks[i];
+                short x = (short) (block % width);
+                short y = (short) (block / width);
+
+                int row = drawBlock(resources, x, y);
+                firstRow = Math.min(firstRow, row);
+                lastRow = Math.max(lastRow, row);
+
+                dirtyFlags[block >>> 6] &= ~(1L << block);
+            }
+
+            dirtyCount = 0;
+        }
+
+        // pixmap rows are stored one after another, so the changed rows are uploaded as one band
+        ByteBuffer pixels = pixmap.getPixels();
+        pixels.position(firstRow * pixmap.getWidth() * 4);
+
+        texture.bind();
+        Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, firstRow, pixmap.getWidth(), lastRow - firstRow + 1,
+                pixmap.getGLFormat(), pixmap.getGLType(), pixels);
+
+        pixels.position(0);
+
+        timeSinceUpload = 0;
+    }
+
+    /**
+     * Draws every block of the map to the pixmap
+     *
+     * @param resources game's assets
+     */
+    protected void drawAllBlocks(Resources resources) {
         for (short x = 0; x < map.getWidth(); x++) {
             for (short y = 0; y < map.getHeight(); y++) {
-                if (!explorationData.isExplored(x, y)) {
-                    batch.draw(
-                            resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_UNEXPLORED),
-                            dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                            dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                            dimensionsProvider.getBlockWidth(),
-                            dimensionsProvider.getBlockHeight()
-                    );
-                } else {
-                    if (!explorationData.isVisible(x, y)) {
-                        if (map.isBlockPassable(x, y)) {
-                            batch.draw(
-                                    resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_EXPLORED_INVISIBLE),
-                                    dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                                    dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getBlockHeight()
-                            );
-
-                            renderObject(batch, resources, x, y, false);
-                        } else {
-                            batch.draw(
-                                    resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_VISIBLE),
-                                    dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                                    dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getBlockHeight()
-                            );
-                        }
-                    } else {
-                        if (!map.isBlockPassable(x, y)) {
-                            batch.draw(
-                                    resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_TERRAIN_OBJECT),
-                                    dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                                    dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getBlockHeight()
-                            );
-                        } else {
-                            batch.draw(
-                                    resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_VISIBLE),
-                                    dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                                    dimensionsProvider.getBlockWidth(),
-                                    dimensionsProvider.getBlockHeight()
-                            );
-
-                            renderObject(batch, resources, x, y, true);
-                        }
-                    }
-                }
+                drawBlock(resources, x, y);
             }
         }
+
+        Arrays.fill(dirtyFlags, 0);
+        dirtyCount = 0;
+        allDirty = false;
     }
 
     /**
-     * Renders a game object
+     * Draws a block to the pixmap
      *
-     * @param batch
-     * @param resources
-     * @param x
-     * @param y
-     * @param renderEnemy
+     * @param resources game's assets
+     * @param x         block x
+     * @param y         block y
+     * @return the pixmap row the block is in
      */
-    protected void renderObject(Batch batch, Resources resources, short x, short y, boolean renderEnemy) {
-        GameObject occupyingObject = map.getOccupyingObject(x, y);
+    protected int drawBlock(Resources resources, short x, short y) {
+        // pixmap rows go from the top down
+        int row = pixmap.getHeight() - 1 - y;
+
+        pixmap.drawPixel(x, row, getBlockColor(resources, x, y));
+
+        return row;
+    }
 
-        if (occupyingObject != null) {
-            if (occupyingObject instanceof Unit && (renderEnemy || occupyingObject.getOwner().isAllied(player))) {
-                batch.draw(
-                        resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_HEAVY_UNIT_PREFIX + occupyingObject.getOwner().getColor()),
-                        dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                        dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                        dimensionsProvider.getBlockWidth(),
-                        dimensionsProvider.getBlockHeight()
-                );
-            } else {
-                batch.draw(
-                        resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BLOCK_OBJECT_PREFIX + occupyingObject.getOwner().getColor()),
-                        dimensionsProvider.getMinimapX() + x * dimensionsProvider.getBlockWidth(),
-                        dimensionsProvider.getMinimapY() + y * dimensionsProvider.getBlockHeight(),
-                        dimensionsProvider.getBlockWidth(),
-                        dimensionsProvider.getBlockHeight()
-                );
+    /**
+     * Gets the color a block is shown in
+     *
+     * @param resources game's assets
+     * @param x         block x
+     * @param y         block y
+     * @return RGBA8888 color
+     */
+    protected int getBlockColor(Resources resources, short x, short y) {
+        if (!explorationData.isExplored(x, y)) {
+            return unexploredColor;
+        } else if (!explorationData.isVisible(x, y)) {
+            if (map.isBlockPassable(x, y)) {
+                return getObjectColor(resources, x, y, false, exploredInvisibleColor);
             }
+
+            return visibleColor;
+        } else if (!map.isBlockPassable(x, y)) {
+            return terrainObjectColor;
+        }
+
+        return getObjectColor(resources, x, y, true, visibleColor);
+    }
+
+    /**
+     * Gets the color of the object occupying a block
+     *
+     * @param resources       game's assets
+     * @param x               block x
+     * @param y               block y
+     * @param showEnemy       are enemy units shown as units
+     * @param backgroundColor color of the block if nothing occupies it
+     * @return RGBA8888 color
+     */
+    protected int getObjectColor(Resources resources, short x, short y, boolean showEnemy, int backgroundColor) {
+        GameObject occupyingObject = map.getOccupyingObject(x, y);
+
+        if (occupyingObject == null) {
+            return backgroundColor;
+        }
+
+        if (occupyingObject instanceof Unit && (showEnemy || occupyingObject.getOwner().isAllied(player))) {
+            return getPlayerColor(resources, heavyUnitColors, Constants.MINIMAP_HEAVY_UNIT_PREFIX, occupyingObject.getOwner().getColor());
+        }
+
+        return getPlayerColor(resources, blockObjectColors, Constants.MINIMAP_BLOCK_OBJECT_PREFIX, occupyingObject.getOwner().getColor());
+    }
+
+    /**
+     * Gets the color of a texture colored in a player's color
+     *
+     * @param resources game's assets
+     * @param colors    already sampled colors by player color
+     * @param prefix    texture name prefix
+     * @param color     player's color
+     * @return RGBA8888 color
+     */
+    protected int getPlayerColor(Resources resources, Map<String, Integer> colors, String prefix, String color) {
+        Integer sampled = colors.get(color);
+
+        if (sampled == null) {
+            sampled = sampleColor(resources, TextureRegions.register(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS, prefix + color));
+            colors.put(color, sampled);
+        }
+
+        return sampled;
+    }
+
+    /**
+     * Reads the color of the center pixel of a minimap texture
+     *
+     * @param resources game's assets
+     * @param handle    texture region handle
+     * @return RGBA8888 color
+     */
+    protected int sampleColor(Resources resources, int handle) {
+        TextureRegion region = TextureRegions.get(resources, handle);
+
+        if (!region.getTexture().getTextureData().isPrepared()) {
+            region.getTexture().getTextureData().prepare();
         }
+
+        Pixmap full = region.getTexture().getTextureData().consumePixmap();
+
+        int color = full.getPixel(
+                region.getRegionX() + region.getRegionWidth() / 2,
+                region.getRegionY() + region.getRegionHeight() / 2
+        );
+
+        if (region.getTexture().getTextureData().disposePixmap()) {
+            full.dispose();
+        }
+
+        return color;
     }
 
     /**
@@ -147,7 +389,7 @@ public class ContentRenderer implements SimpleRenderable {
      */
     protected void renderRenderBounds(Batch batch, Resources resources) {
         batch.draw(
-                resources.atlas(Constants.FOLDER_ATLASES + Constants.MINIMAP_ATLAS).findRegion(Constants.MINIMAP_BOUNDS),
+                TextureRegions.get(resources, BOUNDS_REGION),
                 boundsProvider.getRenderBounds().start.x,
                 boundsProvider.getRenderBounds().start.y,
                 boundsProvider.getRenderBounds().end.x - boundsProvider.getRenderBounds().start.x,
@@ -179,7 +421,20 @@ public class ContentRenderer implements SimpleRenderable {
      * @param map
      */
     public void setMap(BlockMap map) {
+        if (changes != null) {
+            this.map.getChanges().unsubscribe(changes);
+        }
+
+        disposeTexture();
+
         this.map = map;
+
+        changes = map.getChanges().subscribe();
+
+        int blockCount = (int) map.getWidth() * (int) map.getHeight();
+        dirtyFlags = new long[(blockCount + 63) / 64];
+        dirtyCount = 0;
+        allDirty = true;
     }
 
     /**
@@ -188,7 +443,14 @@ public class ContentRenderer implements SimpleRenderable {
      * @param explorationData
      */
     public void setExplorationData(ExplorationDataInterface explorationData) {
+        if (this.explorationData != null) {
+            this.explorationData.removeExplorationListener(this);
+        }
+
         this.explorationData = explorationData;
+        explorationData.addExplorationListener(this);
+
+        allDirty = true;
     }
 
     /**
@@ -198,5 +460,38 @@ public class ContentRenderer implements SimpleRenderable {
      */
     public void setPlayer(Player player) {
         this.player = player;
+
+        allDirty = true;
+    }
+
+    /**
+     * Stops listening for map changes and disposes of the minimap texture
+     */
+    public void dispose() {
+        if (explorationData != null) {
+            explorationData.removeExplorationListener(this);
+        }
+
+        if (changes != null) {
+            map.getChanges().unsubscribe(changes);
+            changes = null;
+        }
+
+        disposeTexture();
+    }
+
+    /**
+     * Disposes of the minimap texture and it's pixmap
+     */
+    protected void disposeTexture() {
+        if (texture != null) {
+            texture.dispose();
+            texture = null;
+        }
+
+        if (pixmap != null) {
+            pixmap.dispose();
+            pixmap = null;
+        }
     }
 }
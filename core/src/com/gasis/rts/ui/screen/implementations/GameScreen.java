@@ -223,6 +223,7 @@ public class GameScreen extends StagedScreen {
     @Override
     public void dispose() {
         super.dispose();
+        minimap.dispose();
         game.unloadResources();
     }
 }
@@ -23,6 +23,8 @@ public class Constants {
 
     // global textures
     public static final String GENERAL_TEXTURE_ATLAS = "atl/general.atlas";
+    // atlas made by the atlas packer out of the atlases drawn together, loaded only if it exists
+    public static final String MERGED_TEXTURE_ATLAS = "atl/merged.atlas";
     public static final String CRATER_TEXTURE_ATLAS = "craters.atlas";
     public static final String LARGE_CRATER_PREFIX = "large_crater_";
     public static final String SMALL_CRATER_PREFIX = "small_crater_";
@@ -0,0 +1,62 @@
+package com.gasis.rts.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.tools.texturepacker.TexturePacker;
+import com.badlogic.gdx.tools.texturepacker.TextureUnpacker;
+
+/**
+ * Packs the regions of texture atlases that are drawn together (units, buildings, effects,
+ * hp bars) into a single merged atlas, so that the render queue has fewer textures to
+ * switch between. Every region keeps it's name prefixed with the name of the atlas it
+ * came from, which is how the game finds it in the merged atlas
+ */
+public class AtlasPackerLauncher {
+
+    // name of the merged atlas (without the extension)
+    private static final String MERGED_ATLAS_NAME = "merged";
+
+    // biggest page of the merged atlas
+    private static final int MAX_PAGE_SIZE = 4096;
+
+    /**
+     * Entry point of the atlas packer
+     *
+     * @param arg the folder with the atlases, followed by the atlases to merge
+     */
+    public static void main(String[] arg) {
+        FileHandle folder = new FileHandle(arg[0]);
+        FileHandle regions = new FileHandle(System.getProperty("java.io.tmpdir")).child("rts-merged-atlas");
+
+        regions.deleteDirectory();
+
+        TextureUnpacker unpacker = new TextureUnpacker();
+
+        // every atlas is unpacked into it's own folder, the folder name becomes the region name prefix
+        for (int i = 1; i < arg.length; i++) {
+            FileHandle atlas = folder.child(arg[i]);
+            TextureAtlas.TextureAtlasData data = new TextureAtlas.TextureAtlasData(atlas, atlas.parent(), false);
+
+            unpacker.splitAtlas(data, regions.child(atlas.nameWithoutExtension()).path());
+
+            System.out.println("Unpacked " + atlas.path() + " (" + data.getRegions().size + " regions)");
+        }
+
+        TexturePacker.Settings settings = new TexturePacker.Settings();
+        settings.combineSubdirectories = true;
+        settings.maxWidth = MAX_PAGE_SIZE;
+        settings.maxHeight = MAX_PAGE_SIZE;
+        settings.duplicatePadding = true;
+        settings.filterMin = Texture.TextureFilter.Linear;
+        settings.filterMag = Texture.TextureFilter.Linear;
+
+        long start = System.currentTimeMillis();
+        TexturePacker.process(settings, regions.path(), folder.path(), MERGED_ATLAS_NAME);
+
+        System.out.println("Packed " + folder.child(MERGED_ATLAS_NAME + settings.atlasExtension).path()
+                + " (" + (System.currentTimeMillis() - start) + " ms)");
+
+        regions.deleteDirectory();
+    }
+}
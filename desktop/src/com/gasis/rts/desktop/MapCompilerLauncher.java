@@ -0,0 +1,94 @@
+package com.gasis.rts.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.gasis.rts.logic.map.blockmap.BlockMapCompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles all map scripts of a folder into binary maps that the game loads
+ * instead of generating the maps at startup
+ */
+public class MapCompilerLauncher {
+
+    /**
+     * Entry point of the map compiler
+     *
+     * @param arg options followed by folders with map scripts (.map files). Options:
+     *            -parallelism N: generate the terrain with N threads (serially by default)
+     *            -verify: instead of writing the maps, check that generating them with 1
+     *            and with N threads gives the same compiled map
+     */
+    public static void main(String[] arg) throws IOException {
+        BlockMapCompiler compiler = new BlockMapCompiler();
+        List<String> folders = new ArrayList<String>();
+
+        int parallelism = 0;
+        boolean verify = false;
+
+        for (int i = 0; i < arg.length; i++) {
+            if (arg[i].equals("-parallelism")) {
+                parallelism = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-verify")) {
+                verify = true;
+            } else {
+                folders.add(arg[i]);
+            }
+        }
+
+        if (verify && parallelism <= 1) {
+            System.err.println("-verify needs -parallelism with more than 1 thread");
+            System.exit(1);
+        }
+
+        compiler.setParallelism(parallelism);
+
+        for (String folder : folders) {
+            for (FileHandle script : new FileHandle(folder).list(".map")) {
+                if (verify) {
+                    verify(compiler, script, parallelism);
+                    continue;
+                }
+
+                FileHandle output = script.sibling(script.nameWithoutExtension() + "." + BlockMapCompiler.EXTENSION);
+
+                long start = System.currentTimeMillis();
+                compiler.compile(script, output);
+
+                System.out.println("Compiled " + script.path() + " into " + output.path()
+                        + " (" + output.length() + " bytes, " + (System.currentTimeMillis() - start) + " ms)");
+            }
+        }
+    }
+
+    /**
+     * Compiles a map with 1 thread and with the given number of threads and exits with
+     * an error if the compiled maps differ
+     *
+     * @param compiler    map compiler
+     * @param script      map script
+     * @param parallelism thread count to compare with
+     */
+    protected static void verify(BlockMapCompiler compiler, FileHandle script, int parallelism) throws IOException {
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+
+        compiler.setParallelism(1);
+        compiler.compile(script, serial);
+
+        compiler.setParallelism(parallelism);
+        compiler.compile(script, parallel);
+
+        if (!Arrays.equals(serial.toByteArray(), parallel.toByteArray())) {
+            System.err.println(script.path() + " compiles differently with 1 and " + parallelism + " threads");
+            System.exit(1);
+        }
+
+        System.out.println(script.path() + " compiles the same with 1 and " + parallelism + " threads ("
+                + serial.size() + " bytes)");
+    }
+}